@@ -37,6 +37,69 @@ public class EngineProperties {
     /** Default number of milliseconds the exporter will wait after RECORDS_YIELD are exported */
     public static int DEFAULT_MILLIS_YIELD = 100;
 
+    /** Number of threads used to run alerts */
+    public static final String ALERT_THREADS_PROPERTY = "nextreports.alert.threads";
+
+    /** Maximum number of alert batches waiting to be run (new batches are dropped when full) */
+    public static final String ALERT_QUEUE_SIZE_PROPERTY = "nextreports.alert.queue.size";
+
+    /** Number of milliseconds an alert is not run again for the same value (0 means no deduplication between runs) */
+    public static final String ALERT_DEDUP_MILLIS_PROPERTY = "nextreports.alert.dedup.millis";
+
+    /** Maximum number of bytes kept in memory for images used by exporters */
+    public static final String IMAGE_CACHE_SIZE_PROPERTY = "nextreports.image.cache.size";
+
+    /** Number of master rows for which a subreport is run with a single query (0 or 1 means a query for every master row) */
+    public static final String SUBREPORT_BATCH_SIZE_PROPERTY = "nextreports.subreport.batch.size";
+
+    /** Number of threads used to run the queries of subreports generated by a ForReportBandElement */
+    public static final String SUBREPORT_THREADS_PROPERTY = "nextreports.subreport.threads";
+
+    /** Maximum number of rows of a subreport query read in memory by the subreport threads (0 means no limit) */
+    public static final String SUBREPORT_PREFETCH_ROWS_PROPERTY = "nextreports.subreport.prefetch.rows";
+
+    /** Number of threads used to render the images of chart band elements (used only if exporter has a connection supplier) */
+    public static final String CHART_THREADS_PROPERTY = "nextreports.chart.threads";
+
+    /** Number of values above which a multiple selection parameter is passed to the query through a temporary table (0 means the maximum IN list size of the dialect) */
+    public static final String IN_LIST_TABLE_THRESHOLD_PROPERTY = "nextreports.inlist.table.threshold";
+
+    /** Maximum number of extra connections from the connection supplier used at the same time by a report run (0 means no limit) */
+    public static final String RUN_MAX_CONNECTIONS_PROPERTY = "nextreports.run.max.connections";
+
+    /** Number of rows in a record batch of ARROW exports */
+    public static final String ARROW_BATCH_ROWS_PROPERTY = "nextreports.arrow.batch.rows";
+
+    /** Number of rows in a row group of PARQUET exports */
+    public static final String PARQUET_ROW_GROUP_ROWS_PROPERTY = "nextreports.parquet.row.group.rows";
+
+    /** Default number of threads used to run alerts */
+    public static int DEFAULT_ALERT_THREADS = 2;
+
+    /** Default maximum number of alert batches waiting to be run */
+    public static int DEFAULT_ALERT_QUEUE_SIZE = 1000;
+
+    /** Default maximum number of bytes kept in memory for images used by exporters */
+    public static int DEFAULT_IMAGE_CACHE_SIZE = 16 * 1024 * 1024;
+
+    /** Default number of threads used to run the queries of subreports generated by a ForReportBandElement */
+    public static int DEFAULT_SUBREPORT_THREADS = 4;
+
+    /** Default maximum number of rows of a subreport query read in memory by the subreport threads */
+    public static int DEFAULT_SUBREPORT_PREFETCH_ROWS = 10000;
+
+    /** Default number of threads used to render the images of chart band elements */
+    public static int DEFAULT_CHART_THREADS = 2;
+
+    /** Default maximum number of extra connections used at the same time by a report run */
+    public static int DEFAULT_RUN_MAX_CONNECTIONS = 4;
+
+    /** Default number of rows in a record batch of ARROW exports */
+    public static int DEFAULT_ARROW_BATCH_ROWS = 65536;
+
+    /** Default number of rows in a row group of PARQUET exports */
+    public static int DEFAULT_PARQUET_ROW_GROUP_ROWS = 100000;
+
     /** Get priority for running next reports queries and exporters
      *
      * @return priority for running next reports queries and exporters
@@ -87,4 +150,112 @@ public class EngineProperties {
         }
         return millis;
     }
+
+    /** Get number of threads used to run alerts
+     *
+     * @return number of threads used to run alerts
+     */
+    public static int getAlertThreads() {
+        return Math.max(1, getIntProperty(ALERT_THREADS_PROPERTY, DEFAULT_ALERT_THREADS));
+    }
+
+    /** Get maximum number of alert batches waiting to be run
+     *
+     * @return maximum number of alert batches waiting to be run
+     */
+    public static int getAlertQueueSize() {
+        return Math.max(1, getIntProperty(ALERT_QUEUE_SIZE_PROPERTY, DEFAULT_ALERT_QUEUE_SIZE));
+    }
+
+    /** Get number of milliseconds an alert is not run again for the same value
+     *
+     * @return number of milliseconds an alert is not run again for the same value
+     */
+    public static int getAlertDedupMillis() {
+        return getIntProperty(ALERT_DEDUP_MILLIS_PROPERTY, 0);
+    }
+
+    /** Get maximum number of bytes kept in memory for images used by exporters
+     *
+     * @return maximum number of bytes kept in memory for images used by exporters
+     */
+    public static int getImageCacheSize() {
+        return Math.max(0, getIntProperty(IMAGE_CACHE_SIZE_PROPERTY, DEFAULT_IMAGE_CACHE_SIZE));
+    }
+
+    /** Get number of master rows for which a subreport is run with a single query
+     *
+     * @return number of master rows for which a subreport is run with a single query
+     */
+    public static int getSubreportBatchSize() {
+        return getIntProperty(SUBREPORT_BATCH_SIZE_PROPERTY, 0);
+    }
+
+    /** Get number of threads used to run the queries of subreports generated by a ForReportBandElement
+     *
+     * @return number of threads used to run the queries of subreports generated by a ForReportBandElement
+     */
+    public static int getSubreportThreads() {
+        return Math.max(1, getIntProperty(SUBREPORT_THREADS_PROPERTY, DEFAULT_SUBREPORT_THREADS));
+    }
+
+    /** Get maximum number of rows of a subreport query read in memory by the subreport threads
+     *
+     * @return maximum number of rows of a subreport query read in memory (0 means no limit)
+     */
+    public static int getSubreportPrefetchRows() {
+        return Math.max(0, getIntProperty(SUBREPORT_PREFETCH_ROWS_PROPERTY, DEFAULT_SUBREPORT_PREFETCH_ROWS));
+    }
+
+    /** Get number of threads used to render the images of chart band elements
+     *
+     * @return number of threads used to render the images of chart band elements
+     */
+    public static int getChartThreads() {
+        return Math.max(1, getIntProperty(CHART_THREADS_PROPERTY, DEFAULT_CHART_THREADS));
+    }
+
+    /** Get number of values above which a multiple selection parameter is passed to the query through a temporary table
+     *
+     * @return number of values above which a temporary table is used (0 means the maximum IN list size of the dialect)
+     */
+    public static int getInListTableThreshold() {
+        return Math.max(0, getIntProperty(IN_LIST_TABLE_THRESHOLD_PROPERTY, 0));
+    }
+
+    /** Get maximum number of extra connections from the connection supplier used at the same time by a report run
+     *
+     * @return maximum number of extra connections used at the same time by a report run (0 means no limit)
+     */
+    public static int getRunMaxConnections() {
+        return Math.max(0, getIntProperty(RUN_MAX_CONNECTIONS_PROPERTY, DEFAULT_RUN_MAX_CONNECTIONS));
+    }
+
+    /** Get number of rows in a record batch of ARROW exports
+     *
+     * @return number of rows in a record batch
+     */
+    public static int getArrowBatchRows() {
+        return Math.max(1, getIntProperty(ARROW_BATCH_ROWS_PROPERTY, DEFAULT_ARROW_BATCH_ROWS));
+    }
+
+    /** Get number of rows in a row group of PARQUET exports
+     *
+     * @return number of rows in a row group
+     */
+    public static int getParquetRowGroupRows() {
+        return Math.max(1, getIntProperty(PARQUET_ROW_GROUP_ROWS_PROPERTY, DEFAULT_PARQUET_ROW_GROUP_ROWS));
+    }
+
+    private static int getIntProperty(String name, int defaultValue) {
+        String s = System.getProperty(name);
+        if (s != null) {
+            try {
+                return Integer.parseInt(s);
+            } catch (NumberFormatException ex) {
+                // use default value
+            }
+        }
+        return defaultValue;
+    }
 }
@@ -22,9 +22,12 @@ import java.sql.Connection;
 import java.util.List;
 import java.util.Map;
 
+import ro.nextreports.engine.cache.ResultCache;
 import ro.nextreports.engine.exporter.Alert;
 import ro.nextreports.engine.exporter.event.ExporterEventListener;
 import ro.nextreports.engine.exporter.exception.NoDataFoundException;
+import ro.nextreports.engine.exporter.util.IncrementalState;
+import ro.nextreports.engine.queryexec.ConnectionSupplier;
 
 /** Utilities class to run a report using a fluent syntax
  * 
@@ -127,6 +130,66 @@ public class FluentReportRunner {
     	return this;
     }
 
+    /** Set a cache for TABLE, ALARM and INDICATOR results (see ReportRunner.setResultCache)
+     * 
+     * @param resultCache result cache
+     * @return FluentReportRunner object with result cache set
+     */
+    public FluentReportRunner withResultCache(ResultCache resultCache) {
+    	reportRunner.setResultCache(resultCache);
+    	return this;
+    }
+
+    /** Set supplier for extra database connections used to run independent queries at the same time
+     * 
+     * @param connectionSupplier supplier for extra database connections
+     * @return FluentReportRunner object with connection supplier set
+     */
+    public FluentReportRunner withConnectionSupplier(ConnectionSupplier connectionSupplier) {
+    	reportRunner.setConnectionSupplier(connectionSupplier);
+    	return this;
+    }
+
+    /** Set maximum number of connections from the connection supplier used at the same time by a run
+     * 
+     * @param maxConnections maximum number of connections (0 means no limit)
+     * @return FluentReportRunner object with maximum number of connections set
+     */
+    public FluentReportRunner withMaxConnections(int maxConnections) {
+    	reportRunner.setMaxConnections(maxConnections);
+    	return this;
+    }
+
+    /** Set maximum duration of a run
+     * 
+     * @param runTimeout maximum duration of a run in milliseconds (0 means no deadline)
+     * @return FluentReportRunner object with run timeout set
+     */
+    public FluentReportRunner withRunTimeout(long runTimeout) {
+    	reportRunner.setRunTimeout(runTimeout);
+    	return this;
+    }
+
+    /** Set the context used by runs (cancellation and deadline shared with other work)
+     * 
+     * @param runContext run context
+     * @return FluentReportRunner object with run context set
+     */
+    public FluentReportRunner withRunContext(RunContext runContext) {
+    	reportRunner.setRunContext(runContext);
+    	return this;
+    }
+
+    /** Set incremental state for ALARM and INDICATOR reports
+     * 
+     * @param state state shared by all runs of the report
+     * @return FluentReportRunner object with incremental state set
+     */
+    public FluentReportRunner withIncrementalState(IncrementalState state) {
+    	reportRunner.setIncrementalState(state);
+    	return this;
+    }
+
     /** Set compute count property : default this property is false because this computation
      * takes time
      *
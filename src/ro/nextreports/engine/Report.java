@@ -49,7 +49,9 @@ public class Report implements Serializable {
     private String version;
     
     // for ForReportBandElement
- 	private transient Map<String, Object> generatedParamValues;
+    // not transient : generated values must survive the layout copies made after the ForReportBandElement is expanded
+    // (it is never saved in report xml, see XStreamFactory)
+    private Map<String, Object> generatedParamValues;
 
     /** Creates a new next report object
      */
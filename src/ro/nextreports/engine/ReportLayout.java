@@ -98,6 +98,49 @@ public class ReportLayout implements Serializable {
         columnsWidth = new ArrayList<Integer>();
     }
 
+    /**
+     * Copy the structure of this layout : bands, rows, groups and column widths of the copy can be changed
+     * without changing this layout. Band elements and groups are shared and must not be changed.
+     * 
+     * @return layout copy
+     */
+    public ReportLayout copyStructure() {
+        ReportLayout layout = new ReportLayout();
+        layout.groups = (groups == null) ? null : new ArrayList<ReportGroup>(groups);
+        layout.columnsWidth = (columnsWidth == null) ? null : new ArrayList<Integer>(columnsWidth);
+        layout.useSize = useSize;
+        layout.headerBand = copyBand(headerBand);
+        layout.pageHeaderBand = copyBand(pageHeaderBand);
+        layout.groupHeaderBands = copyBands(groupHeaderBands);
+        layout.detailBand = copyBand(detailBand);
+        layout.groupFooterBands = copyBands(groupFooterBands);
+        layout.pageFooterBand = copyBand(pageFooterBand);
+        layout.footerBand = copyBand(footerBand);
+        layout.orientation = orientation;
+        layout.reportType = reportType;
+        layout.pageFormat = pageFormat;
+        layout.paperSize = paperSize;
+        layout.pagePadding = pagePadding;
+        layout.backgroundImage = backgroundImage;
+        layout.headerOnEveryPage = headerOnEveryPage;
+        return layout;
+    }
+
+    private static Band copyBand(Band band) {
+        return (band == null) ? null : new Band(band);
+    }
+
+    private static List<Band> copyBands(List<Band> bands) {
+        if (bands == null) {
+            return null;
+        }
+        List<Band> result = new ArrayList<Band>(bands.size());
+        for (Band band : bands) {
+            result.add(copyBand(band));
+        }
+        return result;
+    }
+
     public List<Integer> getColumnsWidth() {
         return columnsWidth;
     }
@@ -22,16 +22,29 @@ import java.util.Map;
 import java.util.HashMap;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
 import java.sql.Connection;
 import java.io.ByteArrayOutputStream;
 import java.io.OutputStream;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import ro.nextreports.engine.band.Band;
+import ro.nextreports.engine.band.BandElement;
+import ro.nextreports.engine.band.ColumnBandElement;
+import ro.nextreports.engine.band.FunctionBandElement;
+import ro.nextreports.engine.cache.ResultCache;
+import ro.nextreports.engine.cache.ResultCacheKey;
 import ro.nextreports.engine.exporter.AlarmExporter;
 import ro.nextreports.engine.exporter.Alert;
+import ro.nextreports.engine.exporter.ArrowExporter;
 import ro.nextreports.engine.exporter.CsvExporter;
 import ro.nextreports.engine.exporter.ExporterBean;
 import ro.nextreports.engine.exporter.HtmlExporter;
 import ro.nextreports.engine.exporter.IndicatorExporter;
+import ro.nextreports.engine.exporter.ParquetExporter;
 import ro.nextreports.engine.exporter.PdfExporter;
 import ro.nextreports.engine.exporter.ReportTableExporter;
 import ro.nextreports.engine.exporter.ResultExporter;
@@ -43,15 +56,21 @@ import ro.nextreports.engine.exporter.XmlExporter;
 import ro.nextreports.engine.exporter.event.ExporterEventListener;
 import ro.nextreports.engine.exporter.exception.NoDataFoundException;
 import ro.nextreports.engine.exporter.util.AlarmData;
+import ro.nextreports.engine.exporter.util.IncrementalState;
 import ro.nextreports.engine.exporter.util.IndicatorData;
 import ro.nextreports.engine.exporter.util.ParametersBean;
 import ro.nextreports.engine.exporter.util.TableData;
+import ro.nextreports.engine.exporter.util.function.AbstractGFunction;
+import ro.nextreports.engine.exporter.util.function.FunctionFactory;
 import ro.nextreports.engine.querybuilder.sql.dialect.Dialect;
+import ro.nextreports.engine.queryexec.ConnectionSupplier;
+import ro.nextreports.engine.queryexec.LimitedConnectionSupplier;
 import ro.nextreports.engine.queryexec.Query;
 import ro.nextreports.engine.queryexec.QueryExecutor;
 import ro.nextreports.engine.queryexec.QueryParameter;
 import ro.nextreports.engine.queryexec.QueryResult;
 import ro.nextreports.engine.util.DialectUtil;
+import ro.nextreports.engine.util.ParameterUtil;
 import ro.nextreports.engine.util.QueryUtil;
 import ro.nextreports.engine.util.ReportUtil;
 
@@ -82,9 +101,13 @@ public class ReportRunner implements Runner {
     public static final String TXT_FORMAT = "TXT";
     /** XML output format */
     public static final String XML_FORMAT = "XML";
+    /** ARROW output format : query columns as an Apache Arrow IPC stream (layout is not used) */
+    public static final String ARROW_FORMAT = "ARROW";
+    /** PARQUET output format : query columns as an Apache Parquet file (layout is not used) */
+    public static final String PARQUET_FORMAT = "PARQUET";
     /** Array of all output persistent formats */
     public static final String[] FORMATS = { PDF_FORMAT, EXCEL_FORMAT, HTML_FORMAT, RTF_FORMAT,
-            CSV_FORMAT, TSV_FORMAT, TXT_FORMAT, XML_FORMAT };
+            CSV_FORMAT, TSV_FORMAT, TXT_FORMAT, XML_FORMAT, ARROW_FORMAT, PARQUET_FORMAT };
 
     /** Memory table output format */
     public static final String TABLE_FORMAT = "TABLE";
@@ -106,6 +129,26 @@ public class ReportRunner implements Runner {
     private String chartImagePath;
     private List<Alert> alerts;
     private boolean csv = false;
+    // TABLE format page (tableLimit = 0 means all rows)
+    private int tableOffset = 0;
+    private int tableLimit = 0;
+    private int tableTotalRowCount = -1;
+    // totals of the last paged run, reused by next pages with the same connection, sql and parameter values
+    private List<Object> tableTotalsKey;
+    private Map<String, Object> tableTotals;
+    private int tableTotalsRowCount;
+    private IncrementalState incrementalState;
+    private ConnectionSupplier connectionSupplier;
+    private int maxConnections = EngineProperties.getRunMaxConnections();
+    // milliseconds (0 means no deadline)
+    private long runTimeout = 0;
+    private RunContext runContext;
+    private volatile RunContext currentRunContext;
+    private ResultCache resultCache;
+    // result of last run taken from result cache
+    private Object cachedData;
+    
+    private static Log LOG = LogFactory.getLog(ReportRunner.class);
 
     /** Get database connection
      *
@@ -131,6 +174,7 @@ public class ReportRunner implements Runner {
    public void setConnection(Connection connection, boolean csv) {
        this.connection = connection;
        this.csv = csv;
+       resetTableTotals();
        try {
            dialect = DialectUtil.getDialect(connection);
        } catch (Exception e) {
@@ -143,6 +187,93 @@ public class ReportRunner implements Runner {
        }
    }
 
+    /** Get supplier for extra database connections
+     *
+     * @return supplier for extra database connections or null
+     */
+    public ConnectionSupplier getConnectionSupplier() {
+        return connectionSupplier;
+    }
+
+    /** Set supplier for extra database connections to the same database as the report connection
+     * 
+     * If it is set, the queries of the subreports generated by a ForReportBandElement in the same layout row
+     * and the queries of chart band elements are run at the same time, every query on its own connection.
+     * The count statement runs on its own connection at the same time with the report query.
+     * At most getMaxConnections() connections are used at the same time by a run.
+     *
+     * @param connectionSupplier supplier for extra database connections (null to use only the report connection)
+     */
+    public void setConnectionSupplier(ConnectionSupplier connectionSupplier) {
+        this.connectionSupplier = connectionSupplier;
+    }
+
+    /** Get maximum number of connections from the connection supplier used at the same time by a run
+     *
+     * @return maximum number of connections used at the same time by a run (0 means no limit)
+     */
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    /** Set maximum number of connections from the connection supplier used at the same time by a run
+     * (subreport queries, chart queries and the count statement). The report connection is not counted.
+     * Default value is EngineProperties.getRunMaxConnections().
+     *
+     * @param maxConnections maximum number of connections used at the same time by a run (0 means no limit)
+     */
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    /** Get maximum duration of a run
+     *
+     * @return maximum duration of a run in milliseconds (0 means no deadline)
+     */
+    public long getRunTimeout() {
+        return runTimeout;
+    }
+
+    /** Set maximum duration of a run. When the deadline passes the run is stopped : query timeouts are
+     * limited to the time remaining until deadline and the exporter stops. It is not used if a run context is set.
+     *
+     * @param runTimeout maximum duration of a run in milliseconds (0 means no deadline)
+     */
+    public void setRunTimeout(long runTimeout) {
+        this.runTimeout = runTimeout;
+    }
+
+    /** Set the context used by next runs instead of a new context created for every run.
+     * 
+     * It can be used to cancel the run together with other work, or to give a deadline to a group of runs.
+     * A cancelled context stops all the runs which use it. A context with a deadline is not closed by the runner.
+     *
+     * @param runContext run context (null to create a new context for every run)
+     */
+    public void setRunContext(RunContext runContext) {
+        this.runContext = runContext;
+    }
+
+    /** Get the context of current (or last) run
+     *
+     * @return context of current run or null if report was not run
+     */
+    public RunContext getRunContext() {
+        return currentRunContext;
+    }
+
+    /** Set a cache for TABLE, ALARM and INDICATOR results
+     * 
+     * Results are cached by report, sql and parameter values. While a result is cached, the report query 
+     * is not run again. Data returned by getTableData, getAlarmData and getIndicatorData is shared and must
+     * not be modified. Runs with alerts or with incremental state are not cached.
+     *
+     * @param resultCache result cache (null for no cache)
+     */
+    public void setResultCache(ResultCache resultCache) {
+        this.resultCache = resultCache;
+    }
+
     /** Get next report object
      *
      * @return next report object
@@ -157,6 +288,7 @@ public class ReportRunner implements Runner {
      */
     public void setReport(Report report) {
         this.report = report;
+        resetTableTotals();
         if (this.report.getQuery() != null) {
             this.report.getQuery().setDialect(dialect);
         }
@@ -249,6 +381,49 @@ public class ReportRunner implements Runner {
 		this.alerts = alerts;
 	}
 
+    /** Run ALARM or INDICATOR report incrementally
+     * 
+     * Report sql must select only the rows greater than the mark parameter. After every run the greatest
+     * value of the mark column is kept in state and it is passed as mark parameter value to the next run.
+     * If a run finds no new rows, the data from previous run is kept. Alerts are run only when they become active.
+     * 
+     * @param incrementalState state shared by all runs of this report (null for full runs)
+     */
+    public void setIncrementalState(IncrementalState incrementalState) {
+    	if (format == null) {
+    		throw new IllegalStateException("You have to use setFormat with a valid output format before using setIncrementalState!");
+    	}
+    	if (!ALARM_FORMAT.equals(format) && !INDICATOR_FORMAT.equals(format)) {
+    		throw new IllegalStateException("You can use setIncrementalState only for ALARM or INDICATOR output formats!");
+    	}
+    	this.incrementalState = incrementalState;
+    }
+
+    /** Export only a page of rows for TABLE format
+     * 
+     * The window is pushed into the report sql through the dialect, so only the rows of the page 
+     * are read from the database. Footer functions over columns are computed for all rows with
+     * a separate aggregate query. Group bands and functions over expressions are computed only 
+     * for the rows of the page. The aggregate query is run for the first page (offset 0) and
+     * its result is reused by the next pages with the same report, connection and parameter values.
+     * 
+     * @param offset number of rows to skip
+     * @param limit maximum number of rows (0 for all rows)
+     */
+    public void setTablePage(int offset, int limit) {
+    	if (format == null) {
+    		throw new IllegalStateException("You have to use setFormat with a valid output format before using setTablePage!");
+    	}
+    	if (!TABLE_FORMAT.equals(format)) {
+    		throw new IllegalStateException("You can use setTablePage only for TABLE output format!");
+    	}
+    	if ((offset < 0) || (limit < 0)) {
+    		throw new IllegalArgumentException("Offset and limit must be positive!");
+    	}
+    	this.tableOffset = offset;
+    	this.tableLimit = limit;
+    }
+
 	/** Export the current report to the TABLE memory format
      *
      * @throws ReportRunnerException if FluentReportRunner object is not correctly configured
@@ -297,6 +472,53 @@ public class ReportRunner implements Runner {
         if (!formatAllowed(format)) {
             throw new ReportRunnerException("Unsupported format : " + format + " !");
         }       
+        
+        currentRunContext = (runContext != null) ? runContext : new RunContext(runTimeout);
+        cachedData = null;
+        try {
+        	if ((resultCache != null) && (stream == null) && ((alerts == null) || alerts.isEmpty()) && (incrementalState == null)) {
+        		return runCached();
+        	}
+        	return export(stream);
+        } finally {
+        	if (runContext == null) {
+        		// stop the deadline timer of the context created for this run
+        		currentRunContext.close();
+        	}
+        }
+    }
+    
+    // TABLE, ALARM and INDICATOR data are taken from result cache or they are computed and cached
+    private boolean runCached() throws ReportRunnerException, NoDataFoundException {
+    	try {
+    		String sql = (report.getSql() != null) ? report.getSql() : String.valueOf(report.getQuery());
+    		ResultCacheKey key = new ResultCacheKey(connection, report, sql, parameterValues, format, 
+    				tableOffset, tableLimit, count);
+    		cachedData = resultCache.get(key, new Callable<Object>() {
+    			public Object call() throws Exception {
+    				if (!export(null)) {
+    					return null;
+    				}
+    				if (TABLE_FORMAT.equals(format)) {
+    					return getTableData();
+    				} else if (ALARM_FORMAT.equals(format)) {
+    					return getAlarmData();
+    				} else {
+    					return getIndicatorData();
+    				}
+    			}
+    		});
+    		return cachedData != null;
+    	} catch (ReportRunnerException e) {
+    		throw e;
+    	} catch (NoDataFoundException e) {
+    		throw e;
+    	} catch (Exception e) {
+    		throw new ReportRunnerException(e);
+    	}
+    }
+    
+    private boolean export(OutputStream stream) throws ReportRunnerException, NoDataFoundException {
 
         String sql = report.getSql();
         if (sql == null) {
@@ -306,6 +528,11 @@ public class ReportRunner implements Runner {
         if (sql == null) {
             throw new ReportRunnerException("Report sql expression not found");
         }
+        
+        RunContext context = currentRunContext;
+        if (context.isStopped()) {
+        	throw new ReportRunnerException(context.getStopReason());
+        }
 
         // retrieves the report parameters
         Map<String, QueryParameter> parameters = new LinkedHashMap<String, QueryParameter>();
@@ -326,24 +553,85 @@ public class ReportRunner implements Runner {
             }
         }
         
+        boolean paged = TABLE_FORMAT.equals(format) && (tableLimit > 0);
+        String reportSql = sql;
+        if (paged) {
+        	if (QueryUtil.isProcedureCall(sql)) {
+        		throw new ReportRunnerException("TABLE page cannot be used with a procedure call!");
+        	}
+        	sql = dialect.getPagedSql(sql, tableOffset, tableLimit);
+        	if (sql == null) {
+        		throw new ReportRunnerException("Dialect " + dialect.getClass().getSimpleName() + " does not support paging!");
+        	}
+        }
+        
+        Map<String, Object> runValues = parameterValues;
+        Object previousMark = null;
+        if (incrementalState != null) {
+        	QueryParameter markParameter = parameters.get(incrementalState.getMarkParameter());
+        	if (markParameter == null) {
+        		throw new ReportRunnerException("Mark parameter " + incrementalState.getMarkParameter() + " not found in report!");
+        	}
+        	if (INDICATOR_FORMAT.equals(format) && (incrementalState.getIndicatorData() != null) && !isIndicatorMergeable(sql)) {
+        		// value of new rows cannot be merged into previous value : full run
+        		incrementalState.setMark(null);
+        		incrementalState.setIndicatorData(null);
+        	}
+        	previousMark = incrementalState.getMark();
+        	if (previousMark != null) {
+        		runValues = new HashMap<String, Object>(parameterValues);
+        		try {
+        			runValues.put(markParameter.getName(), ParameterUtil.convertParameterValue(markParameter.getValueClassName(), previousMark));
+        		} catch (Exception e) {
+        			throw new ReportRunnerException(e);
+        		}
+        	}
+        }
+        
         QueryResult queryResult = null;
+        boolean result = false;
         try {        	        	        	
             Query query = new Query(sql);
-            QueryExecutor executor = new QueryExecutor(query, parameters, parameterValues, connection, count, true, csv);
+            ConnectionSupplier runSupplier = getRunConnectionSupplier();
+            QueryExecutor executor = new QueryExecutor(query, parameters, runValues, connection, count, true, csv);
             executor.setMaxRows(0);
             executor.setTimeout(queryTimeout);
+            executor.setConnectionSupplier(runSupplier);
+            executor.setRunContext(context);
 
             queryResult = executor.execute();
 
-            ParametersBean bean = new ParametersBean(query, parameters, parameterValues);
+            ParametersBean bean = new ParametersBean(query, parameters, runValues);
                         
             ReportLayout convertedLayout = ReportUtil.getDynamicReportLayout(connection, report.getLayout(), bean);
             
-            createExporter( new ExporterBean(connection, queryTimeout, queryResult, stream, convertedLayout, 
-            								 bean, report.getBaseName(), false, alerts));
-
-            return exporter.export();
+            ExporterBean exporterBean = new ExporterBean(connection, queryTimeout, queryResult, stream, convertedLayout, 
+            								 bean, report.getBaseName(), false, alerts);
+            tableTotalRowCount = -1;
+            if (paged) {
+            	exporterBean.setFooterFunctionValues(computeTableTotals(reportSql, parameters, convertedLayout));
+            }
+            exporterBean.setIncrementalState(incrementalState);
+            exporterBean.setConnectionSupplier(runSupplier);
+            exporterBean.setRunContext(context);
+            createExporter(exporterBean);
+
+            result = exporter.export();
+            if (paged) {
+            	((TableExporter) exporter).getTableData().setTotalRowCount(tableTotalRowCount);
+            }
+            if (result && (incrementalState != null)) {
+            	incrementalState.setAlarmData(getAlarmData());
+            	incrementalState.setIndicatorData(getIndicatorData());
+            }
+            return result;
         } catch (NoDataFoundException e) {
+        	// no new rows : keep data from previous incremental run
+        	if ((incrementalState != null) && (exporter != null) &&
+        		((incrementalState.getAlarmData() != null) || (incrementalState.getIndicatorData() != null))) {
+        		result = true;
+        		return result;
+        	}
             throw e;
         } catch (Exception e) {
             throw new ReportRunnerException(e);
@@ -351,9 +639,138 @@ public class ReportRunner implements Runner {
         	if (queryResult != null) {
         		queryResult.close();
         	}
+        	if ((incrementalState != null) && !result) {
+        		// stopped or failed run : new rows will be read again by next run
+        		incrementalState.setMark(previousMark);
+        	}
         }
     }
 
+    // indicator function is found in sql if it is not set in incremental state
+    private boolean isIndicatorMergeable(String sql) {
+    	if (incrementalState.getIndicatorFunction() == null) {
+    		Band detail = report.getLayout().getDetailBand();
+    		BandElement be = ((detail.getRowCount() > 0) && (detail.getColumnCount() > 0)) ? detail.getElementAt(0, 0) : null;
+    		if (be instanceof ColumnBandElement) {
+    			incrementalState.setIndicatorFunction(QueryUtil.getAggregateFunction(sql, ((ColumnBandElement) be).getColumn()));
+    		}
+    	}
+    	return incrementalState.isIndicatorMergeable();
+    }
+
+    // every run has its own connection limit
+    private ConnectionSupplier getRunConnectionSupplier() {
+    	if ((connectionSupplier == null) || (maxConnections <= 0)) {
+    		return connectionSupplier;
+    	}
+    	return new LimitedConnectionSupplier(connectionSupplier, maxConnections, currentRunContext);
+    }
+
+    // compute row count and footer functions for all report rows with a single aggregate query
+    // functions over expressions cannot be computed by the database
+    // totals of the first page are always computed, the next pages reuse them if sql and parameter values are the same
+    private Map<String, Object> computeTableTotals(String sql, Map<String, QueryParameter> parameters, ReportLayout layout) {
+    	Map<String, Object> values = new HashMap<String, Object>();
+    	List<FunctionBandElement> functions = new ArrayList<FunctionBandElement>();
+    	List<String> aggregates = new ArrayList<String>();
+    	aggregates.add("COUNT(*)");
+    	Band footer = layout.getFooterBand();
+    	for (int i = 0, rows = footer.getRowCount(); i < rows; i++) {
+    		for (BandElement be : footer.getRow(i)) {
+    			if ((be instanceof FunctionBandElement) && !((FunctionBandElement) be).isExpression()) {
+    				String function = getAggregateFunction((FunctionBandElement) be);
+    				if (function != null) {
+    					functions.add((FunctionBandElement) be);
+    					aggregates.add(function);
+    				}
+    			}
+    		}
+    	}
+    	String totalsSql = dialect.getAggregateSql(sql, aggregates);
+    	if (totalsSql == null) {
+    		// footer functions will be computed only for page rows
+    		resetTableTotals();
+    		return values;
+    	}
+    	
+    	List<Object> key = getTableTotalsKey(totalsSql);
+    	if ((tableOffset > 0) && key.equals(tableTotalsKey)) {
+    		tableTotalRowCount = tableTotalsRowCount;
+    		return new HashMap<String, Object>(tableTotals);
+    	}
+    	resetTableTotals();
+    	QueryResult result = null;
+    	try {
+    		QueryExecutor executor = new QueryExecutor(new Query(totalsSql), parameters, parameterValues, connection, false, true, csv);
+    		executor.setMaxRows(0);
+    		executor.setTimeout(queryTimeout);
+    		executor.setRunContext(currentRunContext);
+    		result = executor.execute();
+    		if (result.hasNext()) {
+    			Number count = (Number) result.nextValue(0);
+    			tableTotalRowCount = (count == null) ? 0 : count.intValue();
+    			for (int i = 0, size = functions.size(); i < size; i++) {
+    				FunctionBandElement fbe = functions.get(i);
+    				Number value = (Number) result.nextValue(i + 1);
+    				Double computed = (value == null) ? null : value.doubleValue();
+    				if (AbstractGFunction.AVERAGE.equals(fbe.getFunction())) {
+    					// engine average counts null values as zero    					
+    					computed = ((computed == null) || (tableTotalRowCount == 0)) ? Double.valueOf(0) : computed / tableTotalRowCount;
+    				} else if (computed == null) {
+    					computed = (Double) FunctionFactory.getFunction(fbe.getFunction()).getNeutralElement();
+    				}
+    				values.put(fbe.getFunction() + "_" + fbe.getColumn(), computed);
+    			}
+    			tableTotalsKey = key;
+    			tableTotals = new HashMap<String, Object>(values);
+    			tableTotalsRowCount = tableTotalRowCount;
+    		}
+    	} catch (Exception e) {
+    		// footer functions will be computed only for page rows
+    		LOG.warn("Cannot compute totals for TABLE page : " + e.getMessage(), e);
+    		values.clear();
+    	} finally {
+    		if (result != null) {
+    			result.close();
+    		}
+    	}
+    	return values;
+    }
+    
+    // array values are compared by content
+    private List<Object> getTableTotalsKey(String sql) {
+    	Map<String, Object> values = new HashMap<String, Object>();
+    	for (Map.Entry<String, Object> entry : parameterValues.entrySet()) {
+    		Object value = entry.getValue();
+    		values.put(entry.getKey(), (value instanceof Object[]) ? Arrays.asList((Object[]) value) : value);
+    	}
+    	return Arrays.<Object>asList(sql, values);
+    }
+    
+    private void resetTableTotals() {
+    	tableTotalsKey = null;
+    	tableTotals = null;
+    }
+
+    private String getAggregateFunction(FunctionBandElement fbe) {
+    	String function = fbe.getFunction();
+    	String column = dialect.getEscapedKeyWord(fbe.getColumn());
+    	if (AbstractGFunction.SUM.equals(function)) {
+    		return "SUM(" + column + ")";
+    	} else if (AbstractGFunction.MIN.equals(function)) {
+    		return "MIN(" + column + ")";
+    	} else if (AbstractGFunction.MAX.equals(function)) {
+    		return "MAX(" + column + ")";
+    	} else if (AbstractGFunction.AVERAGE.equals(function)) {
+    		return "SUM(" + column + ")";
+    	} else if (AbstractGFunction.COUNT.equals(function)) {
+    		return "COUNT(*)";
+    	} else if (AbstractGFunction.COUNT_DISTINCT.equals(function)) {
+    		return "COUNT(DISTINCT " + column + ")";
+    	}
+    	return null;
+    }
+
     private boolean formatAllowed(String format) {
         if (TABLE_FORMAT.equals(format) || ALARM_FORMAT.equals(format) ||  INDICATOR_FORMAT.equals(format)) {
             return true;
@@ -398,6 +815,12 @@ public class ReportRunner implements Runner {
             exporter = new RtfExporter(bean);
         } else if (XML_FORMAT.equals(format)) {
             exporter = new XmlExporter(bean);
+        } else if (ARROW_FORMAT.equals(format)) {
+            bean.setRawPrint(true);
+            exporter = new ArrowExporter(bean);
+        } else if (PARQUET_FORMAT.equals(format)) {
+            bean.setRawPrint(true);
+            exporter = new ParquetExporter(bean);
         } else {
             exporter = new HtmlExporter(bean);
         }
@@ -408,9 +831,14 @@ public class ReportRunner implements Runner {
         exporter.setImageChartPath(getChartImagePath());
     }
 
-    /** Stop the export process     
+    /** Stop the export process : running queries of the report, subreports and charts are cancelled
      */
     public void stop() {
+        RunContext context = currentRunContext;
+        if (context != null) {
+            cancelled = true;
+            context.cancel();
+        }
         if (exporter != null) {
             cancelled = true;
             exporter.setStopExport(true);
@@ -449,6 +877,9 @@ public class ReportRunner implements Runner {
      * @return table data for TABLE exporter
      */
     public TableData getTableData() {
+    	if (cachedData instanceof TableData) {
+    		return (TableData) cachedData;
+    	}
         if (TABLE_FORMAT.equals(format)) {
             TableExporter tableExporter = (TableExporter)exporter;
             return tableExporter.getTableData();
@@ -462,6 +893,9 @@ public class ReportRunner implements Runner {
     * @return alarm data for ALARM exporter
     */
     public AlarmData getAlarmData() {
+    	if (cachedData instanceof AlarmData) {
+    		return (AlarmData) cachedData;
+    	}
     	if (ALARM_FORMAT.equals(format)) {
             AlarmExporter alarmExporter = (AlarmExporter)exporter;
             return alarmExporter.getData();
@@ -475,6 +909,9 @@ public class ReportRunner implements Runner {
     * @return indicator data for INDICATOR exporter
     */
     public IndicatorData getIndicatorData() {
+    	if (cachedData instanceof IndicatorData) {
+    		return (IndicatorData) cachedData;
+    	}
     	if (INDICATOR_FORMAT.equals(format)) {
     		IndicatorExporter ie = (IndicatorExporter)exporter;
     		return ie.getData();            
@@ -0,0 +1,220 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.nextreports.engine;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.Timer;
+import java.util.TimerTask;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Cancellation token and deadline of a report run, shared by all the work done for the run : queries,
+ * nested exporters, chart runners and pool tasks.
+ *
+ * Work in progress registers a cancel action (for example cancel a running statement) which is run when
+ * the run is cancelled. When the deadline passes the cancel actions are run by a timer, and query timeouts
+ * are limited to the time remaining until the deadline. A context with a deadline should be closed when
+ * its run is finished to stop the timer.
+ *
+ * A RunContext is thread safe.
+ */
+public class RunContext {
+
+	private static Log LOG = LogFactory.getLog(RunContext.class);
+
+	// runs cancel actions of the contexts whose deadline passed
+	private static final Timer DEADLINE_TIMER = new Timer("RunContext deadline", true);
+
+	private final long deadline;
+	private volatile boolean cancelled;
+	private volatile boolean expired;
+	// true after cancel actions were run
+	private boolean stopped;
+	private final Set<Runnable> cancelActions = new LinkedHashSet<Runnable>();
+	private TimerTask deadlineTask;
+
+	/**
+	 * Create a context without deadline
+	 */
+	public RunContext() {
+		this(0);
+	}
+
+	/**
+	 * Create a context with a deadline
+	 *
+	 * @param timeout milliseconds from now until the deadline (0 for no deadline)
+	 */
+	public RunContext(long timeout) {
+		this.deadline = (timeout > 0) ? System.currentTimeMillis() + timeout : 0;
+		if (timeout > 0) {
+			deadlineTask = new TimerTask() {
+				public void run() {
+					expired = true;
+					stop();
+				}
+			};
+			DEADLINE_TIMER.schedule(deadlineTask, timeout);
+		}
+	}
+
+	/**
+	 * @return deadline time in milliseconds or 0 if there is no deadline
+	 */
+	public long getDeadline() {
+		return deadline;
+	}
+
+	/**
+	 * @return milliseconds until the deadline (0 if the deadline passed, Long.MAX_VALUE if there is no deadline)
+	 */
+	public long getRemainingMillis() {
+		if (deadline == 0) {
+			return Long.MAX_VALUE;
+		}
+		return Math.max(0, deadline - System.currentTimeMillis());
+	}
+
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	public boolean isExpired() {
+		return expired || ((deadline != 0) && (System.currentTimeMillis() >= deadline));
+	}
+
+	/**
+	 * @return true if run was cancelled or its deadline passed
+	 */
+	public boolean isStopped() {
+		return cancelled || isExpired();
+	}
+
+	/**
+	 * @return reason why the run is stopped or null if it is not stopped
+	 */
+	public String getStopReason() {
+		if (cancelled) {
+			return "Run was cancelled";
+		} else if (isExpired()) {
+			return "Run deadline exceeded";
+		}
+		return null;
+	}
+
+	/**
+	 * Get the timeout for a query of this run : the query timeout limited to the seconds remaining until deadline
+	 *
+	 * @param queryTimeout query timeout in seconds (0 for no timeout)
+	 * @return query timeout in seconds (at least 1 if there is a deadline)
+	 */
+	public int getQueryTimeout(int queryTimeout) {
+		if (deadline == 0) {
+			return queryTimeout;
+		}
+		long remaining = (getRemainingMillis() + 999) / 1000;
+		int seconds = (int) Math.max(1, Math.min(Integer.MAX_VALUE, remaining));
+		return (queryTimeout <= 0) ? seconds : Math.min(queryTimeout, seconds);
+	}
+
+	/**
+	 * Cancel the run : all registered cancel actions are run. Work which is not started yet sees the run
+	 * is stopped and is not done.
+	 */
+	public void cancel() {
+		synchronized (cancelActions) {
+			if (stopped) {
+				return;
+			}
+			cancelled = true;
+		}
+		stop();
+	}
+
+	/**
+	 * Stop the deadline timer when the run is finished. The context is not cancelled.
+	 */
+	public void close() {
+		TimerTask task;
+		synchronized (cancelActions) {
+			task = deadlineTask;
+			deadlineTask = null;
+		}
+		if (task != null) {
+			task.cancel();
+			DEADLINE_TIMER.purge();
+		}
+	}
+
+	// run cancel actions once, when run is cancelled or deadline passed
+	private void stop() {
+		List<Runnable> actions;
+		synchronized (cancelActions) {
+			if (stopped) {
+				return;
+			}
+			stopped = true;
+			actions = new ArrayList<Runnable>(cancelActions);
+			cancelActions.clear();
+		}
+		close();
+		for (Runnable action : actions) {
+			run(action);
+		}
+	}
+
+	/**
+	 * Register an action run when the run is cancelled or its deadline passes. If the run is already stopped,
+	 * the action is run now.
+	 *
+	 * @param action cancel action
+	 */
+	public void addCancelAction(Runnable action) {
+		synchronized (cancelActions) {
+			if (!stopped) {
+				cancelActions.add(action);
+				return;
+			}
+		}
+		run(action);
+	}
+
+	/**
+	 * Remove a cancel action when its work is finished
+	 *
+	 * @param action cancel action
+	 */
+	public void removeCancelAction(Runnable action) {
+		synchronized (cancelActions) {
+			cancelActions.remove(action);
+		}
+	}
+
+	private void run(Runnable action) {
+		try {
+			action.run();
+		} catch (Throwable t) {
+			LOG.error(t.getMessage(), t);
+		}
+	}
+
+}
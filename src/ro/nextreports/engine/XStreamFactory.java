@@ -18,6 +18,11 @@ package ro.nextreports.engine;
 
 import java.awt.Color;
 import java.awt.Font;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
 
 import ro.nextreports.engine.band.Band;
 import ro.nextreports.engine.band.BandElement;
@@ -53,7 +58,10 @@ import ro.nextreports.engine.template.ReportTemplate;
 import ro.nextreports.engine.util.xstream.FontConverter;
 
 import com.thoughtworks.xstream.XStream;
-import com.thoughtworks.xstream.io.xml.DomDriver;
+import com.thoughtworks.xstream.io.HierarchicalStreamReader;
+import com.thoughtworks.xstream.io.HierarchicalStreamWriter;
+import com.thoughtworks.xstream.io.StreamException;
+import com.thoughtworks.xstream.io.xml.XppDriver;
 
 /**
  * Created by IntelliJ IDEA.
@@ -64,13 +72,29 @@ import com.thoughtworks.xstream.io.xml.DomDriver;
 
 public class XStreamFactory {
 
+    // configured once and shared : XStream is thread safe for toXML and fromXML calls
+    private static XStream sharedXStream;
+
+    /**
+     * Get the shared XStream for query and report load/save. It must not be configured
+     * by callers (use createXStream for a private instance).
+     *
+     * @return shared XStream
+     */
+    public static synchronized XStream getXStream() {
+        if (sharedXStream == null) {
+            sharedXStream = createXStream();
+        }
+        return sharedXStream;
+    }
+
     /**
      * Create XStream for query and report load/save.
      * 
      * @return XStream
      */
      public static XStream createXStream() {
-        XStream xstream = new XStream(new DomDriver("UTF-8"));
+        XStream xstream = new XStream(new Utf8XppDriver());
         xstream.setMode(XStream.NO_REFERENCES);
         xstream.registerConverter(new FontConverter());
 
@@ -78,6 +102,7 @@ public class XStreamFactory {
         xstream.alias("chart", Chart.class);
         xstream.useAttributeFor(Report.class, "version");
         xstream.useAttributeFor(Chart.class, "version");
+        xstream.omitField(Report.class, "generatedParamValues");
 
         xstream = createQueryXStream(xstream);
         xstream = createReportXStream(xstream);
@@ -92,7 +117,7 @@ public class XStreamFactory {
      * @return XStream
      */
     public static XStream createTemplateXStream() {
-        XStream xstream = new XStream(new DomDriver("UTF-8"));
+        XStream xstream = new XStream(new Utf8XppDriver());
         xstream.setMode(XStream.NO_REFERENCES);
         xstream.registerConverter(new FontConverter());
         
@@ -110,7 +135,7 @@ public class XStreamFactory {
      * @return XStream
      */
     public static XStream createChartTemplateXStream() {
-        XStream xstream = new XStream(new DomDriver("UTF-8"));
+        XStream xstream = new XStream(new Utf8XppDriver());
         xstream.setMode(XStream.NO_REFERENCES);
         xstream.registerConverter(new FontConverter());
         
@@ -170,4 +195,24 @@ public class XStreamFactory {
         return xstream;
     }
     
+    // streaming xpp parser instead of a dom; streams are read and written as UTF-8 like DomDriver("UTF-8") did
+    private static class Utf8XppDriver extends XppDriver {
+
+        public HierarchicalStreamReader createReader(InputStream in) {
+            try {
+                return createReader(new InputStreamReader(in, "UTF-8"));
+            } catch (UnsupportedEncodingException e) {
+                throw new StreamException(e);
+            }
+        }
+
+        public HierarchicalStreamWriter createWriter(OutputStream out) {
+            try {
+                return createWriter(new OutputStreamWriter(out, "UTF-8"));
+            } catch (UnsupportedEncodingException e) {
+                throw new StreamException(e);
+            }
+        }
+    }
+
 }
@@ -53,6 +53,21 @@ public class Band implements Serializable {
     	}
     }
     
+    /**
+     * Copy the structure of a band : rows and columns can be inserted or removed in the copy
+     * without changing the original band. Band elements are shared.
+     * 
+     * @param band band to copy
+     */
+    public Band(Band band) {
+    	this.name = band.name;
+    	initListenerList();
+    	rows = new Vector<RowElement>(band.rows.size());
+    	for (RowElement row : band.rows) {
+    		rows.add(new RowElement(row));
+    	}
+    }
+    
     public void initListenerList() {
         listenerList = new EventListenerList();
     }
@@ -40,6 +40,17 @@ public class RowElement implements Serializable {
 		this.formattingConditions = new RowFormattingConditions("");
 	}
 	
+	/**
+	 * Copy a row : elements are in a new list, but band elements and formatting conditions are shared
+	 * 
+	 * @param row row to copy
+	 */
+	public RowElement(RowElement row) {
+		this.elements = new Vector<BandElement>(row.elements);
+		this.formattingConditions = row.formattingConditions;
+		this.startOnNewPage = row.startOnNewPage;
+	}
+	
 	public Vector<BandElement> getElements() {
 		return elements;
 	}
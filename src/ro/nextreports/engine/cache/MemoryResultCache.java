@@ -0,0 +1,207 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.nextreports.engine.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In memory result cache.
+ *
+ * Values expire after a time to live and the least recently used values are removed when the cache
+ * has more than a maximum number of values. Concurrent requests for the same key which is not cached
+ * wait for the first request to compute the value.
+ */
+public class MemoryResultCache implements ResultCache {
+
+	private final int maxSize;
+	private final long timeToLive;
+
+	private final LinkedHashMap<ResultCacheKey, CacheEntry> entries;
+	private final ConcurrentHashMap<ResultCacheKey, FutureTask<Object>> loading =
+			new ConcurrentHashMap<ResultCacheKey, FutureTask<Object>>();
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong waits = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+	private final AtomicLong expirations = new AtomicLong();
+
+	/**
+	 * @param maxSize maximum number of cached values
+	 * @param timeToLive milliseconds a value is kept in cache
+	 */
+	public MemoryResultCache(int maxSize, long timeToLive) {
+		if ((maxSize <= 0) || (timeToLive <= 0)) {
+			throw new IllegalArgumentException("Cache size and time to live must be positive!");
+		}
+		this.maxSize = maxSize;
+		this.timeToLive = timeToLive;
+		entries = new LinkedHashMap<ResultCacheKey, CacheEntry>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			protected boolean removeEldestEntry(Map.Entry<ResultCacheKey, CacheEntry> eldest) {
+				if (size() > MemoryResultCache.this.maxSize) {
+					evictions.incrementAndGet();
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	public Object get(ResultCacheKey key, Callable<Object> loader) throws Exception {
+		Object value = lookup(key);
+		if (value != null) {
+			hits.incrementAndGet();
+			return value;
+		}
+
+		FutureTask<Object> task = new FutureTask<Object>(loader);
+		FutureTask<Object> running = loading.putIfAbsent(key, task);
+		if (running == null) {
+			misses.incrementAndGet();
+			try {
+				task.run();
+				value = task.get();
+				if (value != null) {
+					put(key, value);
+				}
+			} catch (ExecutionException ex) {
+				throw unwrap(ex);
+			} finally {
+				loading.remove(key, task);
+			}
+			return value;
+		}
+
+		// same value is computed by another request
+		waits.incrementAndGet();
+		try {
+			return running.get();
+		} catch (ExecutionException ex) {
+			throw unwrap(ex);
+		}
+	}
+
+	public synchronized void remove(ResultCacheKey key) {
+		entries.remove(key);
+	}
+
+	public synchronized void clear() {
+		entries.clear();
+	}
+
+	/**
+	 * Number of values found in cache
+	 *
+	 * @return number of values found in cache
+	 */
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	/**
+	 * Number of values computed because they were not found in cache
+	 *
+	 * @return number of values not found in cache
+	 */
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	/**
+	 * Number of requests which waited for the same value computed by another request
+	 *
+	 * @return number of requests which waited for another request
+	 */
+	public long getWaitCount() {
+		return waits.get();
+	}
+
+	/**
+	 * Number of values removed because cache was full
+	 *
+	 * @return number of values removed because cache was full
+	 */
+	public long getEvictionCount() {
+		return evictions.get();
+	}
+
+	/**
+	 * Number of values removed because their time to live passed
+	 *
+	 * @return number of expired values
+	 */
+	public long getExpirationCount() {
+		return expirations.get();
+	}
+
+	/**
+	 * Number of values in cache (expired values not yet removed are included)
+	 *
+	 * @return number of values in cache
+	 */
+	public synchronized int getSize() {
+		return entries.size();
+	}
+
+	private synchronized Object lookup(ResultCacheKey key) {
+		CacheEntry entry = entries.get(key);
+		if (entry == null) {
+			return null;
+		}
+		if (entry.expires < System.currentTimeMillis()) {
+			entries.remove(key);
+			expirations.incrementAndGet();
+			return null;
+		}
+		return entry.value;
+	}
+
+	private synchronized void put(ResultCacheKey key, Object value) {
+		entries.put(key, new CacheEntry(value, System.currentTimeMillis() + timeToLive));
+	}
+
+	private static Exception unwrap(ExecutionException ex) {
+		Throwable cause = ex.getCause();
+		if (cause instanceof Exception) {
+			return (Exception) cause;
+		} else if (cause instanceof Error) {
+			throw (Error) cause;
+		}
+		return ex;
+	}
+
+	private static class CacheEntry {
+
+		private final Object value;
+		private final long expires;
+
+		private CacheEntry(Object value, long expires) {
+			this.value = value;
+			this.expires = expires;
+		}
+	}
+
+}
@@ -0,0 +1,219 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.nextreports.engine.cache;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import ro.nextreports.engine.ReleaseInfoAdapter;
+import ro.nextreports.engine.Report;
+import ro.nextreports.engine.util.LoadReportException;
+import ro.nextreports.engine.util.ReportUtil;
+
+/**
+ * Cache for parsed report definitions, so a report which is run many times is converted and parsed only once.
+ *
+ * Reports read from files are keyed by file path; a file is read again when its modified time or its length
+ * changes. Reports given as xml are keyed by the SHA-1 hash of the xml. Both keys contain the engine version,
+ * because converted reports depend on it. When the cache has more than a maximum number of reports, the least
+ * recently used report is removed.
+ *
+ * The parsed report is shared by all callers : runs do not change report objects, but a caller which
+ * changes a report (for example a designer) must change a copy (see ObjectCloner).
+ */
+public class ReportDefinitionCache {
+
+	private final int maxSize;
+	private final LinkedHashMap<String, CachedReport> entries;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * @param maxSize maximum number of cached reports
+	 */
+	public ReportDefinitionCache(int maxSize) {
+		if (maxSize <= 0) {
+			throw new IllegalArgumentException("Cache size must be positive!");
+		}
+		this.maxSize = maxSize;
+		entries = new LinkedHashMap<String, CachedReport>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			protected boolean removeEldestEntry(Map.Entry<String, CachedReport> eldest) {
+				return size() > ReportDefinitionCache.this.maxSize;
+			}
+		};
+	}
+
+	/**
+	 * Get a report from a file. Report is loaded (and converted if needed) if it is not cached or if
+	 * the file was changed since it was cached.
+	 *
+	 * @param file report file
+	 * @return report
+	 * @throws LoadReportException if report cannot be loaded
+	 */
+	public Report getReport(File file) throws LoadReportException {
+		String key;
+		try {
+			key = "file:" + ReleaseInfoAdapter.getVersionNumber() + ":" + file.getCanonicalPath();
+		} catch (IOException ex) {
+			throw new LoadReportException(ex.getMessage(), ex);
+		}
+		long modified = file.lastModified();
+		long length = file.length();
+		CachedReport cached = lookup(key);
+		if ((cached != null) && (cached.modified == modified) && (cached.length == length)) {
+			hits.incrementAndGet();
+			return cached.report;
+		}
+
+		misses.incrementAndGet();
+		InputStream is = null;
+		try {
+			is = new FileInputStream(file);
+			Report report = ReportUtil.loadReport(is);
+			put(key, new CachedReport(report, modified, length));
+			return report;
+		} catch (IOException ex) {
+			throw new LoadReportException(ex.getMessage(), ex);
+		} finally {
+			if (is != null) {
+				try {
+					is.close();
+				} catch (IOException e) {
+					// nothing to do
+				}
+			}
+		}
+	}
+
+	/**
+	 * Get a report from xml. Report is loaded (and converted if needed) if the same xml was not cached.
+	 *
+	 * @param xml report xml
+	 * @return report
+	 * @throws LoadReportException if report cannot be loaded
+	 */
+	public Report getReport(String xml) throws LoadReportException {
+		String key = "xml:" + ReleaseInfoAdapter.getVersionNumber() + ":" + hash(xml);
+		CachedReport cached = lookup(key);
+		if (cached != null) {
+			hits.incrementAndGet();
+			return cached.report;
+		}
+
+		misses.incrementAndGet();
+		Report report = ReportUtil.loadReport(xml);
+		put(key, new CachedReport(report, 0, 0));
+		return report;
+	}
+
+	/**
+	 * Remove the report of a file from cache
+	 *
+	 * @param file report file
+	 */
+	public synchronized void remove(File file) {
+		try {
+			entries.remove("file:" + ReleaseInfoAdapter.getVersionNumber() + ":" + file.getCanonicalPath());
+		} catch (IOException ex) {
+			// file was not cached
+		}
+	}
+
+	/**
+	 * Remove all reports from cache
+	 */
+	public synchronized void clear() {
+		entries.clear();
+	}
+
+	/**
+	 * Number of reports found in cache
+	 *
+	 * @return number of reports found in cache
+	 */
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	/**
+	 * Number of reports loaded because they were not found in cache or their file was changed
+	 *
+	 * @return number of loaded reports
+	 */
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	/**
+	 * Number of reports in cache
+	 *
+	 * @return number of reports in cache
+	 */
+	public synchronized int getSize() {
+		return entries.size();
+	}
+
+	private synchronized CachedReport lookup(String key) {
+		return entries.get(key);
+	}
+
+	private synchronized void put(String key, CachedReport cached) {
+		entries.put(key, cached);
+	}
+
+	private static String hash(String xml) throws LoadReportException {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-1");
+			byte[] bytes = digest.digest(xml.getBytes("UTF-8"));
+			StringBuilder sb = new StringBuilder();
+			for (byte b : bytes) {
+				sb.append(Integer.toHexString((b & 0xff) | 0x100).substring(1));
+			}
+			return sb.toString();
+		} catch (NoSuchAlgorithmException ex) {
+			throw new LoadReportException(ex.getMessage(), ex);
+		} catch (IOException ex) {
+			throw new LoadReportException(ex.getMessage(), ex);
+		}
+	}
+
+	private static class CachedReport {
+
+		private final Report report;
+		private final long modified;
+		private final long length;
+
+		private CachedReport(Report report, long modified, long length) {
+			this.report = report;
+			this.modified = modified;
+			this.length = length;
+		}
+	}
+
+}
@@ -0,0 +1,53 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.nextreports.engine.cache;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Cache for the results of chart and report runs (chart json, TableData, AlarmData, IndicatorData).
+ *
+ * Implementations must be thread safe. Cached values are shared by all callers and must not be modified.
+ *
+ * @see MemoryResultCache
+ */
+public interface ResultCache {
+
+	/**
+	 * Get a cached value. If the value is not found, it is computed by the loader and it is cached.
+	 * Concurrent calls for the same key must wait for a single loader call.
+	 *
+	 * @param key key
+	 * @param loader computes the value (a null value is not cached)
+	 * @return cached or computed value
+	 * @throws Exception exception thrown by loader
+	 */
+	public Object get(ResultCacheKey key, Callable<Object> loader) throws Exception;
+
+	/**
+	 * Remove a value from cache
+	 *
+	 * @param key key
+	 */
+	public void remove(ResultCacheKey key);
+
+	/**
+	 * Remove all values from cache
+	 */
+	public void clear();
+
+}
@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.nextreports.engine.cache;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.math.BigInteger;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Key for a cached run result : database, definition (chart or report), sql, parameter values and run options.
+ *
+ * The definition is kept as a digest of its serialized form, so later changes of the chart or report object
+ * do not change the key and the key does not hold a copy of the definition.
+ * Parameter values which are arrays (multiple selection) are compared by content.
+ */
+public class ResultCacheKey implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final List<Object> parts;
+	private final int hash;
+
+	/**
+	 * @param con connection (database url and user are part of the key)
+	 * @param definition chart or report object
+	 * @param sql sql
+	 * @param parameterValues parameter values
+	 * @param options other run options which change the result (format, page, ...)
+	 * @throws SQLException if connection metadata cannot be read
+	 */
+	public ResultCacheKey(Connection con, Serializable definition, String sql, Map<String, Object> parameterValues,
+			Object... options) throws SQLException {
+		List<Object> list = new ArrayList<Object>();
+		DatabaseMetaData dmd = con.getMetaData();
+		list.add(dmd.getURL());
+		list.add(dmd.getUserName());
+		list.add(digest(definition));
+		list.add(sql);
+		list.add(normalize(parameterValues));
+		for (Object option : options) {
+			list.add(normalize(option));
+		}
+		parts = Collections.unmodifiableList(list);
+		hash = parts.hashCode();
+	}
+
+	// SHA-1 of serialized definition (definition itself if it cannot be serialized)
+	private static Object digest(Serializable definition) {
+		if (definition == null) {
+			return null;
+		}
+		try {
+			MessageDigest md = MessageDigest.getInstance("SHA-1");
+			ObjectOutputStream out = new ObjectOutputStream(new DigestOutputStream(new NullOutputStream(), md));
+			out.writeObject(definition);
+			out.close();
+			return new BigInteger(1, md.digest()).toString(16);
+		} catch (NoSuchAlgorithmException e) {
+			return definition;
+		} catch (IOException e) {
+			return definition;
+		}
+	}
+
+	// arrays are compared by content and maps are copied
+	private static Object normalize(Object value) {
+		if (value instanceof Object[]) {
+			List<Object> list = new ArrayList<Object>();
+			for (Object o : (Object[]) value) {
+				list.add(normalize(o));
+			}
+			return list;
+		} else if (value instanceof Map) {
+			Map<String, Object> map = new TreeMap<String, Object>();
+			for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+				map.put(String.valueOf(entry.getKey()), normalize(entry.getValue()));
+			}
+			return map;
+		}
+		return value;
+	}
+
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (o == null || getClass() != o.getClass()) return false;
+
+		ResultCacheKey key = (ResultCacheKey) o;
+
+		return (hash == key.hash) && parts.equals(key.parts);
+	}
+
+	public int hashCode() {
+		return hash;
+	}
+
+	private static class NullOutputStream extends OutputStream {
+
+		public void write(int b) {
+		}
+
+		public void write(byte[] b, int off, int len) {
+		}
+	}
+
+}
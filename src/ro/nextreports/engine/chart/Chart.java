@@ -78,6 +78,8 @@ public class Chart implements Serializable {
     private Font font;
     private Font xLabelFont;
     private Font yLabelFont;
+    // maximum number of points of a line or area chart (null or 0 : all points)
+    private Integer maxPoints;
 
     public static transient Color[] COLORS = new Color[] {
             new Color(0, 0, 204),
@@ -430,6 +432,21 @@ public class Chart implements Serializable {
         this.yLabelFont = yLabelFont;
     }
 	
+	public Integer getMaxPoints() {
+		return maxPoints;
+	}
+
+	/**
+	 * Line and area charts with more x values than maxPoints are downsampled to maxPoints values
+	 * (Largest-Triangle-Three-Buckets), keeping the visual shape of the series. Image charts are also
+	 * limited to a few points for every pixel of the image width.
+	 *
+	 * @param maxPoints maximum number of points (null or 0 for all points)
+	 */
+	public void setMaxPoints(Integer maxPoints) {
+		this.maxPoints = maxPoints;
+	}
+
 	private Font getDefaultFont() {
 		return new Font("SansSerif", Font.PLAIN, 12);
 	}
@@ -473,6 +490,7 @@ public class Chart implements Serializable {
         if (yLabelFont != null ? !yLabelFont.equals(chart.yLabelFont) : chart.yLabelFont != null) return false;
         if (xAxisColor != null ? !xAxisColor.equals(chart.xAxisColor) : chart.xAxisColor != null) return false;
         if (yAxisColor != null ? !yAxisColor.equals(chart.yAxisColor) : chart.yAxisColor != null) return false;
+        if (maxPoints != null ? !maxPoints.equals(chart.maxPoints) : chart.maxPoints != null) return false;
 
         return true;
     }
@@ -511,6 +529,7 @@ public class Chart implements Serializable {
         result = 31 * result + (font != null ? font.hashCode() : 0);
         result = 31 * result + (xLabelFont != null ? xLabelFont.hashCode() : 0);
         result = 31 * result + (yLabelFont != null ? yLabelFont.hashCode() : 0);
+        result = 31 * result + (maxPoints != null ? maxPoints.hashCode() : 0);
         return result;
     }
 
@@ -548,6 +567,7 @@ public class Chart implements Serializable {
                 ", font=" + font +
                 ", xLabelFont=" + xLabelFont +
                 ", yLabelFont=" + yLabelFont +
+                ", maxPoints=" + maxPoints +
                 '}';
     }
 }
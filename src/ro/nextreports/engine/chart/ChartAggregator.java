@@ -0,0 +1,414 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.nextreports.engine.chart;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import ro.nextreports.engine.exporter.util.function.AbstractGFunction;
+import ro.nextreports.engine.exporter.util.function.FunctionFactory;
+import ro.nextreports.engine.exporter.util.function.GFunction;
+import ro.nextreports.engine.queryexec.QueryException;
+import ro.nextreports.engine.queryexec.QueryResult;
+import ro.nextreports.engine.util.StringUtil;
+
+/**
+ * Groups chart rows by x value and computes the y function for every y column. Used by all chart exporters.
+ *
+ * Rows with the same x value are grouped even if they are not consecutive, so the chart sql does not have
+ * to be ordered by the x column. X values are equal as for FunctionUtil.parameterEquals : strings are trimmed
+ * and compared ignoring case, numbers and dates by their values, and null values are never equal. Groups are kept in the order of the first row of every x value, unless
+ * a sort type is set. Without a y function (or if rows were already aggregated in the database) every row
+ * is a group.
+ */
+public class ChartAggregator {
+
+	/** Groups in the order of their first row */
+	public static final byte NO_SORT = 0;
+	/** Groups ordered by x value */
+	public static final byte X_ASCENDING = 1;
+	/** Groups ordered by x value, descending */
+	public static final byte X_DESCENDING = 2;
+	/** Groups ordered by the sum of their y values */
+	public static final byte VALUE_ASCENDING = 3;
+	/** Groups ordered by the sum of their y values, descending */
+	public static final byte VALUE_DESCENDING = 4;
+
+	private static final Comparator<Group> X_COMPARATOR = new Comparator<Group>() {
+		public int compare(Group g1, Group g2) {
+			return compareX(g1, g2);
+		}
+	};
+
+	private Chart chart;
+	private boolean aggregated;
+	private byte sortType;
+	private boolean nonNumericValues;
+	private int maxPoints;
+
+	/**
+	 * @param chart chart
+	 * @param aggregated true if rows were already grouped and aggregated in the database
+	 * @param sortType one of NO_SORT, X_ASCENDING, X_DESCENDING, VALUE_ASCENDING, VALUE_DESCENDING
+	 */
+	public ChartAggregator(Chart chart, boolean aggregated, byte sortType) {
+		this.chart = chart;
+		this.aggregated = aggregated;
+		this.sortType = sortType;
+	}
+
+	/**
+	 * Read all rows of the chart result and group them
+	 *
+	 * @param result chart query result
+	 * @return groups
+	 * @throws QueryException if values cannot be read
+	 */
+	public List<Group> aggregate(QueryResult result) throws QueryException {
+		String function = aggregated ? AbstractGFunction.NOOP : chart.getYFunction();
+		boolean noop = AbstractGFunction.NOOP.equals(FunctionFactory.getFunction(function).getName());
+		String xColumn = chart.getXColumn();
+		String xPattern = chart.getXPattern();
+		List<String> yColumns = chart.getYColumns();
+		int chartsNo = yColumns.size();
+
+		List<Group> groups = new ArrayList<Group>();
+		Map<Object, GFunction[]> functions = new LinkedHashMap<Object, GFunction[]>();
+		nonNumericValues = false;
+		while (result.hasNext()) {
+			Object x = result.nextValue(xColumn);
+			Object[] objects = new Object[chartsNo];
+			for (int i = 0; i < chartsNo; i++) {
+				if (yColumns.get(i) != null) {
+					objects[i] = result.nextValue(yColumns.get(i));
+				}
+			}
+
+			if (noop) {
+				Number[] values = new Number[chartsNo];
+				for (int i = 0; i < chartsNo; i++) {
+					values[i] = toNumber(objects[i]);
+				}
+				groups.add(new Group(x, StringUtil.getValueAsString(x, xPattern), values));
+				continue;
+			}
+
+			Object key = getKey(x);
+			GFunction[] groupFunctions = functions.get(key);
+			if (groupFunctions == null) {
+				groupFunctions = new GFunction[chartsNo];
+				for (int i = 0; i < chartsNo; i++) {
+					groupFunctions[i] = FunctionFactory.getFunction(function);
+				}
+				functions.put(key, groupFunctions);
+				groups.add(new Group(x, StringUtil.getValueAsString(x, xPattern), new Number[chartsNo]));
+			}
+			for (int i = 0; i < chartsNo; i++) {
+				// marks non numeric values
+				toNumber(objects[i]);
+				groupFunctions[i].compute(objects[i]);
+			}
+		}
+
+		if (!noop) {
+			// groups and functions have the same order
+			int index = 0;
+			for (GFunction[] groupFunctions : functions.values()) {
+				Number[] values = groups.get(index++).values;
+				for (int i = 0; i < chartsNo; i++) {
+					values[i] = (Number) groupFunctions[i].getComputedValue();
+				}
+			}
+		}
+
+		sort(groups);
+		byte type = chart.getType().getType();
+		if ((maxPoints > 0) && ((type == ChartType.LINE) || (type == ChartType.AREA))) {
+			groups = downsampleByX(groups, maxPoints);
+		}
+		return groups;
+	}
+
+	// groups are downsampled in x order and the kept groups are returned in the order of groups
+	private List<Group> downsampleByX(List<Group> groups, int threshold) {
+		if ((sortType == X_ASCENDING) || (sortType == X_DESCENDING) || isOrderedByX(groups)) {
+			return downsample(groups, threshold);
+		}
+		List<Group> byX = new ArrayList<Group>(groups);
+		Collections.sort(byX, X_COMPARATOR);
+		List<Group> sampled = downsample(byX, threshold);
+		final Map<Group, Integer> positions = new IdentityHashMap<Group, Integer>();
+		for (int i = 0, size = groups.size(); i < size; i++) {
+			positions.put(groups.get(i), i);
+		}
+		Collections.sort(sampled, new Comparator<Group>() {
+			public int compare(Group g1, Group g2) {
+				return positions.get(g1).compareTo(positions.get(g2));
+			}
+		});
+		return sampled;
+	}
+
+	private static boolean isOrderedByX(List<Group> groups) {
+		for (int i = 1, size = groups.size(); i < size; i++) {
+			if (compareX(groups.get(i - 1), groups.get(i)) > 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Set the maximum number of groups for line and area charts. If there are more groups, they are
+	 * downsampled with Largest-Triangle-Three-Buckets. Groups which are not in x order are downsampled
+	 * in x order and the kept groups stay in the sort order.
+	 *
+	 * @param maxPoints maximum number of groups (0 for all groups)
+	 */
+	public void setMaxPoints(int maxPoints) {
+		this.maxPoints = maxPoints;
+	}
+
+	/**
+	 * Test if the last aggregated rows had y values which are not numbers (a value of 1 is used for them
+	 * when there is no y function)
+	 *
+	 * @return true if some y values are not numbers
+	 */
+	public boolean hasNonNumericValues() {
+		return nonNumericValues;
+	}
+
+	// group key with the same equality as FunctionUtil.parameterEquals
+	private static Object getKey(Object x) {
+		if (x == null) {
+			// every null value is a group
+			return new Object();
+		} else if (x instanceof String) {
+			return ((String) x).trim().toLowerCase();
+		} else if (x instanceof BigDecimal) {
+			// same value with different scales
+			return ((BigDecimal) x).doubleValue();
+		} else if (x instanceof Date) {
+			// dates, timestamps, times
+			return ((Date) x).getTime();
+		}
+		return x;
+	}
+
+	private Number toNumber(Object value) {
+		if (value instanceof Number) {
+			return (Number) value;
+		} else if (value != null) {
+			nonNumericValues = true;
+			return 1;
+		}
+		return 0;
+	}
+
+	private void sort(List<Group> groups) {
+		Comparator<Group> comparator;
+		switch (sortType) {
+			case X_ASCENDING:
+			case X_DESCENDING:
+				comparator = X_COMPARATOR;
+				break;
+			case VALUE_ASCENDING:
+			case VALUE_DESCENDING:
+				comparator = new Comparator<Group>() {
+					public int compare(Group g1, Group g2) {
+						return Double.compare(g1.getSum(), g2.getSum());
+					}
+				};
+				break;
+			default:
+				return;
+		}
+		if ((sortType == X_DESCENDING) || (sortType == VALUE_DESCENDING)) {
+			comparator = Collections.reverseOrder(comparator);
+		}
+		Collections.sort(groups, comparator);
+	}
+
+	/**
+	 * Largest-Triangle-Three-Buckets : first and last groups are kept and the other groups are split in
+	 * threshold - 2 buckets. From every bucket the group which makes the largest triangle with the group
+	 * selected from the previous bucket and the average of the next bucket is kept. For more series the
+	 * triangle areas of all series are added.
+	 *
+	 * @param groups groups in x order
+	 * @param threshold number of groups to keep
+	 * @return downsampled groups
+	 */
+	private static List<Group> downsample(List<Group> groups, int threshold) {
+		int size = groups.size();
+		if ((threshold >= size) || (threshold < 3)) {
+			return groups;
+		}
+
+		// x coordinates : number and date values, otherwise group positions
+		double[] xs = new double[size];
+		for (int i = 0; i < size; i++) {
+			Object x = groups.get(i).x;
+			if (x instanceof Number) {
+				xs[i] = ((Number) x).doubleValue();
+			} else if (x instanceof Date) {
+				xs[i] = ((Date) x).getTime();
+			} else {
+				xs = null;
+				break;
+			}
+		}
+		if (xs == null) {
+			xs = new double[size];
+			for (int i = 0; i < size; i++) {
+				xs[i] = i;
+			}
+		}
+		int series = groups.get(0).values.length;
+
+		List<Group> sampled = new ArrayList<Group>(threshold);
+		sampled.add(groups.get(0));
+		double every = (double) (size - 2) / (threshold - 2);
+		int a = 0;
+		double[] avgY = new double[series];
+		for (int i = 0; i < threshold - 2; i++) {
+			// average of next bucket
+			int avgStart = (int) Math.floor((i + 1) * every) + 1;
+			int avgEnd = Math.min((int) Math.floor((i + 2) * every) + 1, size);
+			double avgX = 0;
+			for (int s = 0; s < series; s++) {
+				avgY[s] = 0;
+			}
+			for (int j = avgStart; j < avgEnd; j++) {
+				avgX += xs[j];
+				for (int s = 0; s < series; s++) {
+					avgY[s] += getValue(groups.get(j), s);
+				}
+			}
+			int avgLength = avgEnd - avgStart;
+			avgX /= avgLength;
+			for (int s = 0; s < series; s++) {
+				avgY[s] /= avgLength;
+			}
+
+			// group of current bucket with the largest triangle
+			int rangeStart = (int) Math.floor(i * every) + 1;
+			int rangeEnd = (int) Math.floor((i + 1) * every) + 1;
+			double maxArea = -1;
+			int next = rangeStart;
+			for (int j = rangeStart; j < rangeEnd; j++) {
+				double area = 0;
+				for (int s = 0; s < series; s++) {
+					double ay = getValue(groups.get(a), s);
+					area += Math.abs((xs[a] - avgX) * (getValue(groups.get(j), s) - ay) -
+							(xs[a] - xs[j]) * (avgY[s] - ay));
+				}
+				if (area > maxArea) {
+					maxArea = area;
+					next = j;
+				}
+			}
+			sampled.add(groups.get(next));
+			a = next;
+		}
+		sampled.add(groups.get(size - 1));
+		return sampled;
+	}
+
+	private static double getValue(Group group, int serie) {
+		Number value = group.values[serie];
+		return (value == null) ? 0 : value.doubleValue();
+	}
+
+	// null values are first, values of different types are compared by their labels
+	@SuppressWarnings("unchecked")
+	private static int compareX(Group g1, Group g2) {
+		Object x1 = g1.x;
+		Object x2 = g2.x;
+		if ((x1 == null) || (x2 == null)) {
+			return (x1 == null) ? ((x2 == null) ? 0 : -1) : 1;
+		}
+		if ((x1 instanceof Number) && (x2 instanceof Number)) {
+			return Double.compare(((Number) x1).doubleValue(), ((Number) x2).doubleValue());
+		}
+		if ((x1 instanceof Date) && (x2 instanceof Date)) {
+			long t1 = ((Date) x1).getTime();
+			long t2 = ((Date) x2).getTime();
+			return (t1 < t2) ? -1 : ((t1 == t2) ? 0 : 1);
+		}
+		if ((x1 instanceof Comparable) && x1.getClass().equals(x2.getClass())) {
+			return ((Comparable<Object>) x1).compareTo(x2);
+		}
+		return g1.label.compareTo(g2.label);
+	}
+
+	/**
+	 * Rows with the same x value
+	 */
+	public static class Group {
+
+		private Object x;
+		private String label;
+		private Number[] values;
+
+		private Group(Object x, String label, Number[] values) {
+			this.x = x;
+			this.label = label;
+			this.values = values;
+		}
+
+		/**
+		 * @return x value
+		 */
+		public Object getX() {
+			return x;
+		}
+
+		/**
+		 * @return x value formatted with chart x pattern
+		 */
+		public String getLabel() {
+			return label;
+		}
+
+		/**
+		 * @return computed value for every y column
+		 */
+		public Number[] getValues() {
+			return values;
+		}
+
+		private double getSum() {
+			double sum = 0;
+			for (Number value : values) {
+				if (value != null) {
+					sum += value.doubleValue();
+				}
+			}
+			return sum;
+		}
+	}
+
+}
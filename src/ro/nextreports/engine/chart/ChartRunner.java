@@ -16,6 +16,8 @@
  */
 package ro.nextreports.engine.chart;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.OutputStream;
 import java.sql.Connection;
 import java.util.HashMap;
@@ -23,16 +25,25 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.ArrayList;
+import java.util.concurrent.Callable;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 
 import ro.nextreports.engine.Report;
 import ro.nextreports.engine.ReportRunnerException;
+import ro.nextreports.engine.RunContext;
 import ro.nextreports.engine.Runner;
 import ro.nextreports.engine.TableExporter;
+import ro.nextreports.engine.cache.ResultCache;
+import ro.nextreports.engine.cache.ResultCacheKey;
 import ro.nextreports.engine.exporter.exception.NoDataFoundException;
 import ro.nextreports.engine.exporter.util.AlarmData;
 import ro.nextreports.engine.exporter.util.IndicatorData;
 import ro.nextreports.engine.exporter.util.TableData;
+import ro.nextreports.engine.exporter.util.function.AbstractGFunction;
 import ro.nextreports.engine.querybuilder.sql.dialect.Dialect;
+import ro.nextreports.engine.queryexec.ConnectionSupplier;
 import ro.nextreports.engine.queryexec.Query;
 import ro.nextreports.engine.queryexec.QueryExecutor;
 import ro.nextreports.engine.queryexec.QueryParameter;
@@ -46,6 +57,8 @@ import ro.nextreports.engine.util.QueryUtil;
  */
 public class ChartRunner implements Runner {
 
+    private static Log LOG = LogFactory.getLog(ChartRunner.class);
+
     public static final String GRAPHIC_FORMAT = "GRAPHIC";    
     public static final String TABLE_FORMAT = "TABLE";
     public static final String IMAGE_FORMAT = "IMAGE";
@@ -64,6 +77,13 @@ public class ChartRunner implements Runner {
     private int imageWidth;
     private int imageHeight;
     private boolean csv = false;
+    private boolean aggregateInDatabase = false;
+    private byte sortType = ChartAggregator.NO_SORT;
+    private boolean compactJson = false;
+    private ResultCache resultCache;
+    private TableData cachedTableData;
+    private ConnectionSupplier connectionSupplier;
+    private RunContext runContext;
     
     /**
 	 * Get database connection
@@ -105,6 +125,44 @@ public class ChartRunner implements Runner {
         }
     }
 
+	/**
+	 * Get supplier for extra database connections
+	 * 
+	 * @return supplier for extra database connections or null
+	 */
+	public ConnectionSupplier getConnectionSupplier() {
+		return connectionSupplier;
+	}
+
+	/**
+	 * Set supplier for extra database connections to the same database as the chart connection.
+	 * If it is set, the count statement runs on its own connection at the same time with the chart query.
+	 * 
+	 * @param connectionSupplier supplier for extra database connections (null to use only the chart connection)
+	 */
+	public void setConnectionSupplier(ConnectionSupplier connectionSupplier) {
+		this.connectionSupplier = connectionSupplier;
+	}
+
+	/**
+	 * Get context of the run this chart belongs to
+	 * 
+	 * @return run context or null
+	 */
+	public RunContext getRunContext() {
+		return runContext;
+	}
+
+	/**
+	 * Set context of the run this chart belongs to (for example a report run which renders chart images).
+	 * Chart query is cancelled with the run and its timeout is limited to the time remaining until run deadline.
+	 * 
+	 * @param runContext run context (null if chart does not belong to a run)
+	 */
+	public void setRunContext(RunContext runContext) {
+		this.runContext = runContext;
+	}
+
 	/**
 	 * Get next chart object
 	 * 
@@ -213,6 +271,56 @@ public class ChartRunner implements Runner {
 	}
 
 
+    /** Group and aggregate chart rows in the database
+     * 
+     * If set, the chart sql is wrapped in a select which groups rows by the x column and computes the y function
+     * (SUM, MIN, MAX, AVERAGE, COUNT) for every y column, so only one row for every x value is read. Rows are
+     * ordered by the x column. Charts with other functions, procedure calls or csv connections are not changed.
+     * 
+     * Without it, rows with the same x value are aggregated after all rows are read.
+     *
+     * @param aggregateInDatabase true to group and aggregate chart rows in the database
+     */
+    public void setAggregateInDatabase(boolean aggregateInDatabase) {
+        this.aggregateInDatabase = aggregateInDatabase;
+    }
+
+    /** Set the order of x values
+     *
+     * Rows with the same x value are grouped even if the chart sql is not ordered. By default x values are shown
+     * in the order of their first row. They can be ordered by x value or by the sum of their y values instead,
+     * without an order by clause in the chart sql.
+     *
+     * @param sortType ChartAggregator.NO_SORT, ChartAggregator.X_ASCENDING, ChartAggregator.X_DESCENDING,
+     *        ChartAggregator.VALUE_ASCENDING or ChartAggregator.VALUE_DESCENDING
+     */
+    public void setSortType(byte sortType) {
+        this.sortType = sortType;
+    }
+
+    /** Write a compact json for GRAPHIC format
+     *
+     * Instead of open flash chart json, the x labels and the values of every series are written as arrays
+     * (see JsonExporter.setCompact).
+     *
+     * @param compactJson true for compact json
+     */
+    public void setCompactJson(boolean compactJson) {
+        this.compactJson = compactJson;
+    }
+
+    /** Set a cache for chart results
+     * 
+     * GRAPHIC and TABLE results are cached by chart, sql and parameter values. While a result is cached, 
+     * the chart query is not run again. TableData returned by getTableData is shared and must not be modified.
+     * IMAGE format is not cached.
+     *
+     * @param resultCache result cache (null for no cache)
+     */
+    public void setResultCache(ResultCache resultCache) {
+        this.resultCache = resultCache;
+    }
+
     /** Set a drill function for onclick action
      *
      * @param drillFunction drill function text
@@ -260,6 +368,65 @@ public class ChartRunner implements Runner {
 		if (chart == null) {
 			throw new ReportRunnerException("Chart is null!");
 		}
+		
+		cachedTableData = null;
+		if ((resultCache != null) && !IMAGE_FORMAT.equals(format)) {
+			return runCached(stream);
+		}
+		return export(stream);
+	}
+	
+	// chart json (GRAPHIC) or table data (TABLE) are taken from result cache or they are computed and cached
+	private boolean runCached(OutputStream stream) throws ReportRunnerException, 
+			NoDataFoundException, InterruptedException {
+		Object value;
+		try {
+			ResultCacheKey key = new ResultCacheKey(connection, chart, getSql(), parameterValues, format, 
+					drillFunction, aggregateInDatabase, sortType, compactJson);
+			value = resultCache.get(key, new Callable<Object>() {
+				public Object call() throws Exception {
+					if (TABLE_FORMAT.equals(format)) {
+						return export(null) ? getTableData() : null;
+					}
+					ByteArrayOutputStream out = new ByteArrayOutputStream();
+					return export(out) ? out.toByteArray() : null;
+				}
+			});
+		} catch (ReportRunnerException e) {
+			throw e;
+		} catch (NoDataFoundException e) {
+			throw e;
+		} catch (InterruptedException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new ReportRunnerException(e);
+		}
+		if (value == null) {
+			return false;
+		}
+		if (TABLE_FORMAT.equals(format)) {
+			cachedTableData = (TableData) value;
+		} else {
+			try {
+				stream.write((byte[]) value);
+			} catch (IOException e) {
+				throw new ReportRunnerException(e);
+			}
+		}
+		return true;
+	}
+	
+	private String getSql() {
+		Report report = chart.getReport();
+		String sql = report.getSql();
+		if ((sql == null) && (report.getQuery() != null)) {
+			sql = report.getQuery().toString();
+		}
+		return sql;
+	}
+	
+	private boolean export(OutputStream stream) throws ReportRunnerException,
+			NoDataFoundException, InterruptedException {
 
 		Report report = chart.getReport();
 		String sql = report.getSql();
@@ -305,16 +472,19 @@ public class ChartRunner implements Runner {
 			}
 		}
 
+		String groupedSql = aggregateInDatabase ? getGroupedSql(sql) : null;
 		QueryResult queryResult =  null;
 		try {
-			Query query = new Query(sql);
+			Query query = new Query((groupedSql == null) ? sql : groupedSql);
 			QueryExecutor executor = new QueryExecutor(query, parameters, parameterValues, connection, true, true, csv);
 			executor.setMaxRows(0);
 			executor.setTimeout(queryTimeout);
+			executor.setConnectionSupplier(connectionSupplier);
+			executor.setRunContext(runContext);
 
 			queryResult = executor.execute();
 
-			createExporter(query, parameters, parameterValues, queryResult, stream);
+			createExporter(query, parameters, parameterValues, queryResult, stream, groupedSql != null);
             return exporter.export();
 
 		} catch (NoDataFoundException e) {
@@ -333,25 +503,78 @@ public class ChartRunner implements Runner {
 	}
 	
     private void createExporter(Query query, Map<String, QueryParameter> parameters,
-               Map<String, Object> parameterValues, QueryResult qr, OutputStream stream) {
+               Map<String, Object> parameterValues, QueryResult qr, OutputStream stream, boolean aggregated) {
         if (TABLE_FORMAT.equals(format)) {
-            exporter = new ChartTableExporter(qr, chart);
+            ChartTableExporter tableExporter = new ChartTableExporter(qr, chart);
+            tableExporter.setAggregated(aggregated);
+            tableExporter.setSortType(sortType);
+            exporter = tableExporter;
         } else if (IMAGE_FORMAT.equals(format)) {
         	if (imagePath == null) {
         		imagePath = ".";
         	}
-        	exporter = new JFreeChartExporter(parameterValues, qr, chart, imagePath, imageName, imageWidth, imageHeight);     
-        	
+        	JFreeChartExporter imageExporter = new JFreeChartExporter(parameterValues, qr, chart, imagePath, imageName, imageWidth, imageHeight);
+        	imageExporter.setAggregated(aggregated);
+        	imageExporter.setSortType(sortType);
+        	exporter = imageExporter;
         } else {
-            exporter = new JsonExporter(parameterValues, qr, stream, chart, drillFunction);
+            JsonExporter jsonExporter = new JsonExporter(parameterValues, qr, stream, chart, drillFunction);
+            jsonExporter.setAggregated(aggregated);
+            jsonExporter.setSortType(sortType);
+            jsonExporter.setCompact(compactJson);
+            exporter = jsonExporter;
         }
     }
     
+    // chart sql grouped by x column with y function computed by the database
+    // returns null if the chart cannot be aggregated in the database
+    private String getGroupedSql(String sql) {
+    	String function = chart.getYFunction();
+    	String xColumn = chart.getXColumn();
+    	List<String> yColumns = chart.getYColumns();
+    	if (csv || (xColumn == null) || (yColumns == null) || yColumns.isEmpty() || QueryUtil.isProcedureCall(sql)) {
+    		return null;
+    	}
+    	Dialect dialect;
+    	try {
+    		dialect = DialectUtil.getDialect(connection);
+    	} catch (Exception e) {
+    		LOG.warn("Cannot aggregate chart in database : " + e.getMessage(), e);
+    		return null;
+    	}
+    	List<String> aggregates = new ArrayList<String>();
+    	for (String column : yColumns) {
+    		if ((column == null) || column.equalsIgnoreCase(xColumn)) {
+    			return null;
+    		}
+    		// null values are zero for engine functions    		
+    		String value = "COALESCE(" + dialect.getEscapedKeyWord(column) + ", 0)";
+    		if (AbstractGFunction.SUM.equalsIgnoreCase(function)) {
+    			aggregates.add("SUM(" + value + ")");
+    		} else if (AbstractGFunction.MIN.equalsIgnoreCase(function)) {
+    			aggregates.add("MIN(" + value + ")");
+    		} else if (AbstractGFunction.MAX.equalsIgnoreCase(function)) {
+    			aggregates.add("MAX(" + value + ")");
+    		} else if (AbstractGFunction.AVERAGE.equalsIgnoreCase(function)) {
+    			// avoid integer division
+    			aggregates.add("AVG(" + value + " * 1.0)");
+    		} else if (AbstractGFunction.COUNT.equalsIgnoreCase(function)) {
+    			aggregates.add("COUNT(*)");
+    		} else {
+    			return null;
+    		}
+    	}
+    	return dialect.getGroupedSql(sql, xColumn, aggregates, yColumns);
+    }
+    
     /** Get table data TABLE exporter
     *
     * @return table data for TABLE exporter
     */
     public TableData getTableData() {
+    	if (cachedTableData != null) {
+    		return cachedTableData;
+    	}
     	if (TABLE_FORMAT.equals(format)) {
             TableExporter tableExporter = (TableExporter)exporter;
             return tableExporter.getTableData();
@@ -23,11 +23,8 @@ import ro.nextreports.engine.exporter.exception.NoDataFoundException;
 import ro.nextreports.engine.exporter.util.TableData;
 import ro.nextreports.engine.exporter.util.function.AbstractGFunction;
 import ro.nextreports.engine.exporter.util.function.FunctionFactory;
-import ro.nextreports.engine.exporter.util.function.FunctionUtil;
-import ro.nextreports.engine.exporter.util.function.GFunction;
 import ro.nextreports.engine.queryexec.QueryException;
 import ro.nextreports.engine.queryexec.QueryResult;
-import ro.nextreports.engine.util.StringUtil;
 
 /**
  * User: mihai.panaitescu
@@ -40,6 +37,8 @@ public class ChartTableExporter implements ChartExporter, TableExporter {
     private Chart chart;
     
     private TableData data;    
+    private boolean aggregated;
+    private byte sortType = ChartAggregator.NO_SORT;
 
     public ChartTableExporter(QueryResult result, Chart chart) {
         this.result = result;
@@ -48,6 +47,22 @@ public class ChartTableExporter implements ChartExporter, TableExporter {
         data.setStyle(null);
     }
 
+    /** Result rows are already grouped by x column and aggregated by the database (one row for every x value)
+     *
+     * @param aggregated true if result rows are already aggregated
+     */
+    public void setAggregated(boolean aggregated) {
+        this.aggregated = aggregated;
+    }
+
+    /** Order of x values
+     *
+     * @param sortType one of ChartAggregator sort types
+     */
+    public void setSortType(byte sortType) {
+        this.sortType = sortType;
+    }
+
     public boolean export() throws QueryException, NoDataFoundException {
         testForData();
         createData();
@@ -63,109 +78,29 @@ public class ChartTableExporter implements ChartExporter, TableExporter {
 
     private void createData() throws QueryException {
 
-        String xColumn = chart.getXColumn();
-        String xPattern = chart.getXPattern();
-        Object previous = null;
-        String lastXValue = "";
-
-        int row = 0;
         int chartsNo = chart.getYColumns().size();
-        GFunction[] functions = new GFunction[chartsNo];
+        String functionName = FunctionFactory.getFunction(chart.getYFunction()).getName();
         data.getHeader().add(chart.getXColumn());
         for (int i = 0; i < chartsNo; i++) {
-            functions[i] = FunctionFactory.getFunction(chart.getYFunction());
             String column = chart.getYColumns().get(i);
-            if (!AbstractGFunction.NOOP.equals(functions[i].getName()))  {
-                column = functions[i].getName() + "(" + column + ")";
+            if (!AbstractGFunction.NOOP.equals(functionName))  {
+                column = functionName + "(" + column + ")";
             }
             data.getHeader().add(column);
         }
 
-        // see JsonExporter
-        while (result.hasNext()) {
-
-            Object[] objects = new Object[chartsNo];
-            Number[] computedValues = new Number[chartsNo];
-            for (int i = 0; i < chartsNo; i++) {
-                if (chart.getYColumns().get(i) != null) {
-                    objects[i] = result.nextValue(chart.getYColumns().get(i));
-                    Number value = null;
-                    if (objects[i] instanceof Number) {
-                        value = (Number) objects[i];
-                    } else {
-                        value = 1;
-                    }
-                    if (value == null) {
-                    	value = 0;
-                    }
-                    computedValues[i] = value;
-                }
-            }
-
-            Object xValue;
-            if (row == 0) {
-                xValue = result.nextValue(xColumn);
-                lastXValue = getStringValue(xColumn, xPattern);
-            } else {
-                xValue = previous;
-            }
-            Object newXValue = result.nextValue(xColumn);
-
-            boolean add = false;
-            // no function : add the value
-            if (AbstractGFunction.NOOP.equals(functions[0].getName())) {
-                lastXValue = getStringValue(xColumn, xPattern);
-                add = true;
-
-                // compute function
-            } else {
-                boolean equals = FunctionUtil.parameterEquals(xValue, newXValue);
-                if (equals) {
-                    for (int i = 0; i < chartsNo; i++) {
-                        functions[i].compute(objects[i]);
-                    }
-                } else {
-                    for (int i = 0; i < chartsNo; i++) {
-                        add = true;
-                        computedValues[i] = (Number) functions[i].getComputedValue();
-                        functions[i].reset();
-                        functions[i].compute(objects[i]);
-                    }
-                }
-            }
-
-            if (add) {
-                ArrayList<Object> rowData = new ArrayList<Object>();
-                data.getData().add(rowData);
-                rowData.add(lastXValue);
-                for (int i = 0; i < chartsNo; i++) {
-                    rowData.add(computedValues[i]);
-                }
-                lastXValue = getStringValue(xColumn, xPattern);
-            }
-            row++;
-            previous = newXValue;
-        }
-
-        // last group
-        if (!AbstractGFunction.NOOP.equals(functions[0].getName())) {
-            Number sum = 0;
+        for (ChartAggregator.Group group : new ChartAggregator(chart, aggregated, sortType).aggregate(result)) {
             ArrayList<Object> rowData = new ArrayList<Object>();
-            data.getData().add(rowData);
-            rowData.add(lastXValue);
+            rowData.add(group.getLabel());
             for (int i = 0; i < chartsNo; i++) {
-                Number value = (Number) functions[i].getComputedValue();
-                rowData.add(value);
+                Number value = group.getValues()[i];
+                // same type as the values computed by functions
+                rowData.add(aggregated ? Double.valueOf(value.doubleValue()) : value);
             }
+            data.addRow(rowData);
         }
-
     }
 
-    private String getStringValue(String column, String pattern) throws QueryException {
-        Object xObject = result.nextValue(column);
-        return StringUtil.getValueAsString(xObject, pattern);
-    }  
-	
 	public TableData getTableData() {
     	return data;
     }
@@ -21,6 +21,7 @@ import java.sql.Connection;
 import java.util.Map;
 
 import ro.nextreports.engine.ReportRunnerException;
+import ro.nextreports.engine.cache.ResultCache;
 import ro.nextreports.engine.exporter.exception.NoDataFoundException;
 import ro.nextreports.engine.exporter.util.TableData;
 
@@ -80,6 +81,50 @@ public class FluentChartRunner {
 		return this;
 	}
     
+    /**
+     * Set a cache for chart results (see ChartRunner.setResultCache)
+     *
+     * @param resultCache result cache
+     * @return FluentChartRunner object with result cache set
+     */
+    public FluentChartRunner withResultCache(ResultCache resultCache) {
+    	chartRunner.setResultCache(resultCache);
+    	return this;
+    }
+
+    /**
+     * Group and aggregate chart rows in the database (see ChartRunner.setAggregateInDatabase)
+     *
+     * @param aggregateInDatabase true to group and aggregate chart rows in the database
+     * @return FluentChartRunner object with aggregation in database set
+     */
+    public FluentChartRunner aggregateInDatabase(boolean aggregateInDatabase) {
+    	chartRunner.setAggregateInDatabase(aggregateInDatabase);
+    	return this;
+    }
+
+    /**
+     * Order of x values (see ChartRunner.setSortType)
+     *
+     * @param sortType one of ChartAggregator sort types
+     * @return FluentChartRunner object with sort type set
+     */
+    public FluentChartRunner sortType(byte sortType) {
+    	chartRunner.setSortType(sortType);
+    	return this;
+    }
+
+    /**
+     * Write a compact json for GRAPHIC format (see ChartRunner.setCompactJson)
+     *
+     * @param compactJson true for compact json
+     * @return FluentChartRunner object with compact json set
+     */
+    public FluentChartRunner compactJson(boolean compactJson) {
+    	chartRunner.setCompactJson(compactJson);
+    	return this;
+    }
+
     /** Set the output format
     *
     * @param format output format : ChartRunner.GRAPHIC_FORMAT (flash), ChartRunner.TABLE_FORMAT, ChartRunner.IMAGE_FORMAT
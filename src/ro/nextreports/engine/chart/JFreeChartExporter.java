@@ -56,9 +56,6 @@ import org.jfree.chart.labels.StandardPieSectionLabelGenerator;
 
 import ro.nextreports.engine.exporter.exception.NoDataFoundException;
 import ro.nextreports.engine.exporter.util.function.AbstractGFunction;
-import ro.nextreports.engine.exporter.util.function.FunctionFactory;
-import ro.nextreports.engine.exporter.util.function.FunctionUtil;
-import ro.nextreports.engine.exporter.util.function.GFunction;
 import ro.nextreports.engine.queryexec.QueryException;
 import ro.nextreports.engine.queryexec.QueryResult;
 import ro.nextreports.engine.util.StringUtil;
@@ -70,7 +67,6 @@ public class JFreeChartExporter implements ChartExporter {
 	private QueryResult result;
     private Chart chart;    
     private String chartImageName;
-    private Object lastXObjValue = null;    
     private boolean integerXValue = true;
     private DefaultCategoryDataset barDataset;
     private DefaultPieDataset pieDataset;
@@ -81,8 +77,11 @@ public class JFreeChartExporter implements ChartExporter {
     private final String DEFAULT_LEGEND_PREFIX = "_L_";
     private static final int DEFAULT_WIDTH = 500;
     private static final int DEFAULT_HEIGHT = 300;
+    private static final int POINTS_PER_PIXEL = 4;
     private Map<String, Integer> xValueSerie = new HashMap<String, Integer>();
     private float transparency = 0.7f;
+    private boolean aggregated;
+    private byte sortType = ChartAggregator.NO_SORT;
     
     public JFreeChartExporter(Map<String, Object> parameterValues, QueryResult result, Chart chart) {
     	this(parameterValues, result, chart, ".", DEFAULT_WIDTH, DEFAULT_HEIGHT);
@@ -116,6 +115,22 @@ public class JFreeChartExporter implements ChartExporter {
         this.height = height;
     }
 
+    /** Result rows are already grouped by x column and aggregated by the database (one row for every x value)
+     *
+     * @param aggregated true if result rows are already aggregated
+     */
+    public void setAggregated(boolean aggregated) {
+        this.aggregated = aggregated;
+    }
+
+    /** Order of x values
+     *
+     * @param sortType one of ChartAggregator sort types
+     */
+    public void setSortType(byte sortType) {
+        this.sortType = sortType;
+    }
+
 	public boolean export() throws QueryException, NoDataFoundException {
 		testForData();
         createImage();
@@ -734,119 +749,36 @@ public class JFreeChartExporter implements ChartExporter {
 	}
 	
 	private HashMap<String, String> createChart(ValueAxis rangeAxis, Object[] charts) throws QueryException {       
-        int row = 0;
-        Object previous = null;
-        String xColumn = chart.getXColumn();
-        String xPattern = chart.getXPattern();          
-        String lastXValue = "";
         HashMap<String, String> formatValues = new HashMap<String, String>();      
         Number min = Double.MAX_VALUE;
         Number max = Double.MIN_VALUE;
         
         int chartsNo = charts.length;        
-        int[] index = new int[chartsNo];
-        GFunction[] functions = new GFunction[chartsNo];   
-        for (int i = 0; i < chartsNo; i++) {
-            functions[i] = FunctionFactory.getFunction(chart.getYFunction());
-            index[i] = 1;
-        }
+        int index = 1;
         boolean isStacked = (ChartType.STACKED_BAR == chart.getType().getType());
         
-        while (result.hasNext()) {
-        	
-            Object[] objects = new Object[chartsNo];
-            Number[] computedValues = new Number[chartsNo];            
-            for (int i = 0; i < chartsNo; i++) {
-                if (chart.getYColumns().get(i) != null) {
-                    objects[i] = result.nextValue(chart.getYColumns().get(i));
-                    Number value = null;
-                    if (objects[i] instanceof Number) {
-                        value = (Number) objects[i];
-                    } else if (objects[i] != null){
-                        value = 1;
-                        integerXValue = false;
-                    } else {
-                    	value = 0;
-                    }
-                    computedValues[i] = value;
-                }
-            }
-
-            Object xValue = null;                
-            if (row == 0) {
-                xValue = result.nextValue(xColumn);          
-                lastXObjValue = xValue;
-                lastXValue = getStringValue(xColumn, xPattern);
-            } else {
-                xValue = previous;
-            }            
-            Object newXValue = result.nextValue(xColumn);            
-
-            boolean add = false;
-            int position = 0;
-            // no function : add the value
-            if (AbstractGFunction.NOOP.equals(functions[0].getName())) {        
-            	lastXValue = getStringValue(xColumn, xPattern);
-                add = true;
-                // compute function
-            } else {
-                boolean equals = FunctionUtil.parameterEquals(xValue, newXValue);                
-                if (equals) {
-                    for (int i = 0; i < chartsNo; i++) {
-                        functions[i].compute(objects[i]);
-                    }
-                } else {
-                    for (int i = 0; i < chartsNo; i++) {
-                    	position = i;
-                        add = true;
-                        computedValues[i] = (Number) functions[i].getComputedValue();
-                        functions[i].reset();
-                        functions[i].compute(objects[i]);
-                    }
-                }
-            }
-            
-            if (add) {   
-            	Number n;
-            	Number sum = 0;            	
-            	if (xValue instanceof Number) {
-            		n = (Number)newXValue;
-            	} else {
-            		integerXValue = false;
-            		n = index[position]++;
-            	}
-                for (int i = 0; i < chartsNo; i++) {                  	
-                    addValue(charts[i], n, lastXValue, computedValues[i], formatValues);   
-                    if (!isStacked) {
-                    	min = Math.min(min.doubleValue(), computedValues[i].doubleValue());
-                    	max = Math.max(max.doubleValue(), computedValues[i].doubleValue());
-                    } else {
-                    	sum = sum.doubleValue() + computedValues[i].doubleValue();
-                    }
-                }       
-                if (isStacked) {
-                    min = 0;
-                    max = Math.max(max.doubleValue(), sum.doubleValue());
-                }
-                lastXValue = getStringValue(xColumn, xPattern);                
-            }
-            row++;
-            previous = newXValue;            
+        ChartAggregator aggregator = new ChartAggregator(chart, aggregated, sortType);
+        if ((chart.getMaxPoints() != null) && (chart.getMaxPoints() > 0)) {
+        	// more points than pixels are not visible
+        	aggregator.setMaxPoints(Math.min(chart.getMaxPoints(), POINTS_PER_PIXEL * width));
         }
-
-        // last group
-        if (!AbstractGFunction.NOOP.equals(functions[0].getName())) {   
+        List<ChartAggregator.Group> groups = aggregator.aggregate(result);
+        if (aggregator.hasNonNumericValues()) {
+        	integerXValue = false;
+        }
+        for (ChartAggregator.Group group : groups) {
         	Number n;
         	Number sum = 0;
-        	if (lastXObjValue instanceof Number) {
-        		n = (Number)lastXObjValue;
+        	if (group.getX() instanceof Number) {
+        		n = (Number)group.getX();
         	} else {
+        		// x values which are not numbers are placed at consecutive integers
         		integerXValue = false;
-        		n = index[chartsNo-1]++;
+        		n = index++;
         	}
             for (int i = 0; i < chartsNo; i++) {
-                Number value = (Number) functions[i].getComputedValue();                
-                addValue(charts[i], n, lastXValue, value, formatValues);   
+                Number value = group.getValues()[i];
+                addValue(charts[i], n, group.getLabel(), value, formatValues);   
                 if (!isStacked) {
                 	min = Math.min(min.doubleValue(), value.doubleValue());
                 	max = Math.max(max.doubleValue(), value.doubleValue());
@@ -907,12 +839,6 @@ public class JFreeChartExporter implements ChartExporter {
 		formatValues.put(x.toString(), lastXValue);
 	}
 	
-	private String getStringValue(String column, String pattern) throws QueryException {
-        Object xObject = result.nextValue(column);
-        lastXObjValue = xObject;
-        return StringUtil.getValueAsString(xObject, pattern);
-    }
-
 	public String getChartImageName() {
 		return chartImageName;
 	}	
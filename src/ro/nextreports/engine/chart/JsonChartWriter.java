@@ -0,0 +1,209 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.nextreports.engine.chart;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes json directly to a stream, without building an object tree.
+ *
+ * Strings and numbers are written like the json library used by open flash chart (org.json) :
+ * decimal numbers without trailing zeros and "/" escaped after "<". NaN and infinite numbers are written as null.
+ */
+class JsonChartWriter {
+
+	private Writer out;
+	// no value was written in current object or array
+	private boolean first = true;
+	// a name was written and its value follows
+	private boolean afterName = false;
+
+	JsonChartWriter(Writer out) {
+		this.out = out;
+	}
+
+	JsonChartWriter beginObject() throws IOException {
+		separator();
+		out.write('{');
+		first = true;
+		return this;
+	}
+
+	JsonChartWriter endObject() throws IOException {
+		out.write('}');
+		first = false;
+		return this;
+	}
+
+	JsonChartWriter beginArray() throws IOException {
+		separator();
+		out.write('[');
+		first = true;
+		return this;
+	}
+
+	JsonChartWriter endArray() throws IOException {
+		out.write(']');
+		first = false;
+		return this;
+	}
+
+	JsonChartWriter name(String name) throws IOException {
+		separator();
+		quote(name);
+		out.write(':');
+		afterName = true;
+		return this;
+	}
+
+	JsonChartWriter value(String value) throws IOException {
+		separator();
+		if (value == null) {
+			out.write("null");
+		} else {
+			quote(value);
+		}
+		first = false;
+		return this;
+	}
+
+	JsonChartWriter value(Number value) throws IOException {
+		separator();
+		out.write(numberToString(value));
+		first = false;
+		return this;
+	}
+
+	JsonChartWriter value(boolean value) throws IOException {
+		separator();
+		out.write(String.valueOf(value));
+		first = false;
+		return this;
+	}
+
+	/**
+	 * Write a name and a value. Null values are not written.
+	 */
+	JsonChartWriter property(String name, String value) throws IOException {
+		if (value != null) {
+			name(name).value(value);
+		}
+		return this;
+	}
+
+	/**
+	 * Write a name and a value. Null values are not written.
+	 */
+	JsonChartWriter property(String name, Number value) throws IOException {
+		if (value != null) {
+			name(name).value(value);
+		}
+		return this;
+	}
+
+	JsonChartWriter property(String name, boolean value) throws IOException {
+		return name(name).value(value);
+	}
+
+	void flush() throws IOException {
+		out.flush();
+	}
+
+	private void separator() throws IOException {
+		if (afterName) {
+			afterName = false;
+		} else if (!first) {
+			out.write(',');
+		}
+	}
+
+	static String numberToString(Number number) {
+		if (number == null) {
+			return "null";
+		}
+		// NaN and Infinity are not json numbers
+		if (((number instanceof Double) && (((Double) number).isNaN() || ((Double) number).isInfinite())) ||
+				((number instanceof Float) && (((Float) number).isNaN() || ((Float) number).isInfinite()))) {
+			return "null";
+		}
+		if ((number instanceof Integer) || (number instanceof Long) ||
+				(number instanceof Short) || (number instanceof Byte)) {
+			return number.toString();
+		}
+		// float values are written as they are printed (0.35 not 0.3499999940395355)
+		double d = (number instanceof Float) ? Double.parseDouble(number.toString()) : number.doubleValue();
+		String s = Double.toString(d);
+		if ((s.indexOf('.') > 0) && (s.indexOf('e') < 0) && (s.indexOf('E') < 0)) {
+			while (s.endsWith("0")) {
+				s = s.substring(0, s.length() - 1);
+			}
+			if (s.endsWith(".")) {
+				s = s.substring(0, s.length() - 1);
+			}
+		}
+		return s;
+	}
+
+	private void quote(String s) throws IOException {
+		out.write('"');
+		char previous = 0;
+		for (int i = 0, len = s.length(); i < len; i++) {
+			char c = s.charAt(i);
+			switch (c) {
+				case '\\':
+				case '"':
+					out.write('\\');
+					out.write(c);
+					break;
+				case '/':
+					if (previous == '<') {
+						out.write('\\');
+					}
+					out.write(c);
+					break;
+				case '\b':
+					out.write("\\b");
+					break;
+				case '\t':
+					out.write("\\t");
+					break;
+				case '\n':
+					out.write("\\n");
+					break;
+				case '\f':
+					out.write("\\f");
+					break;
+				case '\r':
+					out.write("\\r");
+					break;
+				default:
+					if ((c < ' ') || ((c >= 0x80) && (c < 0xa0)) || ((c >= 0x2000) && (c < 0x2100))) {
+						String hex = Integer.toHexString(c);
+						out.write("\\u");
+						out.write("0000", 0, 4 - hex.length());
+						out.write(hex);
+					} else {
+						out.write(c);
+					}
+			}
+			previous = c;
+		}
+		out.write('"');
+	}
+
+}
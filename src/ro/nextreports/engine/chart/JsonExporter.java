@@ -18,43 +18,27 @@ package ro.nextreports.engine.chart;
 
 import java.awt.Color;
 import java.awt.Font;
+import java.io.BufferedWriter;
+import java.io.IOException;
 import java.io.OutputStream;
-import java.io.PrintStream;
+import java.io.OutputStreamWriter;
 import java.io.UnsupportedEncodingException;
+import java.io.Writer;
 import java.net.URLEncoder;
 import java.text.DecimalFormat;
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import ro.nextreports.engine.exporter.exception.NoDataFoundException;
-import ro.nextreports.engine.exporter.util.function.AbstractGFunction;
-import ro.nextreports.engine.exporter.util.function.FunctionFactory;
-import ro.nextreports.engine.exporter.util.function.FunctionUtil;
-import ro.nextreports.engine.exporter.util.function.GFunction;
 import ro.nextreports.engine.queryexec.QueryException;
 import ro.nextreports.engine.queryexec.QueryResult;
 import ro.nextreports.engine.util.StringUtil;
-import ro.nextreports.jofc2.model.Text;
-import ro.nextreports.jofc2.model.axis.Axis;
-import ro.nextreports.jofc2.model.axis.Label;
-import ro.nextreports.jofc2.model.axis.Label.Rotation;
-import ro.nextreports.jofc2.model.axis.XAxis;
-import ro.nextreports.jofc2.model.axis.YAxis;
-import ro.nextreports.jofc2.model.axis.YLabel;
-import ro.nextreports.jofc2.model.elements.AnimatedElement;
-import ro.nextreports.jofc2.model.elements.AreaLineChart;
-import ro.nextreports.jofc2.model.elements.BarChart;
-import ro.nextreports.jofc2.model.elements.Element;
-import ro.nextreports.jofc2.model.elements.HorizontalBarChart;
-import ro.nextreports.jofc2.model.elements.LineChart;
-import ro.nextreports.jofc2.model.elements.PieChart;
-import ro.nextreports.jofc2.model.elements.PieChart.AnimationPie;
-import ro.nextreports.jofc2.model.elements.StackedBarChart;
-import ro.nextreports.jofc2.model.elements.Tooltip;
 
 /**
+ * Writes the open flash chart json. Values are written directly to the output stream, no chart object model is created.
+ * 
+ * With compact set, a smaller json is written instead : x labels and the values of every series as arrays.
+ * 
  * @author Decebal Suiu
  */
 public class JsonExporter implements ChartExporter {
@@ -62,11 +46,14 @@ public class JsonExporter implements ChartExporter {
     private OutputStream out;
     private QueryResult result;
     private Chart chart;
-    private PrintStream stream;
+    private JsonChartWriter writer;
     // default background color for a flash chart (if none is set)
     private final Color DEFAULT_BACKGROUND = new Color(248, 248, 216);
     private Map<String, Object> parameterValues;
     private String drillFunction;
+    private boolean aggregated;
+    private byte sortType = ChartAggregator.NO_SORT;
+    private boolean compact;
 
     private static final String X_KEY = "X_VALUE";
     public static final String X_VALUE = "${" + X_KEY +  "}";
@@ -84,7 +71,7 @@ public class JsonExporter implements ChartExporter {
     private String EXPLODE = "explode";
     private String MID_SLIDE= "mid-slide";
     private String SHRINK_IN = "shrink-in";
-    
+
     public JsonExporter(Map<String, Object> parameterValues, QueryResult result, OutputStream out,
                         Chart chart, String drillFunction) {
         this.parameterValues = parameterValues;
@@ -94,13 +81,55 @@ public class JsonExporter implements ChartExporter {
         this.drillFunction = drillFunction;
     }
 
+    /** Result rows are already grouped by x column and aggregated by the database (one row for every x value)
+     *
+     * @param aggregated true if result rows are already aggregated
+     */
+    public void setAggregated(boolean aggregated) {
+        this.aggregated = aggregated;
+    }
+
+    /** Order of x values
+     *
+     * @param sortType one of ChartAggregator sort types
+     */
+    public void setSortType(byte sortType) {
+        this.sortType = sortType;
+    }
+
+    /** Write a compact json with parallel arrays instead of open flash chart json
+     * 
+     * {"type":"bar", "title":"...", "x_labels":["a","b"], "colours":["0000cc"], 
+     *  "series":[{"text":"legend", "values":[1,2]}], "y_min":0, "y_max":10, "y_steps":1, "on-click":"..."}
+     * 
+     * y_min, y_max and y_steps are not written for pie charts, on-click is written only if a drill function is set.
+     *
+     * @param compact true for compact json
+     */
+    public void setCompact(boolean compact) {
+        this.compact = compact;
+    }
+
     public boolean export() throws QueryException, NoDataFoundException {
         testForData();
 
         initExport();
 
-        String json = createFlashChart().toString();           
-        stream.print(json);
+        ChartAggregator aggregator = new ChartAggregator(chart, aggregated, sortType);
+        if (chart.getMaxPoints() != null) {
+            aggregator.setMaxPoints(chart.getMaxPoints());
+        }
+        List<ChartAggregator.Group> groups = aggregator.aggregate(result);
+        try {
+            if (compact) {
+                writeCompactChart(groups);
+            } else {
+                writeFlashChart(groups);
+            }
+            writer.flush();
+        } catch (IOException e) {
+            throw new QueryException(e);
+        }
 
         return true;
     }
@@ -115,12 +144,12 @@ public class JsonExporter implements ChartExporter {
     }
 
     protected void initExport() throws QueryException {
-        stream = createPrintStream();
+        writer = new JsonChartWriter(createWriter());
     }
 
-    protected PrintStream createPrintStream() throws QueryException {
+    protected Writer createWriter() throws QueryException {
         try {
-            return new PrintStream(out, false, "UTF-8");
+            return new BufferedWriter(new OutputStreamWriter(out, "UTF-8"));
         } catch (UnsupportedEncodingException e) {
             throw new QueryException(e);
         }
@@ -153,422 +182,366 @@ public class JsonExporter implements ChartExporter {
         return titleStyle.toString();
     }
 
-    private ro.nextreports.jofc2.model.Chart createFlashChart() throws QueryException {
-
-        ChartTitle chartTitle = chart.getTitle();
-        String title = replaceParameters(chartTitle.getTitle());        
-
-        String titleStyle = getStyle(chartTitle);
-        ro.nextreports.jofc2.model.Chart flashChart = new ro.nextreports.jofc2.model.Chart(title, titleStyle);
-        XAxis xAxis = new XAxis();
-        xAxis.setColour(getHexColor(chart.getxAxisColor()));
-        flashChart.setXAxis(xAxis);
-        YAxis yAxis = new YAxis();
-        yAxis.setColour(getHexColor(chart.getyAxisColor()));
-        flashChart.setYAxis(yAxis);
-
-        setBackground(flashChart);
-        setGridAxisColors(flashChart, xAxis, yAxis);
-        setLegends(flashChart);
-        setTooltip(flashChart);
-
+    private void writeFlashChart(List<ChartAggregator.Group> groups) throws IOException {
+        ChartType chartType = chart.getType();
+        byte type = chartType.getType();
+        boolean isHorizontal = chartType.isHorizontal();
+        boolean isStacked = chartType.isStacked();
+        boolean isPie = (ChartType.PIE == type);
+        boolean hasElements = (ChartType.BAR == type) || isHorizontal || isStacked || isPie ||
+                (ChartType.LINE == type) || (ChartType.AREA == type);
         boolean showXLabel = chart.getXShowLabel() == null ? false : chart.getXShowLabel();
         boolean showYLabel = chart.getYShowLabel() == null ? false : chart.getYShowLabel();
+        int chartsNo = isPie ? 1 : chart.getYColumns().size();
 
-        setTicks(xAxis, yAxis, showXLabel, showYLabel);
-        setElements(flashChart, xAxis, yAxis, showXLabel, showYLabel);
-        
-        String yTooltipPattern = chart.getYTooltipPattern();
-        if (yTooltipPattern != null) {        	
-        	DecimalFormat df = new DecimalFormat(yTooltipPattern);
-        	int numDecimals = df.getMinimumFractionDigits();
-        	char decimalSEparator = df.getDecimalFormatSymbols().getDecimalSeparator();        	
-        	flashChart.setNumDecimals(numDecimals);
-        	flashChart.setDecimalSeparatorIsComma(',' == decimalSEparator);
-        	flashChart.setThousandSeparatorDisabled(false);
-        }	
-        
-        return flashChart;
-    }
+        // value range
+        Number min = Double.MAX_VALUE;
+        Number max = Double.MIN_VALUE;
+        for (ChartAggregator.Group group : groups) {
+            Number sum = 0;
+            for (int i = 0; i < chartsNo; i++) {
+                double value = group.getValues()[i].doubleValue();
+                if (!isStacked) {
+                    min = Math.min(min.doubleValue(), value);
+                    max = Math.max(max.doubleValue(), value);
+                } else {
+                    sum = sum.doubleValue() + value;
+                }
+            }
+            if (isStacked) {
+                min = 0;
+                max = Math.max(max.doubleValue(), sum.doubleValue());
+            }
+        }
 
-    private Element[] createBarChart(XAxis xAxis, YAxis yAxis, boolean showXLabel, boolean showYLabel) throws QueryException {
+        // to hide a grid we set its color to chart background color
+        String background = (chart.getBackground() == null) ? null : getHexColor(chart.getBackground());
+        String gridBackground = (background == null) ? getHexColor(DEFAULT_BACKGROUND) : background;
+        String xGridColor = getGridColor(chart.getXGridColor(), chart.getXShowGrid(), gridBackground);
+        String yGridColor = getGridColor(chart.getYGridColor(), chart.getYShowGrid(), gridBackground);
 
-        Element[] charts = new Element[chart.getYColumns().size()];
+        writer.beginObject();
+        writer.name("title");
+        writeText(replaceParameters(chart.getTitle().getTitle()), getStyle(chart.getTitle()));
 
-        for (int i = 0; i < charts.length; i++) {
-            BarChart barChart;
-            byte style = chart.getType().getStyle();
-            switch (style) {
-                case ChartType.STYLE_BAR_GLASS:
-                    barChart = new BarChart(BarChart.Style.GLASS);
-                    break;
-                case ChartType.STYLE_BAR_CYLINDER:
-                    barChart = new BarChart(BarChart.Style.CYLINDER);
-                    break;
-                case ChartType.STYLE_BAR_PARALLELIPIPED:
-                    barChart = new BarChart(BarChart.Style.THREED);
-                    break;
-                case ChartType.STYLE_BAR_DOME:
-                    barChart = new BarChart(BarChart.Style.DOME);
-                    break;
-                default:
-                    barChart = new BarChart();
-                    break;
+        // x axis
+        writer.name("x_axis").beginObject();
+        writer.property("colour", getHexColor(chart.getxAxisColor()));
+        writer.property("grid-colour", isHorizontal ? yGridColor : xGridColor);
+        if (isHorizontal) {
+            writer.property("offset", 0);
+            writeRange(new YRange(0, max));
+        }
+        // hide ticks if we do not show labels
+        if ((!showXLabel && !isHorizontal) || (!showYLabel && isHorizontal)) {
+            writer.property("tick-height", 0);
+        }
+        writer.name("labels").beginObject();
+        if (isHorizontal) {
+            if (!showYLabel) {
+                writer.name("labels").beginArray().value("").endArray();
+            } else {
+                writer.property("colour", getHexColor(chart.getYColor()));
+            }
+        } else if (hasElements && !isPie) {
+            writer.name("labels").beginArray();
+            for (ChartAggregator.Group group : groups) {
+                writer.beginObject();
+                writer.property("text", showXLabel ? group.getLabel() : "");
+                writer.property("colour", getHexColor(chart.getXColor()));
+                writer.property("size", chart.getXLabelFont().getSize());
+                writer.property("rotate", getRotation(chart.getXorientation()));
+                writer.endObject();
             }
-            barChart.setColour(getHexColor(chart.getForegrounds().get(i)));
-            barChart.setAlpha(getAlpha(chart.getTransparency()));
-            barChart.setTooltip("#val#");
-            barChart.setFontSize(chart.getFont().getSize());
-            barChart.setOnShow(new AnimatedElement.OnShow(DROP,0,1));
-            charts[i] = barChart;
+            writer.endArray();
         }
+        writer.endObject();
+        writer.endObject();
 
-        createChart(xAxis, yAxis, showXLabel, showYLabel, charts);
+        // y axis
+        writer.name("y_axis").beginObject();
+        writer.property("colour", getHexColor(chart.getyAxisColor()));
+        writer.property("grid-colour", isHorizontal ? xGridColor : yGridColor);
+        YRange range = null;
+        if (hasElements && !isPie) {
+            range = isHorizontal ? new YRange(1, groups.size() - 0.5) : new YRange(min, max);
+            range = writeRange(range);
+        }
+        if ((!showYLabel && !isHorizontal) || (!showXLabel && isHorizontal)) {
+            writer.property("tick-length", 0);
+        }
+        if (range != null) {
+            writer.name("labels").beginObject().name("labels").beginArray();
+            if (isHorizontal) {
+                int size = groups.size();
+                int factor = size < 2 ? 0 : (size - 2) / 10;
+                for (int i = size; i > 0; i--) {
+                    String text = showXLabel ? groups.get(i - 1).getLabel() : "";
+                    for (int j = 0; j < chartsNo; j++) {
+                        writeYLabel((j == 0) ? text : "", getHexColor(chart.getXColor()),
+                                getRotation(chart.getXorientation()), size - i + factor + 1);
+                    }
+                }
+            } else {
+                for (int n = range.getMin().intValue(); n <= range.getMax().intValue(); n += range.getStep()) {
+                    writeYLabel(showYLabel ? String.valueOf(n) : "", getHexColor(chart.getYColor()), null, n);
+                }
+            }
+            writer.endArray().endObject();
+        }
+        writer.endObject();
 
-        return charts;
+        // legends
+        Text xText = new Text(replaceParameters(chart.getXLegend().getTitle()), getStyle(chart.getXLegend()));
+        Text yText = new Text(replaceParameters(chart.getYLegend().getTitle()), getStyle(chart.getYLegend()));
+        writer.name("y_legend");
+        writeText(isHorizontal ? xText : yText);
+        writer.name("x_legend");
+        writeText(isHorizontal ? yText : xText);
+
+        writer.property("bg_colour", background);
+        writeDecimals();
+
+        if (hasElements) {
+            writer.name("elements").beginArray();
+            writeElements(groups, chartsNo);
+            writer.endArray();
+        }
+
+        // The location of a point or bar is the center of that element.
+        // This works great on all charts, apart from horizontal bar charts.
+        // So for these it is wise to change the default tooltip behaviour to hover.
+        writer.name("tooltip").beginObject().property("mouse", "2").endObject();
+        writer.endObject();
     }
 
-    private Element[] createHorizontalBarChart(XAxis xAxis, YAxis yAxis, boolean showXLabel, boolean showYLabel) throws QueryException {
-        Element[] charts = new Element[chart.getYColumns().size()];        
-        for (int i = 0; i < charts.length; i++) {
-            HorizontalBarChart barChart = new HorizontalBarChart();
-            barChart.setColour(getHexColor(chart.getForegrounds().get(i)));
-            barChart.setAlpha(getAlpha(chart.getTransparency()));
-            barChart.setTooltip("#val#");            
-            // setting font size on horizontal bar chart will make a json which cannot be rendered by JOFC api!            
-            //barChart.setFontSize(chart.getFont().getSize());
-            charts[i] = barChart;
+    private String getGridColor(Color gridColor, Boolean showGrid, String background) {
+        String color = null;
+        if (gridColor != null) {
+            color = getHexColor(gridColor);
         }
-        createChart(xAxis, yAxis, showXLabel, showYLabel, charts);
-
-        return charts;
+        if ((showGrid != null) && !showGrid) {
+            color = background;
+        }
+        return color;
     }
 
+    private YRange writeRange(YRange range) throws IOException {
+        range = range.update();
+        writer.property("steps", (double) range.getStep());
+        writer.property("min", range.getMin().doubleValue());
+        writer.property("max", range.getMax().doubleValue());
+        return range;
+    }
 
-    private Element[] createPieChart(boolean showXLabel, boolean showYLabel) throws QueryException {
-        Element[] charts = new Element[1];
-        PieChart pieChart = new PieChart();
-        pieChart.setAnimate(true);
-        pieChart.setStartAngle(35);
-        pieChart.setBorder(2);
-        List<AnimationPie> animations = new ArrayList<AnimationPie>();
-        animations.add(new AnimationPie.Fade());
-        animations.add(new AnimationPie.Bounce(10));
-        pieChart.addAnimations(animations);
-        pieChart.setGradientFill(true);
-        pieChart.setAlpha(getAlpha(chart.getTransparency()));
-        List<String> colors = new ArrayList<String>();        
-        for (Color color : chart.getForegrounds()) {
-            colors.add(getHexColor(color));
-        }        
-        pieChart.setColours(colors.toArray(new String[10]));
-        pieChart.setTooltip("#val# of #total#<br>#percent# of 100%"); 
-        pieChart.setFontSize(chart.getFont().getSize());
-        charts[0] = pieChart;
-        createChart(null, null, showXLabel, showYLabel, new Element[]{pieChart});
-
-        return charts;
+    private void writeYLabel(String text, String colour, String rotation, int y) throws IOException {
+        writer.beginObject();
+        writer.property("text", text);
+        writer.property("colour", colour);
+        writer.property("size", chart.getYLabelFont().getSize());
+        writer.property("rotate", rotation);
+        writer.property("y", y);
+        writer.endObject();
     }
 
-    private Element[] createStackedBarChart(XAxis xAxis, YAxis yAxis, boolean showXLabel, boolean showYLabel) throws QueryException {
-        Element[] charts = new Element[chart.getYColumns().size()];
-        StackedBarChart barChart = new StackedBarChart();
-        barChart.setAlpha(getAlpha(chart.getTransparency()));        
-        barChart.setTooltip("#val#");
-        barChart.setFontSize(chart.getFont().getSize());            
-        for (int i = 0; i < charts.length; i++) {
-            charts[i] = barChart;
-        }
-        createChart(xAxis, yAxis, showXLabel, showYLabel, charts);
-        return charts;
+    private void writeText(Text text) throws IOException {
+        writeText(text.text, text.style);
     }
 
-    private Element[] createLineChart(XAxis xAxis, YAxis yAxis, boolean showXLabel, boolean showYLabel) throws QueryException {
-
-        Element[] charts = new Element[chart.getYColumns().size()];
-        for (int i = 0; i < charts.length; i++) {
-            LineChart lineChart = new LineChart();
-            lineChart.setWidth(4);
-            lineChart.setColour(getHexColor(chart.getForegrounds().get(i)));
-            lineChart.setAlpha(getAlpha(chart.getTransparency()));
-            lineChart.setDotSize(5);
-            LineChart.Style.Type type;
-            byte style = chart.getType().getStyle();
-            switch (style) {
-                case ChartType.STYLE_LINE_DOT_SOLID:
-                    type = LineChart.Style.Type.SOLID_DOT;
-                    break;
-                case ChartType.STYLE_LINE_DOT_HOLLOW:
-                    type = LineChart.Style.Type.HALLOW_DOT;
-                    break;
-                case ChartType.STYLE_LINE_DOT_ANCHOR:
-                    type = LineChart.Style.Type.ANCHOR;
-                    break;
-                case ChartType.STYLE_LINE_DOT_BOW:
-                    type = LineChart.Style.Type.BOW;
-                    break;
-                case ChartType.STYLE_LINE_DOT_STAR:
-                    type = LineChart.Style.Type.STAR;
-                    break;
-                default:
-                    type = LineChart.Style.Type.DOT;
-                    break;
-            }
-            lineChart.setDotStyle(new LineChart.Style(type, "#111111", 4, 4).setRotation(90));
-            lineChart.setFontSize(chart.getFont().getSize());
-            lineChart.setOnShow(new AnimatedElement.OnShow(EXPLODE));
-            charts[i] = lineChart;
-        }
-        createChart(xAxis, yAxis, showXLabel, showYLabel, charts);
+    private void writeText(String text, String style) throws IOException {
+        writer.beginObject().property("text", text).property("style", style).endObject();
+    }
 
-        return charts;
+    private void writeDecimals() throws IOException {
+        int numDecimals = 2;
+        boolean comma = false;
+        String yTooltipPattern = chart.getYTooltipPattern();
+        if (yTooltipPattern != null) {
+            DecimalFormat df = new DecimalFormat(yTooltipPattern);
+            numDecimals = df.getMinimumFractionDigits();
+            comma = (',' == df.getDecimalFormatSymbols().getDecimalSeparator());
+        }
+        writer.property("is_decimal_separator_comma", comma ? 1 : 0);
+        writer.property("is_fixed_num_decimals_forced", 0);
+        writer.property("is_thousand_separator_disabled", 0);
+        writer.property("num_decimals", numDecimals);
     }
-       
-    private Element[] createAreaChart(XAxis xAxis, YAxis yAxis, boolean showXLabel, boolean showYLabel) throws QueryException {
-        Element[] charts = new Element[chart.getYColumns().size()];
-        for (int i = 0; i < charts.length; i++) {
-        	AreaLineChart areaChart = new AreaLineChart(); 
-        	areaChart.setWidth(4);
-        	areaChart.setColour(getHexColor(chart.getForegrounds().get(i)));
-        	areaChart.setAlpha(getAlpha(chart.getTransparency()));
-        	areaChart.setDotSize(5);          	
-        	areaChart.setFontSize(chart.getFont().getSize());
-        	areaChart.setOnShow(new AnimatedElement.OnShow(MID_SLIDE));       
-            charts[i] = areaChart;        	
-        }
-        createChart(xAxis, yAxis, showXLabel, showYLabel, charts);
-        return charts;
-    }    
-
-    private void createChart(XAxis xAxis, YAxis yAxis, boolean showXLabel, boolean showYLabel, Element[] elementChart) throws QueryException {
-        Number min = Double.MAX_VALUE;
-        Number max = Double.MIN_VALUE;
-        int row = 0;
-        Object previous = null;
-        String xColumn = chart.getXColumn();
-        String xPattern = chart.getXPattern();
-        String lastXValue = "";
-
-        boolean isPie = elementChart[0] instanceof PieChart;
-        boolean isHorizontal = elementChart[0] instanceof HorizontalBarChart;
-        boolean isStacked = elementChart[0] instanceof StackedBarChart;
-        int chartsNo = elementChart.length;        
-
-        GFunction[] functions = new GFunction[chartsNo];
-        List<StackedBarChart.Key> keys = new ArrayList<StackedBarChart.Key>();
-        for (int i = 0; i < chartsNo; i++) {
-            functions[i] = FunctionFactory.getFunction(chart.getYFunction());
-            if ((chart.getYColumnsLegends() != null) && (i < chart.getYColumnsLegends().size())) {
-                if (chart.getYColumnsLegends().get(i) != null) {
-                    if (isStacked) {
-                        StackedBarChart.Key key = new StackedBarChart.Key(getHexColor(chart.getForegrounds().get(i)),
-                                replaceParameters(chart.getYColumnsLegends().get(i)), 12);
-                        keys.add(key);
-                    } else {
-                        elementChart[i].setText(replaceParameters(chart.getYColumnsLegends().get(i)));
-                    }
+
+    private void writeElements(List<ChartAggregator.Group> groups, int chartsNo) throws IOException {
+        byte type = chart.getType().getType();
+        Float alpha = getAlpha(chart.getTransparency());
+        int fontSize = chart.getFont().getSize();
+
+        if (ChartType.STACKED_BAR == type) {
+            writer.beginObject();
+            writer.property("type", "bar_stack");
+            writer.name("alpha").value(alpha);
+            writer.property("font-size", fontSize);
+            writer.property("tip", "#val#");
+            writer.name("values").beginArray();
+            for (ChartAggregator.Group group : groups) {
+                writer.beginArray();
+                for (int i = 0; i < chartsNo; i++) {
+                    writer.beginObject();
+                    writer.property("val", group.getValues()[i].doubleValue());
+                    writer.property("colour", getHexColor(chart.getForegrounds().get(i)));
+                    writer.endObject();
                 }
+                writer.endArray();
             }
-        }
-        // legends for stacked bar chart
-        if (isStacked) {
-            ((StackedBarChart)elementChart[0]).addKeys(keys);
-        }
-
-        int groups = 1;
-        HashMap<Integer, String> infoLabels = new HashMap<Integer, String>();
-
-        while (result.hasNext()) {        	
-            Object[] objects = new Object[chartsNo];
-            Number[] computedValues = new Number[chartsNo];
+            writer.endArray();
+            // legends for stacked bar chart
+            writer.name("keys").beginArray();
             for (int i = 0; i < chartsNo; i++) {
-                if (chart.getYColumns().get(i) != null) {
-                    objects[i] = result.nextValue(chart.getYColumns().get(i));
-                    Number value = null;
-                    if (objects[i] instanceof Number) {
-                        value = (Number) objects[i];
-                    } else if (objects[i] != null) {
-                        value = 1;
-                    }
-                    if (value == null) {
-                    	value = 0;
-                    }
-                    // open flash chart bug:
-                    // if value is of type BigDecimal and chart is StackedBarChart : json has values between "" 
-                    // and bars are drawn over the title (a good stackedbarchart has not the values between "")
-                    // curiously all other chart types have values between ""
-                    // so here we assure that values are not BigDecimals
-                    computedValues[i] =  value.doubleValue();                                       
+                String legend = getLegend(i);
+                if (legend != null) {
+                    writer.beginObject();
+                    writer.property("colour", getHexColor(chart.getForegrounds().get(i)));
+                    writer.property("text", legend);
+                    writer.property("font-size", 12);
+                    writer.endObject();
                 }
             }
-
-            Object xValue;
-            if (row == 0) {
-                xValue = result.nextValue(xColumn);
-                lastXValue = getStringValue(xColumn, xPattern);
-            } else {
-                xValue = previous;
+            writer.endArray();
+            writer.endObject();
+            // the same stacked bar element was added once for every y column and the old json library
+            // wrote a reference instead of every copy
+            for (int i = 1; i < chartsNo; i++) {
+                writer.beginObject().property("@reference", "../ro.nextreports.jofc2.model.elements.StackedBarChart").endObject();
             }
-            Object newXValue = result.nextValue(xColumn);
-
-            boolean add = false;
-            // no function : add the value
-            if (AbstractGFunction.NOOP.equals(functions[0].getName())) {
-                lastXValue = getStringValue(xColumn, xPattern);
-                add = true;
-
-                // compute function
-            } else {
-                boolean equals = FunctionUtil.parameterEquals(xValue, newXValue);
-                if (equals) {
-                    for (int i = 0; i < chartsNo; i++) {
-                        functions[i].compute(objects[i]);
-                    }
-                } else {
-                    for (int i = 0; i < chartsNo; i++) {
-                        add = true;
-                        computedValues[i] = (Number) functions[i].getComputedValue();
-                        functions[i].reset();
-                        functions[i].compute(objects[i]);
-                    }
-                }
-            }
-
-            if (add) {
-                //System.out.println("compValue="+computedValue);
-                Number sum = 0;
-                for (int i = 0; i < chartsNo; i++) {
-                    addValue(computedValues[i], lastXValue, elementChart[i], i);                    
-                    if (!isStacked) {
-                        min = Math.min(min.doubleValue(), computedValues[i].doubleValue());
-                        max = Math.max(max.doubleValue(), computedValues[i].doubleValue());
-                    } else {
-                        sum = sum.doubleValue() + computedValues[i].doubleValue();                        
-                    }
-                }
-                if (isStacked) {
-                    min = 0;
-                    max = Math.max(max.doubleValue(), sum.doubleValue());
-                }
-
-                infoLabels.put(groups, lastXValue);
-                groups++;
-                //System.out.println("add label : " + lastXValue + "  g="+ groups);
-                lastXValue = getStringValue(xColumn, xPattern);
+            return;
+        }
 
+        for (int i = 0; i < chartsNo; i++) {
+            writer.beginObject();
+            writer.property("type", getElementType());
+            writer.name("alpha").value(alpha);
+            writer.property("text", getLegend(i));
+            // setting font size on horizontal bar chart will make a json which cannot be rendered by flash chart!
+            if (ChartType.HORIZONTAL_BAR != type) {
+                writer.property("font-size", fontSize);
             }
-            row++;
-            previous = newXValue;
-        }        
-
-        // last group
-        if (!AbstractGFunction.NOOP.equals(functions[0].getName())) {
-            Number sum = 0;
-            for (int i = 0; i < chartsNo; i++) {
-                Number value = (Number) functions[i].getComputedValue();
-                addValue(value, lastXValue, elementChart[i], i);                
-                if (!isStacked) {
-                    min = Math.min(min.doubleValue(), value.doubleValue());
-                    max = Math.max(max.doubleValue(), value.doubleValue());
-                } else {
-                    sum = sum.doubleValue() + value.doubleValue();
-                }
+            if (ChartType.PIE == type) {
+                writer.property("tip", "#val# of #total#<br>#percent# of 100%");
+                writer.property("gradient-fill", true);
+            } else if ((ChartType.BAR == type) || (ChartType.HORIZONTAL_BAR == type)) {
+                writer.property("tip", "#val#");
             }
-            if (isStacked) {
-                min = 0;
-                max = Math.max(max.doubleValue(), sum.doubleValue());
+            writer.name("values").beginArray();
+            for (ChartAggregator.Group group : groups) {
+                writeValue(group.getValues()[i].doubleValue(), group.getLabel());
             }
-
-            infoLabels.put(groups, lastXValue);
-        } else {
-            groups--;
-        }               
-
-        // info labels
-        if (!isPie) {
-        	
-            // for horizontal charts (horizontal bars)
-            if (isHorizontal) {
-                int factor = groups < 2 ? 0 : (groups - 2) / 10;
-                YRange range = setAxisRange(yAxis, 1, groups - 0.5);                 
-                for (int i = groups; i > 0; i--) {
-                    //System.out.println("add label : " + infoLabels.get(i) + "  pos="+ (groups - i));
-                    String text = infoLabels.get(i);                        
-                    if (!showXLabel) {
-                        text = "";
-                    }
-                    addYLabel(yAxis, text, groups - i + factor + 1);
-                    for (int j=1; j<chartsNo; j++) {
-                        addYLabel(yAxis, "", groups - i + factor + 1);
-                    }
-                }      
-                
-            // for vertical normal charts
-            } else {
-                for (int i = 1; i <= groups; i++) {
-                    String text = infoLabels.get(i);
-                    if (!showXLabel) {
-                        text = "";
-                    }
-                    addXLabel(xAxis, text);
+            writer.endArray();
+
+            if (ChartType.BAR == type) {
+                writeOnShow(DROP, 1);
+                writer.property("colour", getHexColor(chart.getForegrounds().get(i)));
+            } else if (ChartType.HORIZONTAL_BAR == type) {
+                writer.property("colour", getHexColor(chart.getForegrounds().get(i)));
+            } else if (ChartType.PIE == type) {
+                writer.property("start-angle", 35);
+                writer.name("colours").beginArray();
+                List<Color> foregrounds = chart.getForegrounds();
+                for (int j = 0, n = Math.max(10, foregrounds.size()); j < n; j++) {
+                    writer.value((j < foregrounds.size()) ? getHexColor(foregrounds.get(j)) : null);
                 }
+                writer.endArray();
+                writer.name("animate").beginArray();
+                writer.beginObject().property("type", "fade").endObject();
+                writer.beginObject().property("type", "fade").endObject();
+                writer.beginObject().property("type", "bounce").property("distance", 10).endObject();
+                writer.endArray();
+                writer.property("border", 2);
+            } else if (ChartType.LINE == type) {
+                writeOnShow(EXPLODE, 0);
+                writer.property("width", 4);
+                writer.property("dot-size", 5);
+                writer.property("colour", getHexColor(chart.getForegrounds().get(i)));
+                writeLineDotStyle();
+            } else if (ChartType.AREA == type) {
+                writeOnShow(MID_SLIDE, 0);
+                writer.property("width", 4);
+                writer.property("dot-size", 5);
+                writer.property("colour", getHexColor(chart.getForegrounds().get(i)));
+                writer.name("dot-style").beginObject();
+                writer.property("type", "solid-dot").property("dot-size", 2).property("halo-size", 2);
+                writer.endObject();
+                writer.name("fillAlpha").value(0.35f);
             }
+            writer.endObject();
         }
-
-        // value labels
-        if (!isPie) {
-            if (isHorizontal) {            	
-                addXLabels(xAxis, min, max, showYLabel);                
-            } else {
-                addYLabels(yAxis, min, max, showYLabel);
-            }
-        }
-    }       
-
-    private void addXLabel(XAxis xAxis, String text) {
-        Label label = new Label(text);
-        label.setRotation(getRotation(chart.getXorientation()));
-        label.setColour(getHexColor(chart.getXColor()));
-        label.setSize(chart.getXLabelFont().getSize()); // 6 to n
-        xAxis.addLabels(label);
     }
 
-    private void addYLabels(YAxis yAxis, Number min, Number max, boolean showYLabels) {
-    	YRange v = setAxisRange(yAxis, min, max);
-        for (int n = v.getMin().intValue(); n <= v.getMax().intValue(); n += v.getStep()) {
-            String text = String.valueOf(n);
-            if (!showYLabels) {
-                text = "";
+    private String getElementType() {
+        byte type = chart.getType().getType();
+        if (ChartType.BAR == type) {
+            switch (chart.getType().getStyle()) {
+                case ChartType.STYLE_BAR_GLASS:
+                    return "bar_glass";
+                case ChartType.STYLE_BAR_CYLINDER:
+                    return "bar_cylinder";
+                case ChartType.STYLE_BAR_PARALLELIPIPED:
+                    return "bar_3d";
+                case ChartType.STYLE_BAR_DOME:
+                    return "bar_dome";
+                default:
+                    return "bar";
             }
-            YLabel yLabel = new YLabel(text, n);
-            yLabel.setColour(getHexColor(chart.getYColor()));
-            yAxis.addLabels(yLabel);
-            yLabel.setSize(chart.getYLabelFont().getSize());
+        } else if (ChartType.HORIZONTAL_BAR == type) {
+            return "hbar";
+        } else if (ChartType.PIE == type) {
+            return "pie";
+        } else if (ChartType.LINE == type) {
+            return "line";
+        } else {
+            return "area";
         }
     }
 
-    // for horizontal chart
-    private void addYLabel(YAxis yAxis, String text, int n) {
-        YLabel label = new YLabel(text, n);
-        label.setRotation(getRotation(chart.getXorientation()));
-        label.setColour(getHexColor(chart.getXColor()));
-        label.setSize(chart.getYLabelFont().getSize());
-        yAxis.addLabels(label);
+    private void writeOnShow(String type, int cascade) throws IOException {
+        writer.name("on-show").beginObject();
+        writer.property("type", type).property("delay", 0).property("cascade", cascade);
+        writer.endObject();
     }
 
-    // for horizontal chart
-    private void addXLabels(XAxis xAxis, Number min, Number max, boolean showYLabels) {
-        xAxis.setOffset(false);
-        YRange v = setAxisRange(xAxis, 0, max);
-        if (!showYLabels) {
-        	xAxis.setLabels("");
+    private void writeLineDotStyle() throws IOException {
+        String type;
+        switch (chart.getType().getStyle()) {
+            case ChartType.STYLE_LINE_DOT_SOLID:
+                type = "solid-dot";
+                break;
+            case ChartType.STYLE_LINE_DOT_HOLLOW:
+                type = "hollow-dot";
+                break;
+            case ChartType.STYLE_LINE_DOT_ANCHOR:
+                type = "anchor";
+                break;
+            case ChartType.STYLE_LINE_DOT_BOW:
+                type = "bow";
+                break;
+            case ChartType.STYLE_LINE_DOT_STAR:
+                type = "star";
+                break;
+            default:
+                type = null;
+                break;
+        }
+        writer.name("dot-style").beginObject();
+        if (type == null) {
+            // dot style is rendered as a small solid dot
+            writer.property("type", "solid-dot").property("dot-size", 2).property("halo-size", 2);
+            writer.property("rotation", 90).property("hallow", false).property("sides", 2);
         } else {
-        	xAxis.getLabels().setColour(getHexColor(chart.getYColor()));
-        	// add orientation ? (we have only for x axis in layout)
+            writer.property("type", type).property("colour", "#111111");
+            writer.property("dot-size", 4).property("halo-size", 4).property("rotation", 90);
+            if (ChartType.STYLE_LINE_DOT_ANCHOR == chart.getType().getStyle()) {
+                writer.property("sides", 2);
+            }
         }
+        writer.endObject();
     }
 
-    private void addValue(Number value, String text, Element chart, int position) {        	
+    private void writeValue(Number value, String text) throws IOException {
         String function = null;
         if (drillFunction != null) {
             // put x value to java script function    
@@ -582,168 +555,90 @@ public class JsonExporter implements ChartExporter {
             function = StringUtil.replace(drillFunction, "\\$\\{" + X_KEY + "\\}", text);
         }                
 
-        if (chart instanceof BarChart) {            
-            BarChart.Bar bar  = new BarChart.Bar(value);
-            if  (function != null) {
-                bar.setOnClick(function);
-            }
-            ((BarChart) chart).addBars(bar);
-        } else if (chart instanceof HorizontalBarChart) {
-            HorizontalBarChart.Bar bar = new HorizontalBarChart.Bar(0, value);
-            bar.setTooltip(getStringValue(value));       
-            ((HorizontalBarChart) chart).addBars(bar);
-        } else if (chart instanceof AreaLineChart) {    //! before  "chart instanceof LineChart" because AreaLineChart is also a LineChart   	
-        	AreaLineChart.Dot dot = new AreaLineChart.Dot(value);
-            if  (function != null) {
-                dot.setOnClick(function);
-            }
-            ((AreaLineChart) chart).addDots(dot);
-        } else if (chart instanceof LineChart) {
-            LineChart.Dot dot = new LineChart.Dot(value);
-            if  (function != null) {
-                dot.setOnClick(function);
-            }
-            ((LineChart) chart).addDots(dot);
-        } else if (chart instanceof PieChart) {
-            PieChart.Slice slice = new PieChart.Slice(value, text);
-            if  (function != null) {
-                slice.setOnClick(function);
-            }
-            ((PieChart) chart).addSlices(slice);
-        } else if (chart instanceof StackedBarChart) {
-            StackedBarChart sbChart =((StackedBarChart) chart);
-            StackedBarChart.Stack stack;
-            if (position  == 0) {
-                stack = new StackedBarChart.Stack();
-                sbChart.addStack(stack);
-            } else {                
-                stack = sbChart.lastStack();
-            }            
-            StackedBarChart.StackValue stackValue = new StackedBarChart.StackValue(value);
-            stackValue.setColour(getHexColor(this.chart.getForegrounds().get(position)));
-            stack.addStackValues(stackValue);
+        byte type = chart.getType().getType();
+        writer.beginObject();
+        if (ChartType.BAR == type) {
+            writer.property("top", value);
+            writer.property("on-click", function);
+        } else if (ChartType.HORIZONTAL_BAR == type) {
+            writer.property("right", value);
+            writer.property("left", 0);
+            writer.property("tip", getStringValue(value));
+        } else if (ChartType.PIE == type) {
+            writer.property("value", value);
+            writer.property("label", text);
+            writer.property("highlight", "alpha");
+            writer.property("text", text);
+            writer.property("on-click", function);
+        } else {
+            writer.property("value", value);
+            writer.property("on-click", function);
         }
+        writer.endObject();
     }
 
-    private YRange setAxisRange(Axis axis, Number min, Number max) {
-    	YRange yRange = new YRange(min, max);
-    	yRange = yRange.update();      	
-        axis.setRange(yRange.getMin(), yRange.getMax(), yRange.getStep());        
-        return yRange;        
-    }
-
-    private void setBackground(ro.nextreports.jofc2.model.Chart flashChart) {
-        if (chart.getBackground() != null) {
-            flashChart.setBackgroundColour(getHexColor(chart.getBackground()));
+    private void writeCompactChart(List<ChartAggregator.Group> groups) throws IOException {
+        byte type = chart.getType().getType();
+        boolean isStacked = chart.getType().isStacked();
+        int chartsNo = (ChartType.PIE == type) ? 1 : chart.getYColumns().size();
+
+        writer.beginObject();
+        writer.property("type", isStacked ? "bar_stack" : getElementType());
+        writer.property("title", replaceParameters(chart.getTitle().getTitle()));
+        writer.name("x_labels").beginArray();
+        for (ChartAggregator.Group group : groups) {
+            writer.value(group.getLabel());
+        }
+        writer.endArray();
+        writer.name("colours").beginArray();
+        for (Color color : chart.getForegrounds()) {
+            writer.value(getHexColor(color));
         }
-    }
+        writer.endArray();
 
-    // to hide a grid we set its color to chart background color
-    private void setGridAxisColors(ro.nextreports.jofc2.model.Chart flashChart, XAxis xAxis, YAxis yAxis) {
-        boolean isHorizontal = chart.getType().isHorizontal();
-        Color xGridColor = chart.getXGridColor();
-        Color yGridColor = chart.getYGridColor();
-        if (xGridColor != null) {
-            getXAxis(xAxis, yAxis, isHorizontal).setGridColour(getHexColor(xGridColor));
-        }
-        if ((chart.getXShowGrid() != null) && !chart.getXShowGrid()) {
-            if (flashChart.getBackgroundColour() == null) {
-                getXAxis(xAxis, yAxis, isHorizontal).setGridColour(getHexColor(DEFAULT_BACKGROUND));
-            } else {
-                getXAxis(xAxis, yAxis, isHorizontal).setGridColour(flashChart.getBackgroundColour());
-            }
-        }
-        if (yGridColor != null) {
-            getYAxis(xAxis, yAxis, isHorizontal).setGridColour(getHexColor(yGridColor));
-        }
-        if ((chart.getYShowGrid() != null) && !chart.getYShowGrid()) {
-            if (flashChart.getBackgroundColour() == null) {
-                getYAxis(xAxis, yAxis, isHorizontal).setGridColour(getHexColor(DEFAULT_BACKGROUND));
-            } else {
-                getYAxis(xAxis, yAxis, isHorizontal).setGridColour(flashChart.getBackgroundColour());
+        Number min = Double.MAX_VALUE;
+        Number max = Double.MIN_VALUE;
+        double[] sums = new double[groups.size()];
+        writer.name("series").beginArray();
+        for (int i = 0; i < chartsNo; i++) {
+            writer.beginObject();
+            writer.property("text", getLegend(i));
+            writer.name("values").beginArray();
+            for (int j = 0, size = groups.size(); j < size; j++) {
+                double value = groups.get(j).getValues()[i].doubleValue();
+                writer.value(value);
+                min = Math.min(min.doubleValue(), value);
+                max = Math.max(max.doubleValue(), value);
+                sums[j] += value;
             }
+            writer.endArray();
+            writer.endObject();
         }
-    }
-
-    private Axis getXAxis(XAxis xAxis, YAxis yAxis, boolean isHorizontal) {
-        if (!isHorizontal) {
-            return xAxis;
-        } else {
-            return yAxis;
-        }
-    }
-
-    private Axis getYAxis(XAxis xAxis, YAxis yAxis, boolean isHorizontal) {
-        if (!isHorizontal) {
-            return yAxis;
-        } else {
-            return xAxis;
-        }
-    }
-
-    // hide ticks if we do not show labels
-    private void setTicks(XAxis xAxis, YAxis yAxis, boolean showXLabel, boolean showYLabel) {
-        boolean isHorizontal = chart.getType().isHorizontal();
+        writer.endArray();
 
-        if ((!showXLabel && !isHorizontal) || (!showYLabel && isHorizontal)) {
-            xAxis.setTickHeight(0);
-        }
-        if ((!showYLabel && !isHorizontal) || (!showXLabel && isHorizontal)) {
-            yAxis.setTickLength(0);
+        if (ChartType.PIE != type) {
+            if (isStacked) {
+                min = 0;
+                max = Double.MIN_VALUE;
+                for (double sum : sums) {
+                    max = Math.max(max.doubleValue(), sum);
+                }
+            }
+            YRange range = new YRange(min, max).update();
+            writer.property("y_min", range.getMin().doubleValue());
+            writer.property("y_max", range.getMax().doubleValue());
+            writer.property("y_steps", range.getStep());
         }
+        writer.property("on-click", drillFunction);
+        writer.endObject();
     }
 
-    private void setTooltip(ro.nextreports.jofc2.model.Chart flashChart) {
-//        boolean isHorizontal = chart.getType().isHorizontal();
-//        boolean isStacked = chart.getType().isStacked();
-//        if (isHorizontal || isStacked) {
-            // The location of a point or bar is the center of that element.
-            // This works great on all charts, apart from horizontal bar charts.
-            // So for these it is wise to change the default tooltip behaviour to hover. 
-            Tooltip tooltip = new Tooltip();
-            tooltip.setHover();
-            flashChart.setTooltip(tooltip);
-//        }
-    }
-
-    private void setLegends(ro.nextreports.jofc2.model.Chart flashChart) {
-        boolean isHorizontal = chart.getType().isHorizontal();
-        Text xText = new Text(replaceParameters(chart.getXLegend().getTitle()), getStyle(chart.getXLegend()));
-        Text yText = new Text(replaceParameters(chart.getYLegend().getTitle()), getStyle(chart.getYLegend()));        
-        if (!isHorizontal) {
-            flashChart.setXLegend(xText);
-            flashChart.setYLegend(yText);
-        } else {
-            flashChart.setXLegend(yText);
-            flashChart.setYLegend(xText);
+    private String getLegend(int i) {
+        List<String> legends = chart.getYColumnsLegends();
+        if ((legends != null) && (i < legends.size()) && (legends.get(i) != null)) {
+            return replaceParameters(legends.get(i));
         }
-    }
-
-    private void setElements(ro.nextreports.jofc2.model.Chart flashChart, XAxis xAxis, YAxis yAxis,
-                             boolean showXLabel, boolean showYLabel) throws QueryException {
-        byte type = chart.getType().getType();
-        Element[] charts = new Element[0];
-        if (ChartType.BAR == type) {
-            charts = createBarChart(xAxis, yAxis, showXLabel, showYLabel);
-        } else if (ChartType.HORIZONTAL_BAR == type) {
-            charts = createHorizontalBarChart(xAxis, yAxis, showXLabel, showYLabel);
-        } else if (ChartType.STACKED_BAR == type) {
-            charts = createStackedBarChart(xAxis, yAxis, showXLabel, showYLabel);
-        } else if (ChartType.PIE == type) {
-            charts = createPieChart(showXLabel, showYLabel);
-        } else if (ChartType.LINE == type) {
-            charts = createLineChart(xAxis, yAxis, showXLabel, showYLabel);
-        } else if (ChartType.AREA == type) {        	
-        	charts = createAreaChart(xAxis, yAxis, showXLabel, showYLabel);
-        }        
-        for (Element element : charts) {
-            flashChart.addElements(element);
-        }        
-    }   
-
-    private String getStringValue(String column, String pattern) throws QueryException {
-        Object xObject = result.nextValue(column);
-        return StringUtil.getValueAsString(xObject, pattern);
+        return null;
     }
 
     private String getStringValue(Number number) {
@@ -764,15 +659,16 @@ public class JsonExporter implements ChartExporter {
         return rgb;
     }
 
-    private Rotation getRotation(byte rotation) {
+    // label rotation angle
+    private String getRotation(byte rotation) {
         if (Chart.VERTICAL == rotation) {
-            return Rotation.VERTICAL;
+            return "-90";
         } else if (Chart.DIAGONAL == rotation) {
-            return Rotation.DIAGONAL;
+            return "-45";
         } else if (Chart.HALF_DIAGONAL == rotation) {
-            return Rotation.HALF_DIAGONAL;
+            return "-24";
         } else {
-            return Rotation.HORIZONTAL;
+            return "0";
         }
     }
 
@@ -797,4 +693,15 @@ public class JsonExporter implements ChartExporter {
         return text;
     }       
 
+    private static class Text {
+
+        private String text;
+        private String style;
+
+        private Text(String text, String style) {
+            this.text = text;
+            this.style = style;
+        }
+    }
+
 }
@@ -24,6 +24,7 @@ import java.text.SimpleDateFormat;
 import java.text.ParseException;
 
 import ro.nextreports.engine.condition.exception.ConditionalException;
+import ro.nextreports.engine.util.DateUtil;
 
 /**
  * User: mihai.panaitescu
@@ -32,7 +33,15 @@ import ro.nextreports.engine.condition.exception.ConditionalException;
  */
 public class ConditionalExpression implements Serializable {
 
-    public static DateFormat DATE_FORMAT = new SimpleDateFormat("dd/MM/yyyy");
+    /** Pattern of date operands */
+    public static final String DATE_PATTERN = "dd/MM/yyyy";
+
+    /**
+     * @deprecated DateFormat is not thread safe; use {@link DateUtil#getDateFormat(String)}
+     * with {@link #DATE_PATTERN}
+     */
+    @Deprecated
+    public static DateFormat DATE_FORMAT = new SimpleDateFormat(DATE_PATTERN);
 
     protected transient Serializable leftOperand;
     protected transient String operator;
@@ -87,13 +96,13 @@ public class ConditionalExpression implements Serializable {
         String right2 = "";
         if (rightOperand != null) {
             if (rightOperand instanceof Date) {
-                right = DATE_FORMAT.format(rightOperand);
+                right = DateUtil.format((Date) rightOperand, DATE_PATTERN);
             } else {
                 right = rightOperand.toString();
             }
             if (rightOperand2 != null) {
                 if (rightOperand2 instanceof Date) {
-                    right2 = DATE_FORMAT.format(rightOperand2);
+                    right2 = DateUtil.format((Date) rightOperand2, DATE_PATTERN);
                 } else {
                     right2 = rightOperand2.toString();
                 }
@@ -136,7 +145,7 @@ public class ConditionalExpression implements Serializable {
         if (operand.contains("/")) {
             // date
             try {
-                result = DATE_FORMAT.parse(operand);
+                result = DateUtil.parse(operand, DATE_PATTERN);
             } catch (ParseException e) {
                 e.printStackTrace();
             }
@@ -27,6 +27,7 @@ import ro.nextreports.engine.ReportLayout;
 import ro.nextreports.engine.band.Band;
 import ro.nextreports.engine.band.BandElement;
 import ro.nextreports.engine.exporter.util.AlarmData;
+import ro.nextreports.engine.exporter.util.IncrementalState;
 import ro.nextreports.engine.exporter.util.StyleFormatConstants;
 import ro.nextreports.engine.queryexec.QueryException;
 
@@ -37,7 +38,13 @@ public class AlarmExporter extends ResultExporter {
 
     public AlarmExporter(ExporterBean bean) {
     	super(bean);    		
-        data = new AlarmData();
+        IncrementalState state = bean.getIncrementalState();
+        if ((state != null) && (state.getAlarmData() != null)) {
+        	// incremental run : new rows are merged into previous data
+        	data = new AlarmData(state.getAlarmData().getColor(), state.getAlarmData().getMessage());
+        } else {
+        	data = new AlarmData();
+        }
     }
     
     protected void exportCell(String bandName, BandElement bandElement, Object value, int gridRow,
@@ -54,6 +61,7 @@ public class AlarmExporter extends ResultExporter {
                 	if (style.containsKey(StyleFormatConstants.BACKGROUND_COLOR)) {
                         data.setColor((Color) style.get(StyleFormatConstants.BACKGROUND_COLOR));                        
                     }
+					alertValues.clear();
 					for (Alert alert : alerts) {
 						if (isAlert(alert, value)) {
 							alertValues.add(value);
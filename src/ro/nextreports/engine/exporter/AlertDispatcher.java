@@ -0,0 +1,417 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.nextreports.engine.exporter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import ro.nextreports.engine.EngineProperties;
+import ro.nextreports.engine.RunContext;
+
+/**
+ * Runs alerts found by ALARM and INDICATOR exporters.
+ *
+ * All alerts found by a report run are collected in a batch and the batch is run as a single task
+ * by a bounded thread pool shared by all runs. If the pool queue is full the batch is dropped.
+ *
+ * Inside a batch an alert is run only once for a value. If ALERT_DEDUP_MILLIS_PROPERTY is set,
+ * an alert is also not run again for the same value by the following runs during that interval.
+ * Alerts are compared by their serialized content, so the alerts of different runs are the same alert
+ * if they have the same fields (name, condition, recipients, ...).
+ *
+ * @see EngineProperties#ALERT_THREADS_PROPERTY
+ * @see EngineProperties#ALERT_QUEUE_SIZE_PROPERTY
+ * @see EngineProperties#ALERT_DEDUP_MILLIS_PROPERTY
+ */
+public class AlertDispatcher {
+
+	private static Log LOG = LogFactory.getLog(AlertDispatcher.class);
+
+	private static AlertDispatcher instance;
+
+	private final ThreadPoolExecutor executor;
+	private final long dedupMillis;
+
+	// alert key -> time of last dispatch
+	private final Map<AlertKey, Long> lastDispatch = new HashMap<AlertKey, Long>();
+
+	private final AtomicLong queued = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+	private final AtomicLong deduplicated = new AtomicLong();
+	private final AtomicLong executed = new AtomicLong();
+	private final AtomicLong failed = new AtomicLong();
+	private final AtomicLong cancelled = new AtomicLong();
+	private final AtomicLong totalLatency = new AtomicLong();
+	private final AtomicLong maxLatency = new AtomicLong();
+
+	public static synchronized AlertDispatcher getInstance() {
+		if (instance == null) {
+			instance = new AlertDispatcher(EngineProperties.getAlertThreads(),
+					EngineProperties.getAlertQueueSize(), EngineProperties.getAlertDedupMillis());
+		}
+		return instance;
+	}
+
+	public AlertDispatcher(int threads, int queueSize, long dedupMillis) {
+		this.dedupMillis = dedupMillis;
+		executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<Runnable>(queueSize), new AlertThreadFactory());
+		executor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * Create a new batch for a report run
+	 *
+	 * @return new batch
+	 */
+	public Batch createBatch() {
+		return createBatch(null);
+	}
+
+	/**
+	 * Create a new batch for a report run. Alerts of a cancelled run are not run.
+	 *
+	 * @param runContext context of report run (may be null)
+	 * @return new batch
+	 */
+	public Batch createBatch(RunContext runContext) {
+		return new Batch(runContext);
+	}
+
+	/**
+	 * Number of alerts accepted for running
+	 *
+	 * @return number of alerts accepted for running
+	 */
+	public long getQueuedCount() {
+		return queued.get();
+	}
+
+	/**
+	 * Number of alerts dropped because the queue was full
+	 *
+	 * @return number of dropped alerts
+	 */
+	public long getDroppedCount() {
+		return dropped.get();
+	}
+
+	/**
+	 * Number of alerts not run because they were already run for the same value
+	 *
+	 * @return number of deduplicated alerts
+	 */
+	public long getDeduplicatedCount() {
+		return deduplicated.get();
+	}
+
+	/**
+	 * Number of alerts run
+	 *
+	 * @return number of alerts run
+	 */
+	public long getExecutedCount() {
+		return executed.get();
+	}
+
+	/**
+	 * Number of alerts which threw an exception
+	 *
+	 * @return number of failed alerts
+	 */
+	public long getFailedCount() {
+		return failed.get();
+	}
+
+	/**
+	 * Number of alerts not run because their report run was cancelled
+	 *
+	 * @return number of cancelled alerts
+	 */
+	public long getCancelledCount() {
+		return cancelled.get();
+	}
+
+	/**
+	 * Number of alert batches waiting to be run
+	 *
+	 * @return number of alert batches waiting to be run
+	 */
+	public int getPendingBatchCount() {
+		return executor.getQueue().size();
+	}
+
+	/**
+	 * Average time in milliseconds between batch dispatch and alert run
+	 *
+	 * @return average latency in milliseconds
+	 */
+	public long getAverageLatency() {
+		long count = executed.get() + failed.get();
+		return (count == 0) ? 0 : totalLatency.get() / count;
+	}
+
+	/**
+	 * Maximum time in milliseconds between batch dispatch and alert run
+	 *
+	 * @return maximum latency in milliseconds
+	 */
+	public long getMaxLatency() {
+		return maxLatency.get();
+	}
+
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+	private void dispatch(Batch batch) {
+		if (batch.entries.isEmpty()) {
+			return;
+		}
+		final RunContext runContext = batch.runContext;
+		if ((runContext != null) && runContext.isCancelled()) {
+			cancelled.addAndGet(batch.entries.size());
+			return;
+		}
+		final List<AlertEntry> entries = new ArrayList<AlertEntry>();
+		long now = System.currentTimeMillis();
+		synchronized (lastDispatch) {
+			if (dedupMillis > 0) {
+				purge(now);
+			}
+			for (AlertEntry entry : batch.entries.values()) {
+				if (dedupMillis > 0) {
+					Long last = lastDispatch.get(entry.key);
+					if ((last != null) && (now - last < dedupMillis)) {
+						deduplicated.incrementAndGet();
+						continue;
+					}
+				}
+				entries.add(entry);
+			}
+		}
+		if (entries.isEmpty()) {
+			return;
+		}
+
+		final long submitted = System.currentTimeMillis();
+		try {
+			executor.execute(new Runnable() {
+				public void run() {
+					long latency = System.currentTimeMillis() - submitted;
+					for (int i = 0, n = entries.size(); i < n; i++) {
+						if ((runContext != null) && runContext.isCancelled()) {
+							cancelled.addAndGet(n - i);
+							return;
+						}
+						AlertEntry entry = entries.get(i);
+						totalLatency.addAndGet(latency);
+						updateMaxLatency(latency);
+						try {
+							entry.key.alert.run(entry.key.value, entry.message);
+							executed.incrementAndGet();
+						} catch (Throwable t) {
+							failed.incrementAndGet();
+							LOG.error(t.getMessage(), t);
+						}
+					}
+				}
+			});
+		} catch (RejectedExecutionException ex) {
+			dropped.addAndGet(entries.size());
+			LOG.warn("Alert queue is full. " + entries.size() + " alert(s) dropped.");
+			return;
+		}
+		queued.addAndGet(entries.size());
+		if (dedupMillis > 0) {
+			synchronized (lastDispatch) {
+				for (AlertEntry entry : entries) {
+					lastDispatch.put(entry.key, submitted);
+				}
+			}
+		}
+	}
+
+	private void purge(long now) {
+		for (Iterator<Long> it = lastDispatch.values().iterator(); it.hasNext();) {
+			if (now - it.next() >= dedupMillis) {
+				it.remove();
+			}
+		}
+	}
+
+	private void updateMaxLatency(long latency) {
+		long max;
+		do {
+			max = maxLatency.get();
+		} while ((latency > max) && !maxLatency.compareAndSet(max, latency));
+	}
+
+	/**
+	 * Alerts found by a report run
+	 */
+	public class Batch {
+
+		// keep alerts in the order they were found
+		private Map<AlertKey, AlertEntry> entries = new LinkedHashMap<AlertKey, AlertEntry>();
+		// content of every alert added to this batch
+		private final Map<Alert, Object> contents = new IdentityHashMap<Alert, Object>();
+		private final RunContext runContext;
+
+		private Batch(RunContext runContext) {
+			this.runContext = runContext;
+		}
+
+		/**
+		 * Add an alert to this batch. An alert already added for the same value is ignored.
+		 *
+		 * @param alert alert
+		 * @param value value which activated the alert
+		 * @param message alert message
+		 */
+		public void add(Alert alert, Object value, String message) {
+			Object content = contents.get(alert);
+			if (content == null) {
+				content = getContent(alert);
+				contents.put(alert, content);
+			}
+			AlertKey key = new AlertKey(alert, content, value);
+			if (entries.containsKey(key)) {
+				deduplicated.incrementAndGet();
+				return;
+			}
+			entries.put(key, new AlertEntry(key, message));
+		}
+
+		public int size() {
+			return entries.size();
+		}
+
+		/**
+		 * Send all alerts from this batch to be run. The batch is empty after this call.
+		 */
+		public void dispatch() {
+			AlertDispatcher.this.dispatch(this);
+			entries = new LinkedHashMap<AlertKey, AlertEntry>();
+		}
+	}
+
+	// serialized alert (class and fields) or the alert itself if it cannot be serialized
+	private static Object getContent(Alert alert) {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			ObjectOutputStream out = new ObjectOutputStream(bytes);
+			out.writeObject(alert);
+			out.close();
+			return new AlertContent(bytes.toByteArray());
+		} catch (IOException ex) {
+			LOG.debug("Alert " + alert.getClass().getName() + " is compared by identity : " + ex.getMessage());
+			return alert;
+		}
+	}
+
+	private static class AlertContent {
+
+		private final byte[] bytes;
+		private final int hash;
+
+		private AlertContent(byte[] bytes) {
+			this.bytes = bytes;
+			this.hash = Arrays.hashCode(bytes);
+		}
+
+		public boolean equals(Object o) {
+			return (o instanceof AlertContent) && Arrays.equals(bytes, ((AlertContent) o).bytes);
+		}
+
+		public int hashCode() {
+			return hash;
+		}
+	}
+
+	private static class AlertKey {
+
+		private final Alert alert;
+		private final Object content;
+		private final Object value;
+
+		private AlertKey(Alert alert, Object content, Object value) {
+			this.alert = alert;
+			this.content = content;
+			this.value = value;
+		}
+
+		public boolean equals(Object o) {
+			if (this == o) return true;
+			if (o == null || getClass() != o.getClass()) return false;
+
+			AlertKey key = (AlertKey) o;
+
+			if (!content.equals(key.content)) return false;
+			if (value != null ? !value.equals(key.value) : key.value != null) return false;
+
+			return true;
+		}
+
+		public int hashCode() {
+			int result = content.hashCode();
+			result = 31 * result + (value != null ? value.hashCode() : 0);
+			return result;
+		}
+	}
+
+	private static class AlertEntry {
+
+		private final AlertKey key;
+		private final String message;
+
+		private AlertEntry(AlertKey key, String message) {
+			this.key = key;
+			this.message = message;
+		}
+	}
+
+	private static class AlertThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger count = new AtomicInteger();
+
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "NextReports-Alert-" + count.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
+	}
+}
@@ -0,0 +1,43 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.nextreports.engine.exporter;
+
+import java.io.OutputStream;
+
+import ro.nextreports.engine.EngineProperties;
+import ro.nextreports.engine.exporter.util.ArrowStreamWriter;
+import ro.nextreports.engine.exporter.util.ColumnarWriter;
+
+/**
+ * Exports query columns as an Apache Arrow IPC stream, for data extracts read by analytics tools.
+ * Layout bands are not exported : every result row is written with its column values
+ * (exporter bean must be in raw print mode).
+ *
+ * @see ArrowStreamWriter
+ */
+public class ArrowExporter extends ColumnarExporter {
+
+    public ArrowExporter(ExporterBean bean) {
+        super(bean);
+    }
+
+    protected ColumnarWriter createWriter(OutputStream out, String[] names, int[] types, int[] precisions,
+    		int[] scales) {
+        return new ArrowStreamWriter(out, names, types, precisions, scales, EngineProperties.getArrowBatchRows());
+    }
+
+}
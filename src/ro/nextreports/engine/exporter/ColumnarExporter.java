@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.nextreports.engine.exporter;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashSet;
+import java.util.Set;
+
+import ro.nextreports.engine.band.Band;
+import ro.nextreports.engine.band.BandElement;
+import ro.nextreports.engine.exporter.util.ColumnarWriter;
+import ro.nextreports.engine.queryexec.QueryException;
+import ro.nextreports.engine.queryexec.QueryResult;
+
+/**
+ * Base class for exporters of query columns in a columnar format, for data extracts read by analytics tools.
+ * Layout bands are not exported : every result row is written with its column values
+ * (exporter bean must be in raw print mode).
+ *
+ * @see ColumnarWriter
+ */
+public abstract class ColumnarExporter extends ResultExporter {
+
+    private BufferedOutputStream stream;
+    private ColumnarWriter writer;
+    private Object[] row;
+
+    public ColumnarExporter(ExporterBean bean) {
+        super(bean);
+    }
+
+    protected void initExport() throws QueryException {
+        QueryResult result = getResult();
+        int cols = result.getColumnCount();
+        String[] names = new String[cols];
+        int[] types = new int[cols];
+        int[] precisions = new int[cols];
+        int[] scales = new int[cols];
+        for (int i = 0; i < cols; i++) {
+            names[i] = result.getColumnName(i);
+            types[i] = result.getColumnType(i);
+            precisions[i] = result.getColumnPrecision(i);
+            scales[i] = result.getColumnScale(i);
+        }
+        row = new Object[cols];
+        stream = new BufferedOutputStream(getOut());
+        writer = createWriter(stream, names, types, precisions, scales);
+    }
+
+    /**
+     * Create the writer of the rows
+     *
+     * @param out output stream
+     * @param names column names
+     * @param types column jdbc types (java.sql.Types)
+     * @param precisions precision of NUMERIC and DECIMAL columns (0 if not known)
+     * @param scales scale of NUMERIC and DECIMAL columns
+     * @return writer
+     */
+    protected abstract ColumnarWriter createWriter(OutputStream out, String[] names, int[] types, int[] precisions,
+    		int[] scales);
+
+    protected void printRawRecord() throws QueryException {
+        for (int i = 0; i < row.length; i++) {
+            row[i] = getResult().nextValue(i);
+        }
+        try {
+            writer.write(row);
+        } catch (IOException e) {
+            throw new QueryException(e);
+        }
+    }
+
+    protected void finishExport() throws QueryException {
+        try {
+            writer.finish();
+        } catch (IOException e) {
+            throw new QueryException(e);
+        } finally {
+            close();
+        }
+    }
+
+    protected void close() {
+        try {
+            stream.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // data is written by the columnar writer
+    protected void flush() {
+    }
+
+    protected void flushNow() {
+    }
+
+    protected Set<CellElement> getIgnoredCells(Band band) {
+        return new HashSet<CellElement>();
+    }
+
+    protected void exportCell(String bandName, BandElement bandElement, Object value, int gridRow,
+                              int row, int column, int cols, int rowSpan, int colSpan, boolean isImage) {
+    }
+
+    protected void afterRowExport() {
+    }
+
+    protected String getNullElement() {
+        return null;
+    }
+
+}
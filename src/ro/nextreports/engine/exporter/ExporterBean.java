@@ -19,9 +19,13 @@ package ro.nextreports.engine.exporter;
 import java.io.OutputStream;
 import java.sql.Connection;
 import java.util.List;
+import java.util.Map;
 
 import ro.nextreports.engine.ReportLayout;
+import ro.nextreports.engine.RunContext;
+import ro.nextreports.engine.exporter.util.IncrementalState;
 import ro.nextreports.engine.exporter.util.ParametersBean;
+import ro.nextreports.engine.queryexec.ConnectionSupplier;
 import ro.nextreports.engine.queryexec.QueryResult;
 
 public class ExporterBean {	
@@ -36,6 +40,14 @@ public class ExporterBean {
 	private String fileName;
 	private boolean subreport;
 	private List<Alert> alerts;
+	// footer function values computed outside exporter (key is function name + "_" + column)
+	private Map<String, Object> footerFunctionValues;
+	// state of incremental ALARM and INDICATOR runs
+	private IncrementalState incrementalState;
+	// extra connections used to run generated subreports at the same time
+	private ConnectionSupplier connectionSupplier;
+	// cancellation and deadline of the run (null if exporter is not used by a run)
+	private RunContext runContext;
 	
 	public ExporterBean(Connection con, int queryTimeout, QueryResult result,
 			OutputStream out, ReportLayout reportLayout, ParametersBean pBean,
@@ -134,6 +146,14 @@ public class ExporterBean {
 		return alerts;
 	}
 
+	public Map<String, Object> getFooterFunctionValues() {
+		return footerFunctionValues;
+	}
+
+	public void setFooterFunctionValues(Map<String, Object> footerFunctionValues) {
+		this.footerFunctionValues = footerFunctionValues;
+	}
+
 	@Override
 	public String toString() {
 		return "ExporterBean [con=" + con + ", queryTimeout=" + queryTimeout
@@ -141,5 +161,29 @@ public class ExporterBean {
 				+ reportLayout + ", pBean=" + pBean + ", rawPrint=" + rawPrint
 				+ ", fileName=" + fileName + ", subreport=" + subreport + "]";
 	}				
-		
+
+	public IncrementalState getIncrementalState() {
+		return incrementalState;
+	}
+
+	public void setIncrementalState(IncrementalState incrementalState) {
+		this.incrementalState = incrementalState;
+	}
+
+	public ConnectionSupplier getConnectionSupplier() {
+		return connectionSupplier;
+	}
+
+	public void setConnectionSupplier(ConnectionSupplier connectionSupplier) {
+		this.connectionSupplier = connectionSupplier;
+	}
+
+	public RunContext getRunContext() {
+		return runContext;
+	}
+
+	public void setRunContext(RunContext runContext) {
+		this.runContext = runContext;
+	}
+
 }
@@ -18,10 +18,12 @@ package ro.nextreports.engine.exporter;
 
 import java.io.PrintStream;
 import java.io.UnsupportedEncodingException;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.List;
 import java.util.Set;
 import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
 
 import ro.nextreports.engine.ReleaseInfoAdapter;
 import ro.nextreports.engine.Report;
@@ -45,7 +47,21 @@ import ro.nextreports.engine.util.StringUtil;
  */
 public class HtmlExporter extends ResultExporter {
 
+    private static final char[] BASE64 = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+    private static final int MAX_EMBEDDED_IMAGES = 1000;
+    // ids of embedded images are unique also inside the tables of subreports
+    private static final AtomicLong embeddedImageId = new AtomicLong();
+
     private PrintStream stream;       
+    // ids of images already embedded in the page by image name and size
+    private Map<String, String> embeddedImages = new LinkedHashMap<String, String>(16, 0.75f, true) {
+
+		private static final long serialVersionUID = 1L;
+
+		protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+			return size() > MAX_EMBEDDED_IMAGES;
+		}
+	};
 
     public HtmlExporter(ExporterBean bean) {
         super(bean);
@@ -159,6 +175,53 @@ public class HtmlExporter extends ResultExporter {
     protected void afterRowExport() {
     }
 
+    // barcodes are rendered in memory and are embedded in the page only once : the first cell defines
+    // an svg image and the next cells with the same barcode reference it
+    private String getEmbeddedImage(ImageBandElement ibe, byte[] image) {
+        int width;
+        int height;
+        if (ibe.isScaled()) {
+            width = ibe.getWidth();
+            height = ibe.getHeight();
+        } else {
+            int[] size = getRealImageSize(ibe.getImage());
+            width = size[0];
+            height = size[1];
+        }
+        String key = ibe.getImage() + "@" + width + "x" + height;
+        StringBuilder sb = new StringBuilder();
+        sb.append("<svg width=\"").append(width).append("\" height=\"").append(height).append("\" role=\"img\">");
+        String id = embeddedImages.get(key);
+        if (id == null) {
+            id = "nrimage" + embeddedImageId.incrementAndGet();
+            embeddedImages.put(key, id);
+            sb.append("<image id=\"").append(id).append("\" width=\"").append(width).append("\" height=\"").append(height).
+                    append("\" preserveAspectRatio=\"none\" xlink:href=\"data:image/png;base64,").append(encodeBase64(image)).
+                    append("\"/>");
+        } else {
+            sb.append("<use xlink:href=\"#").append(id).append("\"/>");
+        }
+        sb.append("</svg>");
+        return sb.toString();
+    }
+
+    private static String encodeBase64(byte[] bytes) {
+        StringBuilder sb = new StringBuilder((bytes.length + 2) / 3 * 4);
+        for (int i = 0; i < bytes.length; i += 3) {
+            int b = (bytes[i] & 0xFF) << 16;
+            if (i + 1 < bytes.length) {
+                b |= (bytes[i + 1] & 0xFF) << 8;
+            }
+            if (i + 2 < bytes.length) {
+                b |= bytes[i + 2] & 0xFF;
+            }
+            sb.append(BASE64[(b >> 18) & 0x3F]).append(BASE64[(b >> 12) & 0x3F]);
+            sb.append((i + 1 < bytes.length) ? BASE64[(b >> 6) & 0x3F] : '=');
+            sb.append((i + 2 < bytes.length) ? BASE64[b & 0x3F] : '=');
+        }
+        return sb.toString();
+    }
+
     protected String getNullElement() {
         return "&nbsp;";
     }
@@ -213,12 +276,17 @@ public class HtmlExporter extends ResultExporter {
 
         if (image) {
             ImageBandElement ibe = (ImageBandElement) bandElement;
-            sb.append("<img src=\"").append(ibe.getImage()).append("\"");
-            if (ibe.isScaled()) {
-                sb.append(" width=\"").append(ibe.getWidth()).append("\"");
-                sb.append(" height=\"").append(ibe.getHeight()).append("\"");
+            byte[] barcode = getBarcodeImage(ibe.getImage());
+            if (barcode != null) {
+                sb.append(getEmbeddedImage(ibe, barcode));
+            } else {
+                sb.append("<img src=\"").append(ibe.getImage()).append("\"");
+                if (ibe.isScaled()) {
+                    sb.append(" width=\"").append(ibe.getWidth()).append("\"");
+                    sb.append(" height=\"").append(ibe.getHeight()).append("\"");
+                }
+                sb.append(" alt=\"").append(IMAGE_NOT_LOADED).append("\"></img>");
             }
-            sb.append(" alt=\"").append(IMAGE_NOT_LOADED).append("\"></img>");
         } else if (bandElement instanceof HyperlinkBandElement) {
             Hyperlink hyperlink = ((HyperlinkBandElement) bandElement).getHyperlink();
             sb.append("<a href=\"").append(hyperlink.getUrl()).append("\" target=\"_blank\">").
@@ -24,6 +24,7 @@ import java.util.Set;
 import ro.nextreports.engine.ReportLayout;
 import ro.nextreports.engine.band.Band;
 import ro.nextreports.engine.band.BandElement;
+import ro.nextreports.engine.exporter.util.IncrementalState;
 import ro.nextreports.engine.exporter.util.IndicatorData;
 import ro.nextreports.engine.exporter.util.StyleFormatConstants;
 import ro.nextreports.engine.queryexec.QueryException;
@@ -31,10 +32,21 @@ import ro.nextreports.engine.queryexec.QueryException;
 public class IndicatorExporter extends ResultExporter {
 	       
     private IndicatorData data;    
+    // incremental state if value of new rows is merged into previous value
+    private IncrementalState mergeState;
 
     public IndicatorExporter(ExporterBean bean) {
     	super(bean);     	  
-    	data = new IndicatorData();
+    	IncrementalState state = bean.getIncrementalState();
+    	if ((state != null) && (state.getIndicatorData() != null)) {
+    		// incremental run : new rows are merged into previous data
+    		data = new IndicatorData(state.getIndicatorData());
+    		if (state.isIndicatorMergeable()) {
+    			mergeState = state;
+    		}
+    	} else {
+    		data = new IndicatorData();
+    	}
     }
     
     protected void exportCell(String bandName, BandElement bandElement, Object value, int gridRow,
@@ -42,7 +54,6 @@ public class IndicatorExporter extends ResultExporter {
 
     	int headerRows = getHeaderRows(); 
         int detailRows = getDetailRows();  
-        Map<String, Object> style = buildCellStyleMap(bandElement, value, gridRow, column, colSpan); 
 
         if (ReportLayout.HEADER_BAND_NAME.equals(bandName)) {
         	if (headerRows == 2) {
@@ -69,6 +80,17 @@ public class IndicatorExporter extends ResultExporter {
         } else if (ReportLayout.DETAIL_BAND_NAME.equals(bandName)) {
             if (detailRows == 1) {            	
                 if (column == 0) {
+                	// aggregate of no rows is null
+                	if (value instanceof Number) {
+                		double v = ((Number) value).doubleValue();
+                		if (mergeState != null) {
+                			v = mergeState.mergeIndicatorValue(data.getValue(), v);
+                			// style and alerts see the merged value, not the value of the new rows
+                			value = v;
+                		}
+                		data.setValue(v);
+                	}
+                	Map<String, Object> style = buildCellStyleMap(bandElement, value, gridRow, column, colSpan);
                 	data.setBackground(bandElement.getBackground());
                 	if (style.containsKey(StyleFormatConstants.BACKGROUND_COLOR)) {
                 		data.setBackground((Color) style.get(StyleFormatConstants.BACKGROUND_COLOR));                        
@@ -77,13 +99,6 @@ public class IndicatorExporter extends ResultExporter {
                 	if (style.containsKey(StyleFormatConstants.FONT_COLOR)) {
                 		data.setColor((Color) style.get(StyleFormatConstants.FONT_COLOR));                        
                     }  
-                	if (value instanceof Integer) {
-                		data.setValue((Integer)value);
-                	} else if (value instanceof Long) {
-                		data.setValue((Long)value);
-                	} else {
-                		data.setValue((Double)value);
-                	}                	
                 	for (Alert alert : alerts) {                	
 						if (isAlert(alert, value)) {
 							executeAlert(alert, value, "");
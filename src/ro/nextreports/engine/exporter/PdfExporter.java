@@ -20,6 +20,10 @@ import com.itextpdf.text.*;
 import com.itextpdf.text.Font;
 import com.itextpdf.text.Rectangle;
 import com.itextpdf.text.Image;
+import com.itextpdf.text.pdf.Barcode;
+import com.itextpdf.text.pdf.BarcodeDatamatrix;
+import com.itextpdf.text.pdf.BarcodePDF417;
+import com.itextpdf.text.pdf.BarcodeQRCode;
 import com.itextpdf.text.pdf.ColumnText;
 import com.itextpdf.text.pdf.PdfPCell;
 import com.itextpdf.text.pdf.PdfPRow;
@@ -28,17 +32,23 @@ import com.itextpdf.text.pdf.PdfTemplate;
 import com.itextpdf.text.pdf.PdfWriter;
 import com.itextpdf.text.pdf.PdfPTable;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Set;
 import java.util.Map;
 import java.awt.*;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
 import ro.nextreports.engine.ReleaseInfoAdapter;
 import ro.nextreports.engine.Report;
 import ro.nextreports.engine.ReportLayout;
 import ro.nextreports.engine.band.Band;
 import ro.nextreports.engine.band.BandElement;
+import ro.nextreports.engine.band.BarcodeBandElement;
 import ro.nextreports.engine.band.Hyperlink;
 import ro.nextreports.engine.band.HyperlinkBandElement;
 import ro.nextreports.engine.band.ImageBandElement;
@@ -60,6 +70,8 @@ import ro.nextreports.engine.util.StringUtil;
  */
 public class PdfExporter extends ResultExporter {      
 	
+	private static Log LOG = LogFactory.getLog(PdfExporter.class);
+
 	// total page no 
 	// Templates are only written to the output when the document is closed permitting things like showing text in the first page
     // that is only defined in the last page
@@ -89,11 +101,11 @@ public class PdfExporter extends ResultExporter {
 				document.setPageSize(rectangle.rotate());
 			}
 		}
-        PdfWriter wr = null;
+        writer = null;
         try {
 			if (!bean.isSubreport()) {
-				wr = PdfWriter.getInstance(document, getOut());
-				wr.setPageEvent(new PdfPageEvent());
+				writer = PdfWriter.getInstance(document, getOut());
+				writer.setPageEvent(new PdfPageEvent());
 				addMetaData();
 				document.open();
 			}
@@ -213,8 +225,20 @@ public class PdfExporter extends ResultExporter {
     private PdfPTable footer;    
     private float percentage = 100;
     private int[] headerwidths;    
+    // decoded images are shared by all cells and pages (pdf writer adds an image only once)
+    // least recently used images are removed : a removed image is decoded and added again if it is found again
+    private Map<String, Image> pdfImages = new LinkedHashMap<String, Image>(16, 0.75f, true) {
+
+		private static final long serialVersionUID = 1L;
+
+		protected boolean removeEldestEntry(Map.Entry<String, Image> eldest) {
+			return size() > MAX_PDF_IMAGES;
+		}
+	};
+    private PdfWriter writer;
     
     private static final int MINIMUM_HEIGHT = 12;
+    private static final int MAX_PDF_IMAGES = 1000;
 
     private PdfPCell renderPdfCell(BandElement bandElement, Object value, int gridRow, int rowSpan, int colSpan, boolean image, int column) {
         Map<String, Object> style = buildCellStyleMap(bandElement, value, gridRow, column, colSpan);               
@@ -237,8 +261,7 @@ public class PdfExporter extends ResultExporter {
                 ImageBandElement ibe = (ImageBandElement)bandElement;               
                 try {
 
-                    byte[] imageBytes = getImage((String) value);
-                    Image pdfImage = Image.getInstance(imageBytes);
+                    Image pdfImage = Image.getInstance(getPdfImage((String) value));
                     Integer width = ibe.getWidth();
                     Integer height = ibe.getHeight();
                     if (ibe.isScaled()) {
@@ -428,6 +451,55 @@ public class PdfExporter extends ResultExporter {
         }
         return cell;
     }
+
+    // barcodes are added as vector (linear codes) or native pdf images instead of png files
+    @Override
+    protected String createBarcodeImage(BarcodeBandElement bandElement, String value, int width, int height) {
+    	if (writer == null) {
+    		// subreport
+    		return super.createBarcodeImage(bandElement, value, width, height);
+    	}
+    	Image pdfImage;
+    	try {
+    		if (bandElement.getBarcodeType() == BarcodeBandElement.PDF417) {
+    			BarcodePDF417 barcode417 = new BarcodePDF417();
+    			barcode417.setText(value);
+    			pdfImage = barcode417.getImage();
+    		} else if (bandElement.getBarcodeType() == BarcodeBandElement.DATAMATRIX) {
+    			BarcodeDatamatrix datamatrix = new BarcodeDatamatrix();
+    			datamatrix.generate(value);
+    			pdfImage = datamatrix.createImage();
+    		} else if (bandElement.getBarcodeType() == BarcodeBandElement.QRCODE) {
+    			pdfImage = new BarcodeQRCode(value, width, height, null).getImage();
+    		} else {
+    			// same size as png image : one point for every module and no text
+    			Barcode barcode = createBarcode(bandElement, value);
+    			barcode.setX(1);
+    			barcode.setFont(null);
+    			pdfImage = barcode.createImageWithBarcode(writer.getDirectContent(), null, null);
+    		}
+    	} catch (Exception e) {
+    		LOG.error(e.getMessage(), e);
+    		return super.createBarcodeImage(bandElement, value, width, height);
+    	}
+    	String imageName = getBarcodeImageName(bandElement, value, width, height);
+    	pdfImages.put(imageName, pdfImage);
+    	return imageName;
+    }
+
+    @Override
+    protected boolean hasBarcodeImage(String image) {
+    	return pdfImages.containsKey(image) || super.hasBarcodeImage(image);
+    }
+
+    private Image getPdfImage(String image) throws IOException, DocumentException {
+    	Image pdfImage = pdfImages.get(image);
+    	if (pdfImage == null) {
+    		pdfImage = Image.getInstance(getImage(image));
+    		pdfImages.put(image, pdfImage);
+    	}
+    	return pdfImage;
+    }
     
     private void updateFont(Map<String, Object> style, Font fnt) {
     	if (style.containsKey(StyleFormatConstants.FONT_FAMILY_KEY)) {
@@ -497,8 +569,7 @@ public class PdfExporter extends ResultExporter {
             		
             		String image = bean.getReportLayout().getBackgroundImage();
 					if (image != null) {						
-						byte[] imageBytes = getImage(image);
-						Image pdfImage = Image.getInstance(imageBytes);
+						Image pdfImage = getPdfImage(image);
 						pdfImage.setAbsolutePosition(0, 0);
 						writer.getDirectContentUnder().addImage(pdfImage);
 					}
@@ -16,11 +16,10 @@
  */
 package ro.nextreports.engine.exporter;
 
-import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.HashSet;
-import java.util.List;
 
 import ro.nextreports.engine.ReportLayout;
 import ro.nextreports.engine.TableExporter;
@@ -40,6 +39,7 @@ import ro.nextreports.engine.util.StringUtil;
 public class ReportTableExporter extends ResultExporter implements TableExporter {
 
     private TableData data;
+    private Map<BandElement, Integer> styleIndexes = new IdentityHashMap<BandElement, Integer>();
     
     public ReportTableExporter(ExporterBean bean) {
     	super(bean);  
@@ -65,21 +65,24 @@ public class ReportTableExporter extends ResultExporter implements TableExporter
             return;
         }
         
-        Map<String, Object> style = buildCellStyleMap(bandElement, value, gridRow, column, colSpan);
-        
-        List<Object> rowData;
-        List<Map<String,Object>> st;
-        if (data.getData().size()+hRows <= exporterRow) {
-            rowData = new ArrayList<Object>();
-            data.getData().add(rowData);
-            st = new ArrayList<Map<String,Object>>();
-            data.getStyle().add(st);
-        } else {
-            rowData = data.getData().get(exporterRow-hRows);
-            st = data.getStyle().get(exporterRow-hRows);
+        if (data.getRowCount() + hRows <= exporterRow) {
+            data.addRow();
+        }
+        data.addCell(s, getStyleIndex(bandElement, value, s, gridRow, column, colSpan));
+    }
+
+    // styles without formatting conditions depend only on band element, so they are computed once
+    // (row conditions are evaluated even for null values, so we test them with the not null string value)
+    private int getStyleIndex(BandElement bandElement, Object value, String s, int gridRow, int column, int colSpan) {
+        if (hasRenderConditions(bandElement, value) || hasRowRenderConditions(bandElement, gridRow, s)) {
+            return data.addStyle(buildCellStyleMap(bandElement, value, gridRow, column, colSpan));
+        }
+        Integer index = styleIndexes.get(bandElement);
+        if (index == null) {
+            index = data.addStyle(buildCellStyleMap(bandElement, value, gridRow, column, colSpan));
+            styleIndexes.put(bandElement, index);
         }
-        rowData.add(s);
-        st.add(style);
+        return index;
     }
 
     protected void flush() {
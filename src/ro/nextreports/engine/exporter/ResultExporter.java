@@ -18,17 +18,15 @@ package ro.nextreports.engine.exporter;
 
 import java.awt.*;
 import java.awt.image.BufferedImage;
-import java.io.File;
 import java.io.FileOutputStream;
 import java.io.OutputStream;
 import java.io.PrintStream;
 import java.io.UnsupportedEncodingException;
 import java.io.ByteArrayOutputStream;
-import java.io.InputStream;
 import java.io.IOException;
 import java.io.Serializable;
-import java.sql.SQLException;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
@@ -80,10 +78,10 @@ import ro.nextreports.engine.band.HyperlinkBandElement;
 import ro.nextreports.engine.band.ImageBandElement;
 import ro.nextreports.engine.band.Padding;
 import ro.nextreports.engine.band.ParameterBandElement;
+import ro.nextreports.engine.band.ReportBandElement;
 import ro.nextreports.engine.band.RowElement;
 import ro.nextreports.engine.band.VariableBandElement;
 import ro.nextreports.engine.chart.Chart;
-import ro.nextreports.engine.chart.ChartRunner;
 import ro.nextreports.engine.condition.BandElementCondition;
 import ro.nextreports.engine.condition.BandElementConditionProperty;
 import ro.nextreports.engine.condition.FormattingConditions;
@@ -93,7 +91,13 @@ import ro.nextreports.engine.exporter.event.ExporterEvent;
 import ro.nextreports.engine.exporter.event.ExporterEventListener;
 import ro.nextreports.engine.exporter.event.ExporterObject;
 import ro.nextreports.engine.exporter.exception.NoDataFoundException;
+import ro.nextreports.engine.exporter.util.ImageCache;
+import ro.nextreports.engine.exporter.util.IncrementalState;
 import ro.nextreports.engine.exporter.util.StyleFormatConstants;
+import ro.nextreports.engine.exporter.util.SubreportBatch;
+import ro.nextreports.engine.exporter.util.ChartImageRenderer;
+import ro.nextreports.engine.exporter.util.SubreportPrefetcher;
+import ro.nextreports.engine.exporter.util.function.FixedValueFunction;
 import ro.nextreports.engine.exporter.util.function.FunctionFactory;
 import ro.nextreports.engine.exporter.util.function.FunctionUtil;
 import ro.nextreports.engine.exporter.util.function.GFunction;
@@ -109,6 +113,7 @@ import ro.nextreports.engine.queryexec.QueryException;
 import ro.nextreports.engine.queryexec.QueryExecutor;
 import ro.nextreports.engine.queryexec.QueryParameter;
 import ro.nextreports.engine.queryexec.QueryResult;
+import ro.nextreports.engine.util.DialectUtil;
 import ro.nextreports.engine.util.PrefixSuffix;
 import ro.nextreports.engine.util.ReportUtil;
 import ro.nextreports.engine.util.StringUtil;
@@ -145,6 +150,8 @@ public abstract class ResultExporter {
 
     public static final int FLUSH_ROWS = 7500;
 
+    private static final long MIN_BARCODE_CACHE_SIZE = 1024 * 1024;
+
     private Map<Long, Map<String, Object>> styleMap;   
     private String title = "";
 
@@ -178,8 +185,17 @@ public abstract class ResultExporter {
     //     number of rows for G1 band is kept in reportGroupRow
     protected int reportGroupRow = 1;
     
-    // we can have more than one barcode inside a report, their images must have unique names for HTML exporter
-    private int barcodeIndex = 1;
+    // png bytes of rendered barcodes by image name (original and scaled) : barcodes are never written to files
+    // least recently used barcodes are removed and they are rendered again if they are found again
+    private ImageCache barcodeImages = new ImageCache(Math.max(MIN_BARCODE_CACHE_SIZE, EngineProperties.getImageCacheSize()));
+    // batched subreports (null value means the subreport cannot be batched)
+    private Map<Report, SubreportBatch> subreportBatches = new IdentityHashMap<Report, SubreportBatch>();
+    // subreport layouts with copied chart and barcode band elements
+    private Map<ReportLayout, ReportLayout> subreportLayouts = new IdentityHashMap<ReportLayout, ReportLayout>();
+    // queries of generated subreports run at the same time (only if bean has a connection supplier)
+    private SubreportPrefetcher subreportPrefetcher;
+    // chart images : identical charts are rendered only once, on a pool if bean has a connection supplier
+    private ChartImageRenderer chartRenderer;
     
     private int NO_VALUES = 30;
 
@@ -209,6 +225,7 @@ public abstract class ResultExporter {
     protected ByteArrayOutputStream subreportStream;
     
     protected List<Alert> alerts;
+    private AlertDispatcher.Batch alertBatch;
     
     protected Map<String, Object> templatesValues = new LinkedHashMap<String, Object>();
     // for every group keep the current value (this map is used to compute a key for templatesValues)
@@ -265,13 +282,39 @@ public abstract class ResultExporter {
 
         initExport();
 
-        printHeaderBand();
-        if (!printContentBands()) {
-            return false;
-        }
-        printFooterBand();
+        try {
+            prefetchCharts(getReportLayout().getHeaderBand());
+            prefetchCharts(getReportLayout().getDetailBand());
+            prefetchCharts(getReportLayout().getFooterBand());
+            printHeaderBand();
+            boolean printed;
+            try {
+            	printed = printContentBands();
+            } catch (QueryException e) {
+            	// statement was cancelled or timed out with the run
+            	if (!isRunStopped()) {
+            		throw e;
+            	}
+            	LOG.info(bean.getRunContext().getStopReason() + " : " + e.getMessage());
+            	close();
+            	printed = false;
+            }
+            if (!printed) {
+                return false;
+            }
+            printFooterBand();
 
-        finishExport();
+            finishExport();
+        } finally {
+        	if (chartRenderer != null) {
+        		chartRenderer.cancel();
+        	}
+        	if (subreportPrefetcher != null) {
+        		subreportPrefetcher.shutdown();
+        	}
+        	// alerts found before an export failure are run too
+        	dispatchAlerts();
+        }
         
         if ((bean.getResult() != null) && (!(this instanceof FirstCrossingExporter)) )  {
         	bean.getResult().close();
@@ -280,8 +323,8 @@ public abstract class ResultExporter {
         if (this instanceof FirstCrossingExporter) {
         	// after FirstCrossing go to the beginning of the result set
         	try {
-				bean.getResult().getResultSet().beforeFirst();
-			} catch (SQLException ex) {
+				bean.getResult().beforeFirst();
+			} catch (QueryException ex) {
 				LOG.error(ex.getMessage(), ex);
 			}
         }               
@@ -313,6 +356,11 @@ public abstract class ResultExporter {
         this.stopExport = stopExport;
     }
 
+    // run was cancelled or its deadline passed
+    private boolean isRunStopped() {
+    	return (bean.getRunContext() != null) && bean.getRunContext().isStopped();
+    }
+
     public Map<Long, Map<String, Object>> getStyleMap() {
         if (styleMap == null) {
             this.styleMap = new HashMap<Long, Map<String, Object>>();
@@ -664,6 +712,12 @@ public abstract class ResultExporter {
                     FunctionBandElement fbe = (FunctionBandElement) be;
                     FunctionCache fc = new FunctionCache();
                     GFunction gFunction = FunctionFactory.getFunction(fbe.getFunction());
+                    // value already computed for all rows (TABLE format with a page of rows)
+                    Map<String, Object> footerValues = bean.getFooterFunctionValues();
+                    String key = gFunction.getName() + "_" + fbe.getColumn();
+                    if (!fbe.isExpression() && (footerValues != null) && footerValues.containsKey(key)) {
+                    	gFunction = new FixedValueFunction(gFunction.getName(), footerValues.get(key));
+                    }
                     fc.setFunction(gFunction);
                     fc.setFunctionColumn(fbe.getColumn());
                     fc.setExpression(fbe.isExpression());
@@ -809,7 +863,7 @@ public abstract class ResultExporter {
         
         while (getResult().hasNext()) {        	        	
             
-        	if (Thread.currentThread().isInterrupted() || isStopExport()) {
+        	if (Thread.currentThread().isInterrupted() || isStopExport() || isRunStopped()) {
                 close();
                 setStopExport(false);
                 return false;
@@ -846,6 +900,11 @@ public abstract class ResultExporter {
 
             afterRowExport();            
 
+            if (bean.getIncrementalState() != null) {
+            	IncrementalState state = bean.getIncrementalState();
+            	state.updateMark(getResult().nextValue(state.getMarkColumn()));
+            }
+
             for (int i = 0; i < cols; i++) {
                 previousRow[i] = getResult().nextValue(i);
             }
@@ -885,6 +944,8 @@ public abstract class ResultExporter {
             }            
             fc.getFunction().compute(value);
         }
+        prefetchCharts(gc.getHgBand());
+        prefetchCharts(gc.getFgBand());
         if (gc.headerHasRows()) {
             printHeaderGroupBand(gc);
         }
@@ -1087,6 +1148,10 @@ public abstract class ResultExporter {
                 }
             }
             
+            if (!hideAll) {
+            	prefetchSubreports(band, i, hide);
+            }
+            
             for (int j = 0; j < cols; j++) {
                 
                 if (findIgnoredCellElement(ignored, i, j)) {
@@ -1152,6 +1217,9 @@ public abstract class ResultExporter {
                 	newRowCount = 1;
                 }
             }
+            if (subreportPrefetcher != null) {
+            	subreportPrefetcher.cancel();
+            }
             // page header and page footer do not count for row computation
             if (!isPageHeaderFooter) {
             	exporterRow++;
@@ -1411,7 +1479,7 @@ public abstract class ResultExporter {
 
     protected abstract void initExport() throws QueryException;
 
-    protected abstract void finishExport();
+    protected abstract void finishExport() throws QueryException;
 
 
     // if java.awt.hedless=true => use 96
@@ -1441,75 +1509,52 @@ public abstract class ResultExporter {
         }
     }
 
+    // images are loaded and scaled once and shared by all exporters
     protected byte[] getImage(String image) throws IOException {
-        //System.out.println("%%% LOAD IMAGE="+image);
-        InputStream is = getClass().getResourceAsStream("/" + image);
-        if (is == null) {
-        	LOG.error("Image '" + image + "' not found in classpath.");
-            throw new IOException("Image '" + image + "' not found.");
-        }
-        //System.out.println("%%% Image loaded.");
-        ByteArrayOutputStream img_bytes = new ByteArrayOutputStream();
-        int b;
-        try {
-            while ((b = is.read()) != -1) {
-                img_bytes.write(b);
-            }
-        } finally {
-            is.close();
+        byte[] barcode = getBarcodeImage(image);
+        if (barcode != null) {
+            return barcode;
         }
-        return img_bytes.toByteArray();
+        return ImageCache.getInstance().getImage(image);
     }
 
     protected int[] getRealImageSize(String image) {
-        InputStream is = getClass().getResourceAsStream("/" + image);
-        int[] result = new int[2];
         try {
-            BufferedImage img = ImageIO.read(is);
-            result[0] = img.getWidth();
-            result[1] = img.getHeight();
+            if (getBarcodeImage(image) != null) {
+                return barcodeImages.getImageSize(image);
+            }
+            return ImageCache.getInstance().getImageSize(image);
         } catch (IOException ex) {
-            ex.printStackTrace();
             LOG.error(ex.getMessage(), ex);
+            return new int[2];
         }
-        return result;
     }
 
     protected byte[] getScaledImage(String image, int width, int height) throws IOException {
-        InputStream is = getClass().getResourceAsStream("/" + image);
-        if (is == null) {
-            throw new IOException("Image '" + image + "' not found.");
+        if (getBarcodeImage(image) != null) {
+            return barcodeImages.getScaledImage(image, width, height);
         }
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        try {
-            BufferedImage img = ImageIO.read(is);
-
-            if ((img.getWidth() == width) && (img.getHeight() == height)) {
-                // original width and height                
-                ImageIO.write(img, "png", baos);
-            } else {
-                int type = img.getType() == 0 ? BufferedImage.TYPE_INT_ARGB : img.getType();
-                BufferedImage scaledImg = new BufferedImage(width, height, type);
-                Graphics2D gScaledImg = scaledImg.createGraphics();
-
-                gScaledImg.setComposite(AlphaComposite.Src);
-                gScaledImg.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
-                        RenderingHints.VALUE_INTERPOLATION_BILINEAR);
-                gScaledImg.setRenderingHint(RenderingHints.KEY_RENDERING,
-                        RenderingHints.VALUE_RENDER_QUALITY);
-
-                gScaledImg.drawImage(img, 0, 0, width, height, null);
+        return ImageCache.getInstance().getScaledImage(image, width, height);
+    }
 
-                ImageIO.write(scaledImg, "png", baos);
-            }
-        } catch (IOException ex) {
-            ex.printStackTrace();
-            LOG.error(ex.getMessage(), ex);
-            throw new IOException("Image '" + image + "' could not be scaled.");
-        } finally {
-            is.close();
-        }
-        return baos.toByteArray();
+    /**
+     * Get png bytes of a barcode rendered by this exporter
+     *
+     * @param image image name
+     * @return png bytes or null if image is not a barcode of this export
+     */
+    protected byte[] getBarcodeImage(String image) {
+        return barcodeImages.getCachedImage(image);
+    }
+    
+    /**
+     * Test if a barcode image is still kept by this exporter
+     *
+     * @param image image name
+     * @return true if barcode image is kept by this exporter
+     */
+    protected boolean hasBarcodeImage(String image) {
+        return getBarcodeImage(image) != null;
     }
 
     protected byte[] getImage(String image, Integer width, Integer height) throws IOException {
@@ -1643,26 +1688,37 @@ public abstract class ResultExporter {
     	if (bean.getConnection() == null) {
     		return;
     	}
-    	String image = null;
-    	Chart chart = bandElement.getChart();
-    	ChartRunner runner = new ChartRunner();
-        runner.setFormat(ChartRunner.IMAGE_FORMAT);
-        runner.setChart(chart);
-        runner.setConnection(bean.getConnection());
-        runner.setQueryTimeout(bean.getQueryTimeout());
-        runner.setParameterValues(bean.getParametersBean().getParamValues());        
-        runner.setImagePath(imageChartPath);  
-        int width = (bandElement.getWidth() == null) ? 0 : bandElement.getWidth();
-        int height = (bandElement.getHeight() == null) ? 0 : bandElement.getHeight();
-        runner.setImageWidth(width);
-        runner.setImageHeight(height);
-        try {                        
-            runner.run();
-            image = runner.getChartImageName();
-            bandElement.setImage(image);
-        } catch (Exception e) {          
-            e.printStackTrace();            
-        }   
+    	try {
+    		bandElement.setImage(getChartRenderer().getImage(bandElement, bean.getParametersBean().getParamValues()));
+    	} catch (InterruptedException e) {
+    		Thread.currentThread().interrupt();
+    	}
+    }
+    
+    private ChartImageRenderer getChartRenderer() {
+    	if (chartRenderer == null) {
+    		chartRenderer = new ChartImageRenderer(bean.getConnection(), bean.getConnectionSupplier(), 
+    				bean.getQueryTimeout(), imageChartPath);
+    		chartRenderer.setRunContext(bean.getRunContext());
+    	}
+    	return chartRenderer;
+    }
+    
+    // charts from a band start rendering on the chart pool when the band's group starts (their parameter 
+    // values are known); exporter waits for every image when it writes the chart cell
+    // charts with a hide expression are rendered only if they are shown
+    private void prefetchCharts(Band band) {
+    	if ((band == null) || (bean.getConnection() == null) || (bean.getConnectionSupplier() == null)) {
+    		return;
+    	}
+    	for (int i = 0, rows = band.getRowCount(); i < rows; i++) {
+    		for (int j = 0, cols = band.getColumnCount(); j < cols; j++) {
+    			BandElement bandElement = band.getElementAt(i, j);
+    			if ((bandElement instanceof ChartBandElement) && (bandElement.getHideWhenExpression() == null)) {
+    				getChartRenderer().submit((ChartBandElement) bandElement, bean.getParametersBean().getParamValues());
+    			}
+    		}
+    	}
     }
     
     private void generateBarcodeImage(BarcodeBandElement bandElement) {    	
@@ -1679,52 +1735,88 @@ public abstract class ResultExporter {
 				e.printStackTrace();
 			}
         }
-        Image image = null;       
-		if (BarcodeBandElement.isEANFamily(bandElement.getBarcodeType())) {
-			BarcodeEAN codeEAN = new BarcodeEAN();
-			codeEAN.setCodeType(bandElement.getBarcodeType());
-			codeEAN.setCode(value);			
-			image = codeEAN.createAwtImage(Color.BLACK, Color.WHITE);
+        String imageName = getBarcodeImageName(bandElement, value, width, height);
+        if (!hasBarcodeImage(imageName)) {
+        	imageName = createBarcodeImage(bandElement, value, width, height);
+        }
+        bandElement.setImage(imageName);
+    }
+
+    protected String getBarcodeImageName(BarcodeBandElement bandElement, String value, int width, int height) {
+    	return "barcode:" + bandElement.getBarcodeType() + "_" + width + "_" + height + "_" + value;
+    }
+
+    /**
+     * Render a barcode image. Called for every distinct barcode (type, size, value) of the export
+     * which is not kept by the exporter (see hasBarcodeImage).
+     *
+     * The png image is kept in memory and getImage returns it by the returned name.
+     *
+     * @return image name
+     */
+    protected String createBarcodeImage(BarcodeBandElement bandElement, String value, int width, int height) {
+    	String imageName = getBarcodeImageName(bandElement, value, width, height);
+    	ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    	try {
+    		ImageIO.write(toBufferedImage(createAwtBarcode(bandElement, value, width, height)), "png", baos);
+    	} catch (IOException e) {
+    		LOG.error(e.getMessage(), e);
+    	}
+    	barcodeImages.putImage(imageName, baos.toByteArray());
+        return imageName;
+    }
+
+    private Image createAwtBarcode(BarcodeBandElement bandElement, String value, int width, int height) {
+		if (bandElement.getBarcodeType() == BarcodeBandElement.PDF417) {
+			BarcodePDF417 barcode417 = new BarcodePDF417();
+			barcode417.setText(value);				
+			return barcode417.createAwtImage(Color.BLACK, Color.WHITE);
+		} else if (bandElement.getBarcodeType() == BarcodeBandElement.DATAMATRIX) {
+			BarcodeDatamatrix datamatrix = new BarcodeDatamatrix();					
+			try {
+				datamatrix.generate(value);
+			} catch (UnsupportedEncodingException e) {
+				e.printStackTrace();
+			}				
+			return datamatrix.createAwtImage(Color.BLACK, Color.WHITE);
+		} else if (bandElement.getBarcodeType() == BarcodeBandElement.QRCODE) {				
+			BarcodeQRCode qrcode = new BarcodeQRCode(value, width, height, null);				
+			return qrcode.createAwtImage(Color.BLACK, Color.WHITE);
 		} else {
-			if (bandElement.getBarcodeType() == BarcodeBandElement.PDF417) {
-				BarcodePDF417 barcode417 = new BarcodePDF417();
-				barcode417.setText(value);				
-				image = barcode417.createAwtImage(Color.BLACK, Color.WHITE);
-			} else if (bandElement.getBarcodeType() == BarcodeBandElement.DATAMATRIX) {
-				BarcodeDatamatrix datamatrix = new BarcodeDatamatrix();					
-				try {
-					datamatrix.generate(value);
-				} catch (UnsupportedEncodingException e) {
-					e.printStackTrace();
-				}				
-				image = datamatrix.createAwtImage(Color.BLACK, Color.WHITE);
-			} else if (bandElement.getBarcodeType() == BarcodeBandElement.QRCODE) {				
-				BarcodeQRCode qrcode = new BarcodeQRCode(value, width, height, null);				
-				image = qrcode.createAwtImage(Color.BLACK, Color.WHITE);
-			} else {
-				Barcode barcode = null;
-				if (bandElement.getBarcodeType() == BarcodeBandElement.CODE128) {
-					barcode = new Barcode128();					
-				} else if (bandElement.getBarcodeType() == BarcodeBandElement.CODE128_RAW) {
-					barcode = new Barcode128();
-					barcode.setCodeType(bandElement.getBarcodeType());
-				} else if (bandElement.getBarcodeType() == BarcodeBandElement.INTER25) {
-					barcode = new BarcodeInter25();
-				} else if (bandElement.getBarcodeType() == BarcodeBandElement.CODE39) {
-					barcode = new Barcode39();
-				} else if (bandElement.getBarcodeType() == BarcodeBandElement.CODE39EXT) {
-					barcode = new Barcode39();
-					barcode.setStartStopText(false);
-					barcode.setExtended(true);
-				} else if (bandElement.getBarcodeType() == BarcodeBandElement.CODABAR) {
-					barcode = new BarcodeCodabar();
-				}
-				barcode.setCode(value);				
-				image = barcode.createAwtImage(Color.BLACK, Color.WHITE);
-			}
+			return createBarcode(bandElement, value).createAwtImage(Color.BLACK, Color.WHITE);
 		}
-        String imageName = saveBarcode(bandElement, toBufferedImage(image), "png"); 
-        bandElement.setImage(imageName);
+    }
+
+    /**
+     * Create a linear (one dimension) barcode
+     *
+     * @return linear barcode or null for PDF417, DATAMATRIX and QRCODE types
+     */
+    protected Barcode createBarcode(BarcodeBandElement bandElement, String value) {
+    	Barcode barcode = null;
+		if (BarcodeBandElement.isEANFamily(bandElement.getBarcodeType())) {
+			barcode = new BarcodeEAN();
+			barcode.setCodeType(bandElement.getBarcodeType());
+		} else if (bandElement.getBarcodeType() == BarcodeBandElement.CODE128) {
+			barcode = new Barcode128();					
+		} else if (bandElement.getBarcodeType() == BarcodeBandElement.CODE128_RAW) {
+			barcode = new Barcode128();
+			barcode.setCodeType(bandElement.getBarcodeType());
+		} else if (bandElement.getBarcodeType() == BarcodeBandElement.INTER25) {
+			barcode = new BarcodeInter25();
+		} else if (bandElement.getBarcodeType() == BarcodeBandElement.CODE39) {
+			barcode = new Barcode39();
+		} else if (bandElement.getBarcodeType() == BarcodeBandElement.CODE39EXT) {
+			barcode = new Barcode39();
+			barcode.setStartStopText(false);
+			barcode.setExtended(true);
+		} else if (bandElement.getBarcodeType() == BarcodeBandElement.CODABAR) {
+			barcode = new BarcodeCodabar();
+		}
+		if (barcode != null) {
+			barcode.setCode(value);
+		}
+		return barcode;
     }
     
     private BufferedImage toBufferedImage(Image src) {
@@ -1741,19 +1833,6 @@ public abstract class ResultExporter {
         return dest;
     }
     
-    private String saveBarcode(BarcodeBandElement bandElement, BufferedImage image, String ext) {    	
-        String fileName = "barcode_" + bandElement.getBarcodeType() + "_" + barcodeIndex + "." + ext;
-        barcodeIndex++;
-        File file = new File(imageChartPath + File.separator + fileName);
-        try {
-            ImageIO.write(image, ext, file);  // ignore returned boolean
-        } catch(IOException e) {
-        	e.printStackTrace();            
-        }
-        return fileName;
-    }
-    
-    
     public int getPoints(int pixels) {
     	// 1 inch = 72 points
     	return (int) ( (pixels * 72f) / getDPI() );
@@ -1806,17 +1885,117 @@ public abstract class ResultExporter {
 		// for reports inside ForReportBandElement we must overwrite parameter values
 		// see ReportUtil.getForReportLayout where generated parameters are set
 		bean.getParametersBean().overwriteSubreportParametersValues(subreport.getGeneratedParamValues());
-		QueryExecutor executor = new QueryExecutor(query, bean.getParametersBean().getParams(), bean.getParametersBean()
-				.getParamValues(), bean.getConnection(), rowCount);
-		executor.setMaxRows(0);
-		executor.setTimeout(bean.getQueryTimeout());
-		QueryResult queryResult = executor.execute();
+		QueryResult queryResult = null;
+		if (subreportPrefetcher != null) {
+			queryResult = subreportPrefetcher.getResult(subreport);
+		}
+		if (queryResult == null) {
+			queryResult = getBatchedSubreportResult(subreport, sql);
+		}
+		if (queryResult == null) {
+			QueryExecutor executor = new QueryExecutor(query, bean.getParametersBean().getParams(), bean.getParametersBean()
+					.getParamValues(), bean.getConnection(), rowCount);
+			executor.setMaxRows(0);
+			executor.setTimeout(bean.getQueryTimeout());
+			executor.setRunContext(bean.getRunContext());
+			queryResult = executor.execute();
+		}
 		ExporterBean eb = new ExporterBean(bean.getConnection(), bean.getQueryTimeout(), queryResult, bean.getOut(),
-				subreport.getLayout(), bean.getParametersBean(), subreport.getBaseName(), false);
+				getSubreportLayout(subreport), bean.getParametersBean(), subreport.getBaseName(), false);
 		eb.setSubreport(true);
+		eb.setRunContext(bean.getRunContext());
 		return eb;
 	}
 	
+	// subreport exporters set generated images in their layout : images are set in a copy made once for
+	// every subreport layout (generated subreports share the layout of their subreport)
+	private ReportLayout getSubreportLayout(Report subreport) {
+		ReportLayout layout = subreportLayouts.get(subreport.getLayout());
+		if (layout == null) {
+			layout = ReportUtil.getReportLayoutForGeneratedImages(subreport.getLayout());
+			subreportLayouts.put(subreport.getLayout(), layout);
+		}
+		return layout;
+	}
+	
+	// queries of subreports generated by a ForReportBandElement inside a layout row are started together, 
+	// every one on its own connection from the connection supplier; subreports are still rendered one
+	// after another in layout order (they write in the same document) using the results read in memory
+	private void prefetchSubreports(Band band, int row, boolean[] hide) throws QueryException {
+		if ((bean.getConnectionSupplier() == null) || bean.isSubreport()) {
+			return;
+		}
+		List<Report> subreports = new ArrayList<Report>();
+		for (int j = 0, cols = band.getColumnCount(); j < cols; j++) {
+			BandElement bandElement = band.getElementAt(row, j);
+			if (!hide[j] && (bandElement instanceof ReportBandElement)) {
+				Report subreport = ((ReportBandElement) bandElement).getReport();
+				if ((subreport != null) && (subreport.getGeneratedParamValues() != null) && 
+					!subreport.getGeneratedParamValues().isEmpty()) {
+					subreports.add(subreport);
+				}
+			}
+		}
+		if (subreports.size() < 2) {
+			return;
+		}
+		if (subreportPrefetcher == null) {
+			subreportPrefetcher = new SubreportPrefetcher(bean.getConnectionSupplier(), bean.getQueryTimeout());
+			subreportPrefetcher.setRunContext(bean.getRunContext());
+		}
+		for (Report subreport : subreports) {
+			Map<String, QueryParameter> params = new HashMap<String, QueryParameter>(bean.getParametersBean().getParams());
+			Map<String, Object> values = new HashMap<String, Object>(bean.getParametersBean().getParamValues());
+			for (QueryParameter qp : subreport.getParameters()) {
+				params.put(qp.getName(), qp);
+				// same values as set for subreport parameters in detail band before exportCell
+				if (isDetail && hasColumn(qp.getName())) {
+					values.put(qp.getName(), getResult().nextValue(qp.getName()));
+				}
+			}
+			values.putAll(subreport.getGeneratedParamValues());
+			subreportPrefetcher.submit(subreport, params, values);
+		}
+	}
+	
+	private boolean hasColumn(String columnName) {
+		for (int i = 0, n = getResult().getColumnCount(); i < n; i++) {
+			if (columnName.equals(getResult().getColumnName(i))) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	// subreport rows for current master row, read together with the rows of the next master rows
+	// returns null if subreport cannot be batched
+	private QueryResult getBatchedSubreportResult(Report subreport, String sql) throws Exception {
+		int batchSize = EngineProperties.getSubreportBatchSize();
+		if ((batchSize <= 1) || bean.isSubreport() || (bean.getConnection() == null) ||
+			((subreport.getGeneratedParamValues() != null) && !subreport.getGeneratedParamValues().isEmpty())) {
+			return null;
+		}
+		if (!subreportBatches.containsKey(subreport)) {
+			subreportBatches.put(subreport, SubreportBatch.create(sql, subreport.getParameters()));
+		}
+		SubreportBatch batch = subreportBatches.get(subreport);
+		if (batch == null) {
+			return null;
+		}
+		Object key = bean.getParametersBean().getParamValues().get(batch.getParameterName());
+		if (!batch.isLoaded(key)) {
+			int size = Math.min(batchSize, DialectUtil.getDialect(bean.getConnection()).getMaxInListSize());
+			List<Object> keys = getResult().getNextValues(batch.getParameterName(), size);
+			if ((keys == null) || !batch.load(bean.getConnection(), bean.getQueryTimeout(), bean.getRunContext(),
+					bean.getParametersBean().getParams(), bean.getParametersBean().getParamValues(), keys)) {
+				// master result cannot be scrolled or subreport does not select the parameter column
+				subreportBatches.put(subreport, null);
+				return null;
+			}
+		}
+		return batch.getResult(key);
+	}
+	
 	private VariableBandElement getTotalPageNoVbe(ReportLayout layout) {
 		List<Band> bands = layout.getBands();
 		for (Band band : bands) {
@@ -1833,24 +2012,31 @@ public abstract class ResultExporter {
 		return null;
 	}		
 	
+	// in incremental mode an alert is considered only when it becomes active
 	protected boolean isAlert(Alert alert, Object value) {		
-		return (alert != null) && alert.isActive(value);
+		boolean active = (alert != null) && alert.isActive(value);
+		if ((alert != null) && (bean.getIncrementalState() != null)) {
+			return bean.getIncrementalState().changeAlertState(alert, active);
+		}
+		return active;
 	}
 
-	private void alert(Alert alert, Object value, String message) {
-		if (alert != null) {
-			alert.run(value, message);
+	// alerts are collected during export and run in a single batch at the end
+	protected void executeAlert(Alert alert, Object value, String message) {
+		if (alert == null) {
+			return;
 		}
+		if (alertBatch == null) {
+			alertBatch = AlertDispatcher.getInstance().createBatch(bean.getRunContext());
+		}
+		alertBatch.add(alert, value, message);
 	}
 
-	protected void executeAlert(final Alert alert, final Object value, final String message) {
-		Runnable r = new Runnable() {
-			@Override
-			public void run() {				
-				alert(alert, value, message);
-			}
-		};
-		new Thread(r).start();
+	private void dispatchAlerts() {
+		if (alertBatch != null) {
+			alertBatch.dispatch();
+			alertBatch = null;
+		}
 	}
 	
 	// string template used by functions in header and group header bands
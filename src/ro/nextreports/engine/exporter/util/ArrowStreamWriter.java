@@ -0,0 +1,1093 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.nextreports.engine.exporter.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Writes rows in Apache Arrow IPC streaming format (metadata version V5, little endian), without
+ * the Arrow libraries. The stream can be read with pyarrow.ipc.open_stream or any Arrow reader.
+ *
+ * Rows are written in record batches of batchRows rows. Column types are taken from jdbc types :
+ *
+ * <pre>
+ *   TINYINT, SMALLINT, INTEGER        Int32
+ *   BIGINT                            Int64
+ *   REAL, FLOAT, DOUBLE               Float64
+ *   NUMERIC, DECIMAL                  Decimal128 (column precision and scale; Float64 if the precision
+ *                                     is not known or is greater than 38)
+ *   BIT, BOOLEAN                      Bool
+ *   DATE                              Date32 (days)
+ *   TIME                              Time32 (milliseconds)
+ *   TIMESTAMP                         Timestamp (microseconds, without time zone)
+ *   BINARY, VARBINARY, LONGVARBINARY,
+ *   BLOB                              Binary
+ *   others                            Utf8
+ * </pre>
+ *
+ * Dates, times and timestamps are written as local wall clock values. A Utf8 column is dictionary encoded
+ * (Int32 indexes) if less than half of the values in its first batch are distinct; dictionary values
+ * added by the next batches are written as delta dictionary batches.
+ */
+public class ArrowStreamWriter implements ColumnarWriter {
+
+	private static final int CONTINUATION = 0xFFFFFFFF;
+	private static final short METADATA_V5 = 4;
+
+	// message header types
+	private static final byte HEADER_SCHEMA = 1;
+	private static final byte HEADER_DICTIONARY_BATCH = 2;
+	private static final byte HEADER_RECORD_BATCH = 3;
+
+	// field types
+	private static final byte TYPE_INT = 2;
+	private static final byte TYPE_FLOATING_POINT = 3;
+	private static final byte TYPE_BINARY = 4;
+	private static final byte TYPE_UTF8 = 5;
+	private static final byte TYPE_BOOL = 6;
+	private static final byte TYPE_DECIMAL = 7;
+	private static final byte TYPE_DATE = 8;
+	private static final byte TYPE_TIME = 9;
+	private static final byte TYPE_TIMESTAMP = 10;
+
+	private static final short PRECISION_DOUBLE = 2;
+	private static final short DATE_UNIT_DAY = 0;
+	private static final short TIME_UNIT_MILLISECOND = 1;
+	private static final short TIME_UNIT_MICROSECOND = 2;
+
+	private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+	private static final int MAX_DECIMAL_PRECISION = 38;
+
+	private final OutputStream out;
+	private final Column[] columns;
+	private final int batchRows;
+	private final Calendar calendar = Calendar.getInstance();
+	private int rows;
+	private boolean schemaWritten;
+
+	/**
+	 * @param out output stream (not closed by this writer)
+	 * @param names column names
+	 * @param sqlTypes column jdbc types (java.sql.Types)
+	 * @param batchRows maximum number of rows in a record batch
+	 */
+	public ArrowStreamWriter(OutputStream out, String[] names, int[] sqlTypes, int batchRows) {
+		this(out, names, sqlTypes, new int[names.length], new int[names.length], batchRows);
+	}
+
+	/**
+	 * @param out output stream (not closed by this writer)
+	 * @param names column names
+	 * @param sqlTypes column jdbc types (java.sql.Types)
+	 * @param precisions precision of NUMERIC and DECIMAL columns (0 if not known)
+	 * @param scales scale of NUMERIC and DECIMAL columns
+	 * @param batchRows maximum number of rows in a record batch
+	 */
+	public ArrowStreamWriter(OutputStream out, String[] names, int[] sqlTypes, int[] precisions, int[] scales,
+			int batchRows) {
+		this.out = out;
+		this.batchRows = Math.max(1, batchRows);
+		columns = new Column[names.length];
+		for (int i = 0; i < names.length; i++) {
+			columns[i] = createColumn(i, names[i], sqlTypes[i], precisions[i], scales[i]);
+		}
+	}
+
+	/**
+	 * Add a row. A record batch is written when it has batchRows rows.
+	 *
+	 * @param values row values (one for every column, null for a null value)
+	 * @throws IOException if batch cannot be written or a value cannot be converted to column type
+	 */
+	public void write(Object[] values) throws IOException {
+		for (int i = 0; i < columns.length; i++) {
+			columns[i].add(values[i]);
+		}
+		rows++;
+		if (rows == batchRows) {
+			writeBatch();
+		}
+	}
+
+	/**
+	 * Write the remaining rows and the end of stream. The output stream is flushed.
+	 *
+	 * @throws IOException if stream cannot be written
+	 */
+	public void finish() throws IOException {
+		if ((rows > 0) || !schemaWritten) {
+			writeBatch();
+		}
+		writeInt(out, CONTINUATION);
+		writeInt(out, 0);
+		out.flush();
+	}
+
+	private Column createColumn(int index, String name, int sqlType, int precision, int scale) {
+		switch (sqlType) {
+			case Types.TINYINT:
+			case Types.SMALLINT:
+			case Types.INTEGER:
+				return new IntColumn(name, 32);
+			case Types.BIGINT:
+				return new IntColumn(name, 64);
+			case Types.REAL:
+			case Types.FLOAT:
+			case Types.DOUBLE:
+				return new DoubleColumn(name);
+			case Types.NUMERIC:
+			case Types.DECIMAL:
+				if ((precision < 1) || (precision > MAX_DECIMAL_PRECISION) || (scale < 0) || (scale > precision)) {
+					return new DoubleColumn(name);
+				}
+				return new DecimalColumn(name, precision, scale);
+			case Types.BIT:
+			case Types.BOOLEAN:
+				return new BoolColumn(name);
+			case Types.DATE:
+				return new DateColumn(name);
+			case Types.TIME:
+				return new TimeColumn(name);
+			case Types.TIMESTAMP:
+				return new TimestampColumn(name);
+			case Types.BINARY:
+			case Types.VARBINARY:
+			case Types.LONGVARBINARY:
+			case Types.BLOB:
+				return new BinaryColumn(name);
+			default:
+				return new StringColumn(name, index);
+		}
+	}
+
+	private void writeBatch() throws IOException {
+		if (!schemaWritten) {
+			writeSchema();
+			schemaWritten = true;
+		}
+		for (Column column : columns) {
+			column.writeDictionaryBatch(this);
+		}
+		if (rows > 0) {
+			Body body = new Body();
+			for (Column column : columns) {
+				column.writeData(body, rows);
+			}
+			writeMessage(HEADER_RECORD_BATCH, body.createRecordBatch(rows), body);
+		}
+		for (Column column : columns) {
+			column.clear();
+		}
+		rows = 0;
+	}
+
+	private void writeSchema() throws IOException {
+		List<Table> fields = new ArrayList<Table>();
+		for (Column column : columns) {
+			column.chooseEncoding(rows);
+			Table field = new Table();
+			field.addOffset(0, column.name);
+			field.addBool(1, true);
+			field.addByte(2, column.getType());
+			field.addOffset(3, column.createTypeTable());
+			Table dictionary = column.createDictionaryEncoding();
+			if (dictionary != null) {
+				field.addOffset(4, dictionary);
+			}
+			field.addOffset(5, new TableVector(new ArrayList<Table>()));
+			fields.add(field);
+		}
+		Table schema = new Table();
+		schema.addShort(0, (short) 0);
+		schema.addOffset(1, new TableVector(fields));
+		writeMessage(HEADER_SCHEMA, schema, null);
+	}
+
+	private void writeMessage(byte headerType, Table header, Body body) throws IOException {
+		Table message = new Table();
+		message.addShort(0, METADATA_V5);
+		message.addByte(1, headerType);
+		message.addOffset(2, header);
+		message.addLong(3, (body == null) ? 0 : body.data.size());
+		byte[] metadata = new FlatBufferSerializer().serialize(message);
+		// metadata is padded so that body starts at a multiple of 8
+		int length = (metadata.length + 7) & ~7;
+		writeInt(out, CONTINUATION);
+		writeInt(out, length);
+		out.write(metadata);
+		for (int i = metadata.length; i < length; i++) {
+			out.write(0);
+		}
+		if (body != null) {
+			out.write(body.data.bytes, 0, body.data.size());
+		}
+	}
+
+	private static void writeInt(OutputStream out, int value) throws IOException {
+		out.write(value & 0xFF);
+		out.write((value >>> 8) & 0xFF);
+		out.write((value >>> 16) & 0xFF);
+		out.write((value >>> 24) & 0xFF);
+	}
+
+	private static Table createIntType(int bitWidth) {
+		Table type = new Table();
+		type.addInt(0, bitWidth);
+		type.addBool(1, true);
+		return type;
+	}
+
+	// wall clock time of a date as milliseconds from epoch in UTC
+	private long getLocalMillis(Date date) {
+		calendar.setTime(date);
+		return date.getTime() + calendar.get(Calendar.ZONE_OFFSET) + calendar.get(Calendar.DST_OFFSET);
+	}
+
+	private static Number toNumber(Column column, Object value) throws IOException {
+		if (value instanceof Number) {
+			return (Number) value;
+		}
+		if (value instanceof Boolean) {
+			return ((Boolean) value) ? 1 : 0;
+		}
+		try {
+			return new BigDecimal(value.toString().trim());
+		} catch (NumberFormatException e) {
+			throw column.invalidValue(value);
+		}
+	}
+
+	private static Date toDate(Column column, Object value) throws IOException {
+		if (value instanceof Date) {
+			return (Date) value;
+		}
+		throw column.invalidValue(value);
+	}
+
+	// ------------------------------------------------------------------------------------------------------
+	// columns
+
+	private abstract static class Column {
+
+		final String name;
+		final Bits validity = new Bits();
+		int nulls;
+
+		Column(String name) {
+			this.name = name;
+		}
+
+		void add(Object value) throws IOException {
+			if (value == null) {
+				nulls++;
+				addNull();
+			} else {
+				validity.set(validity.size);
+				addValue(value);
+			}
+			validity.size++;
+		}
+
+		abstract void addNull();
+
+		abstract void addValue(Object value) throws IOException;
+
+		abstract byte getType();
+
+		abstract Table createTypeTable();
+
+		// called once, before schema is written
+		void chooseEncoding(int rows) {
+		}
+
+		Table createDictionaryEncoding() {
+			return null;
+		}
+
+		void writeDictionaryBatch(ArrowStreamWriter writer) throws IOException {
+		}
+
+		abstract void writeData(Body body, int rows) throws IOException;
+
+		void writeValidity(Body body, int rows) {
+			body.addNode(rows, nulls);
+			if (nulls == 0) {
+				body.addBuffer(null, 0);
+			} else {
+				validity.ensure(rows);
+				body.addBuffer(validity.bytes, (rows + 7) / 8);
+			}
+		}
+
+		void clear() {
+			validity.clear();
+			nulls = 0;
+		}
+
+		IOException invalidValue(Object value) {
+			return new IOException("Value " + value + " (" + value.getClass().getName() +
+					") cannot be written in column " + name);
+		}
+	}
+
+	private abstract static class FixedColumn extends Column {
+
+		final LeBuffer values = new LeBuffer();
+		final int width;
+
+		FixedColumn(String name, int width) {
+			super(name);
+			this.width = width;
+		}
+
+		void addNull() {
+			values.putZeros(width);
+		}
+
+		void writeData(Body body, int rows) {
+			writeValidity(body, rows);
+			body.addBuffer(values.bytes, values.size());
+		}
+
+		void clear() {
+			super.clear();
+			values.clear();
+		}
+	}
+
+	private class IntColumn extends FixedColumn {
+
+		IntColumn(String name, int bitWidth) {
+			super(name, bitWidth / 8);
+		}
+
+		void addValue(Object value) throws IOException {
+			Number number = toNumber(this, value);
+			if (width == 4) {
+				values.putInt(number.intValue());
+			} else {
+				values.putLong(number.longValue());
+			}
+		}
+
+		byte getType() {
+			return TYPE_INT;
+		}
+
+		Table createTypeTable() {
+			return createIntType(width * 8);
+		}
+	}
+
+	private class DoubleColumn extends FixedColumn {
+
+		DoubleColumn(String name) {
+			super(name, 8);
+		}
+
+		void addValue(Object value) throws IOException {
+			values.putLong(Double.doubleToLongBits(toNumber(this, value).doubleValue()));
+		}
+
+		byte getType() {
+			return TYPE_FLOATING_POINT;
+		}
+
+		Table createTypeTable() {
+			Table type = new Table();
+			type.addShort(0, PRECISION_DOUBLE);
+			return type;
+		}
+	}
+
+	// 128 bit two's complement unscaled value
+	private static class DecimalColumn extends FixedColumn {
+
+		final int precision;
+		final int scale;
+
+		DecimalColumn(String name, int precision, int scale) {
+			super(name, 16);
+			this.precision = precision;
+			this.scale = scale;
+		}
+
+		void addValue(Object value) throws IOException {
+			Number number = toNumber(this, value);
+			BigDecimal decimal;
+			if (number instanceof BigDecimal) {
+				decimal = (BigDecimal) number;
+			} else if ((number instanceof Double) || (number instanceof Float)) {
+				decimal = BigDecimal.valueOf(number.doubleValue());
+			} else if (number instanceof BigInteger) {
+				decimal = new BigDecimal((BigInteger) number);
+			} else {
+				decimal = BigDecimal.valueOf(number.longValue());
+			}
+			BigInteger unscaled = decimal.setScale(scale, RoundingMode.HALF_UP).unscaledValue();
+			if (unscaled.abs().toString().length() > precision) {
+				throw invalidValue(value);
+			}
+			// big endian bytes are written in reverse order, sign extended to 16 bytes
+			byte[] bytes = unscaled.toByteArray();
+			byte sign = (byte) ((unscaled.signum() < 0) ? -1 : 0);
+			for (int i = 0; i < width; i++) {
+				values.putByte((i < bytes.length) ? bytes[bytes.length - 1 - i] : sign);
+			}
+		}
+
+		byte getType() {
+			return TYPE_DECIMAL;
+		}
+
+		Table createTypeTable() {
+			Table type = new Table();
+			type.addInt(0, precision);
+			type.addInt(1, scale);
+			type.addInt(2, 128);
+			return type;
+		}
+	}
+
+	private class DateColumn extends FixedColumn {
+
+		DateColumn(String name) {
+			super(name, 4);
+		}
+
+		void addValue(Object value) throws IOException {
+			long millis = getLocalMillis(toDate(this, value));
+			long days = millis / MILLIS_PER_DAY;
+			if ((millis % MILLIS_PER_DAY) < 0) {
+				days--;
+			}
+			values.putInt((int) days);
+		}
+
+		byte getType() {
+			return TYPE_DATE;
+		}
+
+		Table createTypeTable() {
+			Table type = new Table();
+			type.addShort(0, DATE_UNIT_DAY);
+			return type;
+		}
+	}
+
+	private class TimeColumn extends FixedColumn {
+
+		TimeColumn(String name) {
+			super(name, 4);
+		}
+
+		void addValue(Object value) throws IOException {
+			long millis = getLocalMillis(toDate(this, value)) % MILLIS_PER_DAY;
+			if (millis < 0) {
+				millis += MILLIS_PER_DAY;
+			}
+			values.putInt((int) millis);
+		}
+
+		byte getType() {
+			return TYPE_TIME;
+		}
+
+		Table createTypeTable() {
+			Table type = new Table();
+			type.addShort(0, TIME_UNIT_MILLISECOND);
+			type.addInt(1, 32);
+			return type;
+		}
+	}
+
+	private class TimestampColumn extends FixedColumn {
+
+		TimestampColumn(String name) {
+			super(name, 8);
+		}
+
+		void addValue(Object value) throws IOException {
+			Date date = toDate(this, value);
+			long millis = getLocalMillis(date);
+			long micros = millis * 1000;
+			if (date instanceof Timestamp) {
+				micros += (((Timestamp) date).getNanos() / 1000) % 1000;
+			}
+			values.putLong(micros);
+		}
+
+		byte getType() {
+			return TYPE_TIMESTAMP;
+		}
+
+		Table createTypeTable() {
+			Table type = new Table();
+			type.addShort(0, TIME_UNIT_MICROSECOND);
+			return type;
+		}
+	}
+
+	private static class BoolColumn extends Column {
+
+		final Bits values = new Bits();
+
+		BoolColumn(String name) {
+			super(name);
+		}
+
+		void addNull() {
+			values.size++;
+		}
+
+		void addValue(Object value) throws IOException {
+			boolean b;
+			if (value instanceof Boolean) {
+				b = (Boolean) value;
+			} else {
+				b = toNumber(this, value).intValue() != 0;
+			}
+			if (b) {
+				values.set(values.size);
+			}
+			values.size++;
+		}
+
+		byte getType() {
+			return TYPE_BOOL;
+		}
+
+		Table createTypeTable() {
+			return new Table();
+		}
+
+		void writeData(Body body, int rows) {
+			writeValidity(body, rows);
+			values.ensure(rows);
+			body.addBuffer(values.bytes, (rows + 7) / 8);
+		}
+
+		void clear() {
+			super.clear();
+			values.clear();
+		}
+	}
+
+	private static class BinaryColumn extends Column {
+
+		final LeBuffer offsets = new LeBuffer();
+		final LeBuffer data = new LeBuffer();
+
+		BinaryColumn(String name) {
+			super(name);
+			offsets.putInt(0);
+		}
+
+		void addNull() {
+			offsets.putInt(data.size());
+		}
+
+		void addValue(Object value) throws IOException {
+			byte[] bytes;
+			if (value instanceof byte[]) {
+				bytes = (byte[]) value;
+			} else if (value instanceof Blob) {
+				try {
+					Blob blob = (Blob) value;
+					bytes = blob.getBytes(1, (int) blob.length());
+				} catch (SQLException e) {
+					throw new IOException(e.getMessage());
+				}
+			} else {
+				throw invalidValue(value);
+			}
+			data.put(bytes, 0, bytes.length);
+			offsets.putInt(data.size());
+		}
+
+		byte getType() {
+			return TYPE_BINARY;
+		}
+
+		Table createTypeTable() {
+			return new Table();
+		}
+
+		void writeData(Body body, int rows) {
+			writeValidity(body, rows);
+			body.addBuffer(offsets.bytes, offsets.size());
+			body.addBuffer(data.bytes, data.size());
+		}
+
+		void clear() {
+			super.clear();
+			offsets.clear();
+			data.clear();
+			offsets.putInt(0);
+		}
+	}
+
+	private static class StringColumn extends Column {
+
+		final long dictionaryId;
+		// batch values (null for null values)
+		final List<String> values = new ArrayList<String>();
+		boolean dictionaryEncoded;
+		// dictionary index of all values written
+		final Map<String, Integer> dictionary = new HashMap<String, Integer>();
+		// values added to dictionary since last dictionary batch
+		final List<String> newValues = new ArrayList<String>();
+		boolean dictionaryWritten;
+
+		StringColumn(String name, int index) {
+			super(name);
+			this.dictionaryId = index;
+		}
+
+		void addNull() {
+			values.add(null);
+		}
+
+		void addValue(Object value) throws IOException {
+			if (value instanceof Clob) {
+				try {
+					Clob clob = (Clob) value;
+					values.add(clob.getSubString(1, (int) clob.length()));
+				} catch (SQLException e) {
+					throw new IOException(e.getMessage());
+				}
+			} else {
+				values.add(value.toString());
+			}
+		}
+
+		byte getType() {
+			return TYPE_UTF8;
+		}
+
+		Table createTypeTable() {
+			return new Table();
+		}
+
+		void chooseEncoding(int rows) {
+			Set<String> distinct = new HashSet<String>(values);
+			distinct.remove(null);
+			dictionaryEncoded = (rows > 0) && (distinct.size() * 2 < rows);
+		}
+
+		Table createDictionaryEncoding() {
+			if (!dictionaryEncoded) {
+				return null;
+			}
+			Table encoding = new Table();
+			encoding.addLong(0, dictionaryId);
+			encoding.addOffset(1, createIntType(32));
+			encoding.addBool(2, false);
+			return encoding;
+		}
+
+		void writeDictionaryBatch(ArrowStreamWriter writer) throws IOException {
+			if (!dictionaryEncoded) {
+				return;
+			}
+			for (String value : values) {
+				if ((value != null) && !dictionary.containsKey(value)) {
+					dictionary.put(value, dictionary.size());
+					newValues.add(value);
+				}
+			}
+			if (dictionaryWritten && newValues.isEmpty()) {
+				return;
+			}
+			Body body = new Body();
+			body.addNode(newValues.size(), 0);
+			body.addBuffer(null, 0);
+			writeStrings(body, newValues);
+			Table batch = new Table();
+			batch.addLong(0, dictionaryId);
+			batch.addOffset(1, body.createRecordBatch(newValues.size()));
+			batch.addBool(2, dictionaryWritten);
+			writer.writeMessage(HEADER_DICTIONARY_BATCH, batch, body);
+			dictionaryWritten = true;
+			newValues.clear();
+		}
+
+		void writeData(Body body, int rows) throws IOException {
+			writeValidity(body, rows);
+			if (dictionaryEncoded) {
+				LeBuffer indexes = new LeBuffer();
+				for (String value : values) {
+					indexes.putInt((value == null) ? 0 : dictionary.get(value));
+				}
+				body.addBuffer(indexes.bytes, indexes.size());
+			} else {
+				writeStrings(body, values);
+			}
+		}
+
+		void clear() {
+			super.clear();
+			values.clear();
+		}
+
+		private static void writeStrings(Body body, List<String> strings) throws UnsupportedEncodingException {
+			LeBuffer offsets = new LeBuffer();
+			LeBuffer data = new LeBuffer();
+			offsets.putInt(0);
+			for (String s : strings) {
+				if (s != null) {
+					byte[] bytes = s.getBytes("UTF-8");
+					data.put(bytes, 0, bytes.length);
+				}
+				offsets.putInt(data.size());
+			}
+			body.addBuffer(offsets.bytes, offsets.size());
+			body.addBuffer(data.bytes, data.size());
+		}
+	}
+
+	// ------------------------------------------------------------------------------------------------------
+	// buffers
+
+	// record batch body : field nodes, buffer locations and buffer data (every buffer starts at a multiple of 8)
+	private static class Body {
+
+		final LeBuffer data = new LeBuffer();
+		final LeBuffer nodes = new LeBuffer();
+		final LeBuffer buffers = new LeBuffer();
+		int nodeCount;
+		int bufferCount;
+
+		void addNode(long length, long nullCount) {
+			nodes.putLong(length);
+			nodes.putLong(nullCount);
+			nodeCount++;
+		}
+
+		void addBuffer(byte[] bytes, int length) {
+			data.align(8);
+			buffers.putLong(data.size());
+			buffers.putLong(length);
+			if (length > 0) {
+				data.put(bytes, 0, length);
+			}
+			bufferCount++;
+		}
+
+		Table createRecordBatch(long length) {
+			data.align(8);
+			Table batch = new Table();
+			batch.addLong(0, length);
+			batch.addOffset(1, new StructVector(nodes, nodeCount));
+			batch.addOffset(2, new StructVector(buffers, bufferCount));
+			return batch;
+		}
+	}
+
+	private static class Bits {
+
+		byte[] bytes = new byte[64];
+		int size;
+
+		void set(int index) {
+			ensure(index);
+			bytes[index >> 3] |= 1 << (index & 7);
+		}
+
+		void ensure(int index) {
+			if ((index >> 3) >= bytes.length) {
+				bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, (index >> 3) + 1));
+			}
+		}
+
+		void clear() {
+			Arrays.fill(bytes, (byte) 0);
+			size = 0;
+		}
+	}
+
+	// little endian growable buffer
+	private static class LeBuffer {
+
+		byte[] bytes = new byte[256];
+		private int size;
+
+		int size() {
+			return size;
+		}
+
+		void clear() {
+			size = 0;
+		}
+
+		private void ensure(int n) {
+			if (size + n > bytes.length) {
+				bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + n));
+			}
+		}
+
+		void put(byte[] b, int offset, int length) {
+			ensure(length);
+			System.arraycopy(b, offset, bytes, size, length);
+			size += length;
+		}
+
+		void putByte(int value) {
+			ensure(1);
+			bytes[size++] = (byte) value;
+		}
+
+		void putShort(int value) {
+			ensure(2);
+			bytes[size++] = (byte) value;
+			bytes[size++] = (byte) (value >>> 8);
+		}
+
+		void putInt(int value) {
+			ensure(4);
+			setInt(size, value);
+			size += 4;
+		}
+
+		void putLong(long value) {
+			putInt((int) value);
+			putInt((int) (value >>> 32));
+		}
+
+		void putZeros(int n) {
+			ensure(n);
+			Arrays.fill(bytes, size, size + n, (byte) 0);
+			size += n;
+		}
+
+		void align(int alignment) {
+			int padding = (alignment - size % alignment) % alignment;
+			putZeros(padding);
+		}
+
+		void setInt(int position, int value) {
+			bytes[position] = (byte) value;
+			bytes[position + 1] = (byte) (value >>> 8);
+			bytes[position + 2] = (byte) (value >>> 16);
+			bytes[position + 3] = (byte) (value >>> 24);
+		}
+	}
+
+	// ------------------------------------------------------------------------------------------------------
+	// flatbuffers (only what Arrow metadata needs)
+
+	private static final int KIND_BYTE = 1;
+	private static final int KIND_SHORT = 2;
+	private static final int KIND_INT = 4;
+	private static final int KIND_LONG = 8;
+	private static final int KIND_OFFSET = 0;
+
+	private static class Table {
+
+		final List<Object[]> fields = new ArrayList<Object[]>();
+
+		void addBool(int id, boolean value) {
+			addByte(id, (byte) (value ? 1 : 0));
+		}
+
+		void addByte(int id, byte value) {
+			fields.add(new Object[] { id, KIND_BYTE, (long) value });
+		}
+
+		void addShort(int id, short value) {
+			fields.add(new Object[] { id, KIND_SHORT, (long) value });
+		}
+
+		void addInt(int id, int value) {
+			fields.add(new Object[] { id, KIND_INT, (long) value });
+		}
+
+		void addLong(int id, long value) {
+			fields.add(new Object[] { id, KIND_LONG, value });
+		}
+
+		// value is a Table, a String, a TableVector or a StructVector
+		void addOffset(int id, Object value) {
+			fields.add(new Object[] { id, KIND_OFFSET, value });
+		}
+	}
+
+	private static class TableVector {
+
+		final List<Table> tables;
+
+		TableVector(List<Table> tables) {
+			this.tables = tables;
+		}
+	}
+
+	// vector of structs aligned at 8 bytes
+	private static class StructVector {
+
+		final LeBuffer data;
+		final int count;
+
+		StructVector(LeBuffer data, int count) {
+			this.data = data;
+			this.count = count;
+		}
+	}
+
+	// objects are written after the object which refers them, so all offsets are positive
+	private static class FlatBufferSerializer {
+
+		private final LeBuffer buffer = new LeBuffer();
+
+		byte[] serialize(Table root) {
+			buffer.putInt(0);
+			int position = writeTable(root);
+			buffer.setInt(0, position);
+			return Arrays.copyOf(buffer.bytes, buffer.size());
+		}
+
+		private int writeTable(Table table) {
+			// inline fields after the vtable offset, largest first, every field aligned to its size
+			List<Object[]> fields = new ArrayList<Object[]>(table.fields);
+			int maxId = -1;
+			for (Object[] field : fields) {
+				maxId = Math.max(maxId, (Integer) field[0]);
+			}
+			int[] sizes = new int[fields.size()];
+			for (int i = 0; i < sizes.length; i++) {
+				int kind = (Integer) fields.get(i)[1];
+				sizes[i] = (kind == KIND_OFFSET) ? 4 : kind;
+			}
+			Integer[] order = new Integer[fields.size()];
+			for (int i = 0; i < order.length; i++) {
+				order[i] = i;
+			}
+			final int[] fieldSizes = sizes;
+			Arrays.sort(order, new Comparator<Integer>() {
+				public int compare(Integer a, Integer b) {
+					return fieldSizes[b] - fieldSizes[a];
+				}
+			});
+			int[] fieldOffsets = new int[fields.size()];
+			int inlineSize = 4;
+			for (int i : order) {
+				inlineSize = (inlineSize + sizes[i] - 1) / sizes[i] * sizes[i];
+				fieldOffsets[i] = inlineSize;
+				inlineSize += sizes[i];
+			}
+
+			buffer.align(2);
+			int vtable = buffer.size();
+			buffer.putShort(4 + 2 * (maxId + 1));
+			buffer.putShort(inlineSize);
+			for (int id = 0; id <= maxId; id++) {
+				int offset = 0;
+				for (int i = 0; i < fields.size(); i++) {
+					if ((Integer) fields.get(i)[0] == id) {
+						offset = fieldOffsets[i];
+					}
+				}
+				buffer.putShort(offset);
+			}
+
+			buffer.align(8);
+			int start = buffer.size();
+			buffer.putInt(start - vtable);
+			buffer.putZeros(inlineSize - 4);
+			for (int i = 0; i < fields.size(); i++) {
+				Object[] field = fields.get(i);
+				int kind = (Integer) field[1];
+				int position = start + fieldOffsets[i];
+				if (kind != KIND_OFFSET) {
+					long value = (Long) field[2];
+					for (int b = 0; b < kind; b++) {
+						buffer.bytes[position + b] = (byte) (value >>> (8 * b));
+					}
+				}
+			}
+			for (int i = 0; i < fields.size(); i++) {
+				Object[] field = fields.get(i);
+				if ((Integer) field[1] == KIND_OFFSET) {
+					int position = start + fieldOffsets[i];
+					buffer.setInt(position, writeObject(field[2]) - position);
+				}
+			}
+			return start;
+		}
+
+		private int writeObject(Object object) {
+			if (object instanceof Table) {
+				return writeTable((Table) object);
+			} else if (object instanceof String) {
+				byte[] bytes;
+				try {
+					bytes = ((String) object).getBytes("UTF-8");
+				} catch (UnsupportedEncodingException e) {
+					throw new IllegalStateException(e);
+				}
+				buffer.align(4);
+				int position = buffer.size();
+				buffer.putInt(bytes.length);
+				buffer.put(bytes, 0, bytes.length);
+				buffer.putByte(0);
+				return position;
+			} else if (object instanceof TableVector) {
+				List<Table> tables = ((TableVector) object).tables;
+				buffer.align(4);
+				int position = buffer.size();
+				buffer.putInt(tables.size());
+				buffer.putZeros(4 * tables.size());
+				for (int i = 0; i < tables.size(); i++) {
+					int element = position + 4 + 4 * i;
+					buffer.setInt(element, writeTable(tables.get(i)) - element);
+				}
+				return position;
+			} else {
+				StructVector vector = (StructVector) object;
+				// elements start at a multiple of 8
+				buffer.align(4);
+				if (buffer.size() % 8 == 0) {
+					buffer.putInt(0);
+				}
+				int position = buffer.size();
+				buffer.putInt(vector.count);
+				buffer.put(vector.data.bytes, 0, vector.data.size());
+				return position;
+			}
+		}
+	}
+
+}
@@ -0,0 +1,297 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.nextreports.engine.exporter.util;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import ro.nextreports.engine.EngineProperties;
+import ro.nextreports.engine.RunContext;
+import ro.nextreports.engine.band.ChartBandElement;
+import ro.nextreports.engine.chart.Chart;
+import ro.nextreports.engine.chart.ChartRunner;
+import ro.nextreports.engine.queryexec.ConnectionSupplier;
+import ro.nextreports.engine.util.ObjectCloner;
+
+/**
+ * Renders the images of chart band elements for an exporter.
+ *
+ * A chart with the same size and the same parameter values is rendered only once and its image is
+ * shared by all cells (a rendered chart keeps only its image name). If a ConnectionSupplier is set, charts can be submitted before their cells are
+ * exported : they are rendered on a pool with EngineProperties.getChartThreads() threads, every chart
+ * on its own connection, and the exporter waits for the image only when it writes the cell.
+ * Otherwise charts are rendered when their cells are exported, on the report connection.
+ *
+ * The pool is shared by all renderers and its queue has the same size as the pool : when the queue is full
+ * the chart is rendered by the thread which submits it. A renderer has at most getChartThreads() charts
+ * which are not yet rendered; more charts are rendered when their cells are exported.
+ *
+ * @see EngineProperties#CHART_THREADS_PROPERTY
+ */
+public class ChartImageRenderer {
+
+	private static Log LOG = LogFactory.getLog(ChartImageRenderer.class);
+
+	private static ThreadPoolExecutor executor;
+	// image names must be unique for charts rendered at the same time
+	private static final AtomicLong imageCount = new AtomicLong();
+
+	private Connection connection;
+	private ConnectionSupplier supplier;
+	private int queryTimeout;
+	private RunContext runContext;
+	private String imagePath;
+	// maximum number of submitted charts which are not yet rendered
+	private int maxRunning = EngineProperties.getChartThreads();
+	// charts which are rendered and not yet written
+	private Map<List<Object>, Future<String>> images = new HashMap<List<Object>, Future<String>>();
+	// image names of written charts
+	private Map<List<Object>, String> rendered = new HashMap<List<Object>, String>();
+
+	/**
+	 * @param connection report connection used for charts which were not submitted
+	 * @param supplier supplier of connections for submitted charts (null if charts cannot be submitted)
+	 * @param queryTimeout query timeout
+	 * @param imagePath folder where images are saved
+	 */
+	public ChartImageRenderer(Connection connection, ConnectionSupplier supplier, int queryTimeout,
+			String imagePath) {
+		this.connection = connection;
+		this.supplier = supplier;
+		this.queryTimeout = queryTimeout;
+		this.imagePath = imagePath;
+	}
+
+	/**
+	 * Set the context of report run : charts are not rendered after the run is stopped
+	 *
+	 * @param runContext run context (may be null)
+	 */
+	public void setRunContext(RunContext runContext) {
+		this.runContext = runContext;
+	}
+
+	private static synchronized ThreadPoolExecutor getExecutor() {
+		if (executor == null) {
+			int threads = EngineProperties.getChartThreads();
+			executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+					new ArrayBlockingQueue<Runnable>(threads), new ChartThreadFactory(),
+					new ThreadPoolExecutor.CallerRunsPolicy());
+			executor.allowCoreThreadTimeOut(true);
+		}
+		return executor;
+	}
+
+	/**
+	 * Test if charts can be rendered before their cells are exported
+	 *
+	 * @return true if a connection supplier is set
+	 */
+	public boolean canSubmit() {
+		return supplier != null;
+	}
+
+	/**
+	 * Start rendering the image of a chart band element. Nothing is done if the same chart was
+	 * already submitted or rendered with the same parameter values, if there is no connection supplier
+	 * or if getChartThreads() submitted charts are not yet rendered.
+	 *
+	 * @param bandElement chart band element
+	 * @param parameterValues parameter values
+	 */
+	public void submit(ChartBandElement bandElement, Map<String, Object> parameterValues) {
+		if (supplier == null) {
+			return;
+		}
+		List<Object> key = getKey(bandElement, parameterValues);
+		if (images.containsKey(key) || rendered.containsKey(key) || (getRunningCount() >= maxRunning)) {
+			return;
+		}
+		final Chart chart = bandElement.getChart();
+		final Map<String, Object> values = copy(parameterValues);
+		final int width = getWidth(bandElement);
+		final int height = getHeight(bandElement);
+		images.put(key, getExecutor().submit(new Callable<String>() {
+			public String call() throws Exception {
+				if ((runContext != null) && runContext.isStopped()) {
+					return null;
+				}
+				Connection con = supplier.getConnection();
+				try {
+					return render(con, chart, values, width, height);
+				} finally {
+					supplier.releaseConnection(con);
+				}
+			}
+		}));
+	}
+
+	/**
+	 * Get the image of a chart band element. If the chart was submitted with the same parameter values
+	 * this waits for its image, otherwise the chart is rendered now on report connection.
+	 *
+	 * @param bandElement chart band element
+	 * @param parameterValues parameter values
+	 * @return image name or null if chart could not be rendered
+	 * @throws InterruptedException if current thread is interrupted while waiting
+	 */
+	public String getImage(ChartBandElement bandElement, Map<String, Object> parameterValues)
+			throws InterruptedException {
+		List<Object> key = getKey(bandElement, parameterValues);
+		if (rendered.containsKey(key)) {
+			return rendered.get(key);
+		}
+		Future<String> future = images.remove(key);
+		if (future == null) {
+			if (connection == null) {
+				return null;
+			}
+			final Chart chart = bandElement.getChart();
+			final Map<String, Object> values = copy(parameterValues);
+			final int width = getWidth(bandElement);
+			final int height = getHeight(bandElement);
+			FutureTask<String> task = new FutureTask<String>(new Callable<String>() {
+				public String call() throws Exception {
+					return render(connection, chart, values, width, height);
+				}
+			});
+			task.run();
+			future = task;
+		}
+		String image;
+		try {
+			image = future.get();
+		} catch (InterruptedException ex) {
+			future.cancel(true);
+			throw ex;
+		} catch (ExecutionException ex) {
+			LOG.error(ex.getCause().getMessage(), ex.getCause());
+			image = null;
+		}
+		rendered.put(key, image);
+		return image;
+	}
+
+	/**
+	 * Cancel all charts which are still rendered and forget all images
+	 */
+	public void cancel() {
+		for (Future<String> future : images.values()) {
+			future.cancel(true);
+		}
+		images.clear();
+		rendered.clear();
+	}
+
+	/**
+	 * Get the number of submitted charts whose images were not yet taken with getImage
+	 *
+	 * @return number of pending charts
+	 */
+	public int getPendingCount() {
+		return images.size();
+	}
+
+	private int getRunningCount() {
+		int count = 0;
+		for (Future<String> future : images.values()) {
+			if (!future.isDone()) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	private String render(Connection con, Chart chart, Map<String, Object> values, int width, int height)
+			throws Exception {
+		if ((runContext != null) && runContext.isStopped()) {
+			return null;
+		}
+		ChartRunner runner = new ChartRunner();
+		runner.setFormat(ChartRunner.IMAGE_FORMAT);
+		// chart runner changes the chart (dialect, dynamic columns) : charts rendered at the same time
+		// need their own copy and the chart used in image keys must not change
+		runner.setChart(ObjectCloner.silenceDeepCopy(chart));
+		runner.setConnection(con);
+		runner.setQueryTimeout(queryTimeout);
+		runner.setRunContext(runContext);
+		runner.setParameterValues(values);
+		runner.setImagePath(imagePath);
+		runner.setImageName("chart_" + System.currentTimeMillis() + "_" + imageCount.incrementAndGet() + ".jpg");
+		runner.setImageWidth(width);
+		runner.setImageHeight(height);
+		runner.run();
+		return runner.getChartImageName();
+	}
+
+	private static Map<String, Object> copy(Map<String, Object> parameterValues) {
+		return (parameterValues == null) ? null : new HashMap<String, Object>(parameterValues);
+	}
+
+	// chart, size and parameter values (arrays are compared by content)
+	private static List<Object> getKey(ChartBandElement bandElement, Map<String, Object> parameterValues) {
+		Map<String, Object> values = new TreeMap<String, Object>();
+		if (parameterValues != null) {
+			for (Map.Entry<String, Object> entry : parameterValues.entrySet()) {
+				Object value = entry.getValue();
+				if (value instanceof Object[]) {
+					value = new ArrayList<Object>(Arrays.asList((Object[]) value));
+				}
+				values.put(entry.getKey(), value);
+			}
+		}
+		return Arrays.<Object>asList(bandElement.getChart(), getWidth(bandElement), getHeight(bandElement), values);
+	}
+
+	private static int getWidth(ChartBandElement bandElement) {
+		return (bandElement.getWidth() == null) ? 0 : bandElement.getWidth();
+	}
+
+	private static int getHeight(ChartBandElement bandElement) {
+		return (bandElement.getHeight() == null) ? 0 : bandElement.getHeight();
+	}
+
+	private static class ChartThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger count = new AtomicInteger();
+
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "NextReports-Chart-" + count.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
+	}
+
+}
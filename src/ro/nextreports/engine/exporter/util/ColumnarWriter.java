@@ -0,0 +1,44 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.nextreports.engine.exporter.util;
+
+import java.io.IOException;
+
+/**
+ * Writes result rows in a columnar file format.
+ *
+ * @see ArrowStreamWriter
+ * @see ParquetFileWriter
+ */
+public interface ColumnarWriter {
+
+	/**
+	 * Add a row
+	 *
+	 * @param values row values (one for every column, null for a null value)
+	 * @throws IOException if data cannot be written or a value cannot be converted to column type
+	 */
+	public void write(Object[] values) throws IOException;
+
+	/**
+	 * Write the remaining rows and the end of data. The output stream is flushed.
+	 *
+	 * @throws IOException if data cannot be written
+	 */
+	public void finish() throws IOException;
+
+}
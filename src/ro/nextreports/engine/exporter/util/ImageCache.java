@@ -0,0 +1,285 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.nextreports.engine.exporter.util;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.imageio.ImageIO;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import ro.nextreports.engine.EngineProperties;
+
+/**
+ * Process-wide cache for classpath images used by exporters (image band elements and background images).
+ *
+ * Original and scaled image bytes are kept by (image, width, height) and the least recently used
+ * entries are removed when the total size is greater than EngineProperties.getImageCacheSize().
+ * Returned arrays are shared and must not be modified.
+ */
+public class ImageCache {
+
+	private static Log LOG = LogFactory.getLog(ImageCache.class);
+
+	private static final int BUFFER_SIZE = 8192;
+	private static final int MAX_SIZE_ENTRIES = 1024;
+
+	private static ImageCache instance;
+
+	private final long maxBytes;
+	private long bytes;
+	private final LinkedHashMap<ImageKey, byte[]> images = new LinkedHashMap<ImageKey, byte[]>(16, 0.75f, true);
+	private final Map<String, int[]> sizes = new LinkedHashMap<String, int[]>(16, 0.75f, true) {
+
+		private static final long serialVersionUID = 1L;
+
+		protected boolean removeEldestEntry(Map.Entry<String, int[]> eldest) {
+			return size() > MAX_SIZE_ENTRIES;
+		}
+	};
+
+	public static synchronized ImageCache getInstance() {
+		if (instance == null) {
+			instance = new ImageCache(EngineProperties.getImageCacheSize());
+		}
+		return instance;
+	}
+
+	public ImageCache(long maxBytes) {
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * Get image bytes
+	 *
+	 * @param image image path inside classpath
+	 * @return image bytes
+	 * @throws IOException if image is not found
+	 */
+	public byte[] getImage(String image) throws IOException {
+		ImageKey key = new ImageKey(image, 0, 0);
+		byte[] result = get(key);
+		if (result == null) {
+			result = load(image);
+			put(key, result);
+		}
+		return result;
+	}
+
+	/**
+	 * Add image bytes which are not loaded from classpath (like rendered barcodes)
+	 *
+	 * @param image image name
+	 * @param imageBytes image bytes
+	 */
+	public void putImage(String image, byte[] imageBytes) {
+		put(new ImageKey(image, 0, 0), imageBytes);
+	}
+
+	/**
+	 * Get image bytes only if they are in cache
+	 *
+	 * @param image image name
+	 * @return image bytes or null if image is not in cache
+	 */
+	public byte[] getCachedImage(String image) {
+		return get(new ImageKey(image, 0, 0));
+	}
+
+	/**
+	 * Get image bytes scaled to width and height (png format)
+	 *
+	 * @param image image path inside classpath
+	 * @param width width
+	 * @param height height
+	 * @return scaled image bytes
+	 * @throws IOException if image is not found or cannot be scaled
+	 */
+	public byte[] getScaledImage(String image, int width, int height) throws IOException {
+		ImageKey key = new ImageKey(image, width, height);
+		byte[] result = get(key);
+		if (result == null) {
+			result = scale(image, getImage(image), width, height);
+			put(key, result);
+		}
+		return result;
+	}
+
+	/**
+	 * Get real image size
+	 *
+	 * @param image image path inside classpath
+	 * @return array with image width and height
+	 * @throws IOException if image is not found or cannot be decoded
+	 */
+	public int[] getImageSize(String image) throws IOException {
+		int[] size;
+		synchronized (this) {
+			size = sizes.get(image);
+		}
+		if (size == null) {
+			BufferedImage img = ImageIO.read(new ByteArrayInputStream(getImage(image)));
+			if (img == null) {
+				throw new IOException("Image '" + image + "' could not be read.");
+			}
+			size = new int[] { img.getWidth(), img.getHeight() };
+			synchronized (this) {
+				sizes.put(image, size);
+			}
+		}
+		return new int[] { size[0], size[1] };
+	}
+
+	public synchronized long getSize() {
+		return bytes;
+	}
+
+	public synchronized void clear() {
+		images.clear();
+		sizes.clear();
+		bytes = 0;
+	}
+
+	private synchronized byte[] get(ImageKey key) {
+		return images.get(key);
+	}
+
+	private synchronized void put(ImageKey key, byte[] value) {
+		if (value.length > maxBytes) {
+			return;
+		}
+		byte[] old = images.put(key, value);
+		if (old != null) {
+			bytes -= old.length;
+		}
+		bytes += value.length;
+		for (Iterator<byte[]> it = images.values().iterator(); (bytes > maxBytes) && it.hasNext();) {
+			bytes -= it.next().length;
+			it.remove();
+		}
+	}
+
+	private byte[] load(String image) throws IOException {
+		InputStream is = getClass().getResourceAsStream("/" + image);
+		if (is == null) {
+			LOG.error("Image '" + image + "' not found in classpath.");
+			throw new IOException("Image '" + image + "' not found.");
+		}
+		ByteArrayOutputStream imageBytes = new ByteArrayOutputStream(BUFFER_SIZE);
+		byte[] buffer = new byte[BUFFER_SIZE];
+		int n;
+		try {
+			while ((n = is.read(buffer)) != -1) {
+				imageBytes.write(buffer, 0, n);
+			}
+		} finally {
+			is.close();
+		}
+		return imageBytes.toByteArray();
+	}
+
+	private byte[] scale(String image, byte[] imageBytes, int width, int height) throws IOException {
+		try {
+			return scale(imageBytes, width, height);
+		} catch (IOException ex) {
+			LOG.error(ex.getMessage(), ex);
+			throw new IOException("Image '" + image + "' could not be scaled.");
+		}
+	}
+
+	/**
+	 * Scale image bytes to width and height
+	 *
+	 * @param imageBytes image bytes
+	 * @param width width
+	 * @param height height
+	 * @return scaled image bytes (png format)
+	 * @throws IOException if image cannot be decoded
+	 */
+	public static byte[] scale(byte[] imageBytes, int width, int height) throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		BufferedImage img = ImageIO.read(new ByteArrayInputStream(imageBytes));
+		if (img == null) {
+			throw new IOException("Unknown image format.");
+		}
+
+		if ((img.getWidth() == width) && (img.getHeight() == height)) {
+			// original width and height
+			ImageIO.write(img, "png", baos);
+		} else {
+			int type = img.getType() == 0 ? BufferedImage.TYPE_INT_ARGB : img.getType();
+			BufferedImage scaledImg = new BufferedImage(width, height, type);
+			Graphics2D gScaledImg = scaledImg.createGraphics();
+
+			gScaledImg.setComposite(AlphaComposite.Src);
+			gScaledImg.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+					RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+			gScaledImg.setRenderingHint(RenderingHints.KEY_RENDERING,
+					RenderingHints.VALUE_RENDER_QUALITY);
+
+			gScaledImg.drawImage(img, 0, 0, width, height, null);
+			gScaledImg.dispose();
+
+			ImageIO.write(scaledImg, "png", baos);
+		}
+		return baos.toByteArray();
+	}
+
+	private static class ImageKey {
+
+		private final String image;
+		private final int width;
+		private final int height;
+
+		private ImageKey(String image, int width, int height) {
+			this.image = image;
+			this.width = width;
+			this.height = height;
+		}
+
+		public boolean equals(Object o) {
+			if (this == o) return true;
+			if (o == null || getClass() != o.getClass()) return false;
+
+			ImageKey key = (ImageKey) o;
+
+			if (width != key.width) return false;
+			if (height != key.height) return false;
+			if (image != null ? !image.equals(key.image) : key.image != null) return false;
+
+			return true;
+		}
+
+		public int hashCode() {
+			int result = (image != null ? image.hashCode() : 0);
+			result = 31 * result + width;
+			result = 31 * result + height;
+			return result;
+		}
+	}
+}
@@ -0,0 +1,192 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.nextreports.engine.exporter.util;
+
+import java.io.Serializable;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import ro.nextreports.engine.exporter.Alert;
+import ro.nextreports.engine.exporter.util.function.AbstractGFunction;
+
+/**
+ * State kept between incremental runs of an ALARM or INDICATOR report.
+ *
+ * The report sql must use a parameter to select only the rows newer than a high-water mark, like
+ * <code>where id > ${lastId}</code>. The value of the mark column from the last exported row is
+ * kept here and it is used as parameter value by the next run. The first run uses the parameter
+ * value set by the user.
+ *
+ * Data from previous run is kept if the next run does not find new rows. An alert is run only
+ * when it becomes active (it was not active for the previous exported row).
+ *
+ * The INDICATOR value of the new rows is merged into the previous value with the aggregate function
+ * of the indicator column : SUM and COUNT values are added, MIN and MAX values are compared.
+ * An indicator with another function (or with a select which is not a single aggregate row) cannot
+ * be merged and all its runs are full runs.
+ *
+ * The same state object must be used for all runs of a report.
+ */
+public class IncrementalState implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private String markColumn;
+	private String markParameter;
+	private Object mark;
+	private AlarmData alarmData;
+	private IndicatorData indicatorData;
+	private String indicatorFunction;
+	// alerts are compared by identity : an alert object belongs to a single run configuration
+	private transient Map<Alert, Boolean> activeAlerts;
+
+	/**
+	 * @param markColumn monotonic column (timestamp, id) read from report result
+	 * @param markParameter report parameter used in sql to select only new rows
+	 */
+	public IncrementalState(String markColumn, String markParameter) {
+		if ((markColumn == null) || (markParameter == null)) {
+			throw new IllegalArgumentException("Mark column and mark parameter are mandatory!");
+		}
+		this.markColumn = markColumn;
+		this.markParameter = markParameter;
+	}
+
+	public String getMarkColumn() {
+		return markColumn;
+	}
+
+	public String getMarkParameter() {
+		return markParameter;
+	}
+
+	/**
+	 * Get high-water mark
+	 *
+	 * @return last mark column value or null if no row was exported yet
+	 */
+	public Object getMark() {
+		return mark;
+	}
+
+	public void setMark(Object mark) {
+		this.mark = mark;
+	}
+
+	/**
+	 * Keep a new value of the mark column. Values which are not greater than the current mark are ignored.
+	 *
+	 * @param value mark column value
+	 */
+	@SuppressWarnings("unchecked")
+	public void updateMark(Object value) {
+		if (value == null) {
+			return;
+		}
+		if ((mark == null) || !(value instanceof Comparable) || !mark.getClass().equals(value.getClass())
+				|| (((Comparable<Object>) value).compareTo(mark) > 0)) {
+			mark = value;
+		}
+	}
+
+	public AlarmData getAlarmData() {
+		return alarmData;
+	}
+
+	public void setAlarmData(AlarmData alarmData) {
+		this.alarmData = alarmData;
+	}
+
+	public IndicatorData getIndicatorData() {
+		return indicatorData;
+	}
+
+	public void setIndicatorData(IndicatorData indicatorData) {
+		this.indicatorData = indicatorData;
+	}
+
+	/**
+	 * Get the aggregate function of the indicator value
+	 *
+	 * @return AbstractGFunction.SUM, COUNT, MIN, MAX, other function name or null if function is not known
+	 */
+	public String getIndicatorFunction() {
+		return indicatorFunction;
+	}
+
+	/**
+	 * Set the aggregate function of the indicator value. If it is not set, the runner finds it
+	 * in the report sql (the function of the indicator column).
+	 *
+	 * @param indicatorFunction AbstractGFunction.SUM, COUNT, MIN, MAX or other function name
+	 */
+	public void setIndicatorFunction(String indicatorFunction) {
+		this.indicatorFunction = indicatorFunction;
+	}
+
+	/**
+	 * See if indicator value of new rows can be merged into previous value
+	 *
+	 * @return true if indicator function is SUM, COUNT, MIN or MAX
+	 */
+	public boolean isIndicatorMergeable() {
+		return AbstractGFunction.SUM.equals(indicatorFunction) || AbstractGFunction.COUNT.equals(indicatorFunction)
+				|| AbstractGFunction.MIN.equals(indicatorFunction) || AbstractGFunction.MAX.equals(indicatorFunction);
+	}
+
+	/**
+	 * Merge the indicator value of new rows into previous value
+	 *
+	 * @param previous previous value
+	 * @param value value of new rows
+	 * @return merged value
+	 */
+	public double mergeIndicatorValue(double previous, double value) {
+		if (AbstractGFunction.MIN.equals(indicatorFunction)) {
+			return Math.min(previous, value);
+		} else if (AbstractGFunction.MAX.equals(indicatorFunction)) {
+			return Math.max(previous, value);
+		}
+		return previous + value;
+	}
+
+	/**
+	 * Record the state of an alert for current row
+	 *
+	 * @param alert alert
+	 * @param active true if alert is active for current row
+	 * @return true if alert was not active for previous row and it is active now
+	 */
+	public boolean changeAlertState(Alert alert, boolean active) {
+		if (activeAlerts == null) {
+			activeAlerts = new IdentityHashMap<Alert, Boolean>();
+		}
+		Boolean previous = activeAlerts.put(alert, active);
+		return active && !Boolean.TRUE.equals(previous);
+	}
+
+	/**
+	 * Forget the mark, the data and the alert states. Next run will be a full run.
+	 */
+	public void reset() {
+		mark = null;
+		alarmData = null;
+		indicatorData = null;
+		activeAlerts = null;
+	}
+
+}
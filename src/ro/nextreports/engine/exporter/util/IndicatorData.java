@@ -46,6 +46,19 @@ public class IndicatorData implements Serializable {
 		value = 0;
 	}
 
+	public IndicatorData(IndicatorData data) {
+		super();
+		title = data.title;
+		description = data.description;
+		unit = data.unit;
+		min = data.min;
+		max = data.max;
+		showMinMax = data.showMinMax;
+		color = data.color;
+		background = data.background;
+		value = data.value;
+	}
+
 	public void setTitle(String title) {
 		this.title = title;
 	}
@@ -0,0 +1,1049 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.nextreports.engine.exporter.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes rows in Apache Parquet format (format version 1, data pages v1, no compression), without
+ * the Parquet libraries. The file can be read with pyarrow.parquet, pandas, Spark or any Parquet reader.
+ *
+ * Rows are written in row groups of rowGroupRows rows, every column of a row group in a single page.
+ * Column types are taken from jdbc types :
+ *
+ * <pre>
+ *   TINYINT, SMALLINT, INTEGER        INT32
+ *   BIGINT                            INT64
+ *   REAL, FLOAT, DOUBLE               DOUBLE
+ *   NUMERIC, DECIMAL                  DECIMAL (column precision and scale) stored as INT32, INT64 or
+ *                                     FIXED_LEN_BYTE_ARRAY(16); DOUBLE if the precision is not known
+ *                                     or is greater than 38
+ *   BIT, BOOLEAN                      BOOLEAN
+ *   DATE                              INT32 DATE
+ *   TIME                              INT32 TIME (milliseconds, not adjusted to UTC)
+ *   TIMESTAMP                         INT64 TIMESTAMP (microseconds, not adjusted to UTC)
+ *   BINARY, VARBINARY, LONGVARBINARY,
+ *   BLOB                              BYTE_ARRAY
+ *   others                            BYTE_ARRAY STRING
+ * </pre>
+ *
+ * Dates, times and timestamps are written as local wall clock values. The page of a STRING column is
+ * dictionary encoded if less than half of its values are distinct. All columns are optional : nulls are
+ * written as definition levels.
+ */
+public class ParquetFileWriter implements ColumnarWriter {
+
+	private static final byte[] MAGIC = { 'P', 'A', 'R', '1' };
+
+	// physical types
+	private static final int TYPE_BOOLEAN = 0;
+	private static final int TYPE_INT32 = 1;
+	private static final int TYPE_INT64 = 2;
+	private static final int TYPE_DOUBLE = 5;
+	private static final int TYPE_BYTE_ARRAY = 6;
+	private static final int TYPE_FIXED_LEN_BYTE_ARRAY = 7;
+
+	// converted types
+	private static final int CONVERTED_UTF8 = 0;
+	private static final int CONVERTED_DECIMAL = 5;
+	private static final int CONVERTED_DATE = 6;
+
+	// logical types (union field ids)
+	private static final int LOGICAL_STRING = 1;
+	private static final int LOGICAL_DECIMAL = 5;
+	private static final int LOGICAL_DATE = 6;
+	private static final int LOGICAL_TIME = 7;
+	private static final int LOGICAL_TIMESTAMP = 8;
+
+	// time units (union field ids)
+	private static final int UNIT_MILLIS = 1;
+	private static final int UNIT_MICROS = 2;
+
+	private static final int REPETITION_REQUIRED = 0;
+	private static final int REPETITION_OPTIONAL = 1;
+
+	// encodings
+	private static final int ENCODING_PLAIN = 0;
+	private static final int ENCODING_PLAIN_DICTIONARY = 2;
+	private static final int ENCODING_RLE = 3;
+
+	private static final int PAGE_DATA = 0;
+	private static final int PAGE_DICTIONARY = 2;
+
+	private static final int CODEC_UNCOMPRESSED = 0;
+
+	private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+	private static final int MAX_DECIMAL_PRECISION = 38;
+
+	private final OutputStream out;
+	private final Column[] columns;
+	private final int rowGroupRows;
+	private final Calendar calendar = Calendar.getInstance();
+	// bytes written to out
+	private long position;
+	private int rows;
+	private long totalRows;
+	private final List<ThriftStruct> rowGroups = new ArrayList<ThriftStruct>();
+	private boolean started;
+
+	/**
+	 * @param out output stream (not closed by this writer)
+	 * @param names column names
+	 * @param sqlTypes column jdbc types (java.sql.Types)
+	 * @param precisions precision of NUMERIC and DECIMAL columns (0 if not known)
+	 * @param scales scale of NUMERIC and DECIMAL columns
+	 * @param rowGroupRows maximum number of rows in a row group
+	 */
+	public ParquetFileWriter(OutputStream out, String[] names, int[] sqlTypes, int[] precisions, int[] scales,
+			int rowGroupRows) {
+		this.out = out;
+		this.rowGroupRows = Math.max(1, rowGroupRows);
+		columns = new Column[names.length];
+		for (int i = 0; i < names.length; i++) {
+			columns[i] = createColumn(names[i], sqlTypes[i], precisions[i], scales[i]);
+		}
+	}
+
+	/**
+	 * Add a row. A row group is written when it has rowGroupRows rows.
+	 *
+	 * @param values row values (one for every column, null for a null value)
+	 * @throws IOException if row group cannot be written or a value cannot be converted to column type
+	 */
+	public void write(Object[] values) throws IOException {
+		for (int i = 0; i < columns.length; i++) {
+			columns[i].add(values[i]);
+		}
+		rows++;
+		if (rows == rowGroupRows) {
+			writeRowGroup();
+		}
+	}
+
+	/**
+	 * Write the remaining rows and the file footer. The output stream is flushed.
+	 *
+	 * @throws IOException if stream cannot be written
+	 */
+	public void finish() throws IOException {
+		if (rows > 0) {
+			writeRowGroup();
+		}
+		start();
+		ThriftWriter footer = new ThriftWriter();
+		footer.writeStruct(createFileMetaData());
+		write(footer.buffer.bytes, footer.buffer.size());
+		LeBuffer length = new LeBuffer();
+		length.putInt(footer.buffer.size());
+		write(length.bytes, length.size());
+		write(MAGIC, MAGIC.length);
+		out.flush();
+	}
+
+	private Column createColumn(String name, int sqlType, int precision, int scale) {
+		switch (sqlType) {
+			case Types.TINYINT:
+			case Types.SMALLINT:
+			case Types.INTEGER:
+				return new IntColumn(name, TYPE_INT32);
+			case Types.BIGINT:
+				return new IntColumn(name, TYPE_INT64);
+			case Types.REAL:
+			case Types.FLOAT:
+			case Types.DOUBLE:
+				return new DoubleColumn(name);
+			case Types.NUMERIC:
+			case Types.DECIMAL:
+				if ((precision < 1) || (precision > MAX_DECIMAL_PRECISION) || (scale < 0) || (scale > precision)) {
+					return new DoubleColumn(name);
+				}
+				return new DecimalColumn(name, precision, scale);
+			case Types.BIT:
+			case Types.BOOLEAN:
+				return new BoolColumn(name);
+			case Types.DATE:
+				return new DateColumn(name);
+			case Types.TIME:
+				return new TimeColumn(name);
+			case Types.TIMESTAMP:
+				return new TimestampColumn(name);
+			case Types.BINARY:
+			case Types.VARBINARY:
+			case Types.LONGVARBINARY:
+			case Types.BLOB:
+				return new BinaryColumn(name);
+			default:
+				return new StringColumn(name);
+		}
+	}
+
+	private void start() throws IOException {
+		if (!started) {
+			write(MAGIC, MAGIC.length);
+			started = true;
+		}
+	}
+
+	private void write(byte[] bytes, int length) throws IOException {
+		out.write(bytes, 0, length);
+		position += length;
+	}
+
+	private void writeRowGroup() throws IOException {
+		start();
+		List<ThriftStruct> chunks = new ArrayList<ThriftStruct>();
+		long size = 0;
+		for (Column column : columns) {
+			long chunkStart = position;
+			ThriftStruct metadata = column.writeChunk(this, rows);
+			size += position - chunkStart;
+			ThriftStruct chunk = new ThriftStruct();
+			chunk.addLong(2, chunkStart);
+			chunk.addStruct(3, metadata);
+			chunks.add(chunk);
+			column.clear();
+		}
+		ThriftStruct rowGroup = new ThriftStruct();
+		rowGroup.addList(1, ThriftWriter.STRUCT, chunks);
+		rowGroup.addLong(2, size);
+		rowGroup.addLong(3, rows);
+		rowGroups.add(rowGroup);
+		totalRows += rows;
+		rows = 0;
+	}
+
+	// writes a page with its header, returns the page offset
+	private long writePage(ThriftStruct header, LeBuffer data) throws IOException {
+		long offset = position;
+		ThriftWriter writer = new ThriftWriter();
+		writer.writeStruct(header);
+		write(writer.buffer.bytes, writer.buffer.size());
+		write(data.bytes, data.size());
+		return offset;
+	}
+
+	private ThriftStruct createFileMetaData() {
+		List<ThriftStruct> schema = new ArrayList<ThriftStruct>();
+		ThriftStruct root = new ThriftStruct();
+		root.addInt(3, REPETITION_REQUIRED);
+		root.addString(4, "schema");
+		root.addInt(5, columns.length);
+		schema.add(root);
+		for (Column column : columns) {
+			schema.add(column.createSchemaElement());
+		}
+		ThriftStruct metadata = new ThriftStruct();
+		metadata.addInt(1, 1);
+		metadata.addList(2, ThriftWriter.STRUCT, schema);
+		metadata.addLong(3, totalRows);
+		metadata.addList(4, ThriftWriter.STRUCT, rowGroups);
+		metadata.addString(6, "NextReports");
+		return metadata;
+	}
+
+	// wall clock time of a date as milliseconds from epoch in UTC
+	private long getLocalMillis(Date date) {
+		calendar.setTime(date);
+		return date.getTime() + calendar.get(Calendar.ZONE_OFFSET) + calendar.get(Calendar.DST_OFFSET);
+	}
+
+	private static Number toNumber(Column column, Object value) throws IOException {
+		if (value instanceof Number) {
+			return (Number) value;
+		}
+		if (value instanceof Boolean) {
+			return ((Boolean) value) ? 1 : 0;
+		}
+		try {
+			return new BigDecimal(value.toString().trim());
+		} catch (NumberFormatException e) {
+			throw column.invalidValue(value);
+		}
+	}
+
+	private static Date toDate(Column column, Object value) throws IOException {
+		if (value instanceof Date) {
+			return (Date) value;
+		}
+		throw column.invalidValue(value);
+	}
+
+	private static ThriftStruct createTimeUnit(int unit) {
+		ThriftStruct timeUnit = new ThriftStruct();
+		timeUnit.addStruct(unit, new ThriftStruct());
+		return timeUnit;
+	}
+
+	// number of bits needed for values from 0 to max
+	private static int getBitWidth(int max) {
+		return Math.max(1, 32 - Integer.numberOfLeadingZeros(max));
+	}
+
+	// ------------------------------------------------------------------------------------------------------
+	// columns
+
+	private abstract static class Column {
+
+		final String name;
+		// definition level of every row (1 for a value, 0 for null)
+		int[] definitionLevels = new int[64];
+		int count;
+		int nulls;
+
+		Column(String name) {
+			this.name = name;
+		}
+
+		void add(Object value) throws IOException {
+			if (count == definitionLevels.length) {
+				definitionLevels = Arrays.copyOf(definitionLevels, count * 2);
+			}
+			if (value == null) {
+				nulls++;
+				definitionLevels[count++] = 0;
+			} else {
+				addValue(value);
+				definitionLevels[count++] = 1;
+			}
+		}
+
+		abstract void addValue(Object value) throws IOException;
+
+		abstract int getType();
+
+		// schema element with type, repetition and name set
+		ThriftStruct createSchemaElement() {
+			ThriftStruct element = new ThriftStruct();
+			element.addInt(1, getType());
+			element.addInt(3, REPETITION_OPTIONAL);
+			element.addString(4, name);
+			return element;
+		}
+
+		// plain encoded non null values
+		abstract LeBuffer getPlainValues() throws IOException;
+
+		// writes column chunk pages and returns column metadata
+		ThriftStruct writeChunk(ParquetFileWriter writer, int rows) throws IOException {
+			LeBuffer data = new LeBuffer();
+			writeDefinitionLevels(data);
+			LeBuffer values = getPlainValues();
+			data.put(values.bytes, 0, values.size());
+			long offset = writer.writePage(createDataPageHeader(rows, ENCODING_PLAIN, data.size()), data);
+			return createColumnMetaData(rows, writer.position - offset, offset, -1,
+					ENCODING_PLAIN, ENCODING_RLE);
+		}
+
+		void writeDefinitionLevels(LeBuffer data) {
+			LeBuffer levels = new LeBuffer();
+			RleEncoder.encode(definitionLevels, count, 1, levels);
+			data.putInt(levels.size());
+			data.put(levels.bytes, 0, levels.size());
+		}
+
+		ThriftStruct createDataPageHeader(int rows, int encoding, int size) {
+			ThriftStruct dataPage = new ThriftStruct();
+			dataPage.addInt(1, rows);
+			dataPage.addInt(2, encoding);
+			dataPage.addInt(3, ENCODING_RLE);
+			dataPage.addInt(4, ENCODING_RLE);
+			ThriftStruct header = new ThriftStruct();
+			header.addInt(1, PAGE_DATA);
+			header.addInt(2, size);
+			header.addInt(3, size);
+			header.addStruct(5, dataPage);
+			return header;
+		}
+
+		ThriftStruct createColumnMetaData(int rows, long size, long dataOffset, long dictionaryOffset,
+				int... encodings) {
+			List<Integer> encodingList = new ArrayList<Integer>();
+			for (int encoding : encodings) {
+				encodingList.add(encoding);
+			}
+			List<String> path = new ArrayList<String>();
+			path.add(name);
+			ThriftStruct metadata = new ThriftStruct();
+			metadata.addInt(1, getType());
+			metadata.addList(2, ThriftWriter.I32, encodingList);
+			metadata.addList(3, ThriftWriter.BINARY, path);
+			metadata.addInt(4, CODEC_UNCOMPRESSED);
+			metadata.addLong(5, rows);
+			metadata.addLong(6, size);
+			metadata.addLong(7, size);
+			metadata.addLong(9, dataOffset);
+			if (dictionaryOffset >= 0) {
+				metadata.addLong(11, dictionaryOffset);
+			}
+			return metadata;
+		}
+
+		void clear() {
+			count = 0;
+			nulls = 0;
+		}
+
+		IOException invalidValue(Object value) {
+			return new IOException("Value " + value + " (" + value.getClass().getName() +
+					") cannot be written in column " + name);
+		}
+	}
+
+	private abstract static class PlainColumn extends Column {
+
+		final LeBuffer values = new LeBuffer();
+
+		PlainColumn(String name) {
+			super(name);
+		}
+
+		LeBuffer getPlainValues() {
+			return values;
+		}
+
+		void clear() {
+			super.clear();
+			values.clear();
+		}
+	}
+
+	private static class IntColumn extends PlainColumn {
+
+		final int type;
+
+		IntColumn(String name, int type) {
+			super(name);
+			this.type = type;
+		}
+
+		void addValue(Object value) throws IOException {
+			Number number = toNumber(this, value);
+			if (type == TYPE_INT32) {
+				values.putInt(number.intValue());
+			} else {
+				values.putLong(number.longValue());
+			}
+		}
+
+		int getType() {
+			return type;
+		}
+	}
+
+	private static class DoubleColumn extends PlainColumn {
+
+		DoubleColumn(String name) {
+			super(name);
+		}
+
+		void addValue(Object value) throws IOException {
+			values.putLong(Double.doubleToLongBits(toNumber(this, value).doubleValue()));
+		}
+
+		int getType() {
+			return TYPE_DOUBLE;
+		}
+	}
+
+	// unscaled value as INT32 (precision up to 9), INT64 (up to 18) or 16 bytes big endian two's complement
+	private static class DecimalColumn extends PlainColumn {
+
+		final int precision;
+		final int scale;
+
+		DecimalColumn(String name, int precision, int scale) {
+			super(name);
+			this.precision = precision;
+			this.scale = scale;
+		}
+
+		void addValue(Object value) throws IOException {
+			Number number = toNumber(this, value);
+			BigDecimal decimal;
+			if (number instanceof BigDecimal) {
+				decimal = (BigDecimal) number;
+			} else if ((number instanceof Double) || (number instanceof Float)) {
+				decimal = BigDecimal.valueOf(number.doubleValue());
+			} else if (number instanceof BigInteger) {
+				decimal = new BigDecimal((BigInteger) number);
+			} else {
+				decimal = BigDecimal.valueOf(number.longValue());
+			}
+			BigInteger unscaled = decimal.setScale(scale, RoundingMode.HALF_UP).unscaledValue();
+			if (unscaled.abs().toString().length() > precision) {
+				throw invalidValue(value);
+			}
+			if (precision <= 9) {
+				values.putInt(unscaled.intValue());
+			} else if (precision <= 18) {
+				values.putLong(unscaled.longValue());
+			} else {
+				byte[] bytes = unscaled.toByteArray();
+				byte sign = (byte) ((unscaled.signum() < 0) ? -1 : 0);
+				for (int i = bytes.length; i < 16; i++) {
+					values.putByte(sign);
+				}
+				values.put(bytes, 0, bytes.length);
+			}
+		}
+
+		int getType() {
+			if (precision <= 9) {
+				return TYPE_INT32;
+			} else if (precision <= 18) {
+				return TYPE_INT64;
+			}
+			return TYPE_FIXED_LEN_BYTE_ARRAY;
+		}
+
+		ThriftStruct createSchemaElement() {
+			ThriftStruct element = super.createSchemaElement();
+			if (getType() == TYPE_FIXED_LEN_BYTE_ARRAY) {
+				element.addInt(2, 16);
+			}
+			element.addInt(6, CONVERTED_DECIMAL);
+			element.addInt(7, scale);
+			element.addInt(8, precision);
+			ThriftStruct decimal = new ThriftStruct();
+			decimal.addInt(1, scale);
+			decimal.addInt(2, precision);
+			ThriftStruct logicalType = new ThriftStruct();
+			logicalType.addStruct(LOGICAL_DECIMAL, decimal);
+			element.addStruct(10, logicalType);
+			return element;
+		}
+	}
+
+	private class DateColumn extends PlainColumn {
+
+		DateColumn(String name) {
+			super(name);
+		}
+
+		void addValue(Object value) throws IOException {
+			long millis = getLocalMillis(toDate(this, value));
+			long days = millis / MILLIS_PER_DAY;
+			if ((millis % MILLIS_PER_DAY) < 0) {
+				days--;
+			}
+			values.putInt((int) days);
+		}
+
+		int getType() {
+			return TYPE_INT32;
+		}
+
+		ThriftStruct createSchemaElement() {
+			ThriftStruct element = super.createSchemaElement();
+			element.addInt(6, CONVERTED_DATE);
+			ThriftStruct logicalType = new ThriftStruct();
+			logicalType.addStruct(LOGICAL_DATE, new ThriftStruct());
+			element.addStruct(10, logicalType);
+			return element;
+		}
+	}
+
+	private class TimeColumn extends PlainColumn {
+
+		TimeColumn(String name) {
+			super(name);
+		}
+
+		void addValue(Object value) throws IOException {
+			long millis = getLocalMillis(toDate(this, value)) % MILLIS_PER_DAY;
+			if (millis < 0) {
+				millis += MILLIS_PER_DAY;
+			}
+			values.putInt((int) millis);
+		}
+
+		int getType() {
+			return TYPE_INT32;
+		}
+
+		// no converted type : TIME_MILLIS means a time adjusted to UTC
+		ThriftStruct createSchemaElement() {
+			ThriftStruct element = super.createSchemaElement();
+			ThriftStruct time = new ThriftStruct();
+			time.addBool(1, false);
+			time.addStruct(2, createTimeUnit(UNIT_MILLIS));
+			ThriftStruct logicalType = new ThriftStruct();
+			logicalType.addStruct(LOGICAL_TIME, time);
+			element.addStruct(10, logicalType);
+			return element;
+		}
+	}
+
+	private class TimestampColumn extends PlainColumn {
+
+		TimestampColumn(String name) {
+			super(name);
+		}
+
+		void addValue(Object value) throws IOException {
+			Date date = toDate(this, value);
+			long micros = getLocalMillis(date) * 1000;
+			if (date instanceof Timestamp) {
+				micros += (((Timestamp) date).getNanos() / 1000) % 1000;
+			}
+			values.putLong(micros);
+		}
+
+		int getType() {
+			return TYPE_INT64;
+		}
+
+		// no converted type : TIMESTAMP_MICROS means a timestamp adjusted to UTC
+		ThriftStruct createSchemaElement() {
+			ThriftStruct element = super.createSchemaElement();
+			ThriftStruct timestamp = new ThriftStruct();
+			timestamp.addBool(1, false);
+			timestamp.addStruct(2, createTimeUnit(UNIT_MICROS));
+			ThriftStruct logicalType = new ThriftStruct();
+			logicalType.addStruct(LOGICAL_TIMESTAMP, timestamp);
+			element.addStruct(10, logicalType);
+			return element;
+		}
+	}
+
+	// values are bit packed
+	private static class BoolColumn extends Column {
+
+		final Bits values = new Bits();
+
+		BoolColumn(String name) {
+			super(name);
+		}
+
+		void addValue(Object value) throws IOException {
+			boolean b;
+			if (value instanceof Boolean) {
+				b = (Boolean) value;
+			} else {
+				b = toNumber(this, value).intValue() != 0;
+			}
+			if (b) {
+				values.set(values.size);
+			}
+			values.size++;
+		}
+
+		int getType() {
+			return TYPE_BOOLEAN;
+		}
+
+		LeBuffer getPlainValues() {
+			LeBuffer buffer = new LeBuffer();
+			values.ensure(values.size);
+			buffer.put(values.bytes, 0, (values.size + 7) / 8);
+			return buffer;
+		}
+
+		void clear() {
+			super.clear();
+			values.clear();
+		}
+	}
+
+	private static class BinaryColumn extends PlainColumn {
+
+		BinaryColumn(String name) {
+			super(name);
+		}
+
+		void addValue(Object value) throws IOException {
+			byte[] bytes;
+			if (value instanceof byte[]) {
+				bytes = (byte[]) value;
+			} else if (value instanceof Blob) {
+				try {
+					Blob blob = (Blob) value;
+					bytes = blob.getBytes(1, (int) blob.length());
+				} catch (SQLException e) {
+					throw new IOException(e.getMessage());
+				}
+			} else {
+				throw invalidValue(value);
+			}
+			values.putInt(bytes.length);
+			values.put(bytes, 0, bytes.length);
+		}
+
+		int getType() {
+			return TYPE_BYTE_ARRAY;
+		}
+	}
+
+	private static class StringColumn extends Column {
+
+		// non null values of the row group
+		final List<String> values = new ArrayList<String>();
+
+		StringColumn(String name) {
+			super(name);
+		}
+
+		void addValue(Object value) throws IOException {
+			if (value instanceof Clob) {
+				try {
+					Clob clob = (Clob) value;
+					values.add(clob.getSubString(1, (int) clob.length()));
+				} catch (SQLException e) {
+					throw new IOException(e.getMessage());
+				}
+			} else {
+				values.add(value.toString());
+			}
+		}
+
+		int getType() {
+			return TYPE_BYTE_ARRAY;
+		}
+
+		ThriftStruct createSchemaElement() {
+			ThriftStruct element = super.createSchemaElement();
+			element.addInt(6, CONVERTED_UTF8);
+			ThriftStruct logicalType = new ThriftStruct();
+			logicalType.addStruct(LOGICAL_STRING, new ThriftStruct());
+			element.addStruct(10, logicalType);
+			return element;
+		}
+
+		LeBuffer getPlainValues() throws UnsupportedEncodingException {
+			return getPlainValues(values);
+		}
+
+		ThriftStruct writeChunk(ParquetFileWriter writer, int rows) throws IOException {
+			Map<String, Integer> dictionary = new HashMap<String, Integer>();
+			List<String> dictionaryValues = new ArrayList<String>();
+			int[] indexes = new int[values.size()];
+			for (int i = 0; i < indexes.length; i++) {
+				String value = values.get(i);
+				Integer index = dictionary.get(value);
+				if (index == null) {
+					index = dictionary.size();
+					dictionary.put(value, index);
+					dictionaryValues.add(value);
+				}
+				indexes[i] = index;
+			}
+			if ((indexes.length == 0) || (dictionary.size() * 2 >= indexes.length)) {
+				return super.writeChunk(writer, rows);
+			}
+
+			LeBuffer dictionaryData = getPlainValues(dictionaryValues);
+			ThriftStruct dictionaryPage = new ThriftStruct();
+			dictionaryPage.addInt(1, dictionaryValues.size());
+			dictionaryPage.addInt(2, ENCODING_PLAIN_DICTIONARY);
+			ThriftStruct dictionaryHeader = new ThriftStruct();
+			dictionaryHeader.addInt(1, PAGE_DICTIONARY);
+			dictionaryHeader.addInt(2, dictionaryData.size());
+			dictionaryHeader.addInt(3, dictionaryData.size());
+			dictionaryHeader.addStruct(7, dictionaryPage);
+			long dictionaryOffset = writer.writePage(dictionaryHeader, dictionaryData);
+
+			LeBuffer data = new LeBuffer();
+			writeDefinitionLevels(data);
+			int bitWidth = getBitWidth(dictionaryValues.size() - 1);
+			data.putByte(bitWidth);
+			RleEncoder.encode(indexes, indexes.length, bitWidth, data);
+			long dataOffset = writer.writePage(createDataPageHeader(rows, ENCODING_PLAIN_DICTIONARY, data.size()), data);
+			return createColumnMetaData(rows, writer.position - dictionaryOffset, dataOffset, dictionaryOffset,
+					ENCODING_PLAIN_DICTIONARY, ENCODING_RLE);
+		}
+
+		void clear() {
+			super.clear();
+			values.clear();
+		}
+
+		private static LeBuffer getPlainValues(List<String> strings) throws UnsupportedEncodingException {
+			LeBuffer buffer = new LeBuffer();
+			for (String s : strings) {
+				byte[] bytes = s.getBytes("UTF-8");
+				buffer.putInt(bytes.length);
+				buffer.put(bytes, 0, bytes.length);
+			}
+			return buffer;
+		}
+	}
+
+	// ------------------------------------------------------------------------------------------------------
+	// encodings
+
+	// RLE / bit packing hybrid encoding : runs of at least 8 equal values are run length encoded,
+	// the other values are bit packed in groups of 8
+	private static class RleEncoder {
+
+		static void encode(int[] values, int count, int bitWidth, LeBuffer out) {
+			int byteWidth = (bitWidth + 7) / 8;
+			int i = 0;
+			while (i < count) {
+				int run = getRunLength(values, count, i);
+				if (run >= 8) {
+					putVarInt(out, run << 1);
+					for (int b = 0; b < byteWidth; b++) {
+						out.putByte(values[i] >>> (8 * b));
+					}
+					i += run;
+					continue;
+				}
+				// groups of 8 values until a long run starts
+				int start = i;
+				do {
+					i += 8;
+				} while ((i < count) && (getRunLength(values, count, i) < 8));
+				int groups = (i - start) / 8;
+				putVarInt(out, (groups << 1) | 1);
+				long buffer = 0;
+				int bits = 0;
+				for (int k = start; k < i; k++) {
+					int value = (k < count) ? values[k] : 0;
+					buffer |= ((long) value) << bits;
+					bits += bitWidth;
+					while (bits >= 8) {
+						out.putByte((int) buffer);
+						buffer >>>= 8;
+						bits -= 8;
+					}
+				}
+			}
+		}
+
+		private static int getRunLength(int[] values, int count, int start) {
+			int end = start + 1;
+			while ((end < count) && (values[end] == values[start])) {
+				end++;
+			}
+			return end - start;
+		}
+	}
+
+	private static void putVarInt(LeBuffer out, long value) {
+		while ((value & ~0x7FL) != 0) {
+			out.putByte((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.putByte((int) value);
+	}
+
+	// ------------------------------------------------------------------------------------------------------
+	// buffers
+
+	private static class Bits {
+
+		byte[] bytes = new byte[64];
+		int size;
+
+		void set(int index) {
+			ensure(index);
+			bytes[index >> 3] |= 1 << (index & 7);
+		}
+
+		void ensure(int index) {
+			if ((index >> 3) >= bytes.length) {
+				bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, (index >> 3) + 1));
+			}
+		}
+
+		void clear() {
+			Arrays.fill(bytes, (byte) 0);
+			size = 0;
+		}
+	}
+
+	// little endian growable buffer
+	private static class LeBuffer {
+
+		byte[] bytes = new byte[256];
+		private int size;
+
+		int size() {
+			return size;
+		}
+
+		void clear() {
+			size = 0;
+		}
+
+		private void ensure(int n) {
+			if (size + n > bytes.length) {
+				bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + n));
+			}
+		}
+
+		void put(byte[] b, int offset, int length) {
+			ensure(length);
+			System.arraycopy(b, offset, bytes, size, length);
+			size += length;
+		}
+
+		void putByte(int value) {
+			ensure(1);
+			bytes[size++] = (byte) value;
+		}
+
+		void putInt(int value) {
+			ensure(4);
+			bytes[size++] = (byte) value;
+			bytes[size++] = (byte) (value >>> 8);
+			bytes[size++] = (byte) (value >>> 16);
+			bytes[size++] = (byte) (value >>> 24);
+		}
+
+		void putLong(long value) {
+			putInt((int) value);
+			putInt((int) (value >>> 32));
+		}
+	}
+
+	// ------------------------------------------------------------------------------------------------------
+	// thrift compact protocol (only what Parquet metadata needs)
+
+	private static class ThriftStruct {
+
+		final List<Object[]> fields = new ArrayList<Object[]>();
+
+		void addBool(int id, boolean value) {
+			fields.add(new Object[] { id, ThriftWriter.BOOLEAN_TRUE, value });
+		}
+
+		void addInt(int id, int value) {
+			fields.add(new Object[] { id, ThriftWriter.I32, (long) value });
+		}
+
+		void addLong(int id, long value) {
+			fields.add(new Object[] { id, ThriftWriter.I64, value });
+		}
+
+		void addString(int id, String value) {
+			fields.add(new Object[] { id, ThriftWriter.BINARY, value });
+		}
+
+		void addStruct(int id, ThriftStruct value) {
+			fields.add(new Object[] { id, ThriftWriter.STRUCT, value });
+		}
+
+		// elements are Integer (I32), String (BINARY) or ThriftStruct (STRUCT)
+		void addList(int id, int elementType, List<?> value) {
+			fields.add(new Object[] { id, ThriftWriter.LIST, new Object[] { elementType, value } });
+		}
+	}
+
+	private static class ThriftWriter {
+
+		static final int BOOLEAN_TRUE = 1;
+		static final int BOOLEAN_FALSE = 2;
+		static final int I32 = 5;
+		static final int I64 = 6;
+		static final int BINARY = 8;
+		static final int LIST = 9;
+		static final int STRUCT = 12;
+
+		final LeBuffer buffer = new LeBuffer();
+
+		void writeStruct(ThriftStruct struct) {
+			// fields are written in field id order
+			List<Object[]> fields = new ArrayList<Object[]>(struct.fields);
+			Collections.sort(fields, new Comparator<Object[]>() {
+				public int compare(Object[] a, Object[] b) {
+					return (Integer) a[0] - (Integer) b[0];
+				}
+			});
+			int lastId = 0;
+			for (Object[] field : fields) {
+				int id = (Integer) field[0];
+				int type = (Integer) field[1];
+				Object value = field[2];
+				if (type == BOOLEAN_TRUE) {
+					type = ((Boolean) value) ? BOOLEAN_TRUE : BOOLEAN_FALSE;
+				}
+				int delta = id - lastId;
+				if ((delta > 0) && (delta <= 15)) {
+					buffer.putByte((delta << 4) | type);
+				} else {
+					buffer.putByte(type);
+					putVarInt(buffer, zigZag(id));
+				}
+				lastId = id;
+				if ((type != BOOLEAN_TRUE) && (type != BOOLEAN_FALSE)) {
+					writeValue(type, value);
+				}
+			}
+			buffer.putByte(0);
+		}
+
+		private void writeValue(int type, Object value) {
+			switch (type) {
+				case I32:
+				case I64:
+					putVarInt(buffer, zigZag(((Number) value).longValue()));
+					break;
+				case BINARY:
+					byte[] bytes;
+					try {
+						bytes = ((String) value).getBytes("UTF-8");
+					} catch (UnsupportedEncodingException e) {
+						throw new IllegalStateException(e);
+					}
+					putVarInt(buffer, bytes.length);
+					buffer.put(bytes, 0, bytes.length);
+					break;
+				case STRUCT:
+					writeStruct((ThriftStruct) value);
+					break;
+				default:
+					Object[] list = (Object[]) value;
+					int elementType = (Integer) list[0];
+					List<?> elements = (List<?>) list[1];
+					if (elements.size() < 15) {
+						buffer.putByte((elements.size() << 4) | elementType);
+					} else {
+						buffer.putByte(0xF0 | elementType);
+						putVarInt(buffer, elements.size());
+					}
+					for (Object element : elements) {
+						writeValue(elementType, element);
+					}
+			}
+		}
+
+		private static long zigZag(long value) {
+			return (value << 1) ^ (value >> 63);
+		}
+	}
+
+}
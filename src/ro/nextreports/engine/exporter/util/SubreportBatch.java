@@ -0,0 +1,245 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.nextreports.engine.exporter.util;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import ro.nextreports.engine.RunContext;
+import ro.nextreports.engine.queryexec.MemoryQueryResult;
+import ro.nextreports.engine.queryexec.Query;
+import ro.nextreports.engine.queryexec.QueryException;
+import ro.nextreports.engine.queryexec.QueryExecutor;
+import ro.nextreports.engine.queryexec.QueryParameter;
+import ro.nextreports.engine.queryexec.QueryResult;
+import ro.nextreports.engine.util.QueryUtil;
+
+/**
+ * Runs a subreport for a window of master rows with a single query.
+ *
+ * A subreport can be batched if it has a single parameter, used in sql only as <code>column = ${P}</code>,
+ * and if it also selects a column named P. The condition is rewritten to <code>column IN ${P}</code>,
+ * the query is run for the master values of the window and the subreport rows are split by the P column.
+ *
+ * Queries whose rows depend on the rows of the other master values are not batched : row limits (TOP, LIMIT,
+ * FETCH, ROWNUM), aggregates and window functions, GROUP BY, DISTINCT and set operations.
+ */
+public class SubreportBatch {
+
+	// top-level clauses computed over all rows of the query
+	private static final String[] NOT_BATCHABLE_KEYWORDS = { "top", "limit", "fetch", "offset", "distinct",
+		"group by", "having", "union", "intersect", "except", "minus" };
+
+	// aggregate and window functions or rownum anywhere in the query
+	private static final Pattern NOT_BATCHABLE_PATTERN = Pattern.compile(
+			"(?i)\\b(?:(?:count|sum|avg|min|max|stddev\\w*|variance|var_pop|var_samp|median|listagg|string_agg|group_concat|array_agg|"
+			+ "xmlagg|collect|every|bool_and|bool_or|bit_and|bit_or)\\s*\\(|over\\s*\\(|rownum\\b)");
+
+	private String parameterName;
+	private String sql;
+
+	private Set<Object> loadedKeys = new HashSet<Object>();
+	private Map<Object, List<Object[]>> partitions = new HashMap<Object, List<Object[]>>();
+	private QueryResult columns;
+
+	private SubreportBatch(String parameterName, String sql) {
+		this.parameterName = parameterName;
+		this.sql = sql;
+	}
+
+	/**
+	 * Create a batch for a subreport
+	 *
+	 * @param sql subreport sql
+	 * @param parameters subreport parameters
+	 * @return batch or null if subreport cannot be batched
+	 */
+	public static SubreportBatch create(String sql, List<QueryParameter> parameters) {
+		if ((sql == null) || (parameters == null) || (parameters.size() != 1) || QueryUtil.isProcedureCall(sql)) {
+			return null;
+		}
+		String name = parameters.get(0).getName();
+		String parameter = "${" + name + "}";
+		Matcher m = Pattern.compile("(?<![<>!=])=\\s*" + Pattern.quote(parameter)).matcher(sql);
+		if (!m.find()) {
+			return null;
+		}
+		int start = m.start();
+		String rewritten = sql.substring(0, start) + "IN " + parameter + sql.substring(m.end());
+		if (m.find() || (rewritten.indexOf(parameter) != rewritten.lastIndexOf(parameter))) {
+			// parameter is used more than once
+			return null;
+		}
+		if (!isTopLevel(sql, start) || !isBatchable(sql)) {
+			return null;
+		}
+		return new SubreportBatch(name, rewritten);
+	}
+
+	private static boolean isBatchable(String sql) {
+		for (String keyword : NOT_BATCHABLE_KEYWORDS) {
+			if (QueryUtil.hasTopLevelKeyword(sql, keyword)) {
+				return false;
+			}
+		}
+		return !NOT_BATCHABLE_PATTERN.matcher(sql).find();
+	}
+
+	// the condition is not inside a subquery
+	private static boolean isTopLevel(String sql, int index) {
+		int depth = 0;
+		boolean quoted = false;
+		for (int i = 0; i < index; i++) {
+			char c = sql.charAt(i);
+			if (c == '\'') {
+				quoted = !quoted;
+			} else if (!quoted && (c == '(')) {
+				depth++;
+			} else if (!quoted && (c == ')')) {
+				depth--;
+			}
+		}
+		return depth == 0;
+	}
+
+	public String getParameterName() {
+		return parameterName;
+	}
+
+	/**
+	 * Test if rows for a master value were already read
+	 *
+	 * @param key master value
+	 * @return true if rows for master value were read
+	 */
+	public boolean isLoaded(Object key) {
+		return loadedKeys.contains(normalize(key));
+	}
+
+	/**
+	 * Run subreport for a list of master values. Rows read previously are discarded.
+	 *
+	 * @param con connection
+	 * @param queryTimeout query timeout in seconds
+	 * @param runContext context of report run (may be null)
+	 * @param parameters all parameters
+	 * @param values all parameter values
+	 * @param keys master values
+	 * @return false if subreport result does not contain the parameter column
+	 * @throws QueryException if query cannot be run
+	 * @throws InterruptedException if query is interrupted
+	 */
+	public boolean load(Connection con, int queryTimeout, RunContext runContext, Map<String, QueryParameter> parameters,
+			Map<String, Object> values, List<Object> keys) throws QueryException, InterruptedException {
+		loadedKeys.clear();
+		partitions.clear();
+		columns = null;
+
+		Set<Object> distinct = new LinkedHashSet<Object>(keys);
+		distinct.remove(null);
+
+		Map<String, QueryParameter> batchParameters = new HashMap<String, QueryParameter>(parameters);
+		QueryParameter qp = parameters.get(parameterName);
+		QueryParameter batchParameter = new QueryParameter(qp.getName(), qp.getDescription(), qp.getValueClassName());
+		batchParameter.setSelection(QueryParameter.MULTIPLE_SELECTION);
+		batchParameters.put(parameterName, batchParameter);
+		Map<String, Object> batchValues = new HashMap<String, Object>(values);
+		batchValues.put(parameterName, distinct.isEmpty() ? new Object[] { null } : distinct.toArray());
+
+		QueryExecutor executor = new QueryExecutor(new Query(sql), batchParameters, batchValues, con, false);
+		QueryResult result = null;
+		try {
+			executor.setMaxRows(0);
+			executor.setTimeout(queryTimeout);
+			executor.setRunContext(runContext);
+			result = executor.execute();
+			int keyColumn = -1;
+			for (int i = 0, n = result.getColumnCount(); i < n; i++) {
+				if (parameterName.equalsIgnoreCase(result.getColumnName(i))) {
+					keyColumn = i;
+					break;
+				}
+			}
+			if (keyColumn == -1) {
+				return false;
+			}
+			int cols = result.getColumnCount();
+			while (result.hasNext()) {
+				Object[] row = new Object[cols];
+				for (int i = 0; i < cols; i++) {
+					row[i] = result.nextValue(i);
+				}
+				Object key = normalize(row[keyColumn]);
+				List<Object[]> partition = partitions.get(key);
+				if (partition == null) {
+					partition = new ArrayList<Object[]>();
+					partitions.put(key, partition);
+				}
+				partition.add(row);
+			}
+			columns = result;
+		} finally {
+			if (result != null) {
+				result.close();
+			}
+		}
+		for (Object key : keys) {
+			loadedKeys.add(normalize(key));
+		}
+		return true;
+	}
+
+	/**
+	 * Get subreport result for a master value
+	 *
+	 * @param key master value (must be loaded)
+	 * @return subreport rows for master value
+	 */
+	public QueryResult getResult(Object key) {
+		List<Object[]> rows = partitions.get(normalize(key));
+		if (rows == null) {
+			rows = new ArrayList<Object[]>();
+		}
+		return new MemoryQueryResult(columns, rows);
+	}
+
+	// master and subreport values of the same column can have different java types (Integer, BigDecimal, ...)
+	private static Object normalize(Object key) {
+		if (key instanceof Number) {
+			try {
+				return new BigDecimal(key.toString()).stripTrailingZeros();
+			} catch (NumberFormatException ex) {
+				// NaN, Infinity
+				return key;
+			}
+		} else if (key instanceof Date) {
+			return ((Date) key).getTime();
+		}
+		return key;
+	}
+
+}
@@ -0,0 +1,208 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.nextreports.engine.exporter.util;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import ro.nextreports.engine.EngineProperties;
+import ro.nextreports.engine.Report;
+import ro.nextreports.engine.RunContext;
+import ro.nextreports.engine.queryexec.ConnectionSupplier;
+import ro.nextreports.engine.queryexec.MemoryQueryResult;
+import ro.nextreports.engine.queryexec.Query;
+import ro.nextreports.engine.queryexec.QueryException;
+import ro.nextreports.engine.queryexec.QueryExecutor;
+import ro.nextreports.engine.queryexec.QueryParameter;
+import ro.nextreports.engine.queryexec.QueryResult;
+import ro.nextreports.engine.util.ReportUtil;
+
+/**
+ * Runs the queries of the subreports from a layout row at the same time, every query on its own
+ * connection from a ConnectionSupplier. Used for the subreports generated by a ForReportBandElement.
+ *
+ * Subreport rows are read in memory and the exporter renders the subreports in their layout order.
+ * Every run has its own pool with EngineProperties.getSubreportThreads() threads and a queue of the same size :
+ * when the queue is full the exporter thread runs the query itself, so a run never holds more queries than that.
+ * A subreport with more than EngineProperties.getSubreportPrefetchRows() rows is not kept in memory : the exporter
+ * runs its query again and reads it from the database.
+ *
+ * @see EngineProperties#SUBREPORT_THREADS_PROPERTY
+ * @see EngineProperties#SUBREPORT_PREFETCH_ROWS_PROPERTY
+ */
+public class SubreportPrefetcher {
+
+	private static Log LOG = LogFactory.getLog(SubreportPrefetcher.class);
+
+	private ThreadPoolExecutor executor;
+
+	private ConnectionSupplier supplier;
+	private int queryTimeout;
+	private RunContext runContext;
+	// subreports are compared by identity : every generated subreport is a different copy
+	private Map<Report, Future<QueryResult>> results = new IdentityHashMap<Report, Future<QueryResult>>();
+
+	public SubreportPrefetcher(ConnectionSupplier supplier, int queryTimeout) {
+		this.supplier = supplier;
+		this.queryTimeout = queryTimeout;
+	}
+
+	/**
+	 * Set the context of report run : queries are not started after the run is stopped
+	 *
+	 * @param runContext run context (may be null)
+	 */
+	public void setRunContext(RunContext runContext) {
+		this.runContext = runContext;
+	}
+
+	private ThreadPoolExecutor getExecutor() {
+		if (executor == null) {
+			int threads = EngineProperties.getSubreportThreads();
+			executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+					new ArrayBlockingQueue<Runnable>(threads), new SubreportThreadFactory(),
+					new ThreadPoolExecutor.CallerRunsPolicy());
+			executor.allowCoreThreadTimeOut(true);
+		}
+		return executor;
+	}
+
+	/**
+	 * Start running the query of a subreport
+	 *
+	 * @param subreport subreport
+	 * @param parameters all parameters (parent and subreport parameters)
+	 * @param values parameter values for subreport
+	 */
+	public void submit(Report subreport, Map<String, QueryParameter> parameters, Map<String, Object> values) {
+		final String sql = ReportUtil.getSql(subreport);
+		final Map<String, QueryParameter> params = new HashMap<String, QueryParameter>(parameters);
+		final Map<String, Object> paramValues = new HashMap<String, Object>(values);
+		results.put(subreport, getExecutor().submit(new Callable<QueryResult>() {
+			public QueryResult call() throws Exception {
+				return execute(sql, params, paramValues);
+			}
+		}));
+	}
+
+	/**
+	 * Get the result of a subreport started with submit. Waits for the query to finish.
+	 *
+	 * @param subreport subreport
+	 * @return subreport result or null if subreport was not submitted, its query failed or it has too many rows
+	 * @throws InterruptedException if current thread is interrupted while waiting
+	 */
+	public QueryResult getResult(Report subreport) throws InterruptedException {
+		Future<QueryResult> future = results.remove(subreport);
+		if (future == null) {
+			return null;
+		}
+		try {
+			return future.get();
+		} catch (ExecutionException ex) {
+			// exporter will run the query again on report connection and it will report the error
+			LOG.error(ex.getCause().getMessage(), ex.getCause());
+			return null;
+		}
+	}
+
+	/**
+	 * Cancel all queries which were not used by the exporter
+	 */
+	public void cancel() {
+		for (Future<QueryResult> future : results.values()) {
+			future.cancel(true);
+		}
+		results.clear();
+	}
+
+	/**
+	 * Cancel all queries which were not used by the exporter and stop the threads of this run
+	 */
+	public void shutdown() {
+		cancel();
+		if (executor != null) {
+			executor.shutdownNow();
+			executor = null;
+		}
+	}
+
+	private QueryResult execute(String sql, Map<String, QueryParameter> parameters, Map<String, Object> values)
+			throws Exception {
+		if ((runContext != null) && runContext.isStopped()) {
+			throw new QueryException(runContext.getStopReason());
+		}
+		Connection con = supplier.getConnection();
+		QueryResult result = null;
+		try {
+			QueryExecutor executor = new QueryExecutor(new Query(sql), parameters, values, con, false);
+			executor.setMaxRows(0);
+			executor.setTimeout(queryTimeout);
+			executor.setRunContext(runContext);
+			result = executor.execute();
+			int cols = result.getColumnCount();
+			int maxRows = EngineProperties.getSubreportPrefetchRows();
+			List<Object[]> rows = new ArrayList<Object[]>();
+			while (result.hasNext()) {
+				if ((maxRows > 0) && (rows.size() == maxRows)) {
+					if (LOG.isDebugEnabled()) {
+						LOG.debug("Subreport has more than " + maxRows + " rows : it is not prefetched");
+					}
+					return null;
+				}
+				Object[] row = new Object[cols];
+				for (int i = 0; i < cols; i++) {
+					row[i] = result.nextValue(i);
+				}
+				rows.add(row);
+			}
+			return new MemoryQueryResult(result, rows);
+		} finally {
+			if (result != null) {
+				result.close();
+			}
+			supplier.releaseConnection(con);
+		}
+	}
+
+	private static class SubreportThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger count = new AtomicInteger();
+
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "NextReports-Subreport-" + count.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
+	}
+
+}
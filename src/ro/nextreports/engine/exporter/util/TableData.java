@@ -16,56 +16,520 @@
  */
 package ro.nextreports.engine.exporter.util;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.io.Serializable;
 
 /**
+ * In-memory result of the TABLE format.
+ *
+ * Cells are kept in a compact form : every cell is an index inside a value dictionary and an index
+ * inside a shared style table, so repeated values and identical styles are stored only once.
+ *
+ * getData() and getStyle() are views over this storage kept for compatibility : values and styles can be
+ * changed through them and rows and cells can be added or removed only through getData() (new cells have no style).
+ * Use getRows(offset, limit) / getStyles(offset, limit) to access only a page of rows.
+ *
  * User: mihai.panaitescu
  * Date: 08-Apr-2010
  * Time: 15:28:51
  */
 public class TableData implements Serializable {
 
+	private static final long serialVersionUID = 1L;
+
+	// after this number of distinct values, new values are stored without looking them up
+	// (a column with unique values must not build a huge index map)
+	private static final int MAX_DICTIONARY_INDEX = 65536;
+
+	private static final int NULL_INDEX = -1;
+	private static final int INITIAL_CAPACITY = 64;
+
     private List<String> header;
-    private List<List<Object>> data;
-    private List<List<Map<String, Object>>> style;
-    
+
+    // number of rows of the entire report when this table contains only a page of rows
+    private int totalRowCount = -1;
+
+    // rowOffsets[i] is the index of the first cell of row i; rowOffsets[rowCount] = cellCount
+    private int rowCount;
+    private int[] rowOffsets;
+    private int cellCount;
+    private int[] valueCodes;
+    private int[] styleCodes;
+
+    private List<Object> dictionary;
+    private transient Map<Object, Integer> dictionaryIndex;
+
+    // false if this table has no style information (getStyle() returns an empty list)
+    private boolean styled;
+    private List<Map<String, Object>> styleTable;
+    private transient Map<Map<String, Object>, Integer> styleIndex;
+
     public TableData() {
-    	 header = new ArrayList<String>();
-    	 data = new ArrayList<List<Object>>();
-    	 style = new ArrayList<List<Map<String, Object>>>();
+    	header = new ArrayList<String>();
+    	styled = true;
+    	clear();
     }
 
     public TableData(List<String> header, List<List<Object>> data, List<List<Map<String, Object>>> style) {
+    	this();
         this.header = header;
-        this.data = data;
-        this.style = style;        
+        setData(data);
+        setStyle(style);
     }
 
     public List<String> getHeader() {
         return header;
     }
 
+	public void setHeader(List<String> header) {
+		this.header = header;
+	}
+
+	/** Get all rows
+	 *
+	 * @return a view of all rows (values are resolved when accessed)
+	 */
     public List<List<Object>> getData() {
-        return data;
+        return new AbstractList<List<Object>>() {
+			public List<Object> get(int index) {
+				checkRow(index);
+				return new RowView(index);
+			}
+
+			public List<Object> set(int index, List<Object> values) {
+				List<Object> old = new ArrayList<Object>(get(index));
+				setRow(index, values);
+				return old;
+			}
+
+			public void add(int index, List<Object> values) {
+				if ((index < 0) || (index > rowCount)) {
+					throw new IndexOutOfBoundsException("Row: " + index + ", Rows: " + rowCount);
+				}
+				insertRow(index, values);
+			}
+
+			public List<Object> remove(int index) {
+				List<Object> old = new ArrayList<Object>(get(index));
+				removeRow(index);
+				return old;
+			}
+
+			public int size() {
+				return rowCount;
+			}
+		};
     }
-    
+
+    /** Get styles for all cells
+     *
+     * @return a view of all cell styles (empty if table has no styles)
+     */
     public List<List<Map<String, Object>>> getStyle() {
-    	return style;
-    }
+    	if (!styled) {
+    		return Collections.emptyList();
+    	}
+    	return new AbstractList<List<Map<String, Object>>>() {
+			public List<Map<String, Object>> get(int index) {
+				checkRow(index);
+				return new StyleRowView(index);
+			}
 
-	public void setHeader(List<String> header) {
-		this.header = header;
-	}
+			public List<Map<String, Object>> set(int index, List<Map<String, Object>> rowStyle) {
+				List<Map<String, Object>> old = new ArrayList<Map<String, Object>>(get(index));
+				for (int j = 0, cols = getColumnCount(index); j < cols; j++) {
+					Map<String, Object> style = ((rowStyle != null) && (j < rowStyle.size())) ? rowStyle.get(j) : null;
+					styleCodes[rowOffsets[index] + j] = addStyle(style);
+				}
+				return old;
+			}
 
+			public int size() {
+				return rowCount;
+			}
+		};
+    }
+
+	/** Replace all rows. Previous cell styles are lost.
+	 *
+	 * @param data rows
+	 */
 	public void setData(List<List<Object>> data) {
-		this.data = data;
+		clear();
+		if (data == null) {
+			return;
+		}
+		for (List<Object> row : data) {
+			addRow(row);
+		}
 	}
 
+	/** Set styles for current rows, matched by position. A null value means the table has no styles.
+	 *
+	 * @param style cell styles
+	 */
 	public void setStyle(List<List<Map<String, Object>>> style) {
-		this.style = style;
+		styled = (style != null);
+		Arrays.fill(styleCodes, 0, cellCount, NULL_INDEX);
+		styleTable = new ArrayList<Map<String, Object>>();
+		styleIndex = null;
+		if (style == null) {
+			return;
+		}
+		for (int i = 0, rows = Math.min(rowCount, style.size()); i < rows; i++) {
+			List<Map<String, Object>> rowStyle = style.get(i);
+			if (rowStyle == null) {
+				continue;
+			}
+			for (int j = 0, cols = Math.min(getColumnCount(i), rowStyle.size()); j < cols; j++) {
+				styleCodes[rowOffsets[i] + j] = addStyle(rowStyle.get(j));
+			}
+		}
+	}
+
+	/** Get a page of rows
+	 *
+	 * @param offset first row
+	 * @param limit maximum number of rows
+	 * @return rows from offset to offset + limit (fewer if table has less rows)
+	 */
+	public List<List<Object>> getRows(int offset, int limit) {
+		List<List<Object>> result = new ArrayList<List<Object>>();
+		for (int i = offset, end = pageEnd(offset, limit); i < end; i++) {
+			result.add(new ArrayList<Object>(new RowView(i)));
+		}
+		return result;
+	}
+
+	/** Get styles for a page of rows
+	 *
+	 * @param offset first row
+	 * @param limit maximum number of rows
+	 * @return styles for rows from offset to offset + limit (empty if table has no styles)
+	 */
+	public List<List<Map<String, Object>>> getStyles(int offset, int limit) {
+		if (!styled) {
+			return Collections.emptyList();
+		}
+		List<List<Map<String, Object>>> result = new ArrayList<List<Map<String, Object>>>();
+		for (int i = offset, end = pageEnd(offset, limit); i < end; i++) {
+			result.add(new ArrayList<Map<String, Object>>(new StyleRowView(i)));
+		}
+		return result;
+	}
+
+	public int getRowCount() {
+		return rowCount;
+	}
+
+	/** Get the number of rows of the entire report.
+	 *
+	 * @return total number of rows if this table contains only a page of rows, getRowCount() otherwise
+	 */
+	public int getTotalRowCount() {
+		return (totalRowCount == -1) ? rowCount : totalRowCount;
+	}
+
+	public void setTotalRowCount(int totalRowCount) {
+		this.totalRowCount = totalRowCount;
+	}
+
+	public int getColumnCount(int row) {
+		checkRow(row);
+		return rowOffsets[row + 1] - rowOffsets[row];
+	}
+
+	public Object getValue(int row, int column) {
+		int code = valueCodes[cellIndex(row, column)];
+		return (code == NULL_INDEX) ? null : dictionary.get(code);
+	}
+
+	public Map<String, Object> getStyle(int row, int column) {
+		int code = getStyleIndex(row, column);
+		return (code == NULL_INDEX) ? null : styleTable.get(code);
+	}
+
+	/** Get the index of a cell style inside the shared style table
+	 *
+	 * @param row row
+	 * @param column column
+	 * @return index inside getStyleTable() or -1 if cell has no style
+	 */
+	public int getStyleIndex(int row, int column) {
+		return styleCodes[cellIndex(row, column)];
+	}
+
+	/** Get all distinct styles
+	 *
+	 * @return read-only list of distinct styles
+	 */
+	public List<Map<String, Object>> getStyleTable() {
+		return Collections.unmodifiableList(styleTable);
+	}
+
+	/** Start a new row. Cells are added to the last row.
+	 */
+	public void addRow() {
+		if (rowCount + 1 == rowOffsets.length) {
+			rowOffsets = Arrays.copyOf(rowOffsets, rowOffsets.length * 2);
+		}
+		rowCount++;
+		rowOffsets[rowCount] = cellCount;
+	}
+
+	/** Add a new row with the specified values and no style
+	 *
+	 * @param values row values
+	 */
+	public void addRow(List<Object> values) {
+		addRow();
+		if (values != null) {
+			for (Object value : values) {
+				addCell(value, NULL_INDEX);
+			}
+		}
+	}
+
+	/** Add a cell to the last row
+	 *
+	 * @param value cell value
+	 * @param style cell style
+	 */
+	public void addCell(Object value, Map<String, Object> style) {
+		addCell(value, addStyle(style));
+	}
+
+	/** Add a cell to the last row
+	 *
+	 * @param value cell value
+	 * @param styleIndex index returned by addStyle or -1 for no style
+	 */
+	public void addCell(Object value, int styleIndex) {
+		if (rowCount == 0) {
+			throw new IllegalStateException("A row must be added before adding cells.");
+		}
+		ensureCellCapacity(cellCount + 1);
+		valueCodes[cellCount] = addValue(value);
+		styleCodes[cellCount] = styled ? styleIndex : NULL_INDEX;
+		cellCount++;
+		rowOffsets[rowCount] = cellCount;
+	}
+
+	/** Add a style to the shared style table if it is not already there
+	 *
+	 * @param style style
+	 * @return index of style inside the style table or -1 if style is null or table has no styles
+	 */
+	public int addStyle(Map<String, Object> style) {
+		if (!styled || (style == null)) {
+			return NULL_INDEX;
+		}
+		Map<Map<String, Object>, Integer> index = getStyleIndexMap();
+		Integer code = index.get(style);
+		if (code == null) {
+			Map<String, Object> shared = Collections.unmodifiableMap(new HashMap<String, Object>(style));
+			code = styleTable.size();
+			styleTable.add(shared);
+			index.put(shared, code);
+		}
+		return code;
+	}
+
+	private void ensureCellCapacity(int cells) {
+		if (cells > valueCodes.length) {
+			int capacity = Math.max(cells, valueCodes.length * 2);
+			valueCodes = Arrays.copyOf(valueCodes, capacity);
+			styleCodes = Arrays.copyOf(styleCodes, capacity);
+		}
+	}
+
+	// make room for count cells of row starting at cell index : the cells of next rows are moved
+	private void insertCells(int row, int cell, int count) {
+		ensureCellCapacity(cellCount + count);
+		System.arraycopy(valueCodes, cell, valueCodes, cell + count, cellCount - cell);
+		System.arraycopy(styleCodes, cell, styleCodes, cell + count, cellCount - cell);
+		Arrays.fill(valueCodes, cell, cell + count, NULL_INDEX);
+		Arrays.fill(styleCodes, cell, cell + count, NULL_INDEX);
+		cellCount += count;
+		for (int i = row + 1; i <= rowCount; i++) {
+			rowOffsets[i] += count;
+		}
+	}
+
+	private void removeCells(int row, int cell, int count) {
+		System.arraycopy(valueCodes, cell + count, valueCodes, cell, cellCount - cell - count);
+		System.arraycopy(styleCodes, cell + count, styleCodes, cell, cellCount - cell - count);
+		cellCount -= count;
+		for (int i = row + 1; i <= rowCount; i++) {
+			rowOffsets[i] -= count;
+		}
+	}
+
+	private void insertRow(int row, List<Object> values) {
+		addRow();
+		// new empty row at index row
+		System.arraycopy(rowOffsets, row, rowOffsets, row + 1, rowCount - row);
+		setRow(row, values);
+	}
+
+	// replace the values of a row : styles of cells which are still in the row are kept
+	private void setRow(int row, List<Object> values) {
+		int size = (values == null) ? 0 : values.size();
+		int columns = getColumnCount(row);
+		if (size > columns) {
+			insertCells(row, rowOffsets[row + 1], size - columns);
+		} else if (size < columns) {
+			removeCells(row, rowOffsets[row] + size, columns - size);
+		}
+		for (int j = 0; j < size; j++) {
+			valueCodes[rowOffsets[row] + j] = addValue(values.get(j));
+		}
+	}
+
+	private void removeRow(int row) {
+		removeCells(row, rowOffsets[row], getColumnCount(row));
+		System.arraycopy(rowOffsets, row + 1, rowOffsets, row, rowCount - row);
+		rowCount--;
+	}
+
+	private int addValue(Object value) {
+		if (value == null) {
+			return NULL_INDEX;
+		}
+		Map<Object, Integer> index = getDictionaryIndex();
+		Integer code = index.get(value);
+		if (code == null) {
+			code = dictionary.size();
+			dictionary.add(value);
+			if (index.size() < MAX_DICTIONARY_INDEX) {
+				index.put(value, code);
+			}
+		}
+		return code;
+	}
+
+	private Map<Object, Integer> getDictionaryIndex() {
+		if (dictionaryIndex == null) {
+			dictionaryIndex = new HashMap<Object, Integer>();
+			for (int i = 0, size = Math.min(dictionary.size(), MAX_DICTIONARY_INDEX); i < size; i++) {
+				dictionaryIndex.put(dictionary.get(i), i);
+			}
+		}
+		return dictionaryIndex;
+	}
+
+	private Map<Map<String, Object>, Integer> getStyleIndexMap() {
+		if (styleIndex == null) {
+			styleIndex = new HashMap<Map<String, Object>, Integer>();
+			for (int i = 0, size = styleTable.size(); i < size; i++) {
+				styleIndex.put(styleTable.get(i), i);
+			}
+		}
+		return styleIndex;
+	}
+
+	private void clear() {
+		rowCount = 0;
+		rowOffsets = new int[INITIAL_CAPACITY];
+		cellCount = 0;
+		valueCodes = new int[INITIAL_CAPACITY];
+		styleCodes = new int[INITIAL_CAPACITY];
+		dictionary = new ArrayList<Object>();
+		dictionaryIndex = null;
+		styleTable = new ArrayList<Map<String, Object>>();
+		styleIndex = null;
+	}
+
+	private void checkRow(int row) {
+		if ((row < 0) || (row >= rowCount)) {
+			throw new IndexOutOfBoundsException("Row: " + row + ", Rows: " + rowCount);
+		}
+	}
+
+	private int cellIndex(int row, int column) {
+		int columns = getColumnCount(row);
+		if ((column < 0) || (column >= columns)) {
+			throw new IndexOutOfBoundsException("Column: " + column + ", Columns: " + columns);
+		}
+		return rowOffsets[row] + column;
+	}
+
+	private int pageEnd(int offset, int limit) {
+		if ((offset < 0) || (limit < 0)) {
+			throw new IllegalArgumentException("Offset and limit must be positive.");
+		}
+		return (int) Math.min((long) offset + limit, rowCount);
+	}
+
+	private class RowView extends AbstractList<Object> {
+
+		private int row;
+
+		private RowView(int row) {
+			this.row = row;
+		}
+
+		public Object get(int index) {
+			return getValue(row, index);
+		}
+
+		public Object set(int index, Object value) {
+			int cell = cellIndex(row, index);
+			Object old = getValue(row, index);
+			valueCodes[cell] = addValue(value);
+			return old;
+		}
+
+		public void add(int index, Object value) {
+			int columns = getColumnCount(row);
+			if ((index < 0) || (index > columns)) {
+				throw new IndexOutOfBoundsException("Column: " + index + ", Columns: " + columns);
+			}
+			int cell = rowOffsets[row] + index;
+			insertCells(row, cell, 1);
+			valueCodes[cell] = addValue(value);
+		}
+
+		public Object remove(int index) {
+			int cell = cellIndex(row, index);
+			Object old = getValue(row, index);
+			removeCells(row, cell, 1);
+			return old;
+		}
+
+		public int size() {
+			return getColumnCount(row);
+		}
+	}
+
+	private class StyleRowView extends AbstractList<Map<String, Object>> {
+
+		private int row;
+
+		private StyleRowView(int row) {
+			this.row = row;
+		}
+
+		public Map<String, Object> get(int index) {
+			return getStyle(row, index);
+		}
+
+		public Map<String, Object> set(int index, Map<String, Object> style) {
+			int cell = cellIndex(row, index);
+			Map<String, Object> old = getStyle(row, index);
+			styleCodes[cell] = addStyle(style);
+			return old;
+		}
+
+		public int size() {
+			return getColumnCount(row);
+		}
 	}
-        
+
 }
@@ -0,0 +1,45 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.nextreports.engine.exporter.util.function;
+
+/**
+ * Function with a value already computed (for example by the database for all report rows).
+ * Values passed to compute are ignored.
+ */
+public class FixedValueFunction extends AbstractGFunction {
+
+	private String name;
+	private Object value;
+
+	public FixedValueFunction(String name, Object value) {
+		this.name = name;
+		this.value = value;
+		this.computedValue = value;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public Object getNeutralElement() {
+		return value;
+	}
+
+	public Object compute(Object value) {
+		return computedValue;
+	}
+}
@@ -20,6 +20,7 @@ package ro.nextreports.engine.querybuilder;
 import javax.swing.*;
 
 import ro.nextreports.engine.queryexec.IdName;
+import ro.nextreports.engine.util.DateUtil;
 
 import java.awt.*;
 import java.util.Date;
@@ -35,7 +36,15 @@ import java.sql.Timestamp;
  */
 public class IdNameRenderer extends DefaultListCellRenderer {
 
-    public static SimpleDateFormat sdf = new SimpleDateFormat("dd/MM/yyyy HH:mm:ss");
+    /** Pattern used to show dates and to parse date ids */
+    public static final String DATE_PATTERN = "dd/MM/yyyy HH:mm:ss";
+
+    /**
+     * @deprecated SimpleDateFormat is not thread safe; use {@link DateUtil#getDateFormat(String)}
+     * with {@link #DATE_PATTERN}
+     */
+    @Deprecated
+    public static SimpleDateFormat sdf = new SimpleDateFormat(DATE_PATTERN);
 
     public Component getListCellRendererComponent(JList list, Object value,
 												  int index, boolean isSelected, boolean cellHasFocus) {
@@ -50,11 +59,11 @@ public class IdNameRenderer extends DefaultListCellRenderer {
             }
 
             if (value instanceof Date) {
-                value = sdf.format((Date)value);
+                value = DateUtil.format((Date)value, DATE_PATTERN);
             } else if (value instanceof Time) {
-                value = sdf.format(new Date(((Time)value).getTime()));
+                value = DateUtil.format(new Date(((Time)value).getTime()), DATE_PATTERN);
             } else if (value instanceof Timestamp)  {
-                value = sdf.format(new Date(((Timestamp)value).getTime()));
+                value = DateUtil.format(new Date(((Timestamp)value).getTime()), DATE_PATTERN);
             }
         }
 		return super.getListCellRendererComponent(list, value, index, isSelected, cellHasFocus);
@@ -26,6 +26,8 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -42,6 +44,12 @@ import org.apache.commons.logging.LogFactory;
 public abstract class AbstractDialect implements Dialect {
 	
 	protected static final Log LOG = LogFactory.getLog(AbstractDialect.class);
+	
+	private static final Pattern ORDER_BY_PATTERN = Pattern.compile("\\border\\s+by\\b");
+	// row limits which depend on the order of the rows
+	private static final Pattern LIMIT_PATTERN = Pattern.compile("\\b(limit|offset|fetch|top)\\b");
+	// clauses which can follow an ORDER BY
+	private static final Pattern ORDER_BY_END_PATTERN = Pattern.compile("\\b(union|intersect|except|minus|for)\\b");
 
     private List<ColumnTypeMatcher> columnTypeMatchers = new ArrayList<ColumnTypeMatcher>();
 //    private Map<String, Integer> jdbcTypes = new TreeMap<String, Integer>(String.CASE_INSENSITIVE_ORDER);
@@ -222,4 +230,141 @@ public abstract class AbstractDialect implements Dialect {
     public boolean needsHoldCursorsForPreparedStatement() {
     	return false;
     }
+    
+    // sql standard (2008) syntax
+    public String getPagedSql(String sql, int offset, int limit) {
+    	return "SELECT * FROM (" + trimSql(sql) + ") A OFFSET " + offset + " ROWS FETCH NEXT " + limit + " ROWS ONLY";
+    }
+    
+    public int getMaxInListSize() {
+    	return 1000;
+    }
+    
+    public String getInListArrayType(Class<?> valueClass) {
+    	return null;
+    }
+    
+    public String getInListTableSql(String tableName, Class<?> valueClass, Object[] values) {
+    	return null;
+    }
+    
+    public String getInListTableName(String tableName) {
+    	return tableName;
+    }
+    
+    // column type of in list tables (null if values of this class are not supported)
+    protected String getInListColumnType(Class<?> valueClass) {
+    	if (valueClass == Integer.class) {
+    		return "INTEGER";
+    	} else if (valueClass == Long.class) {
+    		return "BIGINT";
+    	} else if (valueClass == Short.class) {
+    		return "SMALLINT";
+    	} else if (valueClass == Double.class) {
+    		return "DOUBLE PRECISION";
+    	} else if (valueClass == Float.class) {
+    		return "REAL";
+    	} else if (valueClass == String.class) {
+    		return "VARCHAR(4000)";
+    	} else if (valueClass == Date.class) {
+    		return "DATE";
+    	} else if (valueClass == Timestamp.class) {
+    		return "TIMESTAMP";
+    	} else if (valueClass == Time.class) {
+    		return "TIME";
+    	}
+    	return null;
+    }
+    
+    public String getGroupedSql(String sql, String groupColumn, List<String> aggregates, List<String> aliases) {
+    	String group = getEscapedKeyWord(groupColumn);
+    	StringBuilder sb = new StringBuilder("SELECT ").append(group);
+    	for (int i = 0, size = aggregates.size(); i < size; i++) {
+    		sb.append(", ").append(aggregates.get(i)).append(" AS ").append(getEscapedKeyWord(aliases.get(i)));
+    	}
+    	sb.append(" FROM (").append(removeOrderBy(trimSql(sql))).append(") A GROUP BY ").append(group).
+    		append(" ORDER BY ").append(group);
+    	return sb.toString();
+    }
+    
+    public String getAggregateSql(String sql, List<String> aggregates) {
+    	StringBuilder sb = new StringBuilder("SELECT ");
+    	for (int i = 0, size = aggregates.size(); i < size; i++) {
+    		if (i > 0) {
+    			sb.append(", ");
+    		}
+    		sb.append(aggregates.get(i));
+    	}
+    	sb.append(" FROM (").append(removeOrderBy(trimSql(sql))).append(") A");
+    	return sb.toString();
+    }
+    
+    // remove all ORDER BY clauses which are not inside parentheses (some databases do not accept them in a sub-select)
+    // the select is not changed if it has a row limit (LIMIT, OFFSET, FETCH, TOP) which depends on the order
+    protected String removeOrderBy(String sql) {
+    	String lower = sql.toLowerCase();
+    	List<Integer> orderBys = findTopLevel(lower, ORDER_BY_PATTERN, 0);
+    	if (orderBys.isEmpty() || !findTopLevel(lower, LIMIT_PATTERN, 0).isEmpty()) {
+    		return sql;
+    	}
+    	StringBuilder sb = new StringBuilder();
+    	int from = 0;
+    	for (int start : orderBys) {
+    		if (start < from) {
+    			continue;
+    		}
+    		sb.append(sql.substring(from, start).trim());
+    		List<Integer> ends = findTopLevel(lower, ORDER_BY_END_PATTERN, start);
+    		from = ends.isEmpty() ? sql.length() : ends.get(0);
+    		sb.append(" ");
+    	}
+    	sb.append(sql.substring(from));
+    	return sb.toString().trim();
+    }
+    
+    // position of the last ORDER BY which is not inside parentheses or inside a string literal (-1 if none)
+    protected int findTopLevelOrderBy(String sql) {
+    	List<Integer> positions = findTopLevel(sql.toLowerCase(), ORDER_BY_PATTERN, 0);
+    	return positions.isEmpty() ? -1 : positions.get(positions.size() - 1);
+    }
+
+    // positions of pattern matches (starting with from) which are not inside parentheses or inside a string literal
+    private List<Integer> findTopLevel(String lower, Pattern pattern, int from) {
+    	List<Integer> positions = new ArrayList<Integer>();
+    	Matcher m = pattern.matcher(lower);
+    	int start = from;
+    	while (m.find(start)) {
+    		if (isTopLevel(lower, m.start())) {
+    			positions.add(m.start());
+    		}
+    		start = m.end();
+    	}
+    	return positions;
+    }
+
+    // position is not inside parentheses or inside a string literal
+    protected boolean isTopLevel(String sql, int position) {
+    	int depth = 0;
+    	boolean quoted = false;
+    	for (int i = 0; i < position; i++) {
+    		char c = sql.charAt(i);
+    		if (c == '\'') {
+    			quoted = !quoted;
+    		} else if (!quoted && (c == '(')) {
+    			depth++;
+    		} else if (!quoted && (c == ')')) {
+    			depth--;
+    		}
+    	}
+    	return (depth == 0) && !quoted;
+    }
+    
+    // remove ending spaces and semicolon so the select can be used as a sub-select
+    protected String trimSql(String sql) {
+    	String result = sql.trim();
+    	while (result.endsWith(";")) {
+    		result = result.substring(0, result.length() - 1).trim();
+    	}
+    	return result;
+    }
 }
@@ -17,6 +17,7 @@
 package ro.nextreports.engine.querybuilder.sql.dialect;
 
 import java.sql.Types;
+import java.util.List;
 
 public class CSVDialect extends AbstractDialect {
 	
@@ -62,5 +63,18 @@ public class CSVDialect extends AbstractDialect {
 	public String getSqlChecker() {
 		return "SELECT 1";
 	}
+
+	// csv jdbc driver does not support sub-select
+	public String getPagedSql(String sql, int offset, int limit) {
+		return null;
+	}
+	
+	public String getGroupedSql(String sql, String groupColumn, List<String> aggregates, List<String> aliases) {
+		return null;
+	}
+	
+	public String getAggregateSql(String sql, List<String> aggregates) {
+		return null;
+	}
 	
 }
@@ -76,4 +76,27 @@ public class DerbyDialect extends AbstractDialect {
         return "values(1)";
     }
 
+    public String getInListTableSql(String tableName, Class<?> valueClass, Object[] values) {
+        String type = getInListColumnType(valueClass);
+        if (type == null) {
+            return null;
+        }
+        return "DECLARE GLOBAL TEMPORARY TABLE " + getInListTableName(tableName) + " (V " + type +
+                ") ON COMMIT PRESERVE ROWS NOT LOGGED";
+    }
+
+    // declared temporary tables are in SESSION schema
+    public String getInListTableName(String tableName) {
+        return "SESSION." + tableName;
+    }
+
+    protected String getInListColumnType(Class<?> valueClass) {
+        if (valueClass == Double.class) {
+            return "DOUBLE";
+        } else if (valueClass == String.class) {
+            return "VARCHAR(32672)";
+        }
+        return super.getInListColumnType(valueClass);
+    }
+
 }
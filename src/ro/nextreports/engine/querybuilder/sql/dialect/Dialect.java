@@ -16,6 +16,8 @@
  */
 package ro.nextreports.engine.querybuilder.sql.dialect;
 
+import java.util.List;
+
 /**
  * Represents a dialect of SQL implemented by a particular RDBMS.
  * 
@@ -84,4 +86,71 @@ public interface Dialect {
     // http://tech.groups.yahoo.com/group/firebird-support/message/107922
     public boolean needsHoldCursorsForPreparedStatement();
     
+    /**
+     * Get a select which returns only a window of rows from the specified select
+     * 
+     * @param sql select
+     * @param offset number of rows to skip
+     * @param limit maximum number of rows to return
+     * @return paged select or null if dialect does not support paging
+     */
+    public String getPagedSql(String sql, int offset, int limit);
+    
+    /**
+     * Get maximum number of values accepted inside an IN (?, ?, ...) list
+     * 
+     * @return maximum number of values inside an IN list
+     */
+    public int getMaxInListSize();
+    
+    /**
+     * Get a select which groups the rows of the specified select by a column, ordered by that column
+     * 
+     * @param sql select
+     * @param groupColumn column of select used for grouping
+     * @param aggregates aggregate expressions over columns of select, like SUM(C)
+     * @param aliases column names for aggregate expressions
+     * @return grouped select or null if dialect does not support it
+     */
+    public String getGroupedSql(String sql, String groupColumn, List<String> aggregates, List<String> aliases);
+    
+    /**
+     * Get a select which computes aggregates over all the rows of the specified select
+     * 
+     * @param sql select
+     * @param aggregates aggregate expressions over columns of select, like SUM(C)
+     * @return aggregate select or null if dialect does not support it
+     */
+    public String getAggregateSql(String sql, List<String> aggregates);
+    
+    /**
+     * Get the element type name of an array parameter which can replace the values of an IN list :
+     * "IN (?, ?, ...)" becomes "= ANY (?)" and all values are bound as one array
+     * (see java.sql.Connection.createArrayOf)
+     * 
+     * @param valueClass class of values
+     * @return array element type name or null if dialect cannot bind values of this class as an array
+     */
+    public String getInListArrayType(Class<?> valueClass);
+    
+    /**
+     * Get the statement which creates a temporary table, visible only to the current connection, with one
+     * column V. Such a table holds the values of an IN list bigger than the threshold and the list is replaced
+     * by "(SELECT V FROM table)".
+     * 
+     * @param tableName table name
+     * @param valueClass class of values
+     * @param values jdbc values put in the table (a dialect may choose the column type from them)
+     * @return create statement or null if dialect does not support temporary tables for values of this class
+     */
+    public String getInListTableSql(String tableName, Class<?> valueClass, Object[] values);
+    
+    /**
+     * Get the name used inside queries for a temporary table created with getInListTableSql
+     * 
+     * @param tableName table name
+     * @return name used inside queries
+     */
+    public String getInListTableName(String tableName);
+    
 }
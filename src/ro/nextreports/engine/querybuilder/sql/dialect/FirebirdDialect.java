@@ -77,6 +77,10 @@ public class FirebirdDialect extends AbstractDialect {
     public String getSqlChecker() {
         return "select 1 from rdb$database;";
     }
+
+    public String getPagedSql(String sql, int offset, int limit) {
+    	return "SELECT FIRST " + limit + " SKIP " + offset + " * FROM (" + trimSql(sql) + ") A";
+    }
     
     public boolean needsHoldCursorsForPreparedStatement() {
     	return true;
@@ -17,7 +17,10 @@
 package ro.nextreports.engine.querybuilder.sql.dialect;
 
 
+import java.sql.Time;
+import java.sql.Timestamp;
 import java.sql.Types;
+import java.util.Date;
 
 import ro.nextreports.engine.util.ProcUtil;
 
@@ -93,6 +96,68 @@ public class MSSQLDialect extends AbstractDialect {
         return "SELECT 1";
     }
 
+    // OFFSET / FETCH (Sql Server 2012) needs an ORDER BY clause
+    // and an ORDER BY clause is not allowed inside a sub-select
+    public String getPagedSql(String sql, int offset, int limit) {
+    	String s = trimSql(sql);
+    	String window = " OFFSET " + offset + " ROWS FETCH NEXT " + limit + " ROWS ONLY";
+    	// an ORDER BY of a sub-select or of an OVER clause does not order the result
+    	if (findTopLevelOrderBy(s) != -1) {
+    		return s + window;
+    	}
+    	return "SELECT * FROM (" + s + ") A ORDER BY (SELECT NULL)" + window;
+    }
+
+    // a statement can have at most 2100 parameters
+    public int getMaxInListSize() {
+    	return 2000;
+    }
+
+    public String getInListTableSql(String tableName, Class<?> valueClass, Object[] values) {
+    	String type = getInListColumnType(valueClass);
+    	if (type == null) {
+    		return null;
+    	}
+    	if (valueClass == String.class) {
+    		// a VARCHAR column compared with NVARCHAR values is converted and its indexes are not used :
+    		// NVARCHAR is used only for values which need it; temporary tables have the collation of
+    		// tempdb, the column takes the collation of the current database
+    		type = (isUnicode(values) ? "NVARCHAR(4000)" : "VARCHAR(8000)") + " COLLATE DATABASE_DEFAULT";
+    	}
+    	return "CREATE TABLE " + getInListTableName(tableName) + " (V " + type + ")";
+    }
+
+    // true if a value has characters which are not ascii
+    private static boolean isUnicode(Object[] values) {
+    	for (Object value : values) {
+    		if (value == null) {
+    			continue;
+    		}
+    		String s = value.toString();
+    		for (int i = 0, n = s.length(); i < n; i++) {
+    			if (s.charAt(i) > 127) {
+    				return true;
+    			}
+    		}
+    	}
+    	return false;
+    }
+
+    // local temporary table : visible only to the current connection
+    public String getInListTableName(String tableName) {
+    	return "#" + tableName;
+    }
+
+    // DATE and TIME types exist only from Sql Server 2008
+    protected String getInListColumnType(Class<?> valueClass) {
+    	if (valueClass == Double.class) {
+    		return "FLOAT";
+    	} else if ((valueClass == Date.class) || (valueClass == Timestamp.class) || (valueClass == Time.class)) {
+    		return "DATETIME";
+    	}
+    	return super.getInListColumnType(valueClass);
+    }
+
     protected void setKeywords() {
         keywords = new String[] {
            "ADD", "ALTER", "AND", "ANY", "AS", "ASC", "AUTHORIZATION", "BACKUP", "BEGIN",
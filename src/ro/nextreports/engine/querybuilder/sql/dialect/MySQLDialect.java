@@ -17,6 +17,7 @@
 package ro.nextreports.engine.querybuilder.sql.dialect;
 
 
+import java.sql.Timestamp;
 import java.sql.Types;
 
 import ro.nextreports.engine.util.ProcUtil;
@@ -82,6 +83,28 @@ public class MySQLDialect extends AbstractDialect {
         return "SELECT 1";
     }
 
+    public String getPagedSql(String sql, int offset, int limit) {
+    	return "SELECT * FROM (" + trimSql(sql) + ") A LIMIT " + limit + " OFFSET " + offset;
+    }
+
+    public String getInListTableSql(String tableName, Class<?> valueClass, Object[] values) {
+    	String type = getInListColumnType(valueClass);
+    	if (type == null) {
+    		return null;
+    	}
+    	return "CREATE TEMPORARY TABLE " + tableName + " (V " + type + ")";
+    }
+
+    // TIMESTAMP columns are updated automatically
+    protected String getInListColumnType(Class<?> valueClass) {
+    	if (valueClass == Double.class) {
+    		return "DOUBLE";
+    	} else if (valueClass == Timestamp.class) {
+    		return "DATETIME";
+    	}
+    	return super.getInListColumnType(valueClass);
+    }
+
     protected void setKeywords() {
         keywords = new String[]{
                 "ACCESSIBLE", "ALTER", "AS", "BEFORE", "BINARY", "BY", "CASE", "CHARACTER",
@@ -97,6 +97,12 @@ public class OracleDialect extends AbstractDialect {
         return "SELECT 1 FROM DUAL";
     }
 
+    // ROWNUM works also for versions older than 12c (which knows OFFSET / FETCH)
+    public String getPagedSql(String sql, int offset, int limit) {
+    	return "SELECT * FROM (SELECT A.*, ROWNUM NEXT_ROW_NUMBER FROM (" + trimSql(sql) + ") A WHERE ROWNUM <= " + 
+    			(offset + limit) + ") WHERE NEXT_ROW_NUMBER > " + offset;
+    }
+
     protected void setKeywords() {
         keywords = new String[] {
             "ADMIN", "CURSOR", "FOUND", "MOUNT", "AFTER", "CYCLE", "FUNCTION", "NEXT",
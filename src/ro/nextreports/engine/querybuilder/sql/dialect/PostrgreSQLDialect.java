@@ -17,7 +17,13 @@
 package ro.nextreports.engine.querybuilder.sql.dialect;
 
 
+import java.math.BigDecimal;
+import java.sql.Time;
+import java.sql.Timestamp;
 import java.sql.Types;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
 //
 // Created by IntelliJ IDEA.
 // User: mihai.panaitescu
@@ -34,6 +40,21 @@ import ro.nextreports.engine.util.ProcUtil;
 
 public class PostrgreSQLDialect extends AbstractDialect {
 
+    private static final Map<Class<?>, String> ARRAY_TYPES = new HashMap<Class<?>, String>();
+    static {
+        ARRAY_TYPES.put(String.class, "varchar");
+        ARRAY_TYPES.put(Integer.class, "int4");
+        ARRAY_TYPES.put(Long.class, "int8");
+        ARRAY_TYPES.put(Short.class, "int2");
+        ARRAY_TYPES.put(Double.class, "float8");
+        ARRAY_TYPES.put(Float.class, "float4");
+        ARRAY_TYPES.put(BigDecimal.class, "numeric");
+        ARRAY_TYPES.put(Boolean.class, "bool");
+        ARRAY_TYPES.put(Date.class, "date");
+        ARRAY_TYPES.put(Timestamp.class, "timestamp");
+        ARRAY_TYPES.put(Time.class, "time");
+    }
+
     public PostrgreSQLDialect() {
         super();
         registerColumnType("boolean", Types.BIT);
@@ -87,6 +108,14 @@ public class PostrgreSQLDialect extends AbstractDialect {
         return "select 1";
     }
 
+    public String getPagedSql(String sql, int offset, int limit) {
+    	return "SELECT * FROM (" + trimSql(sql) + ") A LIMIT " + limit + " OFFSET " + offset;
+    }
+
+    public String getInListArrayType(Class<?> valueClass) {
+        return ARRAY_TYPES.get(valueClass);
+    }
+
      protected void setKeywords() {
         keywords = new String[] {
              "ABORT", "ABSOLUTE", "ACCESS", "ACTION", "ADD", "ADMIN", "AFTER", "AGGREGATE",
@@ -73,4 +73,13 @@ public class SQLiteDialect extends AbstractDialect {
         return "SELECT 1";
     }
 
+    public String getPagedSql(String sql, int offset, int limit) {
+    	return "SELECT * FROM (" + trimSql(sql) + ") A LIMIT " + limit + " OFFSET " + offset;
+    }
+
+    // default SQLITE_MAX_VARIABLE_NUMBER is 999
+    public int getMaxInListSize() {
+    	return 900;
+    }
+
 }
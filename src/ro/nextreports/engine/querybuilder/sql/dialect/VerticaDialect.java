@@ -93,5 +93,9 @@ public class VerticaDialect extends AbstractDialect {
         return "select 1";
     }
 
+    public String getPagedSql(String sql, int offset, int limit) {
+    	return "SELECT * FROM (" + trimSql(sql) + ") A LIMIT " + limit + " OFFSET " + offset;
+    }
+
 }
 
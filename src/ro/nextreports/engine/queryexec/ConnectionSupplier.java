@@ -0,0 +1,45 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.nextreports.engine.queryexec;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Gives extra connections to the same database as the report connection (usually from a pool),
+ * used by the engine to run independent queries at the same time.
+ *
+ * Implementations must be thread safe.
+ */
+public interface ConnectionSupplier {
+
+	/**
+	 * Get a connection
+	 *
+	 * @return connection
+	 * @throws SQLException if a connection cannot be obtained
+	 */
+	public Connection getConnection() throws SQLException;
+
+	/**
+	 * Give back a connection obtained with getConnection
+	 *
+	 * @param connection connection
+	 */
+	public void releaseConnection(Connection connection);
+
+}
@@ -0,0 +1,53 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.nextreports.engine.queryexec;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import javax.sql.DataSource;
+
+import ro.nextreports.engine.querybuilder.sql.dialect.ConnectionUtil;
+
+/**
+ * Connection supplier over a DataSource (usually a connection pool). A released connection is closed,
+ * so a pooled connection goes back to its pool.
+ */
+public class DataSourceConnectionSupplier implements ConnectionSupplier {
+
+	private DataSource dataSource;
+
+	public DataSourceConnectionSupplier(DataSource dataSource) {
+		if (dataSource == null) {
+			throw new IllegalArgumentException("dataSource cannot be null");
+		}
+		this.dataSource = dataSource;
+	}
+
+	public DataSource getDataSource() {
+		return dataSource;
+	}
+
+	public Connection getConnection() throws SQLException {
+		return dataSource.getConnection();
+	}
+
+	public void releaseConnection(Connection connection) {
+		ConnectionUtil.closeConnection(connection);
+	}
+
+}
@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.nextreports.engine.queryexec;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import ro.nextreports.engine.RunContext;
+
+/**
+ * Connection supplier which gives at most maxConnections connections at the same time from another supplier.
+ * A thread asking for a connection over the limit waits until another connection is released, but not
+ * after the deadline of the run.
+ *
+ * A report run uses its own limited supplier, so the limit is for every run.
+ */
+public class LimitedConnectionSupplier implements ConnectionSupplier {
+
+	private final ConnectionSupplier supplier;
+	private final int maxConnections;
+	private final Semaphore permits;
+	private final RunContext runContext;
+
+	/**
+	 * @param supplier supplier of connections
+	 * @param maxConnections maximum number of connections used at the same time (at least 1)
+	 */
+	public LimitedConnectionSupplier(ConnectionSupplier supplier, int maxConnections) {
+		this(supplier, maxConnections, null);
+	}
+
+	/**
+	 * @param supplier supplier of connections
+	 * @param maxConnections maximum number of connections used at the same time (at least 1)
+	 * @param runContext context of the run (null to wait for a connection without deadline)
+	 */
+	public LimitedConnectionSupplier(ConnectionSupplier supplier, int maxConnections, RunContext runContext) {
+		if (supplier == null) {
+			throw new IllegalArgumentException("supplier cannot be null");
+		}
+		if (maxConnections < 1) {
+			throw new IllegalArgumentException("maxConnections must be at least 1");
+		}
+		this.supplier = supplier;
+		this.maxConnections = maxConnections;
+		this.permits = new Semaphore(maxConnections, true);
+		this.runContext = runContext;
+	}
+
+	public int getMaxConnections() {
+		return maxConnections;
+	}
+
+	/**
+	 * @return number of connections which are given and not released
+	 */
+	public int getUsedConnections() {
+		return maxConnections - permits.availablePermits();
+	}
+
+	public Connection getConnection() throws SQLException {
+		if ((runContext != null) && runContext.isStopped()) {
+			throw new SQLException(runContext.getStopReason());
+		}
+		try {
+			if (runContext == null) {
+				permits.acquire();
+			} else if (!permits.tryAcquire(runContext.getRemainingMillis(), TimeUnit.MILLISECONDS)) {
+				throw new SQLException("No connection available until run deadline");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted while waiting for a connection");
+		}
+		if ((runContext != null) && runContext.isStopped()) {
+			permits.release();
+			throw new SQLException(runContext.getStopReason());
+		}
+		boolean obtained = false;
+		try {
+			Connection connection = supplier.getConnection();
+			obtained = true;
+			return connection;
+		} finally {
+			if (!obtained) {
+				permits.release();
+			}
+		}
+	}
+
+	public void releaseConnection(Connection connection) {
+		try {
+			supplier.releaseConnection(connection);
+		} finally {
+			permits.release();
+		}
+	}
+
+}
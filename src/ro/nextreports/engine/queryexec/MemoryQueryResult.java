@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.nextreports.engine.queryexec;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Query result with rows already read in memory.
+ *
+ * Column names are found ignoring case, like ResultSet.getObject(String).
+ */
+public class MemoryQueryResult extends QueryResult {
+
+	private List<Object[]> rows;
+	private int cursor = -1;
+	private Map<String, Integer> upperIndexes;
+
+	/**
+	 * @param result result which gives the columns
+	 * @param rows rows (every row has a value for every column of result)
+	 */
+	public MemoryQueryResult(QueryResult result, List<Object[]> rows) {
+		super(result, rows.size());
+		this.rows = rows;
+		upperIndexes = new HashMap<String, Integer>();
+		for (int i = 0, n = result.getColumnCount(); i < n; i++) {
+			upperIndexes.put(result.getColumnName(i).toUpperCase(), i);
+		}
+	}
+
+	public boolean hasNext() throws QueryException {
+		if (cursor < rows.size()) {
+			cursor++;
+		}
+		return cursor < rows.size();
+	}
+
+	public Object nextValue(String columnName) throws QueryException {
+		return getValueAt(cursor, columnName);
+	}
+
+	public Object nextValue(int columnIndex) throws QueryException {
+		return getValueAt(cursor, columnIndex);
+	}
+
+	public Object getValueAt(int rowIndex, int columnIndex) throws QueryException {
+		if ((rowIndex < 0) || (rowIndex >= rows.size())) {
+			throw new QueryException("Invalid row " + rowIndex);
+		}
+		if ((columnIndex < 0) || (columnIndex >= getColumnCount())) {
+			throw new QueryException("Invalid column " + columnIndex);
+		}
+		return rows.get(rowIndex)[columnIndex];
+	}
+
+	public Object getValueAt(int rowIndex, String columnName) throws QueryException {
+		Integer index = upperIndexes.get(columnName.toUpperCase());
+		if (index == null) {
+			throw new QueryException("Column '" + columnName + "' not found");
+		}
+		return getValueAt(rowIndex, index);
+	}
+
+	public void beforeFirst() throws QueryException {
+		cursor = -1;
+	}
+
+	public List<Object> getNextValues(String columnName, int count) throws QueryException {
+		return null;
+	}
+
+	public void close() {
+	}
+
+}
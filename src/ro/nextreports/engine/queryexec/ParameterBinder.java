@@ -0,0 +1,242 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.nextreports.engine.queryexec;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.text.ParseException;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import ro.nextreports.engine.querybuilder.IdNameRenderer;
+import ro.nextreports.engine.util.DateUtil;
+
+/**
+ * Sets the values of a parameter type on a prepared statement. A binder is found once for every parameter
+ * (by its value class) and then used for all its values. Values can be simple values or IdName objects.
+ *
+ * Binders have no state and are shared by all query executors.
+ */
+abstract class ParameterBinder {
+
+	private static Log LOG = LogFactory.getLog(ParameterBinder.class);
+
+	private static final Map<Class<?>, ParameterBinder> BINDERS = new HashMap<Class<?>, ParameterBinder>();
+
+	static {
+		BINDERS.put(Object.class, new ParameterBinder(Types.JAVA_OBJECT) {
+			protected void bindValue(PreparedStatement pstmt, int index, Object value) throws SQLException {
+				pstmt.setObject(index, value);
+			}
+		});
+		BINDERS.put(Boolean.class, new ParameterBinder(Types.BIT) {
+			protected void bindValue(PreparedStatement pstmt, int index, Object value) throws SQLException {
+				pstmt.setBoolean(index, (Boolean) value);
+			}
+		});
+		BINDERS.put(Byte.class, new ParameterBinder(Types.TINYINT) {
+			protected void bindValue(PreparedStatement pstmt, int index, Object value) throws SQLException {
+				pstmt.setByte(index, (Byte) value);
+			}
+		});
+		BINDERS.put(Double.class, new ParameterBinder(Types.DOUBLE) {
+			protected void bindValue(PreparedStatement pstmt, int index, Object value) throws SQLException {
+				pstmt.setDouble(index, (Double) value);
+			}
+		});
+		BINDERS.put(Float.class, new ParameterBinder(Types.FLOAT) {
+			protected void bindValue(PreparedStatement pstmt, int index, Object value) throws SQLException {
+				pstmt.setFloat(index, (Float) value);
+			}
+		});
+		BINDERS.put(Integer.class, new ParameterBinder(Types.INTEGER) {
+			protected void bindValue(PreparedStatement pstmt, int index, Object value) throws SQLException {
+				pstmt.setInt(index, (Integer) value);
+			}
+
+			protected void bindId(PreparedStatement pstmt, int index, Serializable id) throws SQLException {
+				pstmt.setObject(index, id);
+			}
+		});
+		BINDERS.put(Long.class, new ParameterBinder(Types.BIGINT) {
+			protected void bindValue(PreparedStatement pstmt, int index, Object value) throws SQLException {
+				pstmt.setLong(index, (Long) value);
+			}
+		});
+		BINDERS.put(Short.class, new ParameterBinder(Types.SMALLINT) {
+			protected void bindValue(PreparedStatement pstmt, int index, Object value) throws SQLException {
+				pstmt.setShort(index, (Short) value);
+			}
+		});
+		//@todo
+		// ParameterUtil -> values are taken from dialect (where there is no BigDecimal yet!)
+		// or from meta  data
+		BINDERS.put(BigDecimal.class, new ParameterBinder(Types.DECIMAL) {
+			protected void bindValue(PreparedStatement pstmt, int index, Object value) throws SQLException {
+				// a simple value cannot be cast to BigDecimal!
+				pstmt.setObject(index, value);
+			}
+
+			protected void bindId(PreparedStatement pstmt, int index, Serializable id) throws SQLException {
+				if (id instanceof BigDecimal) {
+					pstmt.setBigDecimal(index, (BigDecimal) id);
+				} else {
+					pstmt.setInt(index, (Integer) id);
+				}
+			}
+		});
+		BINDERS.put(String.class, new ParameterBinder(Types.VARCHAR) {
+			protected void bindValue(PreparedStatement pstmt, int index, Object value) throws SQLException {
+				pstmt.setString(index, value.toString());
+			}
+
+			protected void bindId(PreparedStatement pstmt, int index, Serializable id) throws SQLException {
+				if (id == null) {
+					pstmt.setNull(index, Types.VARCHAR);
+				} else {
+					pstmt.setString(index, id.toString());
+				}
+			}
+
+			Object toJdbcValue(Object value) {
+				value = super.toJdbcValue(value);
+				return (value == null) ? null : value.toString();
+			}
+		});
+		BINDERS.put(Date.class, new DateBinder(Types.DATE) {
+			protected void bindValue(PreparedStatement pstmt, int index, Object value) throws SQLException {
+				pstmt.setDate(index, (java.sql.Date) toJdbcValue(value));
+			}
+
+			protected Object toJdbcDate(Date date) {
+				return (date instanceof java.sql.Date) ? date : new java.sql.Date(date.getTime());
+			}
+		});
+		BINDERS.put(Timestamp.class, new DateBinder(Types.TIMESTAMP) {
+			protected void bindValue(PreparedStatement pstmt, int index, Object value) throws SQLException {
+				pstmt.setTimestamp(index, (Timestamp) toJdbcValue(value));
+			}
+
+			protected Object toJdbcDate(Date date) {
+				return (date instanceof Timestamp) ? date : new Timestamp(date.getTime());
+			}
+		});
+		BINDERS.put(Time.class, new DateBinder(Types.TIME) {
+			protected void bindValue(PreparedStatement pstmt, int index, Object value) throws SQLException {
+				pstmt.setTime(index, (Time) toJdbcValue(value));
+			}
+
+			protected Object toJdbcDate(Date date) {
+				return (date instanceof Time) ? date : new Time(date.getTime());
+			}
+		});
+	}
+
+	private final int sqlType;
+
+	private ParameterBinder(int sqlType) {
+		this.sqlType = sqlType;
+	}
+
+	/**
+	 * Get the binder for a parameter value class
+	 *
+	 * @param valueClass parameter value class
+	 * @return binder
+	 * @throws QueryException if value class is not supported
+	 */
+	static ParameterBinder getBinder(Class<?> valueClass) throws QueryException {
+		ParameterBinder binder = BINDERS.get(valueClass);
+		if (binder == null) {
+			throw new QueryException("Parameter type " + valueClass.getName() + " not supported in query");
+		}
+		return binder;
+	}
+
+	/**
+	 * Set a value
+	 *
+	 * @param pstmt prepared statement
+	 * @param index parameter index (first is 1)
+	 * @param value value, IdName or null
+	 * @throws SQLException if value cannot be set
+	 */
+	void bind(PreparedStatement pstmt, int index, Object value) throws SQLException {
+		if (value == null) {
+			pstmt.setNull(index, sqlType);
+		} else if (value instanceof IdName) {
+			bindId(pstmt, index, ((IdName) value).getId());
+		} else {
+			bindValue(pstmt, index, value);
+		}
+	}
+
+	/**
+	 * Get the object passed to the driver for a value (used for array parameters)
+	 *
+	 * @param value value, IdName or null
+	 * @return jdbc value
+	 */
+	Object toJdbcValue(Object value) {
+		return (value instanceof IdName) ? ((IdName) value).getId() : value;
+	}
+
+	protected abstract void bindValue(PreparedStatement pstmt, int index, Object value) throws SQLException;
+
+	protected void bindId(PreparedStatement pstmt, int index, Serializable id) throws SQLException {
+		bindValue(pstmt, index, id);
+	}
+
+	// date ids from IdName objects may be strings formatted with IdNameRenderer.DATE_PATTERN
+	private static abstract class DateBinder extends ParameterBinder {
+
+		private DateBinder(int sqlType) {
+			super(sqlType);
+		}
+
+		Object toJdbcValue(Object value) {
+			value = super.toJdbcValue(value);
+			if (value == null) {
+				return null;
+			}
+			Date date;
+			if (value instanceof String) {
+				try {
+					date = DateUtil.parse((String) value, IdNameRenderer.DATE_PATTERN);
+				} catch (ParseException e) {
+					LOG.error(e.getMessage(), e);
+					date = new Date();
+				}
+			} else {
+				date = (Date) value;
+			}
+			return toJdbcDate(date);
+		}
+
+		protected abstract Object toJdbcDate(Date date);
+	}
+
+}
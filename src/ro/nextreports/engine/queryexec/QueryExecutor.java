@@ -16,18 +16,15 @@
  */
 package ro.nextreports.engine.queryexec;
 
-import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Time;
-import java.sql.Timestamp;
-import java.sql.Types;
+import java.sql.Statement;
 import java.sql.CallableStatement;
 import java.text.SimpleDateFormat;
-import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -35,12 +32,18 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.io.Serializable;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
-import ro.nextreports.engine.querybuilder.IdNameRenderer;
+import ro.nextreports.engine.EngineProperties;
+import ro.nextreports.engine.RunContext;
 import ro.nextreports.engine.querybuilder.sql.dialect.ConnectionUtil;
 import ro.nextreports.engine.querybuilder.sql.dialect.Dialect;
 import ro.nextreports.engine.querybuilder.sql.dialect.DialectException;
@@ -101,6 +104,27 @@ public class QueryExecutor implements Runnable {
     private boolean isCsv = false;
 
     private Map<Integer, Object> statementParameters = new HashMap<Integer, Object>();
+    // binders by parameter name
+    private Map<String, ParameterBinder> binders = new HashMap<String, ParameterBinder>();
+    // indexes (in parameterNames) of multiple selection parameters bound as arrays
+    private Set<Integer> arrayParameters = new HashSet<Integer>();
+    // temporary tables by indexes (in parameterNames) of multiple selection parameters passed through them
+    private Map<Integer, InListTable> inListTables = new HashMap<Integer, InListTable>();
+    // temporary tables could not be used : values of big IN lists are bound as parameters
+    private boolean inListTablesFailed;
+    private Dialect dialect;
+    // count statement runs on a connection from this supplier at the same time with the query
+    private ConnectionSupplier connectionSupplier;
+    private RunContext runContext;
+
+    private static final AtomicLong inListTableCounter = new AtomicLong();
+
+    private static final int IN_LIST_TABLE_BATCH_SIZE = 1000;
+    private static final Pattern IN_LIST_PATTERN = Pattern.compile("\\s+(NOT\\s+)?IN\\s*$", Pattern.CASE_INSENSITIVE);
+    // column (optionally qualified or quoted) before "IN" / "NOT IN"
+    private static final Pattern IN_LIST_OPERAND_PATTERN = Pattern.compile(
+    		"(?:^|(?<=[\\s(,]))((?:\"[^\"]*\"|[\\w$#]+)(?:\\.(?:\"[^\"]*\"|[\\w$#]+))*)\\s+(NOT\\s+)?IN\\s*$",
+    		Pattern.CASE_INSENSITIVE);
 	
     // check = false when we want to run a parameter sql query at runtime
 	public QueryExecutor(Query query, Map<String,QueryParameter> parameters,
@@ -163,6 +187,36 @@ public class QueryExecutor implements Runnable {
 		return parameterNames;
 	}
 
+	public ConnectionSupplier getConnectionSupplier() {
+		return connectionSupplier;
+	}
+
+	/**
+	 * Set a supplier of connections to the same database. If it is set, the count statement is run on its own
+	 * connection at the same time with the query. Queries which use temporary tables, procedure calls and
+	 * csv queries do not use the supplier.
+	 *
+	 * @param connectionSupplier connection supplier (null to run the count statement on query connection)
+	 */
+	public void setConnectionSupplier(ConnectionSupplier connectionSupplier) {
+		this.connectionSupplier = connectionSupplier;
+	}
+
+	public RunContext getRunContext() {
+		return runContext;
+	}
+
+	/**
+	 * Set the context of the run this query belongs to. The query is not started if the run is stopped,
+	 * its statements are cancelled when the run is cancelled and the timeout is limited to the time
+	 * remaining until run deadline.
+	 *
+	 * @param runContext run context (null if query does not belong to a run)
+	 */
+	public void setRunContext(RunContext runContext) {
+		this.runContext = runContext;
+	}
+
 	/**
 	 * Execute the query.
      * @return query result
@@ -170,10 +224,63 @@ public class QueryExecutor implements Runnable {
      * @throws InterruptedException interrupted exception
      */
 	public synchronized QueryResult execute() throws QueryException, InterruptedException {
+		Runnable cancelAction = null;
+		if (runContext != null) {
+			if (runContext.isStopped()) {
+				stop();
+				throw new QueryException(runContext.getStopReason());
+			}
+			cancelAction = new Runnable() {
+				public void run() {
+					cancelStatements();
+				}
+			};
+			runContext.addCancelAction(cancelAction);
+		}
+		boolean executed = false;
+		try {
+			QueryResult result = executeQuery();
+			executed = true;
+			if (cancelAction != null) {
+				// the statement can be cancelled while the rows are read
+				final RunContext context = runContext;
+				final Runnable action = cancelAction;
+				result.addCloseAction(new Runnable() {
+					public void run() {
+						context.removeCancelAction(action);
+					}
+				});
+			}
+			return result;
+		} catch (QueryException e) {
+			if ((runContext != null) && runContext.isStopped()) {
+				// worker thread is not needed anymore
+				closeRequest = true;
+				worker.interrupt();
+				throw new QueryException(runContext.getStopReason(), e);
+			}
+			throw e;
+		} finally {
+			if (!executed) {
+				if (cancelAction != null) {
+					runContext.removeCancelAction(cancelAction);
+				}
+				dropInListTables();
+			}
+		}
+	}
+
+	private QueryResult executeQuery() throws QueryException, InterruptedException {
 		// create query string
 		String queryString = createQueryString();
+		if (!createInListTables()) {
+			// values are bound as parameters of the query
+			inListTablesFailed = true;
+			queryString = createQueryString();
+		}
 
         PreparedStatement countPstmt = null;
+        Connection countConn = null;
         if (computeCount) {
             try {
                 // count statement
@@ -182,13 +289,19 @@ public class QueryExecutor implements Runnable {
                 	// csv jdbc driver does not support sub-select
                 	countQueryString = getCsvCountQuery(queryString);
                 }
-                countPstmt = createStatement(countQueryString);
+                countConn = getCountConnection(queryString);
+                countPstmt = createStatement((countConn == null) ? conn : countConn, countQueryString);
                 if (parameterNames.size() != 0) {
                     setParameterValues(countPstmt);
                 }
             } catch (QueryException ex) {
                 LOG.info("Cannot create count statement : " + ex.getMessage() + " .Will use rs.last()");
+                ConnectionUtil.closeStatement(countPstmt);
                 countPstmt = null;
+                if (countConn != null) {
+                	connectionSupplier.releaseConnection(countConn);
+                	countConn = null;
+                }
             }
         }
 
@@ -212,6 +325,7 @@ public class QueryExecutor implements Runnable {
 		synchronized (inputWrapper) {
 			inputWrapper.statement = pstmt;
             inputWrapper.countStatement = countPstmt;
+            inputWrapper.countConnection = countConn;
             inputWrapper.query = queryString;
 			inputWrapper.pending = true;
 			inputWrapper.notify();
@@ -244,7 +358,18 @@ public class QueryExecutor implements Runnable {
 				inputWrapper.notify();
 			}
 
-			return new QueryResult(resultWrapper.resultSet, resultWrapper.count, resultWrapper.executeTime);
+			QueryResult result = new QueryResult(resultWrapper.resultSet, resultWrapper.count, resultWrapper.executeTime);
+			if (!inListTables.isEmpty()) {
+				// temporary tables are used by the result set
+				final PreparedStatement statement = pstmt;
+				result.addCloseAction(new Runnable() {
+					public void run() {
+						ConnectionUtil.closeStatement(statement);
+						dropInListTables();
+					}
+				});
+			}
+			return result;
 		}
 	}
 
@@ -304,25 +429,24 @@ public class QueryExecutor implements Runnable {
 
                         // try to get the count with a "select *"
                         // if that fails try to get the count with rs.last() (which is time & memory expensive)
-                        // IMPORTANT : execute the count statement first (before the statement) ,otherwise there are
-                        // drivers that will close the connection (Firebird), and an error of "result set is closed"
-                        // will arise
+                        // IMPORTANT : on the query connection execute the count statement first (before the statement),
+                        // otherwise there are drivers that will close the connection (Firebird), and an error of
+                        // "result set is closed" will arise
+                        // on its own connection the count statement runs at the same time with the statement
                         count=-1;
                         boolean useLast = false;
+                        FutureTask<Integer> countTask = null;
                         if (inputWrapper.countStatement != null) {
-                        	ResultSet countResultSet = null;
-                            try {
-                                countResultSet = inputWrapper.countStatement.executeQuery();
-                                countResultSet.next();
-                                count = countResultSet.getInt(1);                                
-                            } catch (SQLException e) {
-                                LOG.info("Cannot execute count statement : " + e.getMessage() + " .Will use rs.last()");
-                                useLast = true;
-                            } finally {                            	
-                            	ConnectionUtil.closeStatement(inputWrapper.countStatement);                            		
-                            	ConnectionUtil.closeResultSet(countResultSet);
-                            	inputWrapper.countStatement = null;
-                            }
+                        	if (inputWrapper.countConnection != null) {
+                        		countTask = startCount();
+                        	} else {
+                        		try {
+                        			count = executeCount();
+                        		} catch (SQLException e) {
+                        			LOG.info("Cannot execute count statement : " + e.getMessage() + " .Will use rs.last()");
+                        			useLast = true;
+                        		}
+                        	}
                         } else {
                             if (!cancelRequest) {
                                 useLast = true;
@@ -330,13 +454,32 @@ public class QueryExecutor implements Runnable {
                         }
                         
                         if (!cancelRequest) {
-                            resultSet = inputWrapper.statement.executeQuery();
+                            try {
+                            	resultSet = inputWrapper.statement.executeQuery();
+                            } catch (SQLException e) {
+                            	cancelCount(countTask);
+                            	throw e;
+                            }
+
+                            if (countTask != null) {
+                            	try {
+                            		count = countTask.get();
+                            	} catch (ExecutionException e) {
+                            		LOG.info("Cannot execute count statement : " + e.getCause().getMessage() + " .Will use rs.last()");
+                            		useLast = true;
+                            	} catch (InterruptedException e) {
+                            		// executor is stopped
+                            		cancelCount(countTask);
+                            	}
+                            }
 
                             if (useLast && !cancelRequest && computeCount) {
                                 resultSet.last();
                                 count = resultSet.getRow();
                                 resultSet.beforeFirst();
                             }
+                        } else {
+                        	cancelCount(countTask);
                         }
                     }
 
@@ -446,6 +589,10 @@ public class QueryExecutor implements Runnable {
 	}
 
     private PreparedStatement createStatement(String queryString) throws QueryException {
+    	return createStatement(conn, queryString);
+    }
+
+    private PreparedStatement createStatement(Connection conn, String queryString) throws QueryException {
 		// create the prepared statement
 		PreparedStatement pstmt;
 		try {
@@ -484,7 +631,7 @@ public class QueryExecutor implements Runnable {
 			// these feature yet)
 			try {
 				// set timeout
-				pstmt.setQueryTimeout(timeout);
+				pstmt.setQueryTimeout((runContext == null) ? timeout : runContext.getQueryTimeout(timeout));
 
 				// set max rows
 				pstmt.setMaxRows(maxRows);
@@ -509,10 +656,17 @@ public class QueryExecutor implements Runnable {
 				parameter = parameters.get(parameterName);
 				parameterValue = parameterValues.get(parameterName);
 				
-				if (QueryParameter.MULTIPLE_SELECTION.equals(parameter.getSelection())) {
+				ParameterBinder binder = getBinder(parameter);
+				
+				if (arrayParameters.contains(j)) {
+					setArrayParameterValue(pstmt, parameter, binder, (Object[]) parameterValue, i);
+				} else if (inListTables.containsKey(j)) {
+					// values are in a temporary table
+					i--;
+				} else if (QueryParameter.MULTIPLE_SELECTION.equals(parameter.getSelection())) {
 					Object[] multiParamValue = (Object[]) parameterValue;
 					for (int k = 0; k < multiParamValue.length; k++) {
-						setParameterValue(pstmt, parameter.getValueClass(), multiParamValue[k], i);
+						setParameterValue(pstmt, binder, multiParamValue[k], i);
 						i ++;
 						n ++;
 					}
@@ -526,7 +680,7 @@ public class QueryExecutor implements Runnable {
                             index = i + 1;
                         }
                     }
-                    setParameterValue(pstmt, parameter.getValueClass(), parameterValue, index);
+                    setParameterValue(pstmt, binder, parameterValue, index);
 				}
 			}
 
@@ -544,207 +698,47 @@ public class QueryExecutor implements Runnable {
         }
     }
 
-    private void setParameterValue(PreparedStatement pstmt, Class paramValueClass,
-			Object paramValue, int index) throws SQLException, QueryException {
+    private void setParameterValue(PreparedStatement pstmt, ParameterBinder binder,
+			Object paramValue, int index) throws SQLException {
 
         // for "NOT IN (?)" setting null -> result is undeterminated
         // ParameterUtil.NULL was good only for list of strings (for NOT IN)!
         if (ParameterUtil.NULL.equals(paramValue)) {
             paramValue = null;
         }
-        if (paramValueClass.equals(Object.class)) {
-			if (paramValue == null) {
-				pstmt.setNull(index + 1, Types.JAVA_OBJECT);
-			} else {
-				if (paramValue instanceof IdName) {
-					pstmt.setObject(index + 1, ((IdName)paramValue).getId());
-				} else {
-					pstmt.setObject(index + 1, paramValue);
-				}
-			}
-		} else if (paramValueClass.equals(Boolean.class)) {
-			if (paramValue == null) {
-				pstmt.setNull(index + 1, Types.BIT);
-			} else {
-				if (paramValue instanceof IdName) {
-					pstmt.setBoolean(index + 1, (Boolean)((IdName) paramValue).getId());
-				} else {
-					pstmt.setBoolean(index + 1, (Boolean) paramValue);
-				}
-			}
-		} else if (paramValueClass.equals(Byte.class)) {
-			if (paramValue == null) {
-				pstmt.setNull(index + 1, Types.TINYINT);
-			} else {
-				if (paramValue instanceof IdName) {
-					pstmt.setByte(index + 1, (Byte)((IdName) paramValue).getId());
-				} else {
-					pstmt.setByte(index + 1, (Byte) paramValue);
-				}
-			}
-		} else if (paramValueClass.equals(Double.class)) {
-			if (paramValue == null) {
-				pstmt.setNull(index + 1, Types.DOUBLE);
-			} else {
-				if (paramValue instanceof IdName) {
-					pstmt.setDouble(index + 1, (Double)((IdName) paramValue).getId());
-				} else {
-					pstmt.setDouble(index + 1, (Double) paramValue);
-				}
-			}
-		} else if (paramValueClass.equals(Float.class)) {
-			if (paramValue == null) {
-				pstmt.setNull(index + 1, Types.FLOAT);
-			} else {
-				if (paramValue instanceof IdName) {
-					pstmt.setFloat(index + 1, (Float)((IdName) paramValue).getId());
-				} else {
-					pstmt.setFloat(index + 1, (Float) paramValue);
-				}
-			}
-		} else if (paramValueClass.equals(Integer.class)) {
-			if (paramValue == null) {
-				pstmt.setNull(index + 1, Types.INTEGER);
-			} else {
-				if (paramValue instanceof IdName) {
-					pstmt.setObject(index + 1, ((IdName) paramValue).getId());
-				} else {                    
-                    pstmt.setInt(index + 1, (Integer) paramValue);
-				}
-			}
-		} else if (paramValueClass.equals(Long.class)) {
-			if (paramValue == null) {
-				pstmt.setNull(index + 1, Types.BIGINT);
-			} else {
-				if (paramValue instanceof IdName) {
-					pstmt.setLong(index + 1, (Long)((IdName) paramValue).getId());
-				} else {
-					pstmt.setLong(index + 1, (Long) paramValue);
-				}
-			}
-		} else if (paramValueClass.equals(Short.class)) {
-			if (paramValue == null) {
-				pstmt.setNull(index + 1, Types.SMALLINT);
-			} else {
-				if (paramValue instanceof IdName) {
-					pstmt.setShort(index + 1, (Short)((IdName) paramValue).getId());
-				} else {
-					pstmt.setShort(index + 1, (Short) paramValue);
-				}
-			}
-
-        //@todo    
-        // ParameterUtil -> values are taken from dialect (where there is no BigDecimal yet!)
-        // or from meta  data
-        } else if (paramValueClass.equals(BigDecimal.class)) {        	
-			if (paramValue == null) {
-				pstmt.setNull(index + 1, Types.DECIMAL);
-			} else {
-				if (paramValue instanceof IdName) {
-                    Serializable ser = ((IdName) paramValue).getId();
-                    if (ser instanceof BigDecimal) {
-                        pstmt.setBigDecimal(index + 1, (BigDecimal)(ser));
-                    } else {
-                        pstmt.setInt(index + 1, (Integer)(ser));
-                    }
-                } else {
-                	// a simple value cannot be cast to BigDecimal!                	
-					pstmt.setObject(index + 1, paramValue);
-				}
-			}
-		} else if (paramValueClass.equals(String.class)) {
-			if (paramValue == null) {
-				pstmt.setNull(index + 1, Types.VARCHAR);
-			} else {
-				if (paramValue instanceof IdName) {
-					if (((IdName)paramValue).getId() == null) {
-						pstmt.setNull(index + 1,Types.VARCHAR);
-					} else {
-						pstmt.setString(index + 1, ((IdName)paramValue).getId().toString());
-					}
-				} else {
-					pstmt.setString(index + 1, paramValue.toString());
-				}
-			}
-		} else if (paramValueClass.equals(Date.class)) {
-			if (paramValue == null) {
-				pstmt.setNull(index + 1, Types.DATE);
-			} else {
-				if (paramValue instanceof IdName) {
-                    Serializable obj = ((IdName)paramValue).getId();
-                    Date date;
-                    if (obj instanceof String) {
-                        try {
-                            date = IdNameRenderer.sdf.parse((String)obj);
-                        } catch (ParseException e) {
-                            e.printStackTrace();
-                            LOG.error(e.getMessage(), e);
-                            date = new Date();
-                        }
-                    } else {
-                        date = (Date)obj;
-                    }
-                    pstmt.setDate(index + 1, new java.sql.Date(date.getTime()));
-				} else {
-					pstmt.setDate(index + 1, new java.sql.Date(((Date) paramValue).getTime()));
-				}
-			}
-		} else if (paramValueClass.equals(Timestamp.class)) {
-			if (paramValue == null) {
-				pstmt.setNull(index + 1, Types.TIMESTAMP);
-			} else {
-				if (paramValue instanceof IdName) {
-                    Serializable obj = ((IdName)paramValue).getId();
-                    Date date;
-                    if (obj instanceof String) {
-                        try {
-                            date = IdNameRenderer.sdf.parse((String)obj);
-                        } catch (ParseException e) {
-                            e.printStackTrace();
-                            LOG.error(e.getMessage(), e);
-                            date = new Date();
-                        }
-                    } else {
-                        date = (Date)obj;
-                    }
-
-                    pstmt.setTimestamp(index + 1, new Timestamp(date.getTime()));
-				} else {                    
-                    pstmt.setTimestamp(index + 1, new Timestamp(((Date) paramValue).getTime()));
-				}
-			}
-		} else if (paramValueClass.equals(Time.class)) {
-			if (paramValue == null) {
-				pstmt.setNull(index + 1, Types.TIME);
-			} else {
-				if (paramValue instanceof IdName) {
-                    Serializable obj = ((IdName)paramValue).getId();
-                    Date date;
-                    if (obj instanceof String) {
-                        try {
-                            date = IdNameRenderer.sdf.parse((String)obj);
-                        } catch (ParseException e) {
-                            e.printStackTrace();
-                            LOG.error(e.getMessage(), e);
-                            date = new Date();
-                        }
-                    } else {
-                        date = (Date)obj;
-                    }
-                    pstmt.setTime(index + 1, new Time( date.getTime()));
-				} else {
-					pstmt.setTime(index + 1, new Time (((Date) paramValue).getTime()));
-				}
-			}
-		} else {
-			throw new QueryException("Parameter type " + paramValueClass.getName() +
-					" not supported in query");
-		}
+        binder.bind(pstmt, index + 1, paramValue);
         
         // for logSql()
         statementParameters.put(index, paramValue);
 	}
 
+    // all values of a multiple selection parameter bound as one array
+    private void setArrayParameterValue(PreparedStatement pstmt, QueryParameter parameter, ParameterBinder binder,
+    		Object[] paramValues, int index) throws SQLException {
+    	Object[] elements = new Object[paramValues.length];
+    	for (int i = 0; i < paramValues.length; i++) {
+    		Object value = paramValues[i];
+    		if (ParameterUtil.NULL.equals(value)) {
+    			value = null;
+    		}
+    		elements[i] = binder.toJdbcValue(value);
+    	}
+    	String type = getDialect().getInListArrayType(parameter.getValueClass());
+    	pstmt.setArray(index + 1, pstmt.getConnection().createArrayOf(type, elements));
+    	
+    	// for logSql()
+    	statementParameters.put(index, Arrays.asList(paramValues));
+    }
+
+    private ParameterBinder getBinder(QueryParameter parameter) throws QueryException {
+    	ParameterBinder binder = binders.get(parameter.getName());
+    	if (binder == null) {
+    		binder = ParameterBinder.getBinder(parameter.getValueClass());
+    		binders.put(parameter.getName(), binder);
+    	}
+    	return binder;
+    }
+
 	/**
 	 * Parse query and return a string query  that will be passed to prepared
 	 * statement(substitute parameter with '?' char).
@@ -759,6 +753,9 @@ public class QueryExecutor implements Runnable {
 		StringBuffer sb = new StringBuffer();
         QueryChunk chunk = null;
         int position = 1;
+        int parameterIndex = 0;
+        arrayParameters.clear();
+        inListTables.clear();
         for (int i = 0; i < chunks.length; i++) {
 			chunk = chunks[i];
 			//System.out.println("chunk = " + chunk);
@@ -768,7 +765,20 @@ public class QueryExecutor implements Runnable {
                     String paramName = chunk.getText();
 					QueryParameter param = parameters.get(paramName);					
 					if (QueryParameter.MULTIPLE_SELECTION.equals(param.getSelection())) {
-						Object[] paramValue = (Object[]) parameterValues.get(paramName);						
+						Object[] paramValue = (Object[]) parameterValues.get(paramName);
+						if (appendArrayInList(sb, param)) {
+							arrayParameters.add(parameterIndex);
+							parameterIndex++;
+							break;
+						}
+						if (appendTableInList(sb, param, paramValue.length, parameterIndex)) {
+							parameterIndex++;
+							break;
+						}
+						if (appendSplitInList(sb, paramValue.length)) {
+							parameterIndex++;
+							break;
+						}
 						sb.append('(');
 						for (int j = 0; j < paramValue.length; j++) {
 							if (j > 0) {
@@ -780,6 +790,7 @@ public class QueryExecutor implements Runnable {
 					} else {
 						sb.append("?");
 					}
+					parameterIndex++;
 					break;
 				}
 				case QueryChunk.TEXT_TYPE:
@@ -795,6 +806,254 @@ public class QueryExecutor implements Runnable {
         return sb.toString();
 	}
 
+	// replace "IN" / "NOT IN" before a multiple selection parameter with a comparison to an array
+	// if dialect supports array parameters : the sql is the same for any number of values
+	private boolean appendArrayInList(StringBuffer sb, QueryParameter param) {
+		if (isCsv) {
+			return false;
+		}
+		Matcher m = IN_LIST_PATTERN.matcher(sb);
+		if (!m.find()) {
+			return false;
+		}
+		Dialect dialect = getDialect();
+		if ((dialect == null) || (dialect.getInListArrayType(param.getValueClass()) == null)) {
+			return false;
+		}
+		boolean not = (m.group(1) != null);
+		sb.setLength(m.start());
+		sb.append(not ? " <> ALL (?)" : " = ANY (?)");
+		return true;
+	}
+
+	// replace a multiple selection parameter with more values than the threshold by a select from a
+	// temporary table : the number of values is not limited and the sql is the same for any number of values
+	// (every parameter in query has its own table, some databases do not allow a temporary table twice in a query)
+	private boolean appendTableInList(StringBuffer sb, QueryParameter param, int size, int parameterIndex) {
+		if (isCsv || inListTablesFailed || !IN_LIST_PATTERN.matcher(sb).find()) {
+			return false;
+		}
+		Dialect dialect = getDialect();
+		if (dialect == null) {
+			return false;
+		}
+		int threshold = EngineProperties.getInListTableThreshold();
+		if (threshold == 0) {
+			threshold = dialect.getMaxInListSize();
+		}
+		if (size <= threshold) {
+			return false;
+		}
+		Object[] values = (Object[]) parameterValues.get(param.getName());
+		Object[] jdbcValues = new Object[values.length];
+		try {
+			ParameterBinder binder = getBinder(param);
+			for (int i = 0; i < values.length; i++) {
+				jdbcValues[i] = ParameterUtil.NULL.equals(values[i]) ? null : binder.toJdbcValue(values[i]);
+			}
+		} catch (QueryException e) {
+			return false;
+		}
+		String tableName = "NR_IN_" + inListTableCounter.incrementAndGet();
+		String createSql = dialect.getInListTableSql(tableName, param.getValueClass(), jdbcValues);
+		if (createSql == null) {
+			return false;
+		}
+		InListTable table = new InListTable(createSql, dialect.getInListTableName(tableName));
+		inListTables.put(parameterIndex, table);
+		sb.append("(SELECT V FROM ").append(table.name).append(")");
+		return true;
+	}
+
+	// split a list with more values than the dialect accepts (for example more than 1000 values give ORA-01795)
+	// into more lists of the same column : "(X IN (?, ...) OR X IN (?, ...))" or "(X NOT IN (?, ...) AND X NOT IN (?, ...))"
+	// the values are bound in the same order as for a single list
+	private boolean appendSplitInList(StringBuffer sb, int size) {
+		if (isCsv) {
+			return false;
+		}
+		Dialect dialect = getDialect();
+		if ((dialect == null) || (size <= dialect.getMaxInListSize())) {
+			return false;
+		}
+		Matcher m = IN_LIST_OPERAND_PATTERN.matcher(sb);
+		if (!m.find()) {
+			// expression before IN is not a column
+			return false;
+		}
+		String column = m.group(1);
+		boolean not = (m.group(2) != null);
+		int max = dialect.getMaxInListSize();
+		sb.setLength(m.start());
+		sb.append('(');
+		for (int from = 0; from < size; from += max) {
+			if (from > 0) {
+				sb.append(not ? " AND " : " OR ");
+			}
+			sb.append(column).append(not ? " NOT IN (" : " IN (");
+			for (int j = from, end = Math.min(size, from + max); j < end; j++) {
+				if (j > from) {
+					sb.append(',');
+				}
+				sb.append('?');
+			}
+			sb.append(')');
+		}
+		sb.append(')');
+		return true;
+	}
+
+	// false if a table cannot be created or filled (for example if the user cannot create temporary tables) :
+	// all created tables are dropped
+	private boolean createInListTables() throws QueryException {
+		for (Map.Entry<Integer, InListTable> entry : inListTables.entrySet()) {
+			InListTable table = entry.getValue();
+			QueryParameter parameter = parameters.get(parameterNames.get(entry.getKey()));
+			ParameterBinder binder = getBinder(parameter);
+			Object[] values = (Object[]) parameterValues.get(parameter.getName());
+			Statement stmt = null;
+			PreparedStatement insert = null;
+			boolean failed = false;
+			try {
+				stmt = conn.createStatement();
+				stmt.execute(table.createSql);
+				table.created = true;
+				insert = conn.prepareStatement("INSERT INTO " + table.name + " (V) VALUES (?)");
+				for (int i = 0; i < values.length; i++) {
+					Object value = values[i];
+					if (ParameterUtil.NULL.equals(value)) {
+						value = null;
+					}
+					binder.bind(insert, 1, value);
+					insert.addBatch();
+					if ((i + 1) % IN_LIST_TABLE_BATCH_SIZE == 0) {
+						insert.executeBatch();
+					}
+				}
+				insert.executeBatch();
+			} catch (SQLException e) {
+				LOG.warn("Cannot set values of parameter " + parameter.getName() + " in a temporary table : " +
+						e.getMessage());
+				failed = true;
+			} finally {
+				ConnectionUtil.closeStatement(stmt);
+				ConnectionUtil.closeStatement(insert);
+			}
+			if (failed) {
+				dropInListTables();
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void dropInListTables() {
+		for (InListTable table : inListTables.values()) {
+			if (!table.created) {
+				continue;
+			}
+			Statement stmt = null;
+			try {
+				stmt = conn.createStatement();
+				stmt.execute("DROP TABLE " + table.name);
+				table.created = false;
+			} catch (SQLException e) {
+				// temporary table is dropped when connection is closed
+				LOG.warn("Cannot drop temporary table " + table.name + " : " + e.getMessage());
+			} finally {
+				ConnectionUtil.closeStatement(stmt);
+			}
+		}
+	}
+
+	// null if dialect cannot be found
+	private Dialect getDialect() {
+		if (dialect == null) {
+			try {
+				dialect = DialectUtil.getDialect(conn);
+			} catch (Exception e) {
+				LOG.error(e.getMessage(), e);
+			}
+		}
+		return dialect;
+	}
+
+	// called from the thread which cancels the run : statements are cancelled without waiting
+	private void cancelStatements() {
+		PreparedStatement countStatement = inputWrapper.countStatement;
+		PreparedStatement statement = inputWrapper.statement;
+		try {
+			if (countStatement != null) {
+				countStatement.cancel();
+			}
+			if (statement != null) {
+				statement.cancel();
+			}
+		} catch (SQLException e) {
+			LOG.warn("Cannot cancel statement : " + e.getMessage());
+		}
+	}
+
+	// count statement is closed and its connection is released
+	private int executeCount() throws SQLException {
+		PreparedStatement countStatement = inputWrapper.countStatement;
+		Connection countConnection = inputWrapper.countConnection;
+		ResultSet countResultSet = null;
+		try {
+			countResultSet = countStatement.executeQuery();
+			countResultSet.next();
+			return countResultSet.getInt(1);
+		} finally {
+			ConnectionUtil.closeResultSet(countResultSet);
+			ConnectionUtil.closeStatement(countStatement);
+			inputWrapper.countStatement = null;
+			if (countConnection != null) {
+				inputWrapper.countConnection = null;
+				connectionSupplier.releaseConnection(countConnection);
+			}
+		}
+	}
+
+	private FutureTask<Integer> startCount() {
+		FutureTask<Integer> task = new FutureTask<Integer>(new Callable<Integer>() {
+			public Integer call() throws Exception {
+				return executeCount();
+			}
+		});
+		Thread thread = new Thread(task, getClass().getSimpleName() + "-Count");
+		thread.setDaemon(true);
+		thread.start();
+		return task;
+	}
+
+	// count is not needed anymore : its thread releases the connection when the statement stops
+	private void cancelCount(FutureTask<Integer> countTask) {
+		if (countTask == null) {
+			return;
+		}
+		PreparedStatement countStatement = inputWrapper.countStatement;
+		if (countStatement != null) {
+			try {
+				countStatement.cancel();
+			} catch (SQLException e) {
+				// nothing to do
+			}
+		}
+	}
+
+	// the count statement uses a connection from the supplier only if it does not need the query connection
+	private Connection getCountConnection(String queryString) {
+		if ((connectionSupplier == null) || isCsv || !inListTables.isEmpty() || QueryUtil.isProcedureCall(queryString)) {
+			return null;
+		}
+		try {
+			return connectionSupplier.getConnection();
+		} catch (SQLException e) {
+			LOG.info("Cannot get a connection for count statement : " + e.getMessage());
+			return null;
+		}
+	}
+
 	private void cancel() {
 		cancelRequest = true;
 		try {			
@@ -960,10 +1219,24 @@ public class QueryExecutor implements Runnable {
 		}
 	}
 
+	private static class InListTable {
+
+		private final String createSql;
+		private final String name;
+		private boolean created;
+
+		private InListTable(String createSql, String name) {
+			this.createSql = createSql;
+			this.name = name;
+		}
+	}
+
 	class InputWrapper {
 
 		public PreparedStatement statement;
         public PreparedStatement countStatement;
+        // connection of the count statement if it is not the query connection
+        public Connection countConnection;
         public String query;
 		public boolean pending;
 
@@ -19,7 +19,10 @@ package ro.nextreports.engine.queryexec;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -31,12 +34,16 @@ public class QueryResult {
     private int numberOfRows;
     private int numberOfColumns;
     private long executeTime;
+    // run after the result set is closed
+    private List<Runnable> closeActions;
 
     // cache
     private Map<Integer,String> columnNames;
     private Map<String, Integer> columnIndexes;
     private Map<Integer,String> columnClassNames;
     private Map<Integer, Integer> columnTypes;
+    // precision and scale of NUMERIC and DECIMAL columns
+    private Map<Integer, int[]> columnPrecisions;
     
     public QueryResult(ResultSet rs, int count, long executeTime) throws QueryException {
         this.resultSet = rs;
@@ -46,11 +53,30 @@ public class QueryResult {
         initCache();
     }
 
+    /**
+     * Result without a result set, with the same columns as another result.
+     * Subclasses must provide the rows.
+     *
+     * @param result result with the same columns
+     * @param count number of rows
+     */
+    protected QueryResult(QueryResult result, int count) {
+        this.numberOfRows = count;
+        this.numberOfColumns = result.numberOfColumns;
+        this.executeTime = result.executeTime;
+        this.columnNames = result.columnNames;
+        this.columnIndexes = result.columnIndexes;
+        this.columnClassNames = result.columnClassNames;
+        this.columnTypes = result.columnTypes;
+        this.columnPrecisions = result.columnPrecisions;
+    }
+
     private void initCache() throws QueryException {
         columnNames = new HashMap<Integer,String>();
         columnIndexes = new HashMap<String, Integer>();
         columnClassNames = new HashMap<Integer,String>();
         columnTypes = new HashMap<Integer, Integer>();
+        columnPrecisions = new HashMap<Integer, int[]>();
         
         try {
             ResultSetMetaData metadata = resultSet.getMetaData();
@@ -60,12 +86,24 @@ public class QueryResult {
                 columnIndexes.put(metadata.getColumnLabel(i + 1), i);
                 columnClassNames.put(i, metadata.getColumnClassName(i + 1));
                 columnTypes.put(i, metadata.getColumnType(i + 1));
+                if ((columnTypes.get(i) == Types.NUMERIC) || (columnTypes.get(i) == Types.DECIMAL)) {
+                    columnPrecisions.put(i, getPrecision(metadata, i + 1));
+                }
             }
         } catch (SQLException e) {
             throw new QueryException(e);
         }
     }
     
+    // some drivers do not know the precision of a column
+    private int[] getPrecision(ResultSetMetaData metadata, int column) {
+        try {
+            return new int[] { metadata.getPrecision(column), metadata.getScale(column) };
+        } catch (SQLException e) {
+            return new int[] { 0, 0 };
+        }
+    }
+
     public boolean hasNext() throws QueryException {
         if (resultSet == null) {
             return false;
@@ -102,6 +140,54 @@ public class QueryResult {
         }
     }
     
+    /**
+     * Move before the first row
+     */
+    public void beforeFirst() throws QueryException {
+        if (resultSet == null) {
+            return;
+        }
+
+        try {
+            resultSet.beforeFirst();
+        } catch (SQLException e) {
+            throw new QueryException(e);
+        }
+    }
+
+    /**
+     * Get the values of a column for the current row and the following rows. The cursor is not moved.
+     *
+     * @param columnName column name
+     * @param count maximum number of rows
+     * @return column values or null if result cannot be scrolled
+     * @throws QueryException if values cannot be read
+     */
+    public List<Object> getNextValues(String columnName, int count) throws QueryException {
+        if (resultSet == null) {
+            return null;
+        }
+
+        try {
+            if (resultSet.getType() == ResultSet.TYPE_FORWARD_ONLY) {
+                return null;
+            }
+            int row = resultSet.getRow();
+            if (row == 0) {
+                return null;
+            }
+            List<Object> values = new ArrayList<Object>();
+            values.add(resultSet.getObject(columnName));
+            while ((values.size() < count) && resultSet.next()) {
+                values.add(resultSet.getObject(columnName));
+            }
+            resultSet.absolute(row);
+            return values;
+        } catch (SQLException e) {
+            throw new QueryException(e);
+        }
+    }
+
     public ResultSet getResultSet() {
         return resultSet;
     }
@@ -130,6 +216,28 @@ public class QueryResult {
     	return columnTypes.get(columnIndex);
     }
     
+    /**
+     * Get the precision of a NUMERIC or DECIMAL column
+     *
+     * @param columnIndex column index
+     * @return number of decimal digits or 0 if column is not NUMERIC or DECIMAL or precision is not known
+     */
+    public int getColumnPrecision(int columnIndex) {
+        int[] precision = columnPrecisions.get(columnIndex);
+        return (precision == null) ? 0 : precision[0];
+    }
+
+    /**
+     * Get the scale of a NUMERIC or DECIMAL column
+     *
+     * @param columnIndex column index
+     * @return number of digits after the decimal point (0 if column is not NUMERIC or DECIMAL)
+     */
+    public int getColumnScale(int columnIndex) {
+        int[] precision = columnPrecisions.get(columnIndex);
+        return (precision == null) ? 0 : precision[1];
+    }
+
     public int getColumnType(String columnName) {    	
     	return getColumnType(getColumnIndex(columnName));
     }
@@ -189,6 +297,26 @@ public class QueryResult {
                 e.printStackTrace();  
             }
         }
+        if (closeActions != null) {
+            List<Runnable> actions = closeActions;
+            closeActions = null;
+            for (Runnable action : actions) {
+                action.run();
+            }
+        }
+    }
+
+    /**
+     * Add an action run once, after the result set is closed (to release resources used by the query).
+     * Actions are run in the order they were added.
+     *
+     * @param closeAction action
+     */
+    void addCloseAction(Runnable closeAction) {
+        if (closeActions == null) {
+            closeActions = new ArrayList<Runnable>();
+        }
+        closeActions.add(closeAction);
     }
     
 }
@@ -0,0 +1,177 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.nextreports.engine.util;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import ro.nextreports.engine.ReleaseInfoAdapter;
+import ro.nextreports.engine.Report;
+
+/**
+ * Binary format of compiled reports :
+ *
+ * <pre>
+ *   int    magic ("NRCR")
+ *   int    format version
+ *   UTF    engine version
+ *   ...    deflated java serialization of the report object
+ * </pre>
+ *
+ * A compiled report can be read only by the engine version which wrote it (report classes may change
+ * between versions), so the xml report must be kept and compiled again after an engine upgrade.
+ * Only engine classes and java classes are deserialized.
+ */
+class CompiledReport {
+
+	private static final int MAGIC = 0x4E524352;
+	private static final int FORMAT_VERSION = 1;
+
+	static void write(Report report, OutputStream out) throws IOException {
+		DataOutputStream dos = new DataOutputStream(out);
+		dos.writeInt(MAGIC);
+		dos.writeInt(FORMAT_VERSION);
+		dos.writeUTF(ReleaseInfoAdapter.getVersionNumber());
+		dos.flush();
+		DeflaterOutputStream deflater = new DeflaterOutputStream(out, new Deflater(Deflater.BEST_COMPRESSION));
+		ObjectOutputStream oos = new ObjectOutputStream(deflater);
+		oos.writeObject(report);
+		oos.flush();
+		deflater.finish();
+		out.flush();
+	}
+
+	static Report read(InputStream is) throws LoadReportException {
+		try {
+			DataInputStream dis = new DataInputStream(is);
+			String version = readVersion(dis);
+			if (!ReleaseInfoAdapter.getVersionNumber().equals(version)) {
+				throw new LoadReportException("Compiled report version " + version +
+						" is different from engine version " + ReleaseInfoAdapter.getVersionNumber() + ".");
+			}
+			ObjectInputStream ois = new ReportObjectInputStream(new InflaterInputStream(dis));
+			return (Report) ois.readObject();
+		} catch (LoadReportException ex) {
+			throw ex;
+		} catch (Exception ex) {
+			throw new LoadReportException(ex.getMessage(), ex);
+		}
+	}
+
+	static Report read(File file) throws LoadReportException {
+		InputStream is = null;
+		try {
+			is = new BufferedInputStream(new FileInputStream(file));
+			return read(is);
+		} catch (IOException ex) {
+			throw new LoadReportException(ex.getMessage(), ex);
+		} finally {
+			close(is);
+		}
+	}
+
+	/**
+	 * Engine version which wrote a compiled report file
+	 *
+	 * @param file compiled report file
+	 * @return engine version or null if file is not a compiled report which can be read
+	 */
+	static String getVersion(File file) {
+		InputStream is = null;
+		try {
+			is = new FileInputStream(file);
+			return readVersion(new DataInputStream(is));
+		} catch (Exception ex) {
+			return null;
+		} finally {
+			close(is);
+		}
+	}
+
+	private static String readVersion(DataInputStream dis) throws IOException, LoadReportException {
+		if (dis.readInt() != MAGIC) {
+			throw new LoadReportException("Not a compiled report.");
+		}
+		int format = dis.readInt();
+		if (format != FORMAT_VERSION) {
+			throw new LoadReportException("Compiled report format " + format + " is not supported.");
+		}
+		return dis.readUTF();
+	}
+
+	private static void close(InputStream is) {
+		if (is != null) {
+			try {
+				is.close();
+			} catch (IOException e) {
+				// nothing to do
+			}
+		}
+	}
+
+	// compiled reports (and report indexes) may come from any stream : only engine and java classes are deserialized
+	static class ReportObjectInputStream extends ObjectInputStream {
+
+		ReportObjectInputStream(InputStream in) throws IOException {
+			super(in);
+		}
+
+		protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+			if (!isAllowed(desc.getName())) {
+				throw new InvalidClassException(desc.getName(), "Class is not allowed in a report stream");
+			}
+			return super.resolveClass(desc);
+		}
+
+		protected Class<?> resolveProxyClass(String[] interfaces) throws IOException, ClassNotFoundException {
+			throw new InvalidClassException("Proxy classes are not allowed in a report stream");
+		}
+
+		private static boolean isAllowed(String name) {
+			// arrays : [I, [Ljava.lang.String;, [[Lro.nextreports...;
+			int dimensions = 0;
+			while ((dimensions < name.length()) && (name.charAt(dimensions) == '[')) {
+				dimensions++;
+			}
+			if (dimensions > 0) {
+				name = name.substring(dimensions);
+				if (name.length() == 1) {
+					return true;
+				}
+				if (!name.startsWith("L") || !name.endsWith(";")) {
+					return false;
+				}
+				name = name.substring(1, name.length() - 1);
+			}
+			return name.startsWith("ro.nextreports.engine.") || name.startsWith("java.");
+		}
+	}
+
+}
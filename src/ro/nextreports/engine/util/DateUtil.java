@@ -18,22 +18,105 @@ package ro.nextreports.engine.util;
 
 import java.util.Date;
 import java.util.Calendar;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TimeZone;
 import java.sql.Timestamp;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
 
 /**
  * Created by IntelliJ IDEA.
  * User: mihai.panaitescu
  * Date: May 22, 2008
  * Time: 1:46:12 PM
+ *
+ * All methods are thread safe. Every thread reuses its own calendar and date formats instead of creating new ones
+ * on every call. They always use the current default time zone; a date format keeps the default locale from
+ * the time it was first used by the thread.
  */
 public class DateUtil {
 
+    private static final ThreadLocal<Calendar> CALENDAR = new ThreadLocal<Calendar>() {
+        protected Calendar initialValue() {
+            return Calendar.getInstance();
+        }
+    };
+
+    private static final ThreadLocal<Map<String, SimpleDateFormat>> FORMATS =
+            new ThreadLocal<Map<String, SimpleDateFormat>>() {
+        protected Map<String, SimpleDateFormat> initialValue() {
+            return new HashMap<String, SimpleDateFormat>();
+        }
+    };
+
     /**
      * Use only static methods
      */
     private DateUtil() {
     }
 
+    // calendar of current thread set to the date; it must not be used after another DateUtil method is called
+    private static Calendar calendar(Date d) {
+        Calendar c = CALENDAR.get();
+        setDefaultTimeZone(c);
+        c.setTime(d);
+        return c;
+    }
+
+    /**
+     * Get the date format for a pattern. The format belongs to the current thread : it must not be
+     * changed or passed to other threads.
+     *
+     * @param pattern date pattern
+     * @return date format of current thread
+     */
+    public static SimpleDateFormat getDateFormat(String pattern) {
+        Map<String, SimpleDateFormat> formats = FORMATS.get();
+        SimpleDateFormat format = formats.get(pattern);
+        if (format == null) {
+            format = new SimpleDateFormat(pattern);
+            formats.put(pattern, format);
+        } else {
+            TimeZone zone = TimeZone.getDefault();
+            if (!zone.hasSameRules(format.getTimeZone())) {
+                format.setTimeZone(zone);
+            }
+        }
+        return format;
+    }
+
+    // the default time zone may be changed after the calendar of the thread was created
+    private static void setDefaultTimeZone(Calendar c) {
+        TimeZone zone = TimeZone.getDefault();
+        if (!zone.hasSameRules(c.getTimeZone())) {
+            c.setTimeZone(zone);
+        }
+    }
+
+    /**
+     * Format a date
+     *
+     * @param d date
+     * @param pattern date pattern
+     * @return formatted date
+     */
+    public static String format(Date d, String pattern) {
+        return getDateFormat(pattern).format(d);
+    }
+
+    /**
+     * Parse a date
+     *
+     * @param text text to parse
+     * @param pattern date pattern
+     * @return parsed date
+     * @throws ParseException if text does not match the pattern
+     */
+    public static Date parse(String text, String pattern) throws ParseException {
+        return getDateFormat(pattern).parse(text);
+    }
+
     /**
      * Compares dates <code>d1</code> and <code>d2</code> taking into
      * consideration only the year, month and day
@@ -46,15 +129,7 @@ public class DateUtil {
      * @see #compare(java.util.Date , java.util.Date)
      */
     public static boolean after(Date d1, Date d2) {
-        d1 = floor(d1);
-        Calendar c1 = Calendar.getInstance();
-        c1.setTime(d1);
-
-        d2 = floor(d2);
-        Calendar c2 = Calendar.getInstance();
-        c2.setTime(d2);
-
-        return c1.after(c2);
+        return floor(d1).getTime() > floor(d2).getTime();
     }
 
     /**
@@ -69,15 +144,7 @@ public class DateUtil {
      * @see #compare(Date, Date)
      */
     public static boolean before(Date d1, Date d2) {
-        d1 = floor(d1);
-        Calendar c1 = Calendar.getInstance();
-        c1.setTime(d1);
-
-        d2 = floor(d2);
-        Calendar c2 = Calendar.getInstance();
-        c2.setTime(d2);
-
-        return c1.before(c2);
+        return floor(d1).getTime() < floor(d2).getTime();
     }
 
     /**
@@ -91,18 +158,19 @@ public class DateUtil {
      * @see #before(Date, Date)
      */
     public static int compare(Date d1, Date d2) {
-        Calendar c1 = Calendar.getInstance();
-        c1.setTime(d1);
-        Calendar c2 = Calendar.getInstance();
-        c2.setTime(d2);
-
-        if (c1.get(Calendar.YEAR) == c2.get(Calendar.YEAR)) {
-            if (c1.get(Calendar.MONTH) == c2.get(Calendar.MONTH)) {
-                return c1.get(Calendar.DAY_OF_MONTH) - c2.get(Calendar.DAY_OF_MONTH);
+        Calendar c = calendar(d1);
+        int year1 = c.get(Calendar.YEAR);
+        int month1 = c.get(Calendar.MONTH);
+        int day1 = c.get(Calendar.DAY_OF_MONTH);
+        c.setTime(d2);
+
+        if (year1 == c.get(Calendar.YEAR)) {
+            if (month1 == c.get(Calendar.MONTH)) {
+                return day1 - c.get(Calendar.DAY_OF_MONTH);
             }
-            return c1.get(Calendar.MONTH) - c2.get(Calendar.MONTH);
+            return month1 - c.get(Calendar.MONTH);
         }
-        return c1.get(Calendar.YEAR) - c2.get(Calendar.YEAR);
+        return year1 - c.get(Calendar.YEAR);
     }
 
     /** Get the year of the date
@@ -111,8 +179,7 @@ public class DateUtil {
      * @return year of the date
      */
     public static int getYear(Date date) {
-        Calendar c = Calendar.getInstance();
-        c.setTime(date);
+        Calendar c = calendar(date);
         return c.get(Calendar.YEAR);
     }
 
@@ -122,8 +189,7 @@ public class DateUtil {
      * @return month of the date
      */
     public static int getMonth(Date date) {
-        Calendar c = Calendar.getInstance();
-        c.setTime(date);
+        Calendar c = calendar(date);
         return c.get(Calendar.MONTH);
     }
 
@@ -133,8 +199,7 @@ public class DateUtil {
      * @return day of year of the date
      */
     public static int getDayOfYear(Date date) {
-        Calendar c = Calendar.getInstance();
-        c.setTime(date);
+        Calendar c = calendar(date);
         return c.get(Calendar.DAY_OF_YEAR);
     }
 
@@ -144,8 +209,7 @@ public class DateUtil {
      * @return day of month of the date
      */
     public static int getDayOfMonth(Date date) {
-        Calendar c = Calendar.getInstance();
-        c.setTime(date);
+        Calendar c = calendar(date);
         return c.get(Calendar.DAY_OF_MONTH);
     }
 
@@ -155,8 +219,7 @@ public class DateUtil {
      * @return day of week of the date
      */
     public static int getDayOfWeek(Date date) {
-        Calendar c = Calendar.getInstance();
-        c.setTime(date);
+        Calendar c = calendar(date);
         return c.get(Calendar.DAY_OF_WEEK);
     }
 
@@ -166,8 +229,7 @@ public class DateUtil {
      * @return hour of the date
      */
     public static int getHour(Date date) {
-        Calendar c = Calendar.getInstance();
-        c.setTime(date);
+        Calendar c = calendar(date);
         return c.get(Calendar.HOUR_OF_DAY);
     }
 
@@ -177,8 +239,7 @@ public class DateUtil {
      * @return minute of the date
      */
     public static int getMinute(Date date) {
-        Calendar c = Calendar.getInstance();
-        c.setTime(date);
+        Calendar c = calendar(date);
         return c.get(Calendar.MINUTE);
     }
 
@@ -188,8 +249,7 @@ public class DateUtil {
      * @return second of the date
      */
     public static int getSecond(Date date) {
-        Calendar c = Calendar.getInstance();
-        c.setTime(date);
+        Calendar c = calendar(date);
         return c.get(Calendar.SECOND);
     }
 
@@ -199,8 +259,7 @@ public class DateUtil {
      * @return the rounded date
      */
     public static Date floor(Date d) {
-        Calendar c = Calendar.getInstance();
-        c.setTime(d);
+        Calendar c = calendar(d);
         c.set(Calendar.HOUR_OF_DAY, 0);
         c.set(Calendar.MINUTE, 0);
         c.set(Calendar.SECOND, 0);
@@ -214,8 +273,7 @@ public class DateUtil {
      * @return the rounded date
      */
     public static Date ceil(Date d) {
-        Calendar c = Calendar.getInstance();
-        c.setTime(d);
+        Calendar c = calendar(d);
         c.set(Calendar.HOUR_OF_DAY, 23);
         c.set(Calendar.MINUTE, 59);
         c.set(Calendar.SECOND, 59);
@@ -234,8 +292,7 @@ public class DateUtil {
             return false;
         }
 
-        Calendar cal = Calendar.getInstance();
-        cal.setTime(dateOne);
+        Calendar cal = calendar(dateOne);
         int year = cal.get(Calendar.YEAR);
         int day = cal.get(Calendar.DAY_OF_YEAR);
 
@@ -257,8 +314,7 @@ public class DateUtil {
             return false;
         }
 
-        Calendar cal = Calendar.getInstance();
-        cal.setTime(dateOne);
+        Calendar cal = calendar(dateOne);
         int year = cal.get(Calendar.YEAR);
         int week = cal.get(Calendar.WEEK_OF_YEAR);
 
@@ -280,8 +336,7 @@ public class DateUtil {
             return false;
         }
 
-        Calendar cal = Calendar.getInstance();
-        cal.setTime(dateOne);
+        Calendar cal = calendar(dateOne);
         int year = cal.get(Calendar.YEAR);
         int month = cal.get(Calendar.MONTH);
 
@@ -303,8 +358,7 @@ public class DateUtil {
             return false;
         }
 
-        Calendar cal = Calendar.getInstance();
-        cal.setTime(dateOne);
+        Calendar cal = calendar(dateOne);
         int year = cal.get(Calendar.YEAR);
         int month = cal.get(Calendar.MONTH);
         int day = cal.get(Calendar.DAY_OF_YEAR);
@@ -331,13 +385,12 @@ public class DateUtil {
      */
       public static int getNumberOfDays(Date first, Date second)
       {
-          Calendar c = Calendar.getInstance();
           int result = 0;
           int compare = first.compareTo(second);
           if (compare > 0) return 0;
           if (compare == 0) return 1;
 
-          c.setTime(first);
+          Calendar c = calendar(first);
           int firstDay = c.get(Calendar.DAY_OF_YEAR);
           int firstYear = c.get(Calendar.YEAR);
           int firstDays = c.getActualMaximum(Calendar.DAY_OF_YEAR);
@@ -387,8 +440,7 @@ public class DateUtil {
          int difHours = 0;
          int difMinutes = 0;
 
-         Calendar c = Calendar.getInstance();
-         c.setTime(first);
+         Calendar c = calendar(first);
          int h1 = c.get(Calendar.HOUR_OF_DAY);
          int m1 = c.get(Calendar.MINUTE);
 
@@ -429,8 +481,7 @@ public class DateUtil {
      * @return new date
      */
     public static Date addMinutes(Date d, int minutes) {
-        Calendar cal = Calendar.getInstance();
-        cal.setTime(d);
+        Calendar cal = calendar(d);
         cal.add(Calendar.MINUTE, minutes);
         return cal.getTime();
     }
@@ -442,8 +493,7 @@ public class DateUtil {
     * @return new date
     */
    public static Date setMinutes(Date d, int minutes) {
-       Calendar cal = Calendar.getInstance();
-       cal.setTime(d);
+       Calendar cal = calendar(d);
        cal.set(Calendar.MINUTE, minutes);
        return cal.getTime();
    }
@@ -455,8 +505,7 @@ public class DateUtil {
      * @return new date
      */
     public static Date addHours(Date d, int hours) {
-        Calendar cal = Calendar.getInstance();
-        cal.setTime(d);
+        Calendar cal = calendar(d);
         cal.add(Calendar.HOUR_OF_DAY, hours);
         return cal.getTime();
     }
@@ -468,8 +517,7 @@ public class DateUtil {
     * @return new date
     */
    public static Date setHours(Date d, int hours) {
-       Calendar cal = Calendar.getInstance();
-       cal.setTime(d);
+       Calendar cal = calendar(d);
        cal.set(Calendar.HOUR_OF_DAY, hours);
        return cal.getTime();
    }
@@ -481,8 +529,7 @@ public class DateUtil {
      * @return new date
      */
     public static Date addDays(Date d, int days) {
-        Calendar cal = Calendar.getInstance();
-        cal.setTime(d);
+        Calendar cal = calendar(d);
         cal.add(Calendar.DAY_OF_YEAR, days);
         return cal.getTime();
     }
@@ -494,8 +541,7 @@ public class DateUtil {
      * @return new date
      */
     public static Date addWeeks(Date d, int weeks) {
-        Calendar cal = Calendar.getInstance();
-        cal.setTime(d);
+        Calendar cal = calendar(d);
         cal.add(Calendar.WEEK_OF_YEAR, weeks);
         return cal.getTime();
     }
@@ -507,8 +553,7 @@ public class DateUtil {
      * @return new date
      */
     public static Date addMonths(Date d, int months) {
-        Calendar cal = Calendar.getInstance();
-        cal.setTime(d);
+        Calendar cal = calendar(d);
         cal.add(Calendar.MONTH, months);
         return cal.getTime();
     }
@@ -519,8 +564,7 @@ public class DateUtil {
      * @return last day from a month
      */
     public static int getLastDayOfMonth(Date date) {
-        Calendar c = Calendar.getInstance();
-        c.setTime(date);
+        Calendar c = calendar(date);
         return c.getActualMaximum(Calendar.DATE);
     }
 
@@ -542,8 +586,7 @@ public class DateUtil {
      * @return first date from last week
      */
     public static Date getFirstDayFromLastWeek(Date d) {
-        Calendar cal = Calendar.getInstance();
-        cal.setTime(d);
+        Calendar cal = calendar(d);
         cal.add(Calendar.WEEK_OF_YEAR, -1);
         cal.set(Calendar.DAY_OF_WEEK, Calendar.MONDAY);
         cal.set(Calendar.HOUR_OF_DAY, 0);
@@ -559,8 +602,7 @@ public class DateUtil {
      * @return last date from last week
      */
     public static Date getLastDayFromLastWeek(Date d) {
-        Calendar cal = Calendar.getInstance();
-        cal.setTime(d);
+        Calendar cal = calendar(d);
         cal.add(Calendar.WEEK_OF_YEAR, -1);
         cal.set(Calendar.DAY_OF_WEEK, Calendar.SUNDAY);
         cal.set(Calendar.HOUR_OF_DAY, 23);
@@ -576,8 +618,7 @@ public class DateUtil {
      * @return first date from current week
      */
     public static Date getFirstDayFromCurrentWeek(Date d) {
-        Calendar cal = Calendar.getInstance();
-        cal.setTime(d);        
+        Calendar cal = calendar(d);        
         cal.set(Calendar.DAY_OF_WEEK, Calendar.MONDAY);
         cal.set(Calendar.HOUR_OF_DAY, 0);
         cal.set(Calendar.MINUTE, 0);
@@ -592,8 +633,7 @@ public class DateUtil {
      * @return last date from current week
      */
     public static Date getLastDayFromCurrentWeek(Date d) {
-        Calendar cal = Calendar.getInstance();
-        cal.setTime(d);        
+        Calendar cal = calendar(d);        
         cal.set(Calendar.DAY_OF_WEEK, Calendar.SUNDAY);
         cal.set(Calendar.HOUR_OF_DAY, 23);
         cal.set(Calendar.MINUTE, 59);
@@ -608,8 +648,7 @@ public class DateUtil {
      * @return first date from last month
      */
     public static Date getFirstDayFromLastMonth(Date d) {
-        Calendar cal = Calendar.getInstance();
-        cal.setTime(d);                
+        Calendar cal = calendar(d);                
         cal.add(Calendar.MONTH, -1);
         cal.set(Calendar.DAY_OF_MONTH, 1);
         cal.set(Calendar.HOUR_OF_DAY, 0);
@@ -625,8 +664,7 @@ public class DateUtil {
      * @return last date from last month
      */
     public static Date getLastDayFromLastMonth(Date d) {
-        Calendar cal = Calendar.getInstance();
-        cal.setTime(d);        
+        Calendar cal = calendar(d);        
         cal.add(Calendar.MONTH, -1);
         cal.set(Calendar.DAY_OF_MONTH, cal.getActualMaximum(Calendar.DATE));
         cal.set(Calendar.HOUR_OF_DAY, 23);
@@ -642,8 +680,7 @@ public class DateUtil {
      * @return first date from current month
      */
     public static Date getFirstDayFromCurrentMonth(Date d) {
-        Calendar cal = Calendar.getInstance();
-        cal.setTime(d);                        
+        Calendar cal = calendar(d);                        
         cal.set(Calendar.DAY_OF_MONTH, 1);
         cal.set(Calendar.HOUR_OF_DAY, 0);
         cal.set(Calendar.MINUTE, 0);
@@ -658,8 +695,7 @@ public class DateUtil {
      * @return last date from current month
      */
     public static Date getLastDayFromCurrentMonth(Date d) {
-        Calendar cal = Calendar.getInstance();
-        cal.setTime(d);                
+        Calendar cal = calendar(d);                
         cal.set(Calendar.DAY_OF_MONTH, cal.getActualMaximum(Calendar.DATE));
         cal.set(Calendar.HOUR_OF_DAY, 23);
         cal.set(Calendar.MINUTE, 59);
@@ -674,8 +710,7 @@ public class DateUtil {
      * @return first date from last year
      */
     public static Date getFirstDayFromLastYear(Date d) {
-        Calendar cal = Calendar.getInstance();
-        cal.setTime(d);                
+        Calendar cal = calendar(d);                
         cal.add(Calendar.YEAR, -1);
         cal.set(Calendar.MONTH, Calendar.JANUARY);
         cal.set(Calendar.DAY_OF_MONTH, 1);
@@ -692,8 +727,7 @@ public class DateUtil {
      * @return last date from last year
      */
     public static Date getLastDayFromLastYear(Date d) {
-        Calendar cal = Calendar.getInstance();
-        cal.setTime(d);        
+        Calendar cal = calendar(d);        
         cal.add(Calendar.YEAR, -1);
         cal.set(Calendar.MONTH, Calendar.DECEMBER);
         cal.set(Calendar.DAY_OF_MONTH, 31);
@@ -710,8 +744,7 @@ public class DateUtil {
      * @return first date from current year
      */
     public static Date getFirstDayFromCurrentYear(Date d) {
-        Calendar cal = Calendar.getInstance();
-        cal.setTime(d);                        
+        Calendar cal = calendar(d);                        
         cal.set(Calendar.MONTH, Calendar.JANUARY);
         cal.set(Calendar.DAY_OF_MONTH, 1);
         cal.set(Calendar.HOUR_OF_DAY, 0);
@@ -727,8 +760,7 @@ public class DateUtil {
      * @return last date from current year
      */
     public static Date getLastDayFromCurrentYear(Date d) {
-        Calendar cal = Calendar.getInstance();
-        cal.setTime(d);                
+        Calendar cal = calendar(d);                
         cal.set(Calendar.MONTH, Calendar.DECEMBER);
         cal.set(Calendar.DAY_OF_MONTH, 31);
         cal.set(Calendar.HOUR_OF_DAY, 23);
@@ -746,8 +778,7 @@ public class DateUtil {
      * @return
      */
     public static Date getLastNDay(Date d, int n, int unitType) {
-    	Calendar cal = Calendar.getInstance();
-        cal.setTime(d); 
+    	Calendar cal = calendar(d); 
         cal.add(unitType, -n);
         cal.set(Calendar.HOUR_OF_DAY, 0);
         cal.set(Calendar.MINUTE, 0);
@@ -37,7 +37,7 @@ public class NextChartUtil {
     public static byte CHART_INVALID_NEWER = 2;
 
     public static Chart loadChart(InputStream is) {
-        XStream xstream = XStreamFactory.createXStream();
+        XStream xstream = XStreamFactory.getXStream();
         InputStreamReader reader = null;
         try {
             reader = new InputStreamReader(is, "UTF-8");
@@ -18,6 +18,7 @@ package ro.nextreports.engine.util;
 
 
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
@@ -41,11 +42,17 @@ import java.math.BigDecimal;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.text.ParseException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
 import ro.nextreports.engine.Report;
+import ro.nextreports.engine.RunContext;
 import ro.nextreports.engine.querybuilder.sql.dialect.ConnectionUtil;
 import ro.nextreports.engine.querybuilder.sql.dialect.Dialect;
 import ro.nextreports.engine.querybuilder.sql.dialect.DialectException;
+import ro.nextreports.engine.queryexec.ConnectionSupplier;
 import ro.nextreports.engine.queryexec.IdName;
 import ro.nextreports.engine.queryexec.Query;
 import ro.nextreports.engine.queryexec.QueryException;
@@ -990,6 +997,105 @@ public class ParameterUtil {
         }
     }
     
+    /**
+     * Init parameter values map with the default values (static or dynamic) for all not-hidden parameters of a report.
+     * Default source queries are run at the same time, every query on its own connection from the supplier.
+     *
+     * @param supplier        supplier of connections
+     * @param report          report
+     * @param parameterValues map of parameter values
+     * @throws QueryException if could not get default parameter values
+     */
+    public static void initNotHiddenDefaultParameterValues(ConnectionSupplier supplier, Report report,
+                                                           Map<String, Object> parameterValues) throws QueryException {
+        initNotHiddenDefaultParameterValues(supplier, report, parameterValues, null);
+    }
+
+    /**
+     * Init parameter values map with the default values (static or dynamic) for all not-hidden parameters of a report.
+     * Default source queries are run at the same time, every query on its own connection from the supplier.
+     * Queries are not started after the run is stopped and the method does not wait for them if the run is cancelled.
+     *
+     * @param supplier        supplier of connections
+     * @param report          report
+     * @param parameterValues map of parameter values
+     * @param runContext      context of report run (may be null)
+     * @throws QueryException if could not get default parameter values or if run is stopped
+     */
+    public static void initNotHiddenDefaultParameterValues(final ConnectionSupplier supplier, Report report,
+                                                           Map<String, Object> parameterValues,
+                                                           final RunContext runContext) throws QueryException {
+        Map<String, QueryParameter> params = getUsedParametersMap(report);
+        Map<QueryParameter, FutureTask<List<Serializable>>> tasks = new LinkedHashMap<QueryParameter, FutureTask<List<Serializable>>>();
+        for (final QueryParameter qp : params.values()) {
+            if (qp.isHidden()) {
+                continue;
+            }
+            if ((qp.getDefaultValues() != null) && (qp.getDefaultValues().size() > 0)) {
+                initDefaultParameterValues(qp, qp.getDefaultValues(), parameterValues);
+            } else {
+                FutureTask<List<Serializable>> task = new FutureTask<List<Serializable>>(new Callable<List<Serializable>>() {
+                    public List<Serializable> call() throws Exception {
+                        if ((runContext != null) && runContext.isStopped()) {
+                            throw new QueryException(runContext.getStopReason());
+                        }
+                        Connection con = supplier.getConnection();
+                        try {
+                            return getDefaultSourceValues(con, qp);
+                        } finally {
+                            supplier.releaseConnection(con);
+                        }
+                    }
+                });
+                Thread thread = new Thread(task, "NextReports-DefaultSource-" + qp.getName());
+                thread.setDaemon(true);
+                thread.start();
+                tasks.put(qp, task);
+            }
+        }
+        final Collection<FutureTask<List<Serializable>>> futures = tasks.values();
+        Runnable cancelAction = new Runnable() {
+            public void run() {
+                for (FutureTask<List<Serializable>> task : futures) {
+                    task.cancel(true);
+                }
+            }
+        };
+        if (runContext != null) {
+            runContext.addCancelAction(cancelAction);
+        }
+        // values are put in map by current thread
+        QueryException exception = null;
+        try {
+            for (Map.Entry<QueryParameter, FutureTask<List<Serializable>>> entry : tasks.entrySet()) {
+                try {
+                    List<Serializable> defValues = entry.getValue().get();
+                    if (exception == null) {
+                        initDefaultParameterValues(entry.getKey(), defValues, parameterValues);
+                    }
+                } catch (CancellationException e) {
+                    throw new QueryException((runContext != null) ? runContext.getStopReason() : "Cancelled", e);
+                } catch (ExecutionException e) {
+                    if (exception == null) {
+                        exception = (e.getCause() instanceof QueryException) ? (QueryException) e.getCause() : 
+                            new QueryException(e.getCause());
+                    }
+                } catch (InterruptedException e) {
+                    cancelAction.run();
+                    Thread.currentThread().interrupt();
+                    throw new QueryException("Interrupted while getting default parameter values");
+                }
+            }
+        } finally {
+            if (runContext != null) {
+                runContext.removeCancelAction(cancelAction);
+            }
+        }
+        if (exception != null) {
+            throw exception;
+        }
+    }
+    
     /** Check if report has at least a parameter with a default source (will need a connection to get values)
      * 
      * @param report report
@@ -1090,7 +1196,50 @@ public class ParameterUtil {
             throw new Exception("Cannot parse " + parameterClass + " value from text " + value);
         }
     }
-    
+    /** Convert a value read from database to a parameter value
+     *
+     * @param parameterClass parameter class
+     * @param value value (number, date or any object with a parsable string representation)
+     * @return parameter value
+     * @throws Exception if value cannot be converted
+     */
+    public static Object convertParameterValue(String parameterClass, Object value) throws Exception {
+        if ((value == null) || value.getClass().getName().equals(parameterClass)
+                || QueryParameter.OBJECT_VALUE.equals(parameterClass)) {
+            return value;
+        }
+        if (value instanceof Number) {
+            Number n = (Number) value;
+            if (QueryParameter.INTEGER_VALUE.equals(parameterClass)) {
+                return n.intValue();
+            } else if (QueryParameter.LONG_VALUE.equals(parameterClass)) {
+                return n.longValue();
+            } else if (QueryParameter.SHORT_VALUE.equals(parameterClass)) {
+                return n.shortValue();
+            } else if (QueryParameter.BYTE_VALUE.equals(parameterClass)) {
+                return n.byteValue();
+            } else if (QueryParameter.DOUBLE_VALUE.equals(parameterClass)) {
+                return n.doubleValue();
+            } else if (QueryParameter.FLOAT_VALUE.equals(parameterClass)) {
+                return n.floatValue();
+            }
+        } else if (value instanceof Date) {
+            long time = ((Date) value).getTime();
+            if (QueryParameter.DATE_VALUE.equals(parameterClass)) {
+                return new Date(time);
+            } else if (QueryParameter.TIMESTAMP_VALUE.equals(parameterClass)) {
+                Timestamp ts = new Timestamp(time);
+                if (value instanceof Timestamp) {
+                    ts.setNanos(((Timestamp) value).getNanos());
+                }
+                return ts;
+            } else if (QueryParameter.TIME_VALUE.equals(parameterClass)) {
+                return new Time(time);
+            }
+        }
+        return getParameterValueFromString(parameterClass, value.toString());
+    }
+
     /** Get a map with all the identical parameters for a list of reports
      * 
      * @param reports list of reports
@@ -53,6 +53,10 @@ public class QueryUtil {
 
 	private static Log LOG = LogFactory.getLog(QueryUtil.class);
 
+	// function call with an optional alias
+	private static final Pattern AGGREGATE_PATTERN = 
+		Pattern.compile("(?is)\\s*(\\w+)\\s*\\((.*)\\)\\s*(?:(?:as\\s+)?\"?([\\w$]+)\"?)?\\s*");
+
 	private Connection con;
 	private Dialect dialect;
 
@@ -375,6 +379,132 @@ public class QueryUtil {
 		}
 	}
 
+	/**
+	 * Get the items of the select list of a select
+	 * 
+	 * @param sql
+	 *            sql
+	 * @return select items (expressions with their aliases) or null if sql does not start with select
+	 */
+	public static List<String> getSelectItems(String sql) {
+		String s = sql.trim();
+		String lower = s.toLowerCase();
+		if (!lower.startsWith("select") || !isWordAt(lower, 0, 6)) {
+			return null;
+		}
+		List<String> items = new ArrayList<String>();
+		int depth = 0;
+		boolean quoted = false;
+		int start = "select".length();
+		for (int i = start, n = s.length(); i < n; i++) {
+			char c = s.charAt(i);
+			if (c == '\'') {
+				quoted = !quoted;
+			} else if (quoted) {
+				continue;
+			} else if (c == '(') {
+				depth++;
+			} else if (c == ')') {
+				depth--;
+			} else if ((depth == 0) && (c == ',')) {
+				items.add(s.substring(start, i).trim());
+				start = i + 1;
+			} else if ((depth == 0) && lower.startsWith("from", i) && isWordAt(lower, i, 4)) {
+				items.add(s.substring(start, i).trim());
+				return items;
+			}
+		}
+		items.add(s.substring(start).trim());
+		return items;
+	}
+
+	/**
+	 * See if a select has a top-level clause (not inside parentheses or string literals)
+	 * 
+	 * @param sql
+	 *            sql
+	 * @param keyword
+	 *            clause keyword in lower case (words separated by one space), like "group by"
+	 * @return true if sql has the clause
+	 */
+	public static boolean hasTopLevelKeyword(String sql, String keyword) {
+		String lower = sql.toLowerCase().replaceAll("\\s+", " ");
+		int depth = 0;
+		boolean quoted = false;
+		for (int i = 0, n = lower.length(); i < n; i++) {
+			char c = lower.charAt(i);
+			if (c == '\'') {
+				quoted = !quoted;
+			} else if (quoted) {
+				continue;
+			} else if (c == '(') {
+				depth++;
+			} else if (c == ')') {
+				depth--;
+			} else if ((depth == 0) && lower.startsWith(keyword, i) && isWordAt(lower, i, keyword.length())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Get the aggregate function of a column of a single row select, like <code>select sum(amount) total from ...</code>
+	 * 
+	 * @param sql
+	 *            sql
+	 * @param column
+	 *            column name (alias)
+	 * @return function name in upper case, or null if column is not an aggregate over all rows
+	 *         (select has a group by, a distinct aggregate, ...)
+	 */
+	public static String getAggregateFunction(String sql, String column) {
+		List<String> items = getSelectItems(sql);
+		if ((items == null) || (column == null) || hasTopLevelKeyword(sql, "group by")
+				|| hasTopLevelKeyword(sql, "having") || hasTopLevelKeyword(sql, "union")) {
+			return null;
+		}
+		for (String item : items) {
+			Matcher m = AGGREGATE_PATTERN.matcher(item);
+			// sum(a) + max(b) is not a function call
+			if (!m.matches() || !isBalanced(m.group(2))) {
+				continue;
+			}
+			String alias = m.group(3);
+			if ((alias == null) ? item.equalsIgnoreCase(column) : alias.equalsIgnoreCase(column)) {
+				if (m.group(2).trim().toLowerCase().startsWith("distinct")) {
+					return null;
+				}
+				return m.group(1).toUpperCase();
+			}
+		}
+		return null;
+	}
+
+	// parentheses are closed in the order they were opened
+	private static boolean isBalanced(String s) {
+		int depth = 0;
+		for (int i = 0, n = s.length(); (i < n) && (depth >= 0); i++) {
+			char c = s.charAt(i);
+			if (c == '(') {
+				depth++;
+			} else if (c == ')') {
+				depth--;
+			}
+		}
+		return depth == 0;
+	}
+
+	// word of given length at position i (not part of a longer word)
+	private static boolean isWordAt(String s, int i, int length) {
+		return ((i == 0) || !isWordChar(s.charAt(i - 1)))
+				&& ((i + length == s.length()) || !isWordChar(s.charAt(i + length)));
+	}
+
+	private static boolean isWordChar(char c) {
+		return Character.isLetterOrDigit(c) || (c == '_') || (c == '$');
+	}
+
 	public List<IdName> getValues(String sql, Map<String, QueryParameter> map, Map<String, Object> vals) throws Exception {
 
 		List<IdName> values = new ArrayList<IdName>();
@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.nextreports.engine.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import ro.nextreports.engine.ReleaseInfoAdapter;
+import ro.nextreports.engine.Report;
+
+/**
+ * Compiles all xml reports (*.report) from a directory and its subdirectories to the binary format
+ * read by {@link ReportUtil#loadCompiledReport(File)}. A compiled report is written only if it is older
+ * than the xml report or if it was written by another engine version.
+ *
+ * Usage : ReportCompiler &lt;reports directory&gt; [&lt;output directory&gt;]
+ *
+ * Without an output directory, compiled reports are written next to xml reports. Compiled file name is
+ * the report file name with COMPILED_REPORT_EXTENSION added.
+ */
+public class ReportCompiler {
+
+	/** Extension added to the report file name for compiled reports */
+	public static final String COMPILED_REPORT_EXTENSION = ".bin";
+
+	private static final String REPORT_EXTENSION = ".report";
+
+	private int compiled;
+	private int skipped;
+	private int failed;
+
+	/**
+	 * Compile all reports from a directory
+	 *
+	 * @param reportsDir reports directory
+	 * @param outputDir directory for compiled reports (null to write them next to xml reports)
+	 */
+	public void compile(File reportsDir, File outputDir) {
+		File[] files = reportsDir.listFiles();
+		if (files == null) {
+			return;
+		}
+		for (File file : files) {
+			if (file.isDirectory()) {
+				compile(file, (outputDir == null) ? null : new File(outputDir, file.getName()));
+			} else if (file.getName().endsWith(REPORT_EXTENSION)) {
+				File dir = (outputDir == null) ? reportsDir : outputDir;
+				compileReport(file, new File(dir, file.getName() + COMPILED_REPORT_EXTENSION));
+			}
+		}
+	}
+
+	private void compileReport(File reportFile, File compiledFile) {
+		if (compiledFile.exists() && (compiledFile.lastModified() >= reportFile.lastModified()) &&
+				ReleaseInfoAdapter.getVersionNumber().equals(CompiledReport.getVersion(compiledFile))) {
+			skipped++;
+			return;
+		}
+		InputStream is = null;
+		try {
+			is = new FileInputStream(reportFile);
+			Report report = ReportUtil.loadReport(is);
+			compiledFile.getParentFile().mkdirs();
+			ReportUtil.saveCompiledReport(report, compiledFile);
+			compiled++;
+		} catch (Exception ex) {
+			System.err.println("Cannot compile report " + reportFile + " : " + ex.getMessage());
+			compiledFile.delete();
+			failed++;
+		} finally {
+			if (is != null) {
+				try {
+					is.close();
+				} catch (IOException e) {
+					// nothing to do
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return number of compiled reports
+	 */
+	public int getCompiledCount() {
+		return compiled;
+	}
+
+	/**
+	 * @return number of reports which were already compiled
+	 */
+	public int getSkippedCount() {
+		return skipped;
+	}
+
+	/**
+	 * @return number of reports which could not be compiled
+	 */
+	public int getFailedCount() {
+		return failed;
+	}
+
+	public static void main(String[] args) {
+		if ((args.length < 1) || (args.length > 2)) {
+			System.err.println("Usage : ReportCompiler <reports directory> [<output directory>]");
+			System.exit(2);
+		}
+		File reportsDir = new File(args[0]);
+		if (!reportsDir.isDirectory()) {
+			System.err.println("Directory " + reportsDir + " not found.");
+			System.exit(2);
+		}
+		ReportCompiler compiler = new ReportCompiler();
+		compiler.compile(reportsDir, (args.length == 2) ? new File(args[1]) : null);
+		System.out.println("Compiled " + compiler.getCompiledCount() + " reports, " + compiler.getSkippedCount() +
+				" up to date, " + compiler.getFailedCount() + " failed.");
+		if (compiler.getFailedCount() > 0) {
+			System.exit(1);
+		}
+	}
+
+}
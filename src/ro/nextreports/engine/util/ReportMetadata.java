@@ -0,0 +1,191 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.nextreports.engine.util;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import ro.nextreports.engine.XStreamFactory;
+import ro.nextreports.engine.queryexec.QueryParameter;
+
+import com.thoughtworks.xstream.io.HierarchicalStreamReader;
+import com.thoughtworks.xstream.io.xml.XppDriver;
+
+/**
+ * Report information needed to list reports and to show their parameters : name, version, sql and parameters.
+ *
+ * It is read from report xml with a streaming parser : reading stops before the layout and no layout object
+ * is created. Sql is null for reports built with the query designer (see Report.getQuery()).
+ *
+ * @see ReportMetadataIndex
+ */
+public class ReportMetadata implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private String name;
+	private String version;
+	private String sql;
+	private List<QueryParameter> parameters;
+
+	private ReportMetadata() {
+	}
+
+	/**
+	 * @return report name
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return report version
+	 */
+	public String getVersion() {
+		return version;
+	}
+
+	/**
+	 * @return report sql (null if report was built with the query designer)
+	 */
+	public String getSql() {
+		return sql;
+	}
+
+	/**
+	 * @return report parameters (not to be modified)
+	 */
+	public List<QueryParameter> getParameters() {
+		return parameters;
+	}
+
+	/**
+	 * Read metadata from a report file
+	 *
+	 * @param file report file
+	 * @return report metadata
+	 * @throws LoadReportException if file is not a report or cannot be read
+	 */
+	public static ReportMetadata read(File file) throws LoadReportException {
+		InputStream is = null;
+		try {
+			is = new BufferedInputStream(new FileInputStream(file));
+			return read(is);
+		} catch (IOException ex) {
+			throw new LoadReportException(ex.getMessage(), ex);
+		} finally {
+			close(is);
+		}
+	}
+
+	/**
+	 * Read metadata from report xml. Input stream is not closed.
+	 *
+	 * @param is input stream
+	 * @return report metadata
+	 * @throws LoadReportException if stream does not contain a report or cannot be read
+	 */
+	public static ReportMetadata read(InputStream is) throws LoadReportException {
+		try {
+			HierarchicalStreamReader reader = createReader(is);
+			if (!"report".equals(reader.getNodeName())) {
+				throw new LoadReportException("Not a report : root element is " + reader.getNodeName());
+			}
+			ReportMetadata metadata = new ReportMetadata();
+			metadata.version = reader.getAttribute("version");
+			metadata.parameters = Collections.emptyList();
+			while (reader.hasMoreChildren()) {
+				reader.moveDown();
+				String node = reader.getNodeName();
+				if ("layout".equals(node)) {
+					// report fields after layout are not needed
+					break;
+				} else if ("name".equals(node)) {
+					metadata.name = reader.getValue();
+				} else if ("sql".equals(node)) {
+					metadata.sql = reader.getValue();
+				} else if ("parameters".equals(node)) {
+					List<QueryParameter> parameters = new ArrayList<QueryParameter>();
+					while (reader.hasMoreChildren()) {
+						reader.moveDown();
+						parameters.add((QueryParameter) XStreamFactory.getXStream().unmarshal(reader));
+						reader.moveUp();
+					}
+					metadata.parameters = Collections.unmodifiableList(parameters);
+				}
+				reader.moveUp();
+			}
+			return metadata;
+		} catch (LoadReportException ex) {
+			throw ex;
+		} catch (Exception ex) {
+			throw new LoadReportException(ex.getMessage(), ex);
+		}
+	}
+
+	/**
+	 * Read only the version of a report. Only the root element is parsed.
+	 *
+	 * @param is input stream
+	 * @return report version or null if stream does not contain a report or its version
+	 * @throws IOException if stream cannot be read
+	 */
+	public static String readVersion(InputStream is) throws IOException {
+		try {
+			HierarchicalStreamReader reader = createReader(is);
+			if (!"report".equals(reader.getNodeName())) {
+				return null;
+			}
+			return reader.getAttribute("version");
+		} catch (RuntimeException ex) {
+			// xml errors
+			return null;
+		}
+	}
+
+	private static HierarchicalStreamReader createReader(InputStream is) throws IOException {
+		return new XppDriver().createReader(new InputStreamReader(is, "UTF-8"));
+	}
+
+	private static void close(InputStream is) {
+		if (is != null) {
+			try {
+				is.close();
+			} catch (IOException e) {
+				// nothing to do
+			}
+		}
+	}
+
+	public String toString() {
+		return "ReportMetadata{" +
+				"name='" + name + '\'' +
+				", version='" + version + '\'' +
+				", sql='" + sql + '\'' +
+				", parameters=" + parameters +
+				'}';
+	}
+
+}
@@ -0,0 +1,213 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.nextreports.engine.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Metadata of all reports (*.report) from a directory, kept in an index file inside the directory.
+ *
+ * When the index is loaded, only reports which were added or changed since the index was saved
+ * (different modified time or length) are read; the index file is saved again if something changed.
+ * Reports which cannot be read are not in the index.
+ */
+public class ReportMetadataIndex {
+
+	/** Name of the index file written in reports directory */
+	public static final String INDEX_FILE_NAME = ".reports.index";
+
+	private static final int INDEX_FORMAT_VERSION = 1;
+	private static final String REPORT_EXTENSION = ".report";
+
+	private static Log LOG = LogFactory.getLog(ReportMetadataIndex.class);
+
+	private File dir;
+	// entries by file name, sorted by file name
+	private Map<String, Entry> entries = new LinkedHashMap<String, Entry>();
+
+	private ReportMetadataIndex(File dir) {
+		this.dir = dir;
+	}
+
+	/**
+	 * Load the index of a directory, updating it for added, changed and removed reports
+	 *
+	 * @param dir reports directory
+	 * @return index
+	 */
+	public static ReportMetadataIndex load(File dir) {
+		ReportMetadataIndex index = new ReportMetadataIndex(dir);
+		Map<String, Entry> saved = index.read();
+		boolean changed = (saved == null);
+		if (saved == null) {
+			saved = new HashMap<String, Entry>();
+		}
+
+		String[] names = dir.list();
+		if (names == null) {
+			names = new String[0];
+		}
+		Arrays.sort(names);
+		for (String name : names) {
+			if (!name.endsWith(REPORT_EXTENSION)) {
+				continue;
+			}
+			File file = new File(dir, name);
+			long modified = file.lastModified();
+			long length = file.length();
+			Entry entry = saved.remove(name);
+			if ((entry == null) || (entry.modified != modified) || (entry.length != length)) {
+				changed = true;
+				try {
+					entry = new Entry(ReportMetadata.read(file), modified, length);
+				} catch (LoadReportException ex) {
+					LOG.error("Cannot read report " + file + " : " + ex.getMessage());
+					continue;
+				}
+			}
+			index.entries.put(name, entry);
+		}
+		// removed reports
+		if (!saved.isEmpty()) {
+			changed = true;
+		}
+
+		if (changed) {
+			index.write();
+		}
+		return index;
+	}
+
+	/**
+	 * Get metadata of all reports, by report file name (sorted by file name)
+	 *
+	 * @return metadata of all reports
+	 */
+	public Map<String, ReportMetadata> getReports() {
+		Map<String, ReportMetadata> result = new LinkedHashMap<String, ReportMetadata>();
+		for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+			result.put(entry.getKey(), entry.getValue().metadata);
+		}
+		return result;
+	}
+
+	/**
+	 * Get metadata of a report
+	 *
+	 * @param fileName report file name
+	 * @return report metadata or null if report is not in index
+	 */
+	public ReportMetadata getReport(String fileName) {
+		Entry entry = entries.get(fileName);
+		return (entry == null) ? null : entry.metadata;
+	}
+
+	// saved entries or null if index file does not exist or it cannot be read
+	@SuppressWarnings("unchecked")
+	private Map<String, Entry> read() {
+		File file = new File(dir, INDEX_FILE_NAME);
+		if (!file.exists()) {
+			return null;
+		}
+		ObjectInputStream input = null;
+		try {
+			input = new CompiledReport.ReportObjectInputStream(new BufferedInputStream(new FileInputStream(file)));
+			if (input.readInt() != INDEX_FORMAT_VERSION) {
+				return null;
+			}
+			return (Map<String, Entry>) input.readObject();
+		} catch (Exception ex) {
+			// index is created again
+			LOG.warn("Cannot read reports index " + file + " : " + ex.getMessage());
+			return null;
+		} finally {
+			if (input != null) {
+				try {
+					input.close();
+				} catch (IOException e) {
+					// nothing to do
+				}
+			}
+		}
+	}
+
+	// index is written in a temporary file which is renamed : a reader (or another process loading the
+	// same directory) never sees a partially written index
+	private void write() {
+		File file = new File(dir, INDEX_FILE_NAME);
+		File tmp = null;
+		ObjectOutputStream output = null;
+		try {
+			tmp = File.createTempFile(INDEX_FILE_NAME, ".tmp", dir);
+			output = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+			output.writeInt(INDEX_FORMAT_VERSION);
+			output.writeObject(new HashMap<String, Entry>(entries));
+			output.close();
+			output = null;
+			// rename does not replace an existing file on some platforms
+			if (!tmp.renameTo(file) && !(file.delete() && tmp.renameTo(file))) {
+				throw new IOException("Cannot rename " + tmp + " to " + file);
+			}
+			tmp = null;
+		} catch (IOException ex) {
+			// index is used only in memory
+			LOG.warn("Cannot write reports index " + file + " : " + ex.getMessage());
+		} finally {
+			if (output != null) {
+				try {
+					output.close();
+				} catch (IOException e) {
+					// nothing to do
+				}
+			}
+			if (tmp != null) {
+				tmp.delete();
+			}
+		}
+	}
+
+	private static class Entry implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private final ReportMetadata metadata;
+		private final long modified;
+		private final long length;
+
+		private Entry(ReportMetadata metadata, long modified, long length) {
+			this.metadata = metadata;
+			this.modified = modified;
+			this.length = length;
+		}
+	}
+
+}
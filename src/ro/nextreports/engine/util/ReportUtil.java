@@ -18,7 +18,10 @@ package ro.nextreports.engine.util;
 
 import com.thoughtworks.xstream.XStream;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -102,7 +105,7 @@ public class ReportUtil {
 	 *         be read
 	 */
 	public static Report loadConvertedReport(InputStream is) {
-		XStream xstream = XStreamFactory.createXStream();
+		XStream xstream = XStreamFactory.getXStream();
 		InputStreamReader reader = null;
 		try {
 			reader = new InputStreamReader(is, "UTF-8");
@@ -125,7 +128,7 @@ public class ReportUtil {
 	 * @return the report object created from xml or null if cannot be read
 	 */
 	public static Report loadConvertedReport(String xml) {
-		XStream xstream = XStreamFactory.createXStream();
+		XStream xstream = XStreamFactory.getXStream();
 		try {
 			return (Report) xstream.fromXML(xml);
 		} catch (Exception e) {
@@ -148,9 +151,7 @@ public class ReportUtil {
 	 */
 	public static Report loadReport(String xml) throws LoadReportException {
 		try {
-			String convertedXml = ConverterChain.applyFromXml(xml);
-			XStream xstream = XStreamFactory.createXStream();
-			return (Report) xstream.fromXML(convertedXml);
+			return ConverterChain.loadReport(xml);
 		} catch (ConverterException ex) {
 			LOG.error(ex.getMessage(), ex);
 			throw new LoadReportException(ex.getMessage(), ex);
@@ -173,9 +174,7 @@ public class ReportUtil {
 	public static Report loadReport(InputStream is) throws LoadReportException {
 		try {
 			String xml = readAsString(is);
-			String convertedXml = ConverterChain.applyFromXml(xml);
-			XStream xstream = XStreamFactory.createXStream();
-			return (Report) xstream.fromXML(convertedXml);
+			return ConverterChain.loadReport(xml);
 		} catch (Exception ex) {
 			LOG.error(ex.getMessage(), ex);
 			throw new LoadReportException(ex.getMessage(), ex);
@@ -191,7 +190,7 @@ public class ReportUtil {
 	 *            output stream
 	 */
 	public static void saveReport(Report report, OutputStream out) {
-		XStream xstream = XStreamFactory.createXStream();
+		XStream xstream = XStreamFactory.getXStream();
 		xstream.toXML(report, out);
 	}
 
@@ -258,12 +257,75 @@ public class ReportUtil {
 	 * @return xml text
 	 */
 	public static String reportToXml(Report report) {
-		XStream xstream = XStreamFactory.createXStream();
+		XStream xstream = XStreamFactory.getXStream();
 		ByteArrayOutputStream bos = new ByteArrayOutputStream();
 		xstream.toXML(report, bos);
 		return bos.toString();
 	}
 
+	/**
+	 * Write a report object in compiled (binary) format. A compiled report is loaded much faster than
+	 * the xml report, but it can be loaded only by the same engine version.
+	 * 
+	 * @param report
+	 *            report object (already converted to engine version)
+	 * @param out
+	 *            output stream
+	 * @throws IOException
+	 *             if report cannot be written
+	 */
+	public static void saveCompiledReport(Report report, OutputStream out) throws IOException {
+		CompiledReport.write(report, out);
+	}
+
+	/**
+	 * Write a report object in compiled (binary) format to a file
+	 * 
+	 * @param report
+	 *            report object (already converted to engine version)
+	 * @param file
+	 *            compiled report file
+	 * @throws IOException
+	 *             if report cannot be written
+	 */
+	public static void saveCompiledReport(Report report, File file) throws IOException {
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+		try {
+			CompiledReport.write(report, out);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Create a report object from a compiled report saved with
+	 * {@link #saveCompiledReport(Report, OutputStream)}
+	 * 
+	 * @param is
+	 *            input stream
+	 * @return report object
+	 * @throws LoadReportException
+	 *             if report cannot be read or it was compiled by another
+	 *             engine version
+	 */
+	public static Report loadCompiledReport(InputStream is) throws LoadReportException {
+		return CompiledReport.read(is);
+	}
+
+	/**
+	 * Create a report object from a compiled report file
+	 * 
+	 * @param file
+	 *            compiled report file
+	 * @return report object
+	 * @throws LoadReportException
+	 *             if report cannot be read or it was compiled by another
+	 *             engine version
+	 */
+	public static Report loadCompiledReport(File file) throws LoadReportException {
+		return CompiledReport.read(file);
+	}
+
 	/**
 	 * Test if report content given as parameter has a valid version, meaning is
 	 * over 2.0 and no greater than current engine version
@@ -389,12 +451,27 @@ public class ReportUtil {
 	 * @return report version
 	 */
 	public static String getVersion(String reportFile) {
+		InputStream is = null;
 		try {
+			// only the root element is parsed
+			is = new BufferedInputStream(new FileInputStream(reportFile));
+			String version = ReportMetadata.readVersion(is);
+			if (version != null) {
+				return version;
+			}
 			String text = readAsString(reportFile);
 			return getVersionFromText(text);
 		} catch (IOException e) {
 			LOG.error(e.getMessage(), e);
 			return null;
+		} finally {
+			if (is != null) {
+				try {
+					is.close();
+				} catch (IOException e) {
+					// nothing to do
+				}
+			}
 		}
 	}
 
@@ -776,14 +853,12 @@ public class ReportUtil {
 	 * @param pBean
 	 *            parameters bean
 	 * @return a new report layout with ReportBandElement elements instead a
-	 *         ForReportBandElement
+	 *         ForReportBandElement (same layout if there is no ForReportBandElement)
 	 * @throws Exception
 	 *             if query fails
 	 */
 	private static ReportLayout getForReportLayout(Connection con, ReportLayout layout, ParametersBean pBean) throws Exception {
-		ReportLayout convertedLayout = ObjectCloner.silenceDeepCopy(layout);
-
-		List<Band> bands = convertedLayout.getDocumentBands();
+		List<Band> bands = layout.getDocumentBands();
 		for (Band band : bands) {
 			for (int i = 0, rows = band.getRowCount(); i < rows; i++) {
 				List<BandElement> list = band.getRow(i);
@@ -793,8 +868,11 @@ public class ReportUtil {
 						String sql = ((ForReportBandElement) be).getSql();
 						Report report = ((ForReportBandElement) be).getReport();
 						if ((sql == null) || sql.isEmpty()) {
-							return convertedLayout;
+							return layout;
 						} else {
+							// only the structure of the layout is copied : band elements are shared
+							ReportLayout convertedLayout = layout.copyStructure();
+							Band convertedBand = convertedLayout.getBand(band.getName());
 							QueryUtil qu = new QueryUtil(con, DialectUtil.getDialect(con));
 							// column name is the same with parameter name
 							String columnName = qu.getColumnNames(sql, pBean.getParams()).get(0);
@@ -803,12 +881,11 @@ public class ReportUtil {
 							for (int k = 0; k < values.size(); k++) {
 								IdName in = values.get(k);
 								if (k > 0) {
-									band.insertColumn(pos);
+									convertedBand.insertColumn(pos);
 								}
-								Report newReport = ObjectCloner.silenceDeepCopy(report);
-								newReport.setName(report.getBaseName() + "_" + (k + 1) + ".report");
+								Report newReport = getGeneratedReport(report, report.getBaseName() + "_" + (k + 1) + ".report");
 								newReport.getGeneratedParamValues().put(columnName, in.getId());
-								band.setElementAt(new ReportBandElement(newReport), i, pos);
+								convertedBand.setElementAt(new ReportBandElement(newReport), i, pos);
 								pos++;
 							}
 							List<Integer> oldColumnsWidth = layout.getColumnsWidth();
@@ -830,20 +907,40 @@ public class ReportUtil {
 				}
 			}
 		}
-		return convertedLayout;
+		return layout;
 
 	}
 	
+	// generated subreports share the definition of the subreport : only name and generated parameter values differ
+	private static Report getGeneratedReport(Report report, String name) {
+		Report newReport = new Report();
+		newReport.setId(report.getId());
+		newReport.setName(name);
+		newReport.setQuery(report.getQuery());
+		newReport.setParameters(report.getParameters());
+		newReport.setSql(report.getSql());
+		newReport.setTables(report.getTables());
+		newReport.setRows(report.getRows());
+		newReport.setLayout(report.getLayout());
+		newReport.setVersion(report.getVersion());
+		newReport.getGeneratedParamValues().putAll(report.getGeneratedParamValues());
+		return newReport;
+	}
+	
 	/**
 	 * If a report layout contains a function in header or in group header, we must add it as hidden in footer or group footer
 	 * to be computed (any function is added to a new row)
 	 * 
 	 * @param layout report layout
 	 * 
-	 * @return a new report layout with header functions also inserted in footers	
+	 * @return a new report layout with header functions also inserted in footers (same layout if there are no header functions)
 	 */
 	private static ReportLayout getReportLayoutForHeaderFunctions(ReportLayout layout) {
-		ReportLayout convertedLayout = ObjectCloner.silenceDeepCopy(layout);
+		if (!foundFunctionInHeader(layout) && !foundFunctionInAnyGroupHeader(layout)) {
+			return layout;
+		}
+		// only the structure of the layout is copied : inserted functions are copies, other band elements are shared
+		ReportLayout convertedLayout = layout.copyStructure();
 		
 		List<FunctionBandElement> headerFunc = getHeaderFunctions(convertedLayout);
 		Band footerBand = convertedLayout.getFooterBand();
@@ -876,7 +973,50 @@ public class ReportUtil {
 	public static ReportLayout getDynamicReportLayout(Connection con, ReportLayout layout, ParametersBean pBean) throws Exception {
 		ReportLayout forConvertedLayout = ReportUtil.getForReportLayout(con, layout, pBean);
         ReportLayout convertedLayout = ReportUtil.getReportLayoutForHeaderFunctions(forConvertedLayout);
-        return convertedLayout;
+        return getReportLayoutForGeneratedImages(convertedLayout, convertedLayout != layout);
+	}
+	
+	/**
+	 * Get a report layout where exporters can set generated images. Exporters set the generated image inside
+	 * chart and barcode band elements : these elements are copied, so a run does not change the report layout.
+	 * Subreport layouts (also shared by subreports generated for a ForReportBandElement) must be converted too.
+	 * 
+	 * @param layout report layout
+	 * @return a layout with copied chart and barcode band elements (same layout if there are no such elements)
+	 */
+	public static ReportLayout getReportLayoutForGeneratedImages(ReportLayout layout) {
+		return getReportLayoutForGeneratedImages(layout, false);
+	}
+	
+	private static ReportLayout getReportLayoutForGeneratedImages(ReportLayout layout, boolean copied) {
+		ReportLayout convertedLayout = layout;
+		for (String bandName : getBandNames(layout)) {
+			Band band = convertedLayout.getBand(bandName);
+			for (int i = 0, rows = band.getRowCount(); i < rows; i++) {
+				List<BandElement> list = band.getRow(i);
+				for (int j = 0, size = list.size(); j < size; j++) {
+					BandElement be = list.get(j);
+					if ((be instanceof ChartBandElement) || (be instanceof BarcodeBandElement)) {
+						if (!copied) {
+							convertedLayout = layout.copyStructure();
+							band = convertedLayout.getBand(bandName);
+							list = band.getRow(i);
+							copied = true;
+						}
+						list.set(j, ObjectCloner.silenceDeepCopy(be));
+					}
+				}
+			}
+		}
+		return convertedLayout;
+	}
+	
+	private static List<String> getBandNames(ReportLayout layout) {
+		List<String> names = new ArrayList<String>();
+		for (Band band : layout.getBands()) {
+			names.add(band.getName());
+		}
+		return names;
 	}
 	
 	/**
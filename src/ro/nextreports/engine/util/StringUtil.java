@@ -23,6 +23,9 @@ import java.io.FileReader;
 import java.io.Writer;
 import java.io.BufferedWriter;
 import java.io.FileWriter;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.regex.Pattern;
 import java.util.regex.Matcher;
 import java.util.List;
@@ -30,7 +33,6 @@ import java.util.Date;
 import java.text.DateFormat;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
-import java.text.SimpleDateFormat;
 import java.sql.Timestamp;
 
 import ro.nextreports.engine.exporter.util.RomanNumberConverter;
@@ -208,23 +210,41 @@ public class StringUtil {
             if (pattern == null) {
             	return DateFormat.getDateInstance().format((Date)val);                
             } else {
-                SimpleDateFormat sfd = new SimpleDateFormat(pattern);
-                return sfd.format((Date) val);
+                return DateUtil.format((Date) val, pattern);
             }
         }
         if (val instanceof Timestamp) {
             if (pattern == null) {                
             	return DateFormat.getDateInstance().format((Timestamp)val);
             } else {
-                Date d = (Timestamp) val;
-                SimpleDateFormat sfd = new SimpleDateFormat(pattern);
-                return sfd.format(d);
+                return DateUtil.format((Timestamp) val, pattern);
             }
         }
         
         return val.toString();
     }
     
+    /** Get MD5 hash of a text as a hexadecimal string
+     *
+     * @param text text
+     * @return MD5 hash of text (UTF-8 bytes)
+     */
+    public static String getMD5(String text) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(text.getBytes("UTF-8"));
+            StringBuilder sb = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // MD5 is available in every java platform
+            throw new RuntimeException(e);
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     // functional compare for two strings as ignore-case text     
 	public static boolean equalsText(String s1, String s2) {
 		if (s1 == null) {
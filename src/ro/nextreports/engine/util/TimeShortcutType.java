@@ -21,6 +21,7 @@ import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
+import java.util.TimeZone;
 
 public class TimeShortcutType implements Serializable {	
 	
@@ -28,6 +29,9 @@ public class TimeShortcutType implements Serializable {
 	private int timeType;
 	private int timeUnits;
 	
+	// dates computed for a day (all shortcuts depend only on the day)
+	private transient volatile DayDates dayDates;
+	
 	private static final long serialVersionUID = -3081236915067313721L;
 	
 	public static final int DAY_TYPE = Calendar.DAY_OF_YEAR;
@@ -87,11 +91,36 @@ public class TimeShortcutType implements Serializable {
 	}
 	
 	public Date[] getDates() {
+		return getDates(new Date());
+	}
+	
+	/**
+	 * Get the interval of this shortcut relative to a date. The interval is computed once for every day
+	 * (in the default time zone) and reused for other dates of the same day.
+	 * 
+	 * @param currentDate current date
+	 * @return interval dates
+	 */
+	public Date[] getDates(Date currentDate) {
 		if (type == 0) {
 			return new Date[0];
 		}
+		if ((type < -1) || (type > 8)) {
+			return new Date[] { currentDate, currentDate };
+		}
 		
-		Date currentDate = new Date();		
+		long time = currentDate.getTime();
+		DayDates cached = dayDates;
+		TimeZone zone = TimeZone.getDefault();
+		if ((cached == null) || (time < cached.dayStart) || (time > cached.dayEnd) || !zone.hasSameRules(cached.zone)) {
+			cached = new DayDates(zone, DateUtil.floor(currentDate).getTime(), DateUtil.ceil(currentDate).getTime(),
+					computeDates(currentDate));
+			dayDates = cached;
+		}
+		return new Date[] { new Date(cached.start), new Date(cached.end) };
+	}
+	
+	private Date[] computeDates(Date currentDate) {
 		Date[] dates = new Date[2];
 		switch (type) {
 			case -1:
@@ -147,6 +176,23 @@ public class TimeShortcutType implements Serializable {
 		return dates;
 	}
 
+	private static class DayDates {
+		
+		private final TimeZone zone;
+		private final long dayStart;
+		private final long dayEnd;
+		private final long start;
+		private final long end;
+		
+		private DayDates(TimeZone zone, long dayStart, long dayEnd, Date[] dates) {
+			this.zone = zone;
+			this.dayStart = dayStart;
+			this.dayEnd = dayEnd;
+			this.start = dates[0].getTime();
+			this.end = dates[1].getTime();
+		}
+	}
+
 	@Override
 	public boolean equals(Object obj) {
 		if (this == obj)
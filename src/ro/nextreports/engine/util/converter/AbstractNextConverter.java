@@ -117,6 +117,16 @@ public abstract class AbstractNextConverter implements NextConverter {
 		return new String(out.toByteArray());
 	}	
 	
+	/**
+	 * Test if a report with a version needs this conversion
+	 * 
+	 * @param version report version
+	 * @return true if version is less than converter version
+	 */
+	public boolean isConversionNeeded(String version) {
+		return ReportUtil.compareVersions(version, getConverterVersion()) < 0;
+	}
+	
 	protected abstract Document convert(Document doc) throws Exception;	
 	
 	public boolean conversionDone() {
@@ -16,67 +16,147 @@
  */
 package ro.nextreports.engine.util.converter;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.List;
 
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
+
+import ro.nextreports.engine.ReleaseInfoAdapter;
+import ro.nextreports.engine.Report;
+import ro.nextreports.engine.XStreamFactory;
+import ro.nextreports.engine.util.ReportUtil;
 
+import com.thoughtworks.xstream.io.xml.DomReader;
 
+/**
+ * Runs all converters needed by a report.
+ * 
+ * Report version is read once and only converters for newer versions are run. If a conversion is needed,
+ * xml is parsed once in a dom, all converters change the same dom and XStream reads the report directly
+ * from the converted dom, with version set to engine version.
+ */
 public class ConverterChain {
 	
 	private static Log LOG = LogFactory.getLog(ConverterChain.class);
 	
-	private static List<NextConverter> converters = new ArrayList<NextConverter>();	
+	private static List<AbstractNextConverter> converters = new ArrayList<AbstractNextConverter>();	
+	
+	// result of last conversion made by current thread
+	private static ThreadLocal<Boolean> conversionDone = new ThreadLocal<Boolean>();
 	
 	static {
 		converters.add(new Converter_5_2());		
 	}
 	
-	// change version at the end of chain so all converters do their convert method
 	public static String applyFromPath(String path) throws ConverterException {		
-		String xml = converters.get(0).convertFromPath(path, false);						
-		xml = applyFromSecond(xml);
-		if (conversionDone()) {
-			return converters.get(converters.size()-1).changeVersion(xml);
-		} else {
-			return xml;
+		try {
+			return apply(ReportUtil.readAsString(path), "'" + path + "'");
+		} catch (IOException ex) {
+			throw new ConverterException("Converter chain : " + ex.getMessage(), ex);
 		}
 	}
 	
-	// change version at the end of chain so all converters do their convert method
 	public static String applyFromInputStream(InputStream is) throws ConverterException {		
-		String xml = converters.get(0).convertFromInputStream(is, false);						
-		xml = applyFromSecond(xml);
-		if (conversionDone()) {
-			return converters.get(converters.size()-1).changeVersion(xml);
-		} else {
-			return xml;
+		try {
+			return apply(ReportUtil.readAsString(is), "from input stream");
+		} catch (IOException ex) {
+			throw new ConverterException("Converter chain : " + ex.getMessage(), ex);
 		}
 	}
 	
-	// change version at the end of chain so all converters do their convert method
 	public static String applyFromXml(String text) throws ConverterException {		
-		String xml = converters.get(0).convertFromXml(text, false);						
-		xml = applyFromSecond(xml);
-		if (conversionDone()) {
-			return converters.get(converters.size()-1).changeVersion(xml);
-		} else {
-			return xml;
-		}
+		return apply(text, "from xml");
 	}
 	
-	private static String applyFromSecond(String xml) throws ConverterException {
-									
-		for (int i=1, size=converters.size(); i<size; i++) {
-			xml = converters.get(i).convertFromXml(xml, false);
-		}						
-		return xml;
+	/**
+	 * Create a report object from xml. If a conversion is needed, xml is not written again
+	 * after conversion : report is read from the converted dom.
+	 * 
+	 * @param text xml text
+	 * @return report object
+	 * @throws ConverterException if conversion failed
+	 */
+	public static Report loadReport(String text) throws ConverterException {
+		Report report = convert(text, "from xml");
+		if (report == null) {
+			report = (Report) XStreamFactory.getXStream().fromXML(text);
+		}
+		return report;
 	}
 	
+	/**
+	 * Test if last conversion made by current thread changed the report
+	 * 
+	 * @return true if last conversion changed the report
+	 */
 	public static boolean conversionDone() {
-		return converters.get(converters.size()-1).conversionDone();
+		return Boolean.TRUE.equals(conversionDone.get());
+	}
+	
+	private static String apply(String text, String message) throws ConverterException {
+		Report report = convert(text, message);
+		if (report == null) {
+			return text;
+		}
+		// use xstream to save report to make xml without spaces and with correct indents
+		return ReportUtil.reportToXml(report);
+	}
+	
+	// converted report or null if no conversion is needed
+	private static Report convert(String text, String message) throws ConverterException {
+		conversionDone.set(Boolean.FALSE);
+		String version = ReportUtil.getVersionFromText(text);
+		if (version == null) {
+			throw new ConverterException("Converter chain : Could not read version for report " + message);
+		}
+		List<AbstractNextConverter> needed = new ArrayList<AbstractNextConverter>();
+		for (AbstractNextConverter converter : converters) {
+			if (converter.isConversionNeeded(version)) {
+				needed.add(converter);
+			}
+		}
+		if (needed.isEmpty()) {
+			return null;
+		}
+		
+		Document doc;
+		try {
+			DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+			factory.setNamespaceAware(true); // never forget this!
+			DocumentBuilder builder = factory.newDocumentBuilder();
+			doc = builder.parse(new InputSource(new StringReader(text)));
+		} catch (Exception ex) {
+			throw new ConverterException("Converter chain : Report " + message + " could not be parsed", ex);
+		}
+		for (AbstractNextConverter converter : needed) {
+			String converterVersion = converter.getConverterVersion();
+			LOG.info("Converter " + converterVersion + " : Convert report (ver=" + version + ") " + message);
+			try {
+				doc = converter.convert(doc);
+			} catch (Exception ex) {
+				throw new ConverterException("Converter " + converterVersion + " : Report " + message + " converted FAILED", ex);
+			}
+			LOG.info("Converter " + converterVersion + " : Report " + message + " converted OK");
+		}
+		
+		Report report;
+		try {
+			report = (Report) XStreamFactory.getXStream().unmarshal(new DomReader(doc));
+		} catch (Exception ex) {
+			throw new ConverterException("Converter chain : Report " + message + " could not be read after conversion", ex);
+		}
+		report.setVersion(ReleaseInfoAdapter.getVersionNumber());
+		conversionDone.set(Boolean.TRUE);
+		return report;
 	}
 		
 }
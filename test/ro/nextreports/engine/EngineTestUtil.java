@@ -0,0 +1,143 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.nextreports.engine;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import ro.nextreports.engine.band.Band;
+import ro.nextreports.engine.band.BandElement;
+import ro.nextreports.engine.band.ColumnBandElement;
+import ro.nextreports.engine.band.FunctionBandElement;
+import ro.nextreports.engine.queryexec.QueryParameter;
+
+/**
+ * Test database and reports.
+ *
+ * Every database is a new Derby in-memory database with table T(ID INT, GRP VARCHAR(10), AMOUNT DOUBLE, TS TIMESTAMP)
+ * and ROWS rows : ID = i, GRP = 'g' + (i % 3), AMOUNT = i * 1.5, TS = i seconds after epoch.
+ */
+public class EngineTestUtil {
+
+	public static final int ROWS = 100;
+
+	private static int databases;
+
+	public static synchronized Connection createConnection() throws SQLException {
+		try {
+			Class.forName("org.apache.derby.jdbc.EmbeddedDriver");
+		} catch (ClassNotFoundException e) {
+			throw new SQLException(e.getMessage());
+		}
+		Connection connection = DriverManager.getConnection("jdbc:derby:memory:test" + (++databases) + ";create=true");
+		Statement stmt = connection.createStatement();
+		stmt.execute("CREATE TABLE T (ID INT, GRP VARCHAR(10), AMOUNT DOUBLE, TS TIMESTAMP)");
+		stmt.close();
+		PreparedStatement pstmt = connection.prepareStatement("INSERT INTO T VALUES (?, ?, ?, ?)");
+		for (int i = 0; i < ROWS; i++) {
+			pstmt.setInt(1, i);
+			pstmt.setString(2, "g" + (i % 3));
+			pstmt.setDouble(3, i * 1.5);
+			pstmt.setTimestamp(4, new Timestamp(1000L * i));
+			pstmt.addBatch();
+		}
+		pstmt.executeBatch();
+		pstmt.close();
+		return connection;
+	}
+
+	/**
+	 * Report with ID and AMOUNT columns in detail band and SUM(AMOUNT) in footer band
+	 */
+	public static Report createReport(String sql) {
+		ReportLayout layout = new ReportLayout();
+		Band header = layout.getHeaderBand();
+		header.insertFirstRow(0, 2);
+		header.setElementAt(new BandElement("ID"), 0, 0);
+		header.setElementAt(new BandElement("AMOUNT"), 0, 1);
+		Band detail = layout.getDetailBand();
+		detail.insertFirstRow(0, 2);
+		detail.setElementAt(new ColumnBandElement("ID"), 0, 0);
+		detail.setElementAt(new ColumnBandElement("AMOUNT"), 0, 1);
+		Band footer = layout.getFooterBand();
+		footer.insertFirstRow(0, 2);
+		footer.setElementAt(new BandElement("Total"), 0, 0);
+		footer.setElementAt(new FunctionBandElement("SUM", "AMOUNT"), 0, 1);
+		layout.getColumnsWidth().add(100);
+		layout.getColumnsWidth().add(100);
+
+		Report report = new Report();
+		report.setName("test.report");
+		report.setVersion(ReleaseInfoAdapter.getVersionNumber());
+		report.setSql(sql);
+		report.setLayout(layout);
+		report.setParameters(new ArrayList<QueryParameter>());
+		return report;
+	}
+
+	/**
+	 * Connection which records the sql of every prepared statement
+	 *
+	 * @param connection connection
+	 * @param sqls list where sql of prepared statements is added
+	 * @return recording connection
+	 */
+	public static Connection recordStatements(final Connection connection, List<String> sqls) {
+		final List<String> recorded = Collections.synchronizedList(sqls);
+		return (Connection) Proxy.newProxyInstance(EngineTestUtil.class.getClassLoader(),
+				new Class<?>[] { Connection.class }, new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				if (method.getName().equals("equals")) {
+					return proxy == args[0];
+				} else if (method.getName().equals("hashCode")) {
+					return System.identityHashCode(proxy);
+				} else if (method.getName().startsWith("prepare")) {
+					recorded.add((String) args[0]);
+				}
+				try {
+					return method.invoke(connection, args);
+				} catch (InvocationTargetException e) {
+					throw e.getCause();
+				}
+			}
+		});
+	}
+
+	public static int count(List<String> sqls, String part) {
+		int count = 0;
+		synchronized (sqls) {
+			for (String sql : sqls) {
+				if (sql.contains(part)) {
+					count++;
+				}
+			}
+		}
+		return count;
+	}
+
+}
@@ -0,0 +1,174 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.nextreports.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import ro.nextreports.engine.band.Band;
+import ro.nextreports.engine.band.ColumnBandElement;
+import ro.nextreports.engine.exporter.Alert;
+import ro.nextreports.engine.exporter.util.IncrementalState;
+import ro.nextreports.engine.queryexec.QueryParameter;
+
+public class IncrementalIndicatorTest {
+
+	private static final List<Object> alertValues = new CopyOnWriteArrayList<Object>();
+
+	private Connection connection;
+
+	@Before
+	public void setUp() throws Exception {
+		connection = EngineTestUtil.createConnection();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		connection.close();
+	}
+
+	@Test
+	public void sumIsMergedWithAppendedRows() throws Exception {
+		IncrementalState state = new IncrementalState("LASTID", "lastId");
+		Report report = createIndicatorReport("SELECT SUM(AMOUNT) AS TOTAL, MAX(ID) AS LASTID FROM T WHERE ID > ${lastId}");
+
+		assertEquals(sum(0, EngineTestUtil.ROWS), run(report, state), 0.001);
+		insert(EngineTestUtil.ROWS, 10);
+		assertEquals(sum(0, EngineTestUtil.ROWS + 10), run(report, state), 0.001);
+		insert(EngineTestUtil.ROWS + 10, 5);
+		assertEquals(sum(0, EngineTestUtil.ROWS + 15), run(report, state), 0.001);
+	}
+
+	@Test
+	public void averageFallsBackToFullRun() throws Exception {
+		IncrementalState state = new IncrementalState("LASTID", "lastId");
+		Report report = createIndicatorReport("SELECT AVG(AMOUNT) AS TOTAL, MAX(ID) AS LASTID FROM T WHERE ID > ${lastId}");
+
+		assertEquals(sum(0, EngineTestUtil.ROWS) / EngineTestUtil.ROWS, run(report, state), 0.001);
+		insert(EngineTestUtil.ROWS, 10);
+		assertEquals(sum(0, EngineTestUtil.ROWS + 10) / (EngineTestUtil.ROWS + 10), run(report, state), 0.001);
+	}
+
+	@Test
+	public void alertIsEvaluatedOnMergedValue() throws Exception {
+		alertValues.clear();
+		IncrementalState state = new IncrementalState("LASTID", "lastId");
+		Report report = createIndicatorReport("SELECT SUM(AMOUNT) AS TOTAL, MAX(ID) AS LASTID FROM T WHERE ID > ${lastId}");
+		// only the merged sum crosses the threshold, the sum of the new rows does not
+		Alert alert = new ThresholdAlert(sum(0, EngineTestUtil.ROWS) + 1);
+
+		run(report, state, alert);
+		insert(EngineTestUtil.ROWS, 10);
+		run(report, state, alert);
+
+		long end = System.currentTimeMillis() + 5000;
+		while (alertValues.isEmpty() && (System.currentTimeMillis() < end)) {
+			Thread.sleep(10);
+		}
+		assertEquals(1, alertValues.size());
+		assertTrue(alertValues.get(0) instanceof Number);
+		assertEquals(sum(0, EngineTestUtil.ROWS + 10), ((Number) alertValues.get(0)).doubleValue(), 0.001);
+	}
+
+	private double run(Report report, IncrementalState state) throws Exception {
+		return run(report, state, null);
+	}
+
+	private double run(Report report, IncrementalState state, Alert alert) throws Exception {
+		Map<String, Object> values = new HashMap<String, Object>();
+		values.put("lastId", -1);
+		ReportRunner runner = new ReportRunner();
+		runner.setConnection(connection);
+		runner.setReport(report);
+		runner.setFormat(ReportRunner.INDICATOR_FORMAT);
+		runner.setParameterValues(values);
+		runner.setIncrementalState(state);
+		if (alert != null) {
+			runner.setAlerts(Arrays.asList(alert));
+		}
+		runner.run();
+		return runner.getIndicatorData().getValue();
+	}
+
+	private Report createIndicatorReport(String sql) {
+		Report report = EngineTestUtil.createReport(sql);
+		ReportLayout layout = new ReportLayout();
+		Band detail = layout.getDetailBand();
+		detail.insertFirstRow(0, 2);
+		detail.setElementAt(new ColumnBandElement("TOTAL"), 0, 0);
+		detail.setElementAt(new ColumnBandElement("LASTID"), 0, 1);
+		layout.getColumnsWidth().add(100);
+		layout.getColumnsWidth().add(100);
+		report.setLayout(layout);
+		List<QueryParameter> parameters = new ArrayList<QueryParameter>();
+		parameters.add(new QueryParameter("lastId", QueryParameter.INTEGER_VALUE));
+		report.setParameters(parameters);
+		return report;
+	}
+
+	private void insert(int from, int rows) throws Exception {
+		PreparedStatement pstmt = connection.prepareStatement("INSERT INTO T (ID, GRP, AMOUNT) VALUES (?, ?, ?)");
+		for (int i = from; i < from + rows; i++) {
+			pstmt.setInt(1, i);
+			pstmt.setString(2, "g" + (i % 3));
+			pstmt.setDouble(3, i * 1.5);
+			pstmt.executeUpdate();
+		}
+		pstmt.close();
+	}
+
+	private double sum(int from, int to) {
+		double sum = 0;
+		for (int i = from; i < to; i++) {
+			sum += i * 1.5;
+		}
+		return sum;
+	}
+
+	private static class ThresholdAlert extends Alert {
+
+		private final double threshold;
+
+		ThresholdAlert(double threshold) {
+			this.threshold = threshold;
+		}
+
+		@Override
+		protected boolean isActive(Object value) {
+			return (value instanceof Number) && (((Number) value).doubleValue() > threshold);
+		}
+
+		@Override
+		protected void run(Object value, String message) {
+			alertValues.add(value);
+		}
+	}
+
+}
@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.nextreports.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class RunContextTest {
+
+	@Test
+	public void deadlineRunsCancelActions() throws Exception {
+		RunContext context = new RunContext(100);
+		final CountDownLatch cancelled = new CountDownLatch(1);
+		context.addCancelAction(new Runnable() {
+			public void run() {
+				cancelled.countDown();
+			}
+		});
+		assertTrue(cancelled.await(5, TimeUnit.SECONDS));
+		assertTrue(context.isStopped());
+		assertFalse(context.isCancelled());
+		assertEquals("Run deadline exceeded", context.getStopReason());
+	}
+
+	@Test
+	public void cancelRunsActionsOnce() {
+		RunContext context = new RunContext();
+		final AtomicInteger count = new AtomicInteger();
+		Runnable action = new Runnable() {
+			public void run() {
+				count.incrementAndGet();
+			}
+		};
+		context.addCancelAction(action);
+		context.cancel();
+		context.cancel();
+		assertEquals(1, count.get());
+		assertEquals("Run was cancelled", context.getStopReason());
+		// action added after cancel is run now
+		context.addCancelAction(action);
+		assertEquals(2, count.get());
+	}
+
+	@Test
+	public void closedContextDoesNotRunActions() throws Exception {
+		RunContext context = new RunContext(100);
+		final AtomicInteger count = new AtomicInteger();
+		context.addCancelAction(new Runnable() {
+			public void run() {
+				count.incrementAndGet();
+			}
+		});
+		context.close();
+		Thread.sleep(300);
+		assertTrue(context.isExpired());
+		assertEquals(0, count.get());
+	}
+
+}
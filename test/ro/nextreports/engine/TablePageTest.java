@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.nextreports.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import ro.nextreports.engine.exporter.util.TableData;
+
+public class TablePageTest {
+
+	private Connection connection;
+
+	@Before
+	public void setUp() throws Exception {
+		connection = EngineTestUtil.createConnection();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		connection.close();
+	}
+
+	@Test
+	public void pageHasOnlyItsRowsAndTotalsOfAllRows() throws Exception {
+		List<String> sqls = new ArrayList<String>();
+		ReportRunner runner = new ReportRunner();
+		runner.setConnection(EngineTestUtil.recordStatements(connection, sqls));
+		runner.setReport(EngineTestUtil.createReport("SELECT ID, AMOUNT FROM T ORDER BY ID"));
+		runner.setFormat(ReportRunner.TABLE_FORMAT);
+
+		runner.run();
+		TableData all = runner.getTableData();
+		Object total = all.getValue(all.getRowCount() - 1, 1);
+
+		for (int offset = 0; offset < 30; offset += 10) {
+			runner.setTablePage(offset, 10);
+			runner.run();
+			TableData data = runner.getTableData();
+
+			assertEquals(EngineTestUtil.ROWS, data.getTotalRowCount());
+			// 10 rows and footer
+			assertEquals(11, data.getRowCount());
+			assertEquals(all.getValue(offset, 0), data.getValue(0, 0));
+			assertEquals(all.getValue(offset + 9, 0), data.getValue(9, 0));
+			assertEquals(total, data.getValue(10, 1));
+		}
+		// totals are computed once for all pages
+		assertEquals(1, EngineTestUtil.count(sqls, "COUNT(*)"));
+		// order of rows is not needed for totals
+		for (String sql : sqls) {
+			if (sql.contains("COUNT(*)")) {
+				assertFalse(sql.contains("ORDER BY"));
+			}
+		}
+	}
+
+	@Test
+	public void totalsAreComputedAgainForFirstPage() throws Exception {
+		List<String> sqls = new ArrayList<String>();
+		ReportRunner runner = new ReportRunner();
+		runner.setConnection(EngineTestUtil.recordStatements(connection, sqls));
+		runner.setReport(EngineTestUtil.createReport("SELECT ID, AMOUNT FROM T ORDER BY ID"));
+		runner.setFormat(ReportRunner.TABLE_FORMAT);
+
+		runner.setTablePage(0, 10);
+		runner.run();
+		assertEquals(EngineTestUtil.ROWS, runner.getTableData().getTotalRowCount());
+
+		Statement stmt = connection.createStatement();
+		stmt.executeUpdate("INSERT INTO T (ID, GRP, AMOUNT) VALUES (" + EngineTestUtil.ROWS + ", 'g0', 1)");
+		stmt.close();
+
+		// next page of the same session reuses the totals
+		runner.setTablePage(10, 10);
+		runner.run();
+		assertEquals(EngineTestUtil.ROWS, runner.getTableData().getTotalRowCount());
+
+		// a new session starts with the first page
+		runner.setTablePage(0, 10);
+		runner.run();
+		assertEquals(EngineTestUtil.ROWS + 1, runner.getTableData().getTotalRowCount());
+		assertEquals(2, EngineTestUtil.count(sqls, "COUNT(*)"));
+	}
+
+}
@@ -0,0 +1,169 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.nextreports.engine.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.sql.Connection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import ro.nextreports.engine.EngineTestUtil;
+import ro.nextreports.engine.Report;
+
+public class MemoryResultCacheTest {
+
+	private Connection connection;
+
+	@Before
+	public void setUp() throws Exception {
+		connection = EngineTestUtil.createConnection();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		connection.close();
+	}
+
+	@Test
+	public void keyDoesNotChangeWithDefinition() throws Exception {
+		Report report = EngineTestUtil.createReport("SELECT ID, AMOUNT FROM T");
+		Map<String, Object> values = new HashMap<String, Object>();
+		values.put("P", new Object[] { 1, 2 });
+		ResultCacheKey key = new ResultCacheKey(connection, report, report.getSql(), values, "TABLE");
+
+		Map<String, Object> sameValues = new HashMap<String, Object>();
+		sameValues.put("P", new Object[] { 1, 2 });
+		Report same = EngineTestUtil.createReport("SELECT ID, AMOUNT FROM T");
+		assertEquals(key, new ResultCacheKey(connection, same, same.getSql(), sameValues, "TABLE"));
+
+		report.setName("changed.report");
+		assertEquals(key, new ResultCacheKey(connection, same, same.getSql(), sameValues, "TABLE"));
+		assertFalse(key.equals(new ResultCacheKey(connection, report, report.getSql(), sameValues, "TABLE")));
+		assertFalse(key.equals(new ResultCacheKey(connection, same, same.getSql(), sameValues, "CSV")));
+	}
+
+	@Test
+	public void valuesAreLoadedOnceAndEvicted() throws Exception {
+		MemoryResultCache cache = new MemoryResultCache(2, 60000);
+		CountingLoader loader = new CountingLoader();
+		ResultCacheKey k1 = key("A");
+		ResultCacheKey k2 = key("B");
+		ResultCacheKey k3 = key("C");
+
+		Object v1 = cache.get(k1, loader);
+		assertSame(v1, cache.get(k1, loader));
+		cache.get(k2, loader);
+		cache.get(k3, loader);
+		assertEquals(3, loader.count.get());
+		assertEquals(1, cache.getHitCount());
+		assertEquals(1, cache.getEvictionCount());
+		assertEquals(2, cache.getSize());
+
+		// k1 was the least recently used value
+		cache.get(k1, loader);
+		assertEquals(4, loader.count.get());
+	}
+
+	@Test
+	public void expiredValuesAreLoadedAgain() throws Exception {
+		MemoryResultCache cache = new MemoryResultCache(10, 1);
+		CountingLoader loader = new CountingLoader();
+		cache.get(key("A"), loader);
+		Thread.sleep(20);
+		cache.get(key("A"), loader);
+		assertEquals(2, loader.count.get());
+		assertEquals(1, cache.getExpirationCount());
+	}
+
+	@Test
+	public void concurrentRequestsLoadValueOnce() throws Exception {
+		final MemoryResultCache cache = new MemoryResultCache(10, 60000);
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final AtomicInteger count = new AtomicInteger();
+		final ResultCacheKey key = key("A");
+		final Callable<Object> loader = new Callable<Object>() {
+			public Object call() throws Exception {
+				count.incrementAndGet();
+				started.countDown();
+				release.await();
+				return "value";
+			}
+		};
+		final Object[] result = new Object[1];
+		Thread first = new Thread() {
+			public void run() {
+				try {
+					result[0] = cache.get(key, loader);
+				} catch (Exception e) {
+					// result stays null
+				}
+			}
+		};
+		first.start();
+		started.await();
+		Thread second = new Thread() {
+			public void run() {
+				release.countDown();
+			}
+		};
+		second.start();
+		assertEquals("value", cache.get(key, loader));
+		first.join();
+		assertEquals("value", result[0]);
+		assertEquals(1, count.get());
+	}
+
+	@Test
+	public void nullValuesAreNotCached() throws Exception {
+		MemoryResultCache cache = new MemoryResultCache(10, 60000);
+		Callable<Object> loader = new Callable<Object>() {
+			public Object call() {
+				return null;
+			}
+		};
+		assertNull(cache.get(key("A"), loader));
+		assertEquals(0, cache.getSize());
+		assertNotNull(cache.get(key("A"), new CountingLoader()));
+	}
+
+	private ResultCacheKey key(String sql) throws Exception {
+		return new ResultCacheKey(connection, null, sql, new HashMap<String, Object>());
+	}
+
+	private static class CountingLoader implements Callable<Object> {
+
+		private final AtomicInteger count = new AtomicInteger();
+
+		public Object call() {
+			return new Integer(count.incrementAndGet());
+		}
+	}
+
+}
@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.nextreports.engine.cache;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.ObjectOutputStream;
+import java.sql.Connection;
+
+import org.junit.Test;
+
+import ro.nextreports.engine.EngineTestUtil;
+import ro.nextreports.engine.Report;
+import ro.nextreports.engine.ReportRunner;
+import ro.nextreports.engine.band.BarcodeBandElement;
+import ro.nextreports.engine.util.ReportUtil;
+
+public class ReportDefinitionCacheTest {
+
+	@Test
+	public void sameXmlReturnsSharedReport() throws Exception {
+		ReportDefinitionCache cache = new ReportDefinitionCache(10);
+		String xml = ReportUtil.reportToXml(EngineTestUtil.createReport("SELECT ID, AMOUNT FROM T"));
+
+		Report report = cache.getReport(xml);
+		assertSame(report, cache.getReport(xml));
+		assertEquals(1, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+	}
+
+	@Test
+	public void changedFileIsLoadedAgain() throws Exception {
+		ReportDefinitionCache cache = new ReportDefinitionCache(10);
+		File file = File.createTempFile("cache", ".report");
+		try {
+			ReportUtil.saveReport(EngineTestUtil.createReport("SELECT ID, AMOUNT FROM T"), file.getAbsolutePath());
+			Report report = cache.getReport(file);
+			assertSame(report, cache.getReport(file));
+
+			ReportUtil.saveReport(EngineTestUtil.createReport("SELECT ID, AMOUNT FROM T WHERE ID > 10"),
+					file.getAbsolutePath());
+			file.setLastModified(file.lastModified() + 2000);
+			Report changed = cache.getReport(file);
+			assertNotSame(report, changed);
+			assertEquals("SELECT ID, AMOUNT FROM T WHERE ID > 10", changed.getSql());
+			assertEquals(2, cache.getMissCount());
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void leastRecentlyUsedReportIsRemoved() throws Exception {
+		ReportDefinitionCache cache = new ReportDefinitionCache(2);
+		String xml1 = ReportUtil.reportToXml(EngineTestUtil.createReport("SELECT ID, AMOUNT FROM T WHERE ID > 1"));
+		String xml2 = ReportUtil.reportToXml(EngineTestUtil.createReport("SELECT ID, AMOUNT FROM T WHERE ID > 2"));
+		String xml3 = ReportUtil.reportToXml(EngineTestUtil.createReport("SELECT ID, AMOUNT FROM T WHERE ID > 3"));
+
+		Report report1 = cache.getReport(xml1);
+		cache.getReport(xml2);
+		cache.getReport(xml1);
+		cache.getReport(xml3);
+		assertEquals(2, cache.getSize());
+		assertSame(report1, cache.getReport(xml1));
+		cache.getReport(xml2);
+		assertEquals(4, cache.getMissCount());
+	}
+
+	@Test
+	public void runsDoNotChangeSharedReport() throws Exception {
+		ReportDefinitionCache cache = new ReportDefinitionCache(10);
+		Report definition = EngineTestUtil.createReport("SELECT ID, AMOUNT, GRP FROM T ORDER BY ID");
+		BarcodeBandElement barcode = new BarcodeBandElement(BarcodeBandElement.CODE128, "GRP", true);
+		barcode.setWidth(120);
+		barcode.setHeight(40);
+		definition.getLayout().getDetailBand().setElementAt(barcode, 0, 1);
+		String xml = ReportUtil.reportToXml(definition);
+
+		Report report = cache.getReport(xml);
+		byte[] before = serialize(report);
+		Connection connection = EngineTestUtil.createConnection();
+		try {
+			byte[] first = run(connection, cache.getReport(xml));
+			byte[] second = run(connection, cache.getReport(xml));
+			assertArrayEquals(first, second);
+		} finally {
+			connection.close();
+		}
+		assertArrayEquals(before, serialize(report));
+	}
+
+	private byte[] run(Connection connection, Report report) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ReportRunner runner = new ReportRunner();
+		runner.setConnection(connection);
+		runner.setReport(report);
+		runner.setFormat(ReportRunner.CSV_FORMAT);
+		runner.run(out);
+		return out.toByteArray();
+	}
+
+	private byte[] serialize(Report report) throws Exception {
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		ObjectOutputStream output = new ObjectOutputStream(bos);
+		output.writeObject(report);
+		output.close();
+		return bos.toByteArray();
+	}
+
+}
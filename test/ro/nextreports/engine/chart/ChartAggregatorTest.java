@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.nextreports.engine.chart;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import ro.nextreports.engine.EngineTestUtil;
+import ro.nextreports.engine.exporter.util.function.AbstractGFunction;
+import ro.nextreports.engine.queryexec.MemoryQueryResult;
+import ro.nextreports.engine.queryexec.Query;
+import ro.nextreports.engine.queryexec.QueryExecutor;
+import ro.nextreports.engine.queryexec.QueryParameter;
+import ro.nextreports.engine.queryexec.QueryResult;
+
+public class ChartAggregatorTest {
+
+	private Connection connection;
+	private QueryResult columns;
+
+	@Before
+	public void setUp() throws Exception {
+		connection = EngineTestUtil.createConnection();
+		QueryExecutor executor = new QueryExecutor(new Query("SELECT GRP AS X, AMOUNT AS Y FROM T"),
+				new HashMap<String, QueryParameter>(), new HashMap<String, Object>(), connection, false);
+		columns = executor.execute();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		columns.close();
+		connection.close();
+	}
+
+	@Test
+	public void equalValuesAreGroupedAsParameterEquals() throws Exception {
+		ChartAggregator aggregator = new ChartAggregator(createChart(ChartType.BAR), false, ChartAggregator.NO_SORT);
+		List<ChartAggregator.Group> groups = aggregator.aggregate(result(
+				new Object[] { new BigDecimal("1.0"), 1 },
+				new Object[] { "a", 2 },
+				new Object[] { new BigDecimal("1.00"), 3 },
+				new Object[] { " A ", 4 },
+				new Object[] { new Date(1000), 5 },
+				new Object[] { new Timestamp(1000), 6 },
+				new Object[] { null, 7 },
+				new Object[] { null, 8 }));
+
+		assertEquals(5, groups.size());
+		assertEquals(4, groups.get(0).getValues()[0].intValue());
+		assertEquals(6, groups.get(1).getValues()[0].intValue());
+		assertEquals(11, groups.get(2).getValues()[0].intValue());
+		// null values are never equal
+		assertEquals(7, groups.get(3).getValues()[0].intValue());
+		assertEquals(8, groups.get(4).getValues()[0].intValue());
+	}
+
+	@Test
+	public void labelIsTheFirstValueOfGroup() throws Exception {
+		ChartAggregator aggregator = new ChartAggregator(createChart(ChartType.BAR), false, ChartAggregator.NO_SORT);
+		List<ChartAggregator.Group> groups = aggregator.aggregate(result(
+				new Object[] { "North", 1 },
+				new Object[] { "north ", 2 }));
+		assertEquals(1, groups.size());
+		assertEquals("North", groups.get(0).getLabel());
+		assertEquals(3, groups.get(0).getValues()[0].intValue());
+	}
+
+	@Test
+	public void downsampledGroupsKeepValueOrder() throws Exception {
+		ChartAggregator aggregator = new ChartAggregator(createChart(ChartType.LINE), false,
+				ChartAggregator.VALUE_DESCENDING);
+		aggregator.setMaxPoints(10);
+		List<ChartAggregator.Group> groups = aggregator.aggregate(result(series()));
+
+		assertEquals(10, groups.size());
+		for (int i = 1; i < groups.size(); i++) {
+			assertTrue(groups.get(i - 1).getValues()[0].doubleValue() >= groups.get(i).getValues()[0].doubleValue());
+		}
+		assertEquals(100, groups.get(0).getValues()[0].intValue());
+		assertTrue(containsX(groups, 0));
+		assertTrue(containsX(groups, 99));
+	}
+
+	@Test
+	public void unsortedGroupsAreDownsampledInXOrder() throws Exception {
+		ChartAggregator aggregator = new ChartAggregator(createChart(ChartType.LINE), false, ChartAggregator.NO_SORT);
+		aggregator.setMaxPoints(10);
+		Object[][] rows = series();
+		List<Object[]> shuffled = new ArrayList<Object[]>(Arrays.asList(rows));
+		Collections.shuffle(shuffled, new Random(1));
+		List<ChartAggregator.Group> groups = aggregator.aggregate(new MemoryQueryResult(columns, shuffled));
+
+		assertEquals(10, groups.size());
+		// groups keep the order of their rows
+		int last = -1;
+		for (ChartAggregator.Group group : groups) {
+			int position = indexOfX(shuffled, (Integer) group.getX());
+			assertTrue(position > last);
+			last = position;
+		}
+		assertTrue(containsX(groups, 0));
+		assertTrue(containsX(groups, 99));
+		assertTrue(containsX(groups, 50));
+	}
+
+	// flat line with a peak at x = 50
+	private Object[][] series() {
+		Object[][] rows = new Object[100][];
+		for (int i = 0; i < rows.length; i++) {
+			rows[i] = new Object[] { i, (i == 50) ? 100 : 1 + (i % 2) };
+		}
+		return rows;
+	}
+
+	private boolean containsX(List<ChartAggregator.Group> groups, int x) {
+		for (ChartAggregator.Group group : groups) {
+			if (group.getX().equals(x)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private int indexOfX(List<Object[]> rows, int x) {
+		for (int i = 0; i < rows.size(); i++) {
+			if (rows.get(i)[0].equals(x)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private Chart createChart(byte type) {
+		Chart chart = new Chart();
+		chart.setType(new ChartType(type));
+		chart.setXColumn("X");
+		chart.setYColumns(new ArrayList<String>(Arrays.asList("Y")));
+		chart.setYFunction(AbstractGFunction.SUM);
+		return chart;
+	}
+
+	private QueryResult result(Object[]... rows) {
+		return new MemoryQueryResult(columns, Arrays.asList(rows));
+	}
+
+}
@@ -0,0 +1,218 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.nextreports.engine.chart;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import ro.nextreports.engine.EngineTestUtil;
+import ro.nextreports.engine.exporter.util.function.AbstractGFunction;
+import ro.nextreports.engine.queryexec.Query;
+import ro.nextreports.engine.queryexec.QueryExecutor;
+import ro.nextreports.engine.queryexec.QueryParameter;
+import ro.nextreports.engine.queryexec.QueryResult;
+
+/**
+ * Compares the json of every chart type with the json written by the jofc2 library
+ * (jofc2_*.json files, same charts on the EngineTestUtil table).
+ */
+public class JsonExporterTest {
+
+	private Connection connection;
+
+	@Before
+	public void setUp() throws Exception {
+		connection = EngineTestUtil.createConnection();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		connection.close();
+	}
+
+	@Test
+	public void jsonIsTheSameAsJofc2Json() throws Exception {
+		assertSameJson("bar", ChartType.BAR, AbstractGFunction.SUM);
+		assertSameJson("stacked_bar", ChartType.STACKED_BAR, AbstractGFunction.SUM);
+		assertSameJson("horizontal_bar", ChartType.HORIZONTAL_BAR, AbstractGFunction.MAX);
+		assertSameJson("line", ChartType.LINE, AbstractGFunction.AVERAGE);
+		assertSameJson("area", ChartType.AREA, AbstractGFunction.COUNT);
+		assertSameJson("pie", ChartType.PIE, AbstractGFunction.SUM);
+	}
+
+	@Test
+	public void nonFiniteNumbersAreNull() {
+		assertEquals("null", JsonChartWriter.numberToString(Double.NaN));
+		assertEquals("null", JsonChartWriter.numberToString(Double.POSITIVE_INFINITY));
+		assertEquals("null", JsonChartWriter.numberToString(Float.NEGATIVE_INFINITY));
+		assertEquals("1.5", JsonChartWriter.numberToString(1.50));
+		assertEquals("0.35", JsonChartWriter.numberToString(0.35f));
+		assertEquals("12", JsonChartWriter.numberToString(12));
+	}
+
+	private void assertSameJson(String name, byte type, String function) throws Exception {
+		Chart chart = new Chart();
+		chart.setType(new ChartType(type));
+		chart.setXColumn("GRP");
+		chart.setYColumns(new ArrayList<String>((type == ChartType.PIE) ?
+				Arrays.asList("ID") : Arrays.asList("ID", "AMOUNT")));
+		chart.setYFunction(function);
+		chart.setTitle(new ChartTitle("Title \"q\" </b>"));
+		chart.setYColumnsLegends(new ArrayList<String>(Arrays.asList("Ids", "Amounts")));
+
+		QueryExecutor executor = new QueryExecutor(new Query("SELECT GRP, ID, AMOUNT FROM T ORDER BY GRP"),
+				new HashMap<String, QueryParameter>(), new HashMap<String, Object>(), connection);
+		QueryResult result = executor.execute();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try {
+			new JsonExporter(new HashMap<String, Object>(), result, out, chart, "drill(${X_VALUE})").export();
+		} finally {
+			result.close();
+		}
+
+		InputStream expected = getClass().getResourceAsStream("jofc2_" + name + ".json");
+		try {
+			assertEquals(name, new JsonReader(new InputStreamReader(expected, "UTF-8")).read(),
+					new JsonReader(new InputStreamReader(new ByteArrayInputStream(out.toByteArray()), "UTF-8")).read());
+		} finally {
+			expected.close();
+		}
+	}
+
+	// objects are read as maps, arrays as lists and numbers as doubles
+	private static class JsonReader {
+
+		private final Reader in;
+		private int c;
+
+		private JsonReader(Reader in) throws Exception {
+			this.in = in;
+			next();
+		}
+
+		private Object read() throws Exception {
+			skipSpaces();
+			if (c == '{') {
+				Map<String, Object> map = new LinkedHashMap<String, Object>();
+				next();
+				skipSpaces();
+				while (c != '}') {
+					String key = (String) read();
+					skipSpaces();
+					expect(':');
+					map.put(key, read());
+					skipSpaces();
+					if (c == ',') {
+						next();
+						skipSpaces();
+					}
+				}
+				next();
+				return map;
+			} else if (c == '[') {
+				List<Object> list = new ArrayList<Object>();
+				next();
+				skipSpaces();
+				while (c != ']') {
+					list.add(read());
+					skipSpaces();
+					if (c == ',') {
+						next();
+					}
+					skipSpaces();
+				}
+				next();
+				return list;
+			} else if (c == '"') {
+				StringBuilder sb = new StringBuilder();
+				next();
+				while (c != '"') {
+					if (c == '\\') {
+						next();
+						switch (c) {
+							case 'b': sb.append('\b'); break;
+							case 't': sb.append('\t'); break;
+							case 'n': sb.append('\n'); break;
+							case 'f': sb.append('\f'); break;
+							case 'r': sb.append('\r'); break;
+							case 'u':
+								char[] hex = new char[4];
+								for (int i = 0; i < 4; i++) {
+									next();
+									hex[i] = (char) c;
+								}
+								sb.append((char) Integer.parseInt(new String(hex), 16));
+								break;
+							default: sb.append((char) c);
+						}
+					} else {
+						sb.append((char) c);
+					}
+					next();
+				}
+				next();
+				return sb.toString();
+			}
+			StringBuilder sb = new StringBuilder();
+			while ((c != -1) && (",:]} \t\r\n".indexOf(c) == -1)) {
+				sb.append((char) c);
+				next();
+			}
+			String token = sb.toString();
+			if ("null".equals(token)) {
+				return null;
+			} else if ("true".equals(token) || "false".equals(token)) {
+				return Boolean.valueOf(token);
+			}
+			return Double.valueOf(token);
+		}
+
+		private void expect(char expected) throws Exception {
+			if (c != expected) {
+				throw new IllegalStateException("Expected " + expected + " but found " + (char) c);
+			}
+			next();
+		}
+
+		private void skipSpaces() throws Exception {
+			while ((c == ' ') || (c == '\t') || (c == '\r') || (c == '\n')) {
+				next();
+			}
+		}
+
+		private void next() throws Exception {
+			c = in.read();
+		}
+	}
+
+}
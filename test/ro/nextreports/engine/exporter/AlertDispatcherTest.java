@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.nextreports.engine.exporter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import ro.nextreports.engine.EngineTestUtil;
+import ro.nextreports.engine.ReportRunner;
+import ro.nextreports.engine.ReportRunnerException;
+import ro.nextreports.engine.exporter.event.ExporterEvent;
+import ro.nextreports.engine.exporter.event.ExporterEventListener;
+
+public class AlertDispatcherTest {
+
+	private static final AtomicInteger runs = new AtomicInteger();
+
+	private AlertDispatcher dispatcher;
+
+	@Before
+	public void setUp() {
+		runs.set(0);
+		dispatcher = new AlertDispatcher(1, 10, 60000);
+	}
+
+	@After
+	public void tearDown() {
+		dispatcher.shutdown();
+	}
+
+	@Test
+	public void sameAlertOfAnotherRunIsDeduplicated() throws Exception {
+		dispatch(new TestAlert("a", "x@y.z"), 10);
+		dispatch(new TestAlert("a", "x@y.z"), 10);
+		waitForRuns(dispatcher, 1);
+
+		assertEquals(1, runs.get());
+		assertEquals(1, dispatcher.getDeduplicatedCount());
+	}
+
+	@Test
+	public void differentAlertsAndValuesAreRun() throws Exception {
+		dispatch(new TestAlert("a", "x@y.z"), 10);
+		dispatch(new TestAlert("a", "other@y.z"), 10);
+		dispatch(new TestAlert("a", "x@y.z"), 11);
+		waitForRuns(dispatcher, 3);
+
+		assertEquals(3, runs.get());
+		assertEquals(0, dispatcher.getDeduplicatedCount());
+	}
+
+	@Test
+	public void alertsAreRunWhenExportFails() throws Exception {
+		Connection connection = EngineTestUtil.createConnection();
+		try {
+			ReportRunner runner = new ReportRunner();
+			runner.setConnection(connection);
+			runner.setReport(EngineTestUtil.createReport("SELECT ID, AMOUNT FROM T ORDER BY ID"));
+			runner.setFormat(ReportRunner.ALARM_FORMAT);
+			runner.setAlerts(Arrays.<Alert>asList(new TestAlert("zero", "x@y.z")));
+			runner.addExporterEventListener(new ExporterEventListener() {
+				public void notify(ExporterEvent event) {
+					throw new IllegalStateException("export failed");
+				}
+			});
+			try {
+				runner.run();
+				fail("Export must fail");
+			} catch (ReportRunnerException e) {
+				// expected
+			}
+			waitForRuns(AlertDispatcher.getInstance(), 1);
+			assertEquals(1, runs.get());
+		} finally {
+			connection.close();
+		}
+	}
+
+	private void dispatch(Alert alert, Object value) {
+		AlertDispatcher.Batch batch = dispatcher.createBatch();
+		batch.add(alert, value, "");
+		batch.dispatch();
+	}
+
+	private static void waitForRuns(AlertDispatcher dispatcher, int count) throws InterruptedException {
+		long end = System.currentTimeMillis() + 5000;
+		while ((runs.get() < count) && (System.currentTimeMillis() < end)) {
+			Thread.sleep(10);
+		}
+		// no other alert is run
+		Thread.sleep(100);
+		assertTrue(dispatcher.getPendingBatchCount() == 0);
+	}
+
+	private static class TestAlert extends Alert {
+
+		private static final long serialVersionUID = 1L;
+
+		private String name;
+		private List<String> recipients;
+
+		private TestAlert(String name, String recipient) {
+			this.name = name;
+			this.recipients = new ArrayList<String>(Arrays.asList(recipient));
+		}
+
+		protected boolean isActive(Object value) {
+			return (value instanceof Number) && (((Number) value).intValue() == 0);
+		}
+
+		protected void run(Object value, String message) {
+			runs.incrementAndGet();
+		}
+	}
+
+}
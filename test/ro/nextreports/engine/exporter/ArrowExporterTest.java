@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.nextreports.engine.exporter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.Connection;
+import java.util.HashMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import ro.nextreports.engine.EngineTestUtil;
+import ro.nextreports.engine.ReportRunner;
+import ro.nextreports.engine.ReportRunnerException;
+import ro.nextreports.engine.queryexec.Query;
+import ro.nextreports.engine.queryexec.QueryExecutor;
+import ro.nextreports.engine.queryexec.QueryParameter;
+import ro.nextreports.engine.queryexec.QueryResult;
+
+public class ArrowExporterTest {
+
+	private Connection connection;
+
+	@Before
+	public void setUp() throws Exception {
+		connection = EngineTestUtil.createConnection();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		connection.close();
+	}
+
+	@Test
+	public void writeErrorFailsRun() throws Exception {
+		ReportRunner runner = new ReportRunner();
+		runner.setConnection(connection);
+		runner.setReport(EngineTestUtil.createReport("SELECT ID, AMOUNT FROM T"));
+		runner.setFormat(ReportRunner.ARROW_FORMAT);
+		try {
+			runner.run(new OutputStream() {
+				public void write(int b) throws IOException {
+					throw new IOException("Disk full");
+				}
+			});
+			fail("Stream cannot be written");
+		} catch (ReportRunnerException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void decimalColumnsHavePrecision() throws Exception {
+		QueryExecutor executor = new QueryExecutor(new Query("SELECT CAST(AMOUNT AS DECIMAL(10,2)) A, ID FROM T"),
+				new HashMap<String, QueryParameter>(), new HashMap<String, Object>(), connection);
+		QueryResult result = executor.execute();
+		try {
+			assertEquals(10, result.getColumnPrecision(0));
+			assertEquals(2, result.getColumnScale(0));
+			assertEquals(0, result.getColumnPrecision(1));
+		} finally {
+			result.close();
+		}
+	}
+
+}
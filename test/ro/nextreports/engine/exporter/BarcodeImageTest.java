@@ -0,0 +1,145 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.nextreports.engine.exporter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.sql.Connection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.imageio.ImageIO;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.thoughtworks.xstream.core.util.Base64Encoder;
+
+import ro.nextreports.engine.EngineTestUtil;
+import ro.nextreports.engine.Report;
+import ro.nextreports.engine.ReportRunner;
+import ro.nextreports.engine.band.BarcodeBandElement;
+import ro.nextreports.engine.band.ReportBandElement;
+import ro.nextreports.engine.util.ReportUtil;
+
+public class BarcodeImageTest {
+
+	private Connection connection;
+	private File imagePath;
+
+	@Before
+	public void setUp() throws Exception {
+		connection = EngineTestUtil.createConnection();
+		imagePath = File.createTempFile("barcodes", "");
+		imagePath.delete();
+		imagePath.mkdir();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		connection.close();
+		for (File file : imagePath.listFiles()) {
+			file.delete();
+		}
+		imagePath.delete();
+	}
+
+	@Test
+	public void htmlEmbedsEveryDistinctBarcodeOnceWithoutFiles() throws Exception {
+		String html = new String(export(ReportRunner.HTML_FORMAT), "UTF-8");
+
+		Set<String> ids = new HashSet<String>();
+		Set<String> images = new HashSet<String>();
+		Matcher m = Pattern.compile("<image id=\"([^\"]*)\"[^>]* xlink:href=\"data:image/png;base64,([^\"]*)\"").matcher(html);
+		while (m.find()) {
+			ids.add(m.group(1));
+			images.add(m.group(2));
+			assertNotNull(ImageIO.read(new ByteArrayInputStream(new Base64Encoder().decode(m.group(2)))));
+		}
+		// one barcode for every group value
+		assertEquals(3, ids.size());
+		assertEquals(3, images.size());
+
+		int count = 0;
+		m = Pattern.compile("<use xlink:href=\"#([^\"]*)\"").matcher(html);
+		while (m.find()) {
+			assertTrue(ids.contains(m.group(1)));
+			count++;
+		}
+		assertEquals(EngineTestUtil.ROWS - 3, count);
+		assertFalse(html.contains("<img"));
+		assertEquals(0, imagePath.listFiles().length);
+	}
+
+	@Test
+	public void otherFormatsUseBarcodesFromMemory() throws Exception {
+		String[] formats = { ReportRunner.EXCEL_FORMAT, ReportRunner.RTF_FORMAT, ReportRunner.PDF_FORMAT };
+		for (String format : formats) {
+			assertTrue(format, export(format).length > 0);
+		}
+		assertEquals(0, imagePath.listFiles().length);
+	}
+
+	@Test
+	public void subreportBarcodesDoNotChangeReport() throws Exception {
+		Report subreport = EngineTestUtil.createReport("SELECT ID, AMOUNT, GRP FROM T WHERE ID < 3 ORDER BY ID");
+		subreport.setName("sub.report");
+		BarcodeBandElement barcode = new BarcodeBandElement(BarcodeBandElement.CODE128, "GRP", true);
+		barcode.setWidth(120);
+		barcode.setHeight(40);
+		subreport.getLayout().getDetailBand().setElementAt(barcode, 0, 1);
+		Report report = EngineTestUtil.createReport("SELECT ID, AMOUNT FROM T WHERE ID < 5 ORDER BY ID");
+		report.getLayout().getDetailBand().setElementAt(new ReportBandElement(subreport), 0, 1);
+		String image = barcode.getImage();
+		String xml = ReportUtil.reportToXml(report);
+
+		String html = new String(export(report, ReportRunner.HTML_FORMAT), "UTF-8");
+		assertTrue(html.contains("xlink:href=\"data:image/png;base64,"));
+		assertEquals(image, barcode.getImage());
+		assertEquals(xml, ReportUtil.reportToXml(report));
+	}
+
+	private byte[] export(String format) throws Exception {
+		Report report = EngineTestUtil.createReport("SELECT ID, AMOUNT, GRP FROM T ORDER BY ID");
+		BarcodeBandElement barcode = new BarcodeBandElement(BarcodeBandElement.CODE128, "GRP", true);
+		barcode.setWidth(120);
+		barcode.setHeight(40);
+		report.getLayout().getDetailBand().setElementAt(barcode, 0, 1);
+		return export(report, format);
+	}
+
+	private byte[] export(Report report, String format) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ReportRunner runner = new ReportRunner();
+		runner.setConnection(connection);
+		runner.setReport(report);
+		runner.setFormat(format);
+		runner.setChartImagePath(imagePath.getAbsolutePath());
+		runner.run(out);
+		return out.toByteArray();
+	}
+
+}
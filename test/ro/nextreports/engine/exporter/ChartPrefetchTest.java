@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.nextreports.engine.exporter;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import ro.nextreports.engine.EngineTestUtil;
+import ro.nextreports.engine.Report;
+import ro.nextreports.engine.ReportRunner;
+import ro.nextreports.engine.band.ChartBandElement;
+import ro.nextreports.engine.chart.Chart;
+import ro.nextreports.engine.chart.ChartType;
+import ro.nextreports.engine.exporter.event.ExporterEvent;
+import ro.nextreports.engine.exporter.event.ExporterEventListener;
+import ro.nextreports.engine.exporter.util.function.AbstractGFunction;
+import ro.nextreports.engine.queryexec.ConnectionSupplier;
+
+public class ChartPrefetchTest {
+
+	private Connection connection;
+	private File imagePath;
+
+	@Before
+	public void setUp() throws Exception {
+		System.setProperty("java.awt.headless", "true");
+		connection = EngineTestUtil.createConnection();
+		imagePath = File.createTempFile("charts", "");
+		imagePath.delete();
+		imagePath.mkdir();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		connection.close();
+		for (File file : imagePath.listFiles()) {
+			file.delete();
+		}
+		imagePath.delete();
+	}
+
+	@Test
+	public void chartsAreSubmittedBeforeTheirBandsArePrinted() throws Exception {
+		Report report = EngineTestUtil.createReport("SELECT ID, AMOUNT FROM T ORDER BY ID");
+		report.getLayout().getHeaderBand().setElementAt(createChartElement(AbstractGFunction.SUM), 0, 1);
+		report.getLayout().getFooterBand().setElementAt(createChartElement(AbstractGFunction.MAX), 0, 0);
+		final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+		RecordingSupplier supplier = new RecordingSupplier(connection.getMetaData().getURL(), events);
+
+		ReportRunner runner = new ReportRunner();
+		runner.setConnection(connection);
+		runner.setConnectionSupplier(supplier);
+		final CountDownLatch charts = supplier.charts;
+		runner.addExporterEventListener(new ExporterEventListener() {
+			public void notify(ExporterEvent event) {
+				// charts render on the pool : give the footer chart time to take its connection
+				if (events.isEmpty() || "chart".equals(events.get(events.size() - 1))) {
+					try {
+						charts.await(5, TimeUnit.SECONDS);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+				events.add("row");
+			}
+		});
+		runner.setReport(report);
+		runner.setFormat(ReportRunner.HTML_FORMAT);
+		runner.setChartImagePath(imagePath.getAbsolutePath());
+		runner.run(new ByteArrayOutputStream());
+
+		// the footer chart is rendered on the pool before any detail row is exported
+		assertEquals(2 + EngineTestUtil.ROWS, events.size());
+		assertEquals("chart", events.get(0));
+		assertEquals("chart", events.get(1));
+		assertEquals(2, imagePath.listFiles().length);
+	}
+
+	private ChartBandElement createChartElement(String function) {
+		Chart chart = new Chart();
+		chart.setType(new ChartType(ChartType.BAR));
+		chart.setReport(EngineTestUtil.createReport("SELECT GRP AS X, AMOUNT AS Y FROM T"));
+		chart.setXColumn("X");
+		chart.setYColumns(new ArrayList<String>(Arrays.asList("Y")));
+		chart.setYFunction(function);
+		ChartBandElement element = new ChartBandElement(chart);
+		element.setWidth(200);
+		element.setHeight(100);
+		return element;
+	}
+
+	private static class RecordingSupplier implements ConnectionSupplier {
+
+		private String url;
+		private List<String> events;
+		private CountDownLatch charts = new CountDownLatch(2);
+
+		RecordingSupplier(String url, List<String> events) {
+			this.url = url;
+			this.events = events;
+		}
+
+		public Connection getConnection() throws SQLException {
+			events.add("chart");
+			charts.countDown();
+			return DriverManager.getConnection(url);
+		}
+
+		public void releaseConnection(Connection connection) {
+			try {
+				connection.close();
+			} catch (SQLException e) {
+				// ignore
+			}
+		}
+	}
+
+}
@@ -0,0 +1,64 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.nextreports.engine.exporter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.sql.Connection;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import ro.nextreports.engine.EngineTestUtil;
+import ro.nextreports.engine.ReportRunner;
+
+public class ParquetExporterTest {
+
+	private Connection connection;
+
+	@Before
+	public void setUp() throws Exception {
+		connection = EngineTestUtil.createConnection();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		connection.close();
+	}
+
+	@Test
+	public void runnerWritesParquetFile() throws Exception {
+		ReportRunner runner = new ReportRunner();
+		runner.setConnection(connection);
+		runner.setReport(EngineTestUtil.createReport("SELECT ID, GRP, AMOUNT, TS FROM T"));
+		runner.setFormat(ReportRunner.PARQUET_FORMAT);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		assertTrue(runner.run(out));
+		byte[] file = out.toByteArray();
+		int n = file.length;
+		assertEquals("PAR1", new String(file, 0, 4, "US-ASCII"));
+		assertEquals("PAR1", new String(file, n - 4, 4, "US-ASCII"));
+		int footer = (file[n - 8] & 0xFF) | (file[n - 7] & 0xFF) << 8 | (file[n - 6] & 0xFF) << 16 | (file[n - 5] & 0xFF) << 24;
+		assertTrue((footer > 0) && (footer < n - 12));
+		// column values are written, not the report layout
+		assertTrue(new String(file, "ISO-8859-1").contains("GRP"));
+	}
+
+}
@@ -0,0 +1,243 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.nextreports.engine.exporter.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TimeZone;
+
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.BitVector;
+import org.apache.arrow.vector.DateDayVector;
+import org.apache.arrow.vector.DecimalVector;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.TimeMilliVector;
+import org.apache.arrow.vector.TimeStampMicroVector;
+import org.apache.arrow.vector.ValueVector;
+import org.apache.arrow.vector.VarBinaryVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.dictionary.Dictionary;
+import org.apache.arrow.vector.dictionary.DictionaryEncoder;
+import org.apache.arrow.vector.ipc.ArrowStreamReader;
+import org.apache.arrow.vector.types.DateUnit;
+import org.apache.arrow.vector.types.FloatingPointPrecision;
+import org.apache.arrow.vector.types.TimeUnit;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.DictionaryEncoding;
+import org.apache.arrow.vector.types.pojo.Schema;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Streams written by ArrowStreamWriter are read back with the Arrow java library.
+ */
+public class ArrowStreamWriterTest {
+
+	private static final String[] NAMES = { "I", "L", "F", "D", "B", "DT", "TM", "TS", "BIN", "S" };
+	private static final int[] TYPES = { Types.INTEGER, Types.BIGINT, Types.DOUBLE, Types.DECIMAL, Types.BOOLEAN,
+			Types.DATE, Types.TIME, Types.TIMESTAMP, Types.VARBINARY, Types.VARCHAR };
+	private static final int ROWS = 12;
+	// 2020-01-01
+	private static final int DAYS = 18262;
+	// 10:20:30
+	private static final int TIME_MILLIS = 37230000;
+
+	private BufferAllocator allocator;
+
+	@Before
+	public void setUp() {
+		allocator = new RootAllocator(Long.MAX_VALUE);
+	}
+
+	@After
+	public void tearDown() {
+		allocator.close();
+	}
+
+	@Test
+	public void allTypesAreReadBack() throws Exception {
+		int[] precisions = new int[NAMES.length];
+		int[] scales = new int[NAMES.length];
+		precisions[3] = 10;
+		scales[3] = 2;
+		byte[] stream = write(precisions, scales, 5);
+
+		ArrowStreamReader reader = new ArrowStreamReader(new ByteArrayInputStream(stream), allocator);
+		try {
+			VectorSchemaRoot root = reader.getVectorSchemaRoot();
+			Schema schema = root.getSchema();
+			assertEquals(new ArrowType.Int(32, true), type(schema, "I"));
+			assertEquals(new ArrowType.Int(64, true), type(schema, "L"));
+			assertEquals(new ArrowType.FloatingPoint(FloatingPointPrecision.DOUBLE), type(schema, "F"));
+			assertEquals(new ArrowType.Decimal(10, 2, 128), type(schema, "D"));
+			assertEquals(new ArrowType.Bool(), type(schema, "B"));
+			assertEquals(new ArrowType.Date(DateUnit.DAY), type(schema, "DT"));
+			assertEquals(new ArrowType.Time(TimeUnit.MILLISECOND, 32), type(schema, "TM"));
+			assertEquals(new ArrowType.Timestamp(TimeUnit.MICROSECOND, null), type(schema, "TS"));
+			assertEquals(new ArrowType.Binary(), type(schema, "BIN"));
+			DictionaryEncoding encoding = schema.findField("S").getDictionary();
+			assertEquals(new ArrowType.Int(32, true), encoding.getIndexType());
+
+			int row = 0;
+			int batches = 0;
+			while (reader.loadNextBatch()) {
+				batches++;
+				Dictionary dictionary = reader.getDictionaryVectors().get(encoding.getId());
+				for (int r = 0; r < root.getRowCount(); r++, row++) {
+					if (row == 7) {
+						for (int c = 1; c < NAMES.length; c++) {
+							assertTrue(NAMES[c], root.getVector(c).isNull(r));
+						}
+						continue;
+					}
+					assertEquals(row, ((IntVector) root.getVector("I")).get(r));
+					assertEquals(row * 1000000000000L, ((BigIntVector) root.getVector("L")).get(r));
+					assertEquals(row * 1.5, ((Float8Vector) root.getVector("F")).get(r), 0);
+					assertEquals(new BigDecimal(row + ".25").negate(), ((DecimalVector) root.getVector("D")).getObject(r));
+					assertEquals(row % 2, ((BitVector) root.getVector("B")).get(r));
+					assertEquals(DAYS + row, ((DateDayVector) root.getVector("DT")).get(r));
+					assertEquals(TIME_MILLIS + row, ((TimeMilliVector) root.getVector("TM")).get(r));
+					assertEquals((DAYS + row) * 86400000000L + TIME_MILLIS * 1000L + 123456,
+							((TimeStampMicroVector) root.getVector("TS")).get(r));
+					assertArrayEquals(new byte[] { (byte) row, 1 }, ((VarBinaryVector) root.getVector("BIN")).get(r));
+					assertEquals(string(row), decode(root.getVector("S"), dictionary, r));
+				}
+			}
+			assertEquals(ROWS, row);
+			assertEquals(3, batches);
+		} finally {
+			reader.close();
+		}
+	}
+
+	@Test
+	public void dictionaryValuesAreAddedByDeltaBatches() throws Exception {
+		byte[] stream = write(new int[NAMES.length], new int[NAMES.length], 5);
+		ArrowStreamReader reader = new ArrowStreamReader(new ByteArrayInputStream(stream), allocator);
+		try {
+			VectorSchemaRoot root = reader.getVectorSchemaRoot();
+			long id = root.getSchema().findField("S").getDictionary().getId();
+			List<Integer> sizes = new ArrayList<Integer>();
+			while (reader.loadNextBatch()) {
+				sizes.add(reader.getDictionaryVectors().get(id).getVector().getValueCount());
+			}
+			// a, b in first batch, c added by second batch
+			assertEquals(3, sizes.size());
+			assertEquals(2, sizes.get(0).intValue());
+			assertEquals(3, sizes.get(1).intValue());
+			assertEquals(3, sizes.get(2).intValue());
+		} finally {
+			reader.close();
+		}
+	}
+
+	@Test
+	public void decimalWithoutPrecisionIsDouble() throws Exception {
+		byte[] stream = write(new int[NAMES.length], new int[NAMES.length], ROWS);
+		ArrowStreamReader reader = new ArrowStreamReader(new ByteArrayInputStream(stream), allocator);
+		try {
+			VectorSchemaRoot root = reader.getVectorSchemaRoot();
+			assertEquals(new ArrowType.FloatingPoint(FloatingPointPrecision.DOUBLE), type(root.getSchema(), "D"));
+			assertTrue(reader.loadNextBatch());
+			assertEquals(-1.25, ((Float8Vector) root.getVector("D")).get(1), 0);
+			assertFalse(reader.loadNextBatch());
+		} finally {
+			reader.close();
+		}
+	}
+
+	private byte[] write(int[] precisions, int[] scales, int batchRows) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ArrowStreamWriter writer = new ArrowStreamWriter(out, NAMES, TYPES, precisions, scales, batchRows);
+		for (int row = 0; row < ROWS; row++) {
+			if (row == 7) {
+				Object[] values = new Object[NAMES.length];
+				values[0] = row;
+				writer.write(values);
+				continue;
+			}
+			writer.write(new Object[] {
+				row,
+				row * 1000000000000L,
+				row * 1.5,
+				new BigDecimal(row + ".25").negate(),
+				row % 2 == 1,
+				new Date(local(DAYS + row, 0)),
+				new Time(local(0, TIME_MILLIS + row)),
+				timestamp(row),
+				new byte[] { (byte) row, 1 },
+				string(row)
+			});
+		}
+		writer.finish();
+		return out.toByteArray();
+	}
+
+	// a and b in first batch (dictionary encoded), c after it
+	private static String string(int row) {
+		if (row < 5) {
+			return (row % 2 == 0) ? "a" : "b";
+		}
+		return (row % 3 == 0) ? "c" : "a";
+	}
+
+	private static Timestamp timestamp(int row) {
+		Timestamp timestamp = new Timestamp(local(DAYS + row, TIME_MILLIS));
+		timestamp.setNanos(123456000);
+		return timestamp;
+	}
+
+	// time in default time zone with the wall clock of days and millis in UTC
+	private static long local(int days, long millis) {
+		long utc = days * 86400000L + millis;
+		TimeZone zone = TimeZone.getDefault();
+		long time = utc - zone.getOffset(utc);
+		return utc - zone.getOffset(time);
+	}
+
+	private static ArrowType type(Schema schema, String name) {
+		return schema.findField(name).getType();
+	}
+
+	private static String decode(FieldVector indexes, Dictionary dictionary, int row) {
+		ValueVector values = DictionaryEncoder.decode(indexes, dictionary);
+		try {
+			return ((VarCharVector) values).getObject(row).toString();
+		} finally {
+			values.close();
+		}
+	}
+
+}
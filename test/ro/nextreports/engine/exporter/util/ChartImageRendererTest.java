@@ -0,0 +1,167 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.nextreports.engine.exporter.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import ro.nextreports.engine.EngineProperties;
+import ro.nextreports.engine.EngineTestUtil;
+import ro.nextreports.engine.band.ChartBandElement;
+import ro.nextreports.engine.chart.Chart;
+import ro.nextreports.engine.chart.ChartType;
+import ro.nextreports.engine.exporter.util.function.AbstractGFunction;
+import ro.nextreports.engine.queryexec.ConnectionSupplier;
+
+public class ChartImageRendererTest {
+
+	private Connection connection;
+	private File imageDir;
+
+	@Before
+	public void setUp() throws Exception {
+		System.setProperty("java.awt.headless", "true");
+		connection = EngineTestUtil.createConnection();
+		imageDir = File.createTempFile("charts", "");
+		imageDir.delete();
+		imageDir.mkdir();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		for (File file : imageDir.listFiles()) {
+			file.delete();
+		}
+		imageDir.delete();
+		connection.close();
+	}
+
+	@Test
+	public void submittedChartIsRenderedOnceAndReleased() throws Exception {
+		CountingSupplier supplier = new CountingSupplier();
+		ChartImageRenderer renderer = new ChartImageRenderer(connection, supplier, 0, imageDir.getAbsolutePath());
+		ChartBandElement element = createChartElement();
+		Map<String, Object> values = Collections.<String, Object>emptyMap();
+
+		renderer.submit(element, values);
+		renderer.submit(element, values);
+		assertEquals(1, renderer.getPendingCount());
+
+		String image = renderer.getImage(element, values);
+		assertNotNull(image);
+		assertTrue(new File(imageDir, image).exists());
+		// image is taken : the pending chart is forgotten, the image name is kept
+		assertEquals(0, renderer.getPendingCount());
+		assertEquals(image, renderer.getImage(element, values));
+		renderer.submit(element, values);
+		assertEquals(0, renderer.getPendingCount());
+		assertEquals(1, supplier.connections.get());
+		assertEquals(1, imageDir.listFiles().length);
+	}
+
+	@Test
+	public void submittedChartsAreLimited() throws Exception {
+		final CountDownLatch latch = new CountDownLatch(1);
+		CountingSupplier supplier = new CountingSupplier() {
+			public Connection getConnection() throws SQLException {
+				try {
+					latch.await();
+				} catch (InterruptedException e) {
+					throw new SQLException("Interrupted");
+				}
+				return super.getConnection();
+			}
+		};
+		ChartImageRenderer renderer = new ChartImageRenderer(connection, supplier, 0, imageDir.getAbsolutePath());
+		ChartBandElement element = createChartElement();
+		int charts = EngineProperties.getChartThreads() + 3;
+		for (int i = 0; i < charts; i++) {
+			renderer.submit(element, Collections.<String, Object>singletonMap("P", i));
+		}
+		// other charts are rendered on report connection
+		assertEquals(EngineProperties.getChartThreads(), renderer.getPendingCount());
+
+		latch.countDown();
+		for (int i = 0; i < charts; i++) {
+			assertNotNull(renderer.getImage(element, Collections.<String, Object>singletonMap("P", i)));
+		}
+		assertEquals(EngineProperties.getChartThreads(), supplier.connections.get());
+	}
+
+	@Test
+	public void cancelForgetsPendingCharts() throws Exception {
+		CountingSupplier supplier = new CountingSupplier();
+		ChartImageRenderer renderer = new ChartImageRenderer(connection, supplier, 0, imageDir.getAbsolutePath());
+		ChartBandElement element = createChartElement();
+		renderer.submit(element, Collections.<String, Object>emptyMap());
+		renderer.cancel();
+		assertEquals(0, renderer.getPendingCount());
+	}
+
+	@Test
+	public void chartIsRenderedOnReportConnectionWithoutSupplier() throws Exception {
+		ChartImageRenderer renderer = new ChartImageRenderer(connection, null, 0, imageDir.getAbsolutePath());
+		ChartBandElement element = createChartElement();
+		renderer.submit(element, Collections.<String, Object>emptyMap());
+		assertEquals(0, renderer.getPendingCount());
+		String image = renderer.getImage(element, Collections.<String, Object>emptyMap());
+		assertNotNull(image);
+		assertEquals(0, renderer.getPendingCount());
+	}
+
+	private ChartBandElement createChartElement() {
+		Chart chart = new Chart();
+		chart.setType(new ChartType(ChartType.BAR));
+		chart.setReport(EngineTestUtil.createReport("SELECT GRP AS X, AMOUNT AS Y FROM T"));
+		chart.setXColumn("X");
+		chart.setYColumns(new ArrayList<String>(Arrays.asList("Y")));
+		chart.setYFunction(AbstractGFunction.SUM);
+		ChartBandElement element = new ChartBandElement(chart);
+		element.setWidth(200);
+		element.setHeight(100);
+		return element;
+	}
+
+	private class CountingSupplier implements ConnectionSupplier {
+
+		private AtomicInteger connections = new AtomicInteger();
+
+		public Connection getConnection() throws SQLException {
+			connections.incrementAndGet();
+			return connection;
+		}
+
+		public void releaseConnection(Connection connection) {
+		}
+	}
+
+}
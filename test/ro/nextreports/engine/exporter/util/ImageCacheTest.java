@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.nextreports.engine.exporter.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Test;
+
+public class ImageCacheTest {
+
+	private static final String IMAGE = "ro/nextreports/engine/exporter/util/image_cache_test.png";
+
+	@Test
+	public void imagesAreLoadedOnce() throws Exception {
+		ImageCache cache = new ImageCache(1024 * 1024);
+		byte[] image = cache.getImage(IMAGE);
+		assertSame(image, cache.getImage(IMAGE));
+		assertEquals(image.length, cache.getSize());
+		assertArrayEquals(new int[] { 8, 4 }, cache.getImageSize(IMAGE));
+	}
+
+	@Test
+	public void scaledImagesAreCachedBySize() throws Exception {
+		ImageCache cache = new ImageCache(1024 * 1024);
+		byte[] scaled = cache.getScaledImage(IMAGE, 16, 8);
+		assertSame(scaled, cache.getScaledImage(IMAGE, 16, 8));
+		assertNotSame(scaled, cache.getScaledImage(IMAGE, 4, 2));
+
+		BufferedImage img = ImageIO.read(new ByteArrayInputStream(scaled));
+		assertEquals(16, img.getWidth());
+		assertEquals(8, img.getHeight());
+	}
+
+	@Test
+	public void leastRecentlyUsedImagesAreRemoved() throws Exception {
+		ImageCache cache = new ImageCache(1024 * 1024);
+		long original = cache.getImage(IMAGE).length;
+		long scaled = cache.getScaledImage(IMAGE, 16, 8).length;
+		cache = new ImageCache(original + scaled - 1);
+
+		byte[] image = cache.getImage(IMAGE);
+		cache.getScaledImage(IMAGE, 16, 8);
+		assertTrue(cache.getSize() <= original + scaled - 1);
+		assertNotSame(image, cache.getImage(IMAGE));
+	}
+
+	@Test
+	public void addedImagesAreRemovedWhenCacheIsFull() throws Exception {
+		byte[] image = new ImageCache(1024 * 1024).getImage(IMAGE);
+		ImageCache cache = new ImageCache(image.length * 2);
+		cache.putImage("barcode:1", image);
+		cache.putImage("barcode:2", image);
+		assertSame(image, cache.getCachedImage("barcode:1"));
+		assertArrayEquals(new int[] { 8, 4 }, cache.getImageSize("barcode:1"));
+
+		cache.putImage("barcode:3", image);
+		assertNull(cache.getCachedImage("barcode:2"));
+		assertSame(image, cache.getCachedImage("barcode:1"));
+		assertTrue(cache.getSize() <= image.length * 2);
+	}
+
+	@Test(expected = IOException.class)
+	public void missingImage() throws Exception {
+		new ImageCache(1024).getImage("missing.png");
+	}
+
+}
@@ -0,0 +1,370 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.nextreports.engine.exporter.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Files written by ParquetFileWriter are read with a small reader of the thrift compact protocol and of
+ * plain, dictionary and RLE encoded pages.
+ */
+public class ParquetFileWriterTest {
+
+	private static final String[] NAMES = { "I", "D", "B", "S" };
+	private static final int[] TYPES = { Types.INTEGER, Types.DECIMAL, Types.BOOLEAN, Types.VARCHAR };
+	private static final int[] PRECISIONS = { 0, 12, 0, 0 };
+	private static final int[] SCALES = { 0, 2, 0, 0 };
+	private static final int ROWS = 12;
+
+	@Test
+	public void footerDescribesColumnsAndRowGroups() throws Exception {
+		byte[] file = write(5, ROWS);
+		Map<Integer, Object> metadata = readFooter(file);
+		assertEquals(12L, metadata.get(3));
+		List<?> schema = (List<?>) metadata.get(2);
+		assertEquals(NAMES.length + 1, schema.size());
+		assertEquals(4, struct(schema.get(0)).get(5));
+		// physical type, converted type
+		assertColumn(schema.get(1), "I", 1, null);
+		assertColumn(schema.get(2), "D", 2, 5);
+		assertEquals(2, struct(schema.get(2)).get(7));
+		assertEquals(12, struct(schema.get(2)).get(8));
+		assertColumn(schema.get(3), "B", 0, null);
+		assertColumn(schema.get(4), "S", 6, 0);
+
+		List<?> rowGroups = (List<?>) metadata.get(4);
+		assertEquals(3, rowGroups.size());
+		long[] rows = { 5, 5, 2 };
+		for (int i = 0; i < rows.length; i++) {
+			Map<Integer, Object> rowGroup = struct(rowGroups.get(i));
+			assertEquals(rows[i], rowGroup.get(3));
+			assertEquals(NAMES.length, ((List<?>) rowGroup.get(1)).size());
+		}
+	}
+
+	@Test
+	public void valuesAreReadBack() throws Exception {
+		byte[] file = write(5, ROWS);
+		List<?> rowGroups = (List<?>) readFooter(file).get(4);
+		List<Object[]> rows = new ArrayList<Object[]>();
+		for (Object rowGroup : rowGroups) {
+			List<?> chunks = (List<?>) struct(rowGroup).get(1);
+			int count = ((Long) struct(rowGroup).get(3)).intValue();
+			Object[][] columns = new Object[NAMES.length][];
+			for (int c = 0; c < NAMES.length; c++) {
+				columns[c] = readChunk(file, struct(struct(chunks.get(c)).get(3)), count);
+			}
+			for (int r = 0; r < count; r++) {
+				Object[] row = new Object[NAMES.length];
+				for (int c = 0; c < NAMES.length; c++) {
+					row[c] = columns[c][r];
+				}
+				rows.add(row);
+			}
+		}
+		assertEquals(ROWS, rows.size());
+		for (int r = 0; r < ROWS; r++) {
+			Object[] row = rows.get(r);
+			assertEquals(r, row[0]);
+			if (r == 7) {
+				assertNull(row[1]);
+				assertNull(row[2]);
+				assertNull(row[3]);
+				continue;
+			}
+			// unscaled decimal
+			assertEquals(-(r * 100L + 25), row[1]);
+			assertEquals(r % 2 == 1, row[2]);
+			assertEquals(string(r), row[3]);
+		}
+	}
+
+	@Test
+	public void stringsAreDictionaryEncoded() throws Exception {
+		byte[] file = write(ROWS, ROWS);
+		List<?> rowGroups = (List<?>) readFooter(file).get(4);
+		Map<Integer, Object> column = struct(struct(((List<?>) struct(rowGroups.get(0)).get(1)).get(3)).get(3));
+		// PLAIN_DICTIONARY and RLE encodings, dictionary page offset
+		assertEquals(Arrays.asList(2, 3), column.get(2));
+		assertTrue(column.containsKey(11));
+		Map<Integer, Object> integers = struct(struct(((List<?>) struct(rowGroups.get(0)).get(1)).get(0)).get(3));
+		assertEquals(Arrays.asList(0, 3), integers.get(2));
+		assertFalse(integers.containsKey(11));
+	}
+
+	@Test
+	public void emptyFileHasNoRowGroups() throws Exception {
+		byte[] file = write(5, 0);
+		assertArrayEquals("PAR1".getBytes("US-ASCII"), Arrays.copyOf(file, 4));
+		Map<Integer, Object> metadata = readFooter(file);
+		assertEquals(0L, metadata.get(3));
+		assertEquals(0, ((List<?>) metadata.get(4)).size());
+	}
+
+	private byte[] write(int rowGroupRows, int rows) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ParquetFileWriter writer = new ParquetFileWriter(out, NAMES, TYPES, PRECISIONS, SCALES, rowGroupRows);
+		for (int r = 0; r < rows; r++) {
+			if (r == 7) {
+				writer.write(new Object[] { r, null, null, null });
+			} else {
+				writer.write(new Object[] { r, new BigDecimal(r + ".25").negate(), r % 2 == 1, string(r) });
+			}
+		}
+		writer.finish();
+		return out.toByteArray();
+	}
+
+	// two values in the first row group
+	private static String string(int row) {
+		return (row % 3 == 0) ? "a" : "b";
+	}
+
+	private static void assertColumn(Object element, String name, int type, Integer convertedType) throws Exception {
+		Map<Integer, Object> column = struct(element);
+		assertEquals(name, new String((byte[]) column.get(4), "UTF-8"));
+		assertEquals(type, column.get(1));
+		// optional
+		assertEquals(1, column.get(3));
+		assertEquals(convertedType, column.get(6));
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Map<Integer, Object> struct(Object value) {
+		return (Map<Integer, Object>) value;
+	}
+
+	private static Map<Integer, Object> readFooter(byte[] file) {
+		int n = file.length;
+		assertEquals("PAR1", new String(file, n - 4, 4));
+		int length = (file[n - 8] & 0xFF) | (file[n - 7] & 0xFF) << 8 | (file[n - 6] & 0xFF) << 16 | (file[n - 5] & 0xFF) << 24;
+		Reader reader = new Reader(file, n - 8 - length);
+		Map<Integer, Object> metadata = reader.readStruct();
+		assertEquals(n - 8, reader.position);
+		return metadata;
+	}
+
+	// values of a column chunk (null for null values)
+	private static Object[] readChunk(byte[] file, Map<Integer, Object> column, int rows) {
+		int type = (Integer) column.get(1);
+		Reader reader = new Reader(file, ((Long) column.get(9)).intValue());
+		List<String> dictionary = null;
+		if (column.containsKey(11)) {
+			reader.position = ((Long) column.get(11)).intValue();
+			Map<Integer, Object> header = reader.readStruct();
+			assertEquals(2, header.get(1));
+			int count = (Integer) struct(header.get(7)).get(1);
+			dictionary = new ArrayList<String>();
+			for (int i = 0; i < count; i++) {
+				dictionary.add(new String(reader.readBytes(reader.readInt())));
+			}
+		}
+		Map<Integer, Object> header = reader.readStruct();
+		assertEquals(0, header.get(1));
+		Map<Integer, Object> dataPage = struct(header.get(5));
+		assertEquals(rows, dataPage.get(1));
+		int end = reader.position + (Integer) header.get(3);
+
+		int levelsLength = reader.readInt();
+		int levelsEnd = reader.position + levelsLength;
+		int[] levels = reader.readHybrid(1, rows);
+		reader.position = levelsEnd;
+		int count = 0;
+		for (int level : levels) {
+			count += level;
+		}
+		Object[] values = new Object[count];
+		if (dictionary != null) {
+			assertEquals(2, dataPage.get(2));
+			int bitWidth = reader.readByte();
+			int[] indexes = reader.readHybrid(bitWidth, count);
+			for (int i = 0; i < count; i++) {
+				values[i] = dictionary.get(indexes[i]);
+			}
+		} else {
+			assertEquals(0, dataPage.get(2));
+			for (int i = 0; i < count; i++) {
+				if (type == 0) {
+					values[i] = ((file[reader.position + i / 8] >> (i % 8)) & 1) == 1;
+				} else if (type == 1) {
+					values[i] = reader.readInt();
+				} else if (type == 2) {
+					values[i] = reader.readInt() & 0xFFFFFFFFL | ((long) reader.readInt()) << 32;
+				} else {
+					values[i] = new String(reader.readBytes(reader.readInt()));
+				}
+			}
+			if (type == 0) {
+				reader.position += (count + 7) / 8;
+			}
+		}
+		assertEquals(end, reader.position);
+
+		Object[] result = new Object[rows];
+		for (int r = 0, i = 0; r < rows; r++) {
+			if (levels[r] == 1) {
+				result[r] = values[i++];
+			}
+		}
+		return result;
+	}
+
+	// thrift compact protocol and little endian values
+	private static class Reader {
+
+		final byte[] bytes;
+		int position;
+
+		Reader(byte[] bytes, int position) {
+			this.bytes = bytes;
+			this.position = position;
+		}
+
+		int readByte() {
+			return bytes[position++] & 0xFF;
+		}
+
+		int readInt() {
+			int value = 0;
+			for (int i = 0; i < 4; i++) {
+				value |= readByte() << (8 * i);
+			}
+			return value;
+		}
+
+		byte[] readBytes(int length) {
+			byte[] b = Arrays.copyOfRange(bytes, position, position + length);
+			position += length;
+			return b;
+		}
+
+		long readVarLong() {
+			long value = 0;
+			int shift = 0;
+			int b;
+			do {
+				b = readByte();
+				value |= ((long) (b & 0x7F)) << shift;
+				shift += 7;
+			} while ((b & 0x80) != 0);
+			return value;
+		}
+
+		long readZigZag() {
+			long value = readVarLong();
+			return (value >>> 1) ^ -(value & 1);
+		}
+
+		Map<Integer, Object> readStruct() {
+			Map<Integer, Object> struct = new HashMap<Integer, Object>();
+			int id = 0;
+			while (true) {
+				int header = readByte();
+				if (header == 0) {
+					return struct;
+				}
+				int type = header & 0x0F;
+				int delta = header >> 4;
+				int next = (delta == 0) ? (int) readZigZag() : id + delta;
+				assertTrue("fields are in id order", next > id);
+				id = next;
+				struct.put(id, readValue(type));
+			}
+		}
+
+		Object readValue(int type) {
+			switch (type) {
+				case 1:
+					return Boolean.TRUE;
+				case 2:
+					return Boolean.FALSE;
+				case 5:
+					return (int) readZigZag();
+				case 6:
+					return readZigZag();
+				case 8:
+					return readBytes((int) readVarLong());
+				case 9:
+					int header = readByte();
+					int size = header >> 4;
+					if (size == 15) {
+						size = (int) readVarLong();
+					}
+					List<Object> list = new ArrayList<Object>();
+					for (int i = 0; i < size; i++) {
+						list.add(readValue(header & 0x0F));
+					}
+					return list;
+				case 12:
+					return readStruct();
+				default:
+					throw new IllegalStateException("Unexpected thrift type " + type);
+			}
+		}
+
+		// RLE / bit packing hybrid
+		int[] readHybrid(int bitWidth, int count) {
+			int[] values = new int[count];
+			int n = 0;
+			while (n < count) {
+				long header = readVarLong();
+				if ((header & 1) == 0) {
+					int run = (int) (header >>> 1);
+					int value = 0;
+					for (int b = 0; b < (bitWidth + 7) / 8; b++) {
+						value |= readByte() << (8 * b);
+					}
+					for (int i = 0; (i < run) && (n < count); i++) {
+						values[n++] = value;
+					}
+				} else {
+					int groups = (int) (header >>> 1);
+					long buffer = 0;
+					int bits = 0;
+					for (int i = 0; i < groups * 8; i++) {
+						while (bits < bitWidth) {
+							buffer |= ((long) readByte()) << bits;
+							bits += 8;
+						}
+						if (n < count) {
+							values[n++] = (int) (buffer & ((1 << bitWidth) - 1));
+						}
+						buffer >>>= bitWidth;
+						bits -= bitWidth;
+					}
+				}
+			}
+			return values;
+		}
+	}
+
+}
@@ -0,0 +1,201 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.nextreports.engine.exporter.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Date;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.TimeZone;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.parquet.column.page.PageReadStore;
+import org.apache.parquet.example.data.Group;
+import org.apache.parquet.example.data.simple.convert.GroupRecordConverter;
+import org.apache.parquet.hadoop.ParquetFileReader;
+import org.apache.parquet.hadoop.util.HadoopInputFile;
+import org.apache.parquet.io.ColumnIOFactory;
+import org.apache.parquet.io.MessageColumnIO;
+import org.apache.parquet.io.RecordReader;
+import org.apache.parquet.schema.LogicalTypeAnnotation;
+import org.apache.parquet.schema.MessageType;
+import org.apache.parquet.schema.PrimitiveType;
+import org.apache.parquet.schema.PrimitiveType.PrimitiveTypeName;
+import org.apache.parquet.schema.Type;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Files written by ParquetFileWriter are read back with the parquet-hadoop library.
+ */
+public class ParquetHadoopReadTest {
+
+	private static final String[] NAMES = { "I", "L", "F", "D", "DL", "B", "DT", "TM", "TS", "BIN", "S" };
+	private static final int[] TYPES = { Types.INTEGER, Types.BIGINT, Types.DOUBLE, Types.DECIMAL, Types.NUMERIC,
+			Types.BOOLEAN, Types.DATE, Types.TIME, Types.TIMESTAMP, Types.VARBINARY, Types.VARCHAR };
+	private static final int[] PRECISIONS = { 0, 0, 0, 10, 30, 0, 0, 0, 0, 0, 0 };
+	private static final int[] SCALES = { 0, 0, 0, 2, 3, 0, 0, 0, 0, 0, 0 };
+	private static final int ROWS = 12;
+	// 2020-01-01
+	private static final int DAYS = 18262;
+	// 10:20:30
+	private static final int TIME_MILLIS = 37230000;
+
+	private File file;
+
+	@Before
+	public void setUp() throws Exception {
+		file = File.createTempFile("parquet", ".parquet");
+	}
+
+	@After
+	public void tearDown() {
+		file.delete();
+	}
+
+	@Test
+	public void allTypesAreReadBack() throws Exception {
+		write(5);
+
+		ParquetFileReader reader = ParquetFileReader.open(HadoopInputFile.fromPath(new Path(file.toURI()), new Configuration()));
+		try {
+			MessageType schema = reader.getFooter().getFileMetaData().getSchema();
+			assertType(schema, "I", PrimitiveTypeName.INT32, null);
+			assertType(schema, "L", PrimitiveTypeName.INT64, null);
+			assertType(schema, "F", PrimitiveTypeName.DOUBLE, null);
+			assertType(schema, "D", PrimitiveTypeName.INT64, LogicalTypeAnnotation.decimalType(2, 10));
+			assertType(schema, "DL", PrimitiveTypeName.FIXED_LEN_BYTE_ARRAY, LogicalTypeAnnotation.decimalType(3, 30));
+			assertEquals(16, schema.getType("DL").asPrimitiveType().getTypeLength());
+			assertType(schema, "B", PrimitiveTypeName.BOOLEAN, null);
+			assertType(schema, "DT", PrimitiveTypeName.INT32, LogicalTypeAnnotation.dateType());
+			assertType(schema, "TM", PrimitiveTypeName.INT32,
+					LogicalTypeAnnotation.timeType(false, LogicalTypeAnnotation.TimeUnit.MILLIS));
+			assertType(schema, "TS", PrimitiveTypeName.INT64,
+					LogicalTypeAnnotation.timestampType(false, LogicalTypeAnnotation.TimeUnit.MICROS));
+			assertType(schema, "BIN", PrimitiveTypeName.BINARY, null);
+			assertType(schema, "S", PrimitiveTypeName.BINARY, LogicalTypeAnnotation.stringType());
+			assertEquals(3, reader.getFooter().getBlocks().size());
+
+			MessageColumnIO columnIO = new ColumnIOFactory().getColumnIO(schema);
+			int row = 0;
+			PageReadStore pages;
+			while ((pages = reader.readNextRowGroup()) != null) {
+				RecordReader<Group> records = columnIO.getRecordReader(pages, new GroupRecordConverter(schema));
+				for (long r = 0, rows = pages.getRowCount(); r < rows; r++, row++) {
+					Group group = records.read();
+					assertEquals(row, group.getInteger("I", 0));
+					if (row == 7) {
+						for (int c = 1; c < NAMES.length; c++) {
+							assertEquals(NAMES[c], 0, group.getFieldRepetitionCount(NAMES[c]));
+						}
+						continue;
+					}
+					assertEquals(row * 1000000000000L, group.getLong("L", 0));
+					assertEquals(row * 1.5, group.getDouble("F", 0), 0);
+					assertEquals(-(row * 100L + 25), group.getLong("D", 0));
+					assertEquals(BigInteger.valueOf(row * 1000L + 125), new BigInteger(group.getBinary("DL", 0).getBytes()));
+					assertEquals(row % 2 == 1, group.getBoolean("B", 0));
+					assertEquals(DAYS + row, group.getInteger("DT", 0));
+					assertEquals(TIME_MILLIS + row, group.getInteger("TM", 0));
+					assertEquals((DAYS + row) * 86400000000L + TIME_MILLIS * 1000L + 123456, group.getLong("TS", 0));
+					assertArrayEquals(new byte[] { (byte) row, 1 }, group.getBinary("BIN", 0).getBytes());
+					assertEquals(string(row), group.getBinary("S", 0).toStringUsingUTF8());
+				}
+			}
+			assertEquals(ROWS, row);
+		} finally {
+			reader.close();
+		}
+	}
+
+	private void write(int rowGroupRows) throws Exception {
+		OutputStream out = new FileOutputStream(file);
+		try {
+			ParquetFileWriter writer = new ParquetFileWriter(out, NAMES, TYPES, PRECISIONS, SCALES, rowGroupRows);
+			for (int row = 0; row < ROWS; row++) {
+				if (row == 7) {
+					Object[] values = new Object[NAMES.length];
+					values[0] = row;
+					writer.write(values);
+					continue;
+				}
+				writer.write(new Object[] {
+					row,
+					row * 1000000000000L,
+					row * 1.5,
+					new BigDecimal(row + ".25").negate(),
+					new BigDecimal(row + ".125"),
+					row % 2 == 1,
+					new Date(local(DAYS + row, 0)),
+					new Time(local(0, TIME_MILLIS + row)),
+					timestamp(row),
+					new byte[] { (byte) row, 1 },
+					string(row)
+				});
+			}
+			writer.finish();
+		} finally {
+			out.close();
+		}
+	}
+
+	// dictionary encoded in first row group, plain in the others
+	private static String string(int row) {
+		if (row < 5) {
+			return (row % 2 == 0) ? "a" : "b";
+		}
+		return "s" + row;
+	}
+
+	private static Timestamp timestamp(int row) {
+		Timestamp timestamp = new Timestamp(local(DAYS + row, TIME_MILLIS));
+		timestamp.setNanos(123456000);
+		return timestamp;
+	}
+
+	// time in default time zone with the wall clock of days and millis in UTC
+	private static long local(int days, long millis) {
+		long utc = days * 86400000L + millis;
+		TimeZone zone = TimeZone.getDefault();
+		long time = utc - zone.getOffset(utc);
+		return utc - zone.getOffset(time);
+	}
+
+	private static void assertType(MessageType schema, String name, PrimitiveTypeName typeName,
+			LogicalTypeAnnotation logicalType) {
+		PrimitiveType type = schema.getType(name).asPrimitiveType();
+		assertEquals(name, typeName, type.getPrimitiveTypeName());
+		assertEquals(name, Type.Repetition.OPTIONAL, type.getRepetition());
+		if (logicalType == null) {
+			assertNull(name, type.getLogicalTypeAnnotation());
+		} else {
+			assertEquals(name, logicalType, type.getLogicalTypeAnnotation());
+		}
+	}
+
+}
@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.nextreports.engine.exporter.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import ro.nextreports.engine.EngineProperties;
+import ro.nextreports.engine.EngineTestUtil;
+import ro.nextreports.engine.ReleaseInfoAdapter;
+import ro.nextreports.engine.Report;
+import ro.nextreports.engine.ReportLayout;
+import ro.nextreports.engine.ReportRunner;
+import ro.nextreports.engine.band.Band;
+import ro.nextreports.engine.band.ColumnBandElement;
+import ro.nextreports.engine.band.ReportBandElement;
+import ro.nextreports.engine.queryexec.QueryParameter;
+
+public class SubreportBatchTest {
+
+	private Connection connection;
+
+	@Before
+	public void setUp() throws Exception {
+		connection = EngineTestUtil.createConnection();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		System.clearProperty(EngineProperties.SUBREPORT_BATCH_SIZE_PROPERTY);
+		connection.close();
+	}
+
+	@Test
+	public void rowQueriesAreBatched() {
+		assertNotNull(SubreportBatch.create("SELECT GRP, ID FROM T WHERE GRP = ${GRP} ORDER BY ID", parameters()));
+		assertNotNull(SubreportBatch.create("SELECT GRP, ID FROM T WHERE GRP = ${GRP} AND NAME = 'top 1'", parameters()));
+	}
+
+	@Test
+	public void queriesOverAllRowsAreNotBatched() {
+		String[] sqls = {
+			"SELECT GRP, COUNT(*) AS CNT FROM T WHERE GRP = ${GRP}",
+			"SELECT GRP, SUM(AMOUNT) AS S FROM T WHERE GRP = ${GRP} GROUP BY GRP",
+			"SELECT DISTINCT GRP, AMOUNT FROM T WHERE GRP = ${GRP}",
+			"SELECT TOP 3 GRP, ID FROM T WHERE GRP = ${GRP} ORDER BY ID",
+			"SELECT GRP, ID FROM T WHERE GRP = ${GRP} ORDER BY ID LIMIT 3",
+			"SELECT GRP, ID FROM T WHERE GRP = ${GRP} ORDER BY ID FETCH FIRST 3 ROWS ONLY",
+			"SELECT GRP, ID FROM T WHERE GRP = ${GRP} AND ROWNUM < 4",
+			"SELECT GRP, ROW_NUMBER() OVER (ORDER BY ID) AS RN FROM T WHERE GRP = ${GRP}",
+			"SELECT GRP, ID FROM T WHERE ID IN (SELECT ID FROM T2 WHERE GRP = ${GRP})"
+		};
+		for (String sql : sqls) {
+			assertNull(sql, SubreportBatch.create(sql, parameters()));
+		}
+	}
+
+	@Test
+	public void aggregateSubreportHasSameOutputWithBatching() throws Exception {
+		String sql = "SELECT MAX(GRP) AS GRP, COUNT(*) AS CNT, SUM(AMOUNT) AS S FROM T WHERE GRP = ${GRP} AND ID < 20";
+		assertEquals(export(sql, 0), export(sql, 7));
+	}
+
+	@Test
+	public void rowSubreportHasSameOutputWithBatching() throws Exception {
+		String sql = "SELECT GRP, ID AS CNT, AMOUNT AS S FROM T WHERE GRP = ${GRP} AND ID < 20 ORDER BY ID DESC";
+		assertEquals(export(sql, 0), export(sql, 7));
+	}
+
+	private String export(String subreportSql, int batchSize) throws Exception {
+		System.setProperty(EngineProperties.SUBREPORT_BATCH_SIZE_PROPERTY, String.valueOf(batchSize));
+
+		Report subreport = new Report();
+		subreport.setName("sub.report");
+		subreport.setVersion(ReleaseInfoAdapter.getVersionNumber());
+		subreport.setSql(subreportSql);
+		ReportLayout layout = new ReportLayout();
+		Band detail = layout.getDetailBand();
+		detail.insertFirstRow(0, 2);
+		detail.setElementAt(new ColumnBandElement("CNT"), 0, 0);
+		detail.setElementAt(new ColumnBandElement("S"), 0, 1);
+		layout.getColumnsWidth().add(50);
+		layout.getColumnsWidth().add(50);
+		subreport.setLayout(layout);
+		subreport.setParameters(parameters());
+
+		Report report = EngineTestUtil.createReport("SELECT ID, GRP FROM T WHERE ID < 40 ORDER BY ID");
+		report.getLayout().getDetailBand().setElementAt(new ReportBandElement(subreport), 0, 1);
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ReportRunner runner = new ReportRunner();
+		runner.setConnection(connection);
+		runner.setReport(report);
+		runner.setFormat(ReportRunner.CSV_FORMAT);
+		runner.run(out);
+		String csv = out.toString("UTF-8");
+		assertTrue(csv.length() > 0);
+		return csv;
+	}
+
+	private List<QueryParameter> parameters() {
+		return new ArrayList<QueryParameter>(Collections.singletonList(
+				new QueryParameter("GRP", QueryParameter.STRING_VALUE)));
+	}
+
+}
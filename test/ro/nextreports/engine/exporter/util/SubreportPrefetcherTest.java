@@ -0,0 +1,152 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.nextreports.engine.exporter.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import ro.nextreports.engine.EngineProperties;
+import ro.nextreports.engine.EngineTestUtil;
+import ro.nextreports.engine.Report;
+import ro.nextreports.engine.queryexec.ConnectionSupplier;
+import ro.nextreports.engine.queryexec.QueryParameter;
+import ro.nextreports.engine.queryexec.QueryResult;
+
+public class SubreportPrefetcherTest {
+
+	private Connection connection;
+
+	@Before
+	public void setUp() throws Exception {
+		connection = EngineTestUtil.createConnection();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		System.clearProperty(EngineProperties.SUBREPORT_THREADS_PROPERTY);
+		System.clearProperty(EngineProperties.SUBREPORT_PREFETCH_ROWS_PROPERTY);
+		connection.close();
+	}
+
+	@Test
+	public void fullQueueRunsQueriesOnCallerThread() throws Exception {
+		System.setProperty(EngineProperties.SUBREPORT_THREADS_PROPERTY, "1");
+		SlowSupplier supplier = new SlowSupplier(connection.getMetaData().getURL());
+		SubreportPrefetcher prefetcher = new SubreportPrefetcher(supplier, 0);
+
+		List<Report> subreports = new ArrayList<Report>();
+		for (int i = 0; i < 5; i++) {
+			Report subreport = EngineTestUtil.createReport("SELECT ID, AMOUNT FROM T WHERE ID = ${P}");
+			Map<String, QueryParameter> parameters = new HashMap<String, QueryParameter>();
+			parameters.put("P", new QueryParameter("P", QueryParameter.INTEGER_VALUE));
+			prefetcher.submit(subreport, parameters, Collections.<String, Object>singletonMap("P", i));
+			subreports.add(subreport);
+		}
+		// one query on the pool thread, one in the queue and the others on this thread
+		assertTrue(supplier.callerQueries.get() >= 2);
+		assertTrue(supplier.maxOpen.get() <= 2);
+
+		for (int i = 0; i < subreports.size(); i++) {
+			QueryResult result = prefetcher.getResult(subreports.get(i));
+			assertTrue(result.hasNext());
+			assertEquals(i, ((Number) result.nextValue("ID")).intValue());
+			assertFalse(result.hasNext());
+		}
+		prefetcher.shutdown();
+		assertEquals(0, supplier.open.get());
+	}
+
+	@Test
+	public void subreportWithTooManyRowsIsNotPrefetched() throws Exception {
+		System.setProperty(EngineProperties.SUBREPORT_PREFETCH_ROWS_PROPERTY, "5");
+		SlowSupplier supplier = new SlowSupplier(connection.getMetaData().getURL());
+		SubreportPrefetcher prefetcher = new SubreportPrefetcher(supplier, 0);
+
+		Report small = EngineTestUtil.createReport("SELECT ID FROM T WHERE ID < 5");
+		Report big = EngineTestUtil.createReport("SELECT ID FROM T");
+		Map<String, QueryParameter> parameters = Collections.emptyMap();
+		Map<String, Object> values = Collections.emptyMap();
+		prefetcher.submit(small, parameters, values);
+		prefetcher.submit(big, parameters, values);
+
+		QueryResult result = prefetcher.getResult(small);
+		int rows = 0;
+		while (result.hasNext()) {
+			result.nextValue(0);
+			rows++;
+		}
+		assertEquals(5, rows);
+		assertNull(prefetcher.getResult(big));
+		prefetcher.shutdown();
+		assertEquals(0, supplier.open.get());
+	}
+
+	private static class SlowSupplier implements ConnectionSupplier {
+
+		private final String url;
+		private final Thread caller = Thread.currentThread();
+		private final AtomicInteger open = new AtomicInteger();
+		private final AtomicInteger maxOpen = new AtomicInteger();
+		private final AtomicInteger callerQueries = new AtomicInteger();
+
+		private SlowSupplier(String url) {
+			this.url = url;
+		}
+
+		public Connection getConnection() throws SQLException {
+			if (Thread.currentThread() == caller) {
+				callerQueries.incrementAndGet();
+			}
+			int n = open.incrementAndGet();
+			synchronized (maxOpen) {
+				maxOpen.set(Math.max(maxOpen.get(), n));
+			}
+			try {
+				Thread.sleep(100);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return DriverManager.getConnection(url);
+		}
+
+		public void releaseConnection(Connection connection) {
+			open.decrementAndGet();
+			try {
+				connection.close();
+			} catch (SQLException e) {
+				// ignore
+			}
+		}
+	}
+
+}
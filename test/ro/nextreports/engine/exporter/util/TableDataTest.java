@@ -0,0 +1,149 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.nextreports.engine.exporter.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class TableDataTest {
+
+	@Test
+	public void repeatedValuesAndStylesAreStoredOnce() {
+		TableData data = new TableData();
+		Map<String, Object> bold = style("font", "bold");
+		for (int i = 0; i < 100; i++) {
+			data.addRow();
+			data.addCell("group" + (i % 3), bold);
+			data.addCell(i, style("font", "bold"));
+		}
+
+		assertEquals(100, data.getRowCount());
+		assertEquals(1, data.getStyleTable().size());
+		assertEquals("group1", data.getValue(10, 0));
+		assertEquals(10, data.getValue(10, 1));
+		assertEquals(bold, data.getStyle(10, 1));
+		assertSame(data.getStyle(0, 0), data.getStyle(99, 1));
+	}
+
+	@Test
+	public void pagesAndViewsReturnTheSameRows() {
+		TableData data = new TableData();
+		for (int i = 0; i < 10; i++) {
+			data.addRow(Arrays.<Object>asList(i, null, "v" + i));
+		}
+
+		List<List<Object>> page = data.getRows(8, 5);
+		assertEquals(2, page.size());
+		assertEquals(Arrays.<Object>asList(8, null, "v8"), page.get(0));
+		assertEquals(page.get(1), data.getData().get(9));
+		assertEquals(3, data.getData().get(9).size());
+		assertEquals(0, data.getRows(10, 5).size());
+		assertNull(data.getStyle(3, 1));
+	}
+
+	@Test
+	public void tableWithoutStyles() {
+		TableData data = new TableData();
+		data.addRow(Arrays.<Object>asList(1, 2));
+		data.setStyle(null);
+		data.addRow();
+		data.addCell(3, style("color", "red"));
+
+		assertTrue(data.getStyle().isEmpty());
+		assertTrue(data.getStyles(0, 2).isEmpty());
+		assertNull(data.getStyle(1, 0));
+		assertEquals(0, data.getStyleTable().size());
+	}
+
+	@Test
+	public void rowsAndCellsCanBeChangedThroughViews() {
+		TableData data = new TableData();
+		data.addRow();
+		data.addCell("a", style("font", "bold"));
+		data.addCell("b", style("font", "italic"));
+		data.getData().add(Arrays.<Object>asList("c", "d"));
+
+		data.getData().get(0).set(1, "x");
+		data.getData().get(1).add("e");
+		data.getData().add(1, Arrays.<Object>asList("f"));
+		data.getStyle().get(2).set(2, style("color", "red"));
+
+		assertEquals(3, data.getRowCount());
+		assertEquals(Arrays.<Object>asList("a", "x"), data.getData().get(0));
+		assertEquals(Arrays.<Object>asList("f"), data.getData().get(1));
+		assertEquals(Arrays.<Object>asList("c", "d", "e"), data.getData().get(2));
+		assertEquals(style("font", "italic"), data.getStyle(0, 1));
+		assertNull(data.getStyle(1, 0));
+		assertEquals(style("color", "red"), data.getStyle(2, 2));
+
+		data.getData().set(0, Arrays.<Object>asList("g"));
+		assertEquals(Arrays.<Object>asList("f"), data.getData().remove(1));
+		data.getData().get(1).remove(0);
+
+		assertEquals(2, data.getRowCount());
+		assertEquals(Arrays.<Object>asList("g"), data.getData().get(0));
+		assertEquals(style("font", "bold"), data.getStyle(0, 0));
+		assertEquals(Arrays.<Object>asList("d", "e"), data.getData().get(1));
+		assertEquals(style("color", "red"), data.getStyle(1, 1));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void cellNeedsARow() {
+		new TableData().addCell("x", -1);
+	}
+
+	@Test
+	public void serializedTableCanBeExtended() throws Exception {
+		TableData data = new TableData();
+		data.addRow();
+		data.addCell("a", style("font", "bold"));
+		data.setTotalRowCount(50);
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(data);
+		out.close();
+		TableData copy = (TableData) new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+		copy.addRow();
+		copy.addCell("a", style("font", "bold"));
+
+		assertEquals(2, copy.getRowCount());
+		assertEquals(50, copy.getTotalRowCount());
+		assertEquals(1, copy.getStyleTable().size());
+		assertEquals(copy.getValue(0, 0), copy.getValue(1, 0));
+	}
+
+	private static Map<String, Object> style(String key, Object value) {
+		Map<String, Object> style = new HashMap<String, Object>();
+		style.put(key, value);
+		return style;
+	}
+
+}
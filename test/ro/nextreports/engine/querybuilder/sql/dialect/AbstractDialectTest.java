@@ -0,0 +1,71 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.nextreports.engine.querybuilder.sql.dialect;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class AbstractDialectTest {
+
+	private DerbyDialect derby = new DerbyDialect();
+	private PostrgreSQLDialect postgres = new PostrgreSQLDialect();
+
+	@Test
+	public void removeOrderByRemovesEveryTopLevelOrderBy() {
+		assertEquals("SELECT A FROM T", derby.removeOrderBy("SELECT A FROM T ORDER BY COALESCE(A, B), C"));
+		assertEquals("SELECT A FROM T UNION SELECT A FROM U",
+				derby.removeOrderBy("SELECT A FROM T UNION SELECT A FROM U ORDER BY 1"));
+		assertEquals("SELECT A FROM T FOR READ ONLY", derby.removeOrderBy("SELECT A FROM T ORDER BY A FOR READ ONLY"));
+		assertEquals("SELECT A FROM (SELECT A FROM T ORDER BY A FETCH FIRST 3 ROWS ONLY) X",
+				derby.removeOrderBy("SELECT A FROM (SELECT A FROM T ORDER BY A FETCH FIRST 3 ROWS ONLY) X ORDER BY A DESC"));
+	}
+
+	@Test
+	public void removeOrderByKeepsOrderOfRowLimits() {
+		String[] sqls = {
+			"SELECT A FROM T ORDER BY A LIMIT 10",
+			"SELECT A FROM T ORDER BY A OFFSET 5 ROWS",
+			"SELECT A FROM T ORDER BY A FETCH FIRST 5 ROWS ONLY",
+			"SELECT TOP 5 A FROM T ORDER BY A",
+			"SELECT A FROM T WHERE B = 'order by'"
+		};
+		for (String sql : sqls) {
+			assertEquals(sql, derby.removeOrderBy(sql));
+		}
+	}
+
+	@Test
+	public void groupedSqlQuotesColumns() {
+		assertEquals("SELECT \"Day\", SUM(X) AS \"Total Sales\" FROM (SELECT * FROM S) A GROUP BY \"Day\" ORDER BY \"Day\"",
+				postgres.getGroupedSql("SELECT * FROM S ORDER BY 1;", "Day", Arrays.asList("SUM(X)"),
+						Arrays.asList("Total Sales")));
+		assertEquals("SELECT GRP, COUNT(*) AS AMOUNT FROM (SELECT GRP, AMOUNT FROM T) A GROUP BY GRP ORDER BY GRP",
+				derby.getGroupedSql("SELECT GRP, AMOUNT FROM T ORDER BY GRP, AMOUNT", "GRP", Arrays.asList("COUNT(*)"),
+						Arrays.asList("AMOUNT")));
+	}
+
+	@Test
+	public void aggregateSqlRemovesOrderBy() {
+		assertEquals("SELECT COUNT(*), SUM(\"Total Sales\") FROM (SELECT * FROM S) A",
+				postgres.getAggregateSql("SELECT * FROM S ORDER BY 1;", Arrays.asList("COUNT(*)",
+						"SUM(" + postgres.getEscapedKeyWord("Total Sales") + ")")));
+	}
+
+}
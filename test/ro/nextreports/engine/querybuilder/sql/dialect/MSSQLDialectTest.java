@@ -0,0 +1,57 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.nextreports.engine.querybuilder.sql.dialect;
+
+import static org.junit.Assert.assertEquals;
+
+import java.sql.Timestamp;
+
+import org.junit.Test;
+
+public class MSSQLDialectTest {
+
+	private MSSQLDialect dialect = new MSSQLDialect();
+
+	@Test
+	public void pagedSqlKeepsTopLevelOrderBy() {
+		assertEquals("SELECT A, B FROM T ORDER BY A OFFSET 20 ROWS FETCH NEXT 10 ROWS ONLY",
+				dialect.getPagedSql("SELECT A, B FROM T ORDER BY A;", 20, 10));
+	}
+
+	@Test
+	public void pagedSqlOrdersWhenOrderByIsNotTopLevel() {
+		String sql = "SELECT A, ROW_NUMBER() OVER (ORDER BY B) R FROM (SELECT TOP 5 A, B FROM T ORDER BY B) X";
+		assertEquals("SELECT * FROM (" + sql + ") A ORDER BY (SELECT NULL) OFFSET 0 ROWS FETCH NEXT 10 ROWS ONLY",
+				dialect.getPagedSql(sql, 0, 10));
+		sql = "SELECT A FROM T WHERE B = 'order by'";
+		assertEquals("SELECT * FROM (" + sql + ") A ORDER BY (SELECT NULL) OFFSET 0 ROWS FETCH NEXT 10 ROWS ONLY",
+				dialect.getPagedSql(sql, 0, 10));
+	}
+
+	@Test
+	public void inListTableUsesDatabaseCollation() {
+		assertEquals("CREATE TABLE #T (V VARCHAR(8000) COLLATE DATABASE_DEFAULT)",
+				dialect.getInListTableSql("T", String.class, new Object[] {"a", null, "b"}));
+		assertEquals("CREATE TABLE #T (V NVARCHAR(4000) COLLATE DATABASE_DEFAULT)",
+				dialect.getInListTableSql("T", String.class, new Object[] {"a", "\u0219"}));
+		assertEquals("CREATE TABLE #T (V INTEGER)",
+				dialect.getInListTableSql("T", Integer.class, new Object[] {1, 2}));
+		assertEquals("CREATE TABLE #T (V DATETIME)",
+				dialect.getInListTableSql("T", Timestamp.class, new Object[0]));
+	}
+
+}
@@ -0,0 +1,170 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.nextreports.engine.queryexec;
+
+import static org.junit.Assert.assertEquals;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import ro.nextreports.engine.EngineProperties;
+import ro.nextreports.engine.EngineTestUtil;
+import ro.nextreports.engine.util.ParameterUtil;
+
+public class InListTableTest {
+
+	private Connection connection;
+
+	@Before
+	public void setUp() throws Exception {
+		System.setProperty(EngineProperties.IN_LIST_TABLE_THRESHOLD_PROPERTY, "5");
+		connection = EngineTestUtil.createConnection();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		System.clearProperty(EngineProperties.IN_LIST_TABLE_THRESHOLD_PROPERTY);
+		connection.close();
+	}
+
+	@Test
+	public void bigListIsPassedThroughTemporaryTable() throws Exception {
+		List<String> sqls = new ArrayList<String>();
+		Connection recording = EngineTestUtil.recordStatements(connection, sqls);
+		assertEquals(20, count(recording, "IN", ids(20, false)));
+		assertEquals(1, EngineTestUtil.count(sqls, "(SELECT V FROM SESSION.NR_IN_"));
+		// null values are put in the table
+		assertEquals(19, count(recording, "IN", ids(20, true)));
+		assertEquals(EngineTestUtil.ROWS - 20, count(recording, "NOT IN", ids(20, false)));
+		assertEquals(3, EngineTestUtil.count(sqls, "(SELECT V FROM SESSION.NR_IN_"));
+		// small lists are bound as parameters
+		assertEquals(3, count(recording, "IN", ids(3, false)));
+		assertEquals(1, EngineTestUtil.count(sqls, "IN (?,?,?)"));
+	}
+
+	@Test
+	public void valuesAreBoundIfTemporaryTableCannotBeCreated() throws Exception {
+		List<String> sqls = new ArrayList<String>();
+		Connection failing = EngineTestUtil.recordStatements(withoutTemporaryTables(connection), sqls);
+		assertEquals(20, count(failing, "IN", ids(20, false)));
+		assertEquals(19, count(failing, "IN", ids(20, true)));
+		assertEquals(EngineTestUtil.ROWS - 20, count(failing, "NOT IN", ids(20, false)));
+		assertEquals(0, EngineTestUtil.count(sqls, "SESSION.NR_IN_"));
+		assertEquals(3, EngineTestUtil.count(sqls, "IN (?,?,?,?,?,?"));
+	}
+
+	@Test
+	public void listBiggerThanDialectMaximumIsSplit() throws Exception {
+		// dialects without temporary tables (like Oracle) bind the values in lists of at most 1000 values
+		List<String> sqls = new ArrayList<String>();
+		Connection failing = EngineTestUtil.recordStatements(withoutTemporaryTables(connection), sqls);
+		Object[] ids = new Object[2500];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = i - ids.length + 50;
+		}
+		assertEquals(50, count(failing, "IN", ids));
+		assertEquals(EngineTestUtil.ROWS - 50, count(failing, "NOT IN", ids));
+		assertEquals(1, EngineTestUtil.count(sqls, "WHERE (ID IN (?"));
+		assertEquals(1, EngineTestUtil.count(sqls, "WHERE (ID NOT IN (?"));
+		for (String sql : sqls) {
+			if (sql.contains("WHERE (ID")) {
+				assertEquals(3, sql.split(" IN \\(").length - 1);
+			}
+		}
+	}
+
+	// ids 0 .. n - 1 (first value is null if withNull)
+	private Object[] ids(int n, boolean withNull) {
+		Object[] ids = new Object[n];
+		for (int i = 0; i < n; i++) {
+			ids[i] = i;
+		}
+		if (withNull) {
+			ids[0] = ParameterUtil.NULL;
+		}
+		return ids;
+	}
+
+	private int count(Connection con, String in, Object[] ids) throws Exception {
+		QueryParameter parameter = new QueryParameter("P", QueryParameter.INTEGER_VALUE);
+		parameter.setSelection(QueryParameter.MULTIPLE_SELECTION);
+		Map<String, QueryParameter> parameters = new HashMap<String, QueryParameter>();
+		parameters.put("P", parameter);
+		Map<String, Object> values = new HashMap<String, Object>();
+		values.put("P", ids);
+		QueryExecutor executor = new QueryExecutor(new Query("SELECT ID FROM T WHERE ID " + in + " ${P}"),
+				parameters, values, con, false);
+		QueryResult result = executor.execute();
+		try {
+			int count = 0;
+			while (result.hasNext()) {
+				count++;
+			}
+			return count;
+		} finally {
+			result.close();
+		}
+	}
+
+	// connection which cannot create temporary tables
+	private Connection withoutTemporaryTables(final Connection con) {
+		return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { Connection.class },
+				new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				try {
+					Object result = method.invoke(con, args);
+					if (result instanceof Statement && method.getName().equals("createStatement")) {
+						return failingStatement((Statement) result);
+					}
+					return result;
+				} catch (InvocationTargetException e) {
+					throw e.getCause();
+				}
+			}
+		});
+	}
+
+	private Statement failingStatement(final Statement stmt) {
+		return (Statement) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { Statement.class },
+				new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				if (method.getName().equals("execute") && ((String) args[0]).contains("TEMPORARY TABLE")) {
+					throw new SQLException("User cannot create temporary tables");
+				}
+				try {
+					return method.invoke(stmt, args);
+				} catch (InvocationTargetException e) {
+					throw e.getCause();
+				}
+			}
+		});
+	}
+
+}
@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.nextreports.engine.queryexec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import ro.nextreports.engine.EngineTestUtil;
+import ro.nextreports.engine.RunContext;
+
+public class LimitedConnectionSupplierTest {
+
+	private Connection connection;
+
+	@Before
+	public void setUp() throws Exception {
+		connection = EngineTestUtil.createConnection();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		connection.close();
+	}
+
+	@Test
+	public void waitEndsAtRunDeadline() throws Exception {
+		RunContext context = new RunContext(300);
+		LimitedConnectionSupplier supplier = new LimitedConnectionSupplier(supplier(), 1, context);
+		Connection first = supplier.getConnection();
+		long start = System.currentTimeMillis();
+		try {
+			supplier.getConnection();
+			fail("No connection is available");
+		} catch (SQLException e) {
+			// expected
+		}
+		assertTrue(System.currentTimeMillis() - start < 5000);
+		assertEquals(1, supplier.getUsedConnections());
+		supplier.releaseConnection(first);
+		assertEquals(0, supplier.getUsedConnections());
+		context.close();
+	}
+
+	@Test
+	public void stoppedRunGetsNoConnection() throws Exception {
+		RunContext context = new RunContext();
+		LimitedConnectionSupplier supplier = new LimitedConnectionSupplier(supplier(), 2, context);
+		supplier.releaseConnection(supplier.getConnection());
+		context.cancel();
+		try {
+			supplier.getConnection();
+			fail("Run is cancelled");
+		} catch (SQLException e) {
+			assertEquals(context.getStopReason(), e.getMessage());
+		}
+		assertEquals(0, supplier.getUsedConnections());
+	}
+
+	private ConnectionSupplier supplier() {
+		return new ConnectionSupplier() {
+			public Connection getConnection() {
+				return connection;
+			}
+
+			public void releaseConnection(Connection connection) {
+			}
+		};
+	}
+
+}
@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.nextreports.engine.queryexec;
+
+import static org.junit.Assert.assertEquals;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Test;
+
+import ro.nextreports.engine.querybuilder.IdNameRenderer;
+import ro.nextreports.engine.util.DateUtil;
+
+public class ParameterBinderTest {
+
+	private List<String> calls = new ArrayList<String>();
+
+	@Test
+	public void valuesAreBoundWithTheirTypes() throws Exception {
+		bind(Integer.class, 5);
+		bind(Long.class, 6L);
+		bind(Double.class, 1.5);
+		bind(String.class, "a");
+		bind(BigDecimal.class, new BigDecimal("2.50"));
+		assertEquals(Arrays.asList("setInt(1, 5)", "setLong(1, 6)", "setDouble(1, 1.5)", "setString(1, a)",
+				"setObject(1, 2.50)"), calls);
+	}
+
+	@Test
+	public void nullIsBoundWithSqlType() throws Exception {
+		bind(Integer.class, null);
+		bind(String.class, null);
+		bind(Timestamp.class, null);
+		assertEquals(Arrays.asList("setNull(1, " + Types.INTEGER + ")", "setNull(1, " + Types.VARCHAR + ")",
+				"setNull(1, " + Types.TIMESTAMP + ")"), calls);
+	}
+
+	@Test
+	public void idNameIsBoundWithItsId() throws Exception {
+		bind(Integer.class, idName(7));
+		bind(String.class, idName(8));
+		bind(BigDecimal.class, idName(new BigDecimal("9.1")));
+		assertEquals(Arrays.asList("setObject(1, 7)", "setString(1, 8)", "setBigDecimal(1, 9.1)"), calls);
+		assertEquals("8", ParameterBinder.getBinder(String.class).toJdbcValue(idName(8)));
+	}
+
+	@Test
+	public void datesAreConvertedToJdbcTypes() throws Exception {
+		Date date = DateUtil.parse("02/03/2010 10:20:30", IdNameRenderer.DATE_PATTERN);
+		bind(Date.class, date);
+		bind(Timestamp.class, date);
+		bind(Time.class, date);
+		// date ids of IdName objects are formatted strings
+		bind(Timestamp.class, idName("02/03/2010 10:20:30"));
+		assertEquals(Arrays.asList("setDate(1, java.sql.Date:" + date.getTime() + ")",
+				"setTimestamp(1, java.sql.Timestamp:" + date.getTime() + ")",
+				"setTime(1, java.sql.Time:" + date.getTime() + ")",
+				"setTimestamp(1, java.sql.Timestamp:" + date.getTime() + ")"), calls);
+	}
+
+	@Test(expected = QueryException.class)
+	public void unknownTypeIsRejected() throws Exception {
+		ParameterBinder.getBinder(StringBuilder.class);
+	}
+
+	private void bind(Class<?> valueClass, Object value) throws Exception {
+		ParameterBinder.getBinder(valueClass).bind(recordingStatement(), 1, value);
+	}
+
+	private IdName idName(java.io.Serializable id) {
+		IdName idName = new IdName();
+		idName.setId(id);
+		idName.setName("name");
+		return idName;
+	}
+
+	private PreparedStatement recordingStatement() {
+		return (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[] { PreparedStatement.class }, new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				Object value = args[1];
+				String text = String.valueOf(value);
+				if (value instanceof Date) {
+					text = value.getClass().getName() + ":" + ((Date) value).getTime();
+				}
+				calls.add(method.getName() + "(" + args[0] + ", " + text + ")");
+				return null;
+			}
+		});
+	}
+
+}
@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.nextreports.engine.queryexec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.HashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import ro.nextreports.engine.EngineTestUtil;
+import ro.nextreports.engine.RunContext;
+
+public class QueryCancelTest {
+
+	private Connection connection;
+	// counts statement cancel calls
+	private CountDownLatch cancels;
+
+	@Before
+	public void setUp() throws Exception {
+		connection = EngineTestUtil.createConnection();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		connection.close();
+	}
+
+	@Test
+	public void statementIsCancelledWhileRowsAreRead() throws Exception {
+		cancels = new CountDownLatch(1);
+		RunContext context = new RunContext();
+		QueryResult result = execute(context);
+		assertTrue(result.hasNext());
+		context.cancel();
+		assertEquals(0, cancels.getCount());
+		result.close();
+	}
+
+	@Test
+	public void closedResultIsNotCancelled() throws Exception {
+		cancels = new CountDownLatch(1);
+		RunContext context = new RunContext();
+		execute(context).close();
+		context.cancel();
+		assertEquals(1, cancels.getCount());
+	}
+
+	@Test
+	public void deadlineCancelsStatement() throws Exception {
+		cancels = new CountDownLatch(1);
+		RunContext context = new RunContext(200);
+		QueryResult result = execute(context);
+		try {
+			assertTrue(cancels.await(5, TimeUnit.SECONDS));
+		} finally {
+			result.close();
+		}
+	}
+
+	private QueryResult execute(RunContext context) throws Exception {
+		QueryExecutor executor = new QueryExecutor(new Query("SELECT ID FROM T"),
+				new HashMap<String, QueryParameter>(), new HashMap<String, Object>(), cancelRecording(connection));
+		executor.setRunContext(context);
+		return executor.execute();
+	}
+
+	// prepared statements count cancel calls (embedded Derby does not cancel statements)
+	private Connection cancelRecording(final Connection con) {
+		return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { Connection.class },
+				new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				try {
+					Object result = method.invoke(con, args);
+					if (result instanceof PreparedStatement) {
+						return cancelRecording((PreparedStatement) result);
+					}
+					return result;
+				} catch (InvocationTargetException e) {
+					throw e.getCause();
+				}
+			}
+		});
+	}
+
+	private PreparedStatement cancelRecording(final PreparedStatement stmt) {
+		return (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[] { PreparedStatement.class }, new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				if (method.getName().equals("cancel")) {
+					cancels.countDown();
+					return null;
+				}
+				try {
+					return method.invoke(stmt, args);
+				} catch (InvocationTargetException e) {
+					throw e.getCause();
+				}
+			}
+		});
+	}
+
+}
@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.nextreports.engine.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.zip.DeflaterOutputStream;
+
+import javax.naming.Reference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import ro.nextreports.engine.EngineTestUtil;
+import ro.nextreports.engine.ReleaseInfoAdapter;
+import ro.nextreports.engine.Report;
+
+public class CompiledReportTest {
+
+	private File dir;
+
+	@Before
+	public void setUp() throws Exception {
+		dir = File.createTempFile("reports", "");
+		dir.delete();
+		dir.mkdir();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		for (File file : dir.listFiles()) {
+			file.delete();
+		}
+		dir.delete();
+	}
+
+	@Test
+	public void compiledReportIsReadFromFileAndStream() throws Exception {
+		Report report = EngineTestUtil.createReport("SELECT ID, AMOUNT FROM T");
+		File file = new File(dir, "test.report.bin");
+		ReportUtil.saveCompiledReport(report, file);
+
+		String xml = ReportUtil.reportToXml(report);
+		assertEquals(xml, ReportUtil.reportToXml(ReportUtil.loadCompiledReport(file)));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ReportUtil.saveCompiledReport(report, out);
+		assertEquals(xml, ReportUtil.reportToXml(ReportUtil.loadCompiledReport(new ByteArrayInputStream(out.toByteArray()))));
+		assertEquals(ReleaseInfoAdapter.getVersionNumber(), CompiledReport.getVersion(file));
+	}
+
+	@Test
+	public void onlyEngineAndJavaClassesAreRead() throws Exception {
+		try {
+			ReportUtil.loadCompiledReport(new ByteArrayInputStream(compiled(ReleaseInfoAdapter.getVersionNumber(),
+					new Reference("ro.nextreports.engine.Report"))));
+			fail("a class which is not allowed was read");
+		} catch (LoadReportException e) {
+			assertTrue(e.getCause() instanceof InvalidClassException);
+		}
+	}
+
+	@Test
+	public void reportFromAnotherVersionIsNotRead() throws Exception {
+		try {
+			ReportUtil.loadCompiledReport(new ByteArrayInputStream(compiled("1.0",
+					EngineTestUtil.createReport("SELECT ID FROM T"))));
+			fail("report compiled by another version was read");
+		} catch (LoadReportException e) {
+			assertTrue(e.getMessage().contains("1.0"));
+		}
+	}
+
+	@Test
+	public void compilerWritesReportsFromAnotherVersionAgain() throws Exception {
+		File reportFile = new File(dir, "test.report");
+		ReportUtil.saveReport(EngineTestUtil.createReport("SELECT ID, AMOUNT FROM T"), reportFile.getAbsolutePath());
+		File compiledFile = new File(dir, "test.report" + ReportCompiler.COMPILED_REPORT_EXTENSION);
+		OutputStream out = new FileOutputStream(compiledFile);
+		try {
+			out.write(compiled("1.0", EngineTestUtil.createReport("SELECT ID FROM T")));
+		} finally {
+			out.close();
+		}
+		// compiled file is newer than xml, but it was written by another engine version
+		compiledFile.setLastModified(reportFile.lastModified() + 2000);
+
+		ReportCompiler compiler = new ReportCompiler();
+		compiler.compile(dir, null);
+		assertEquals(1, compiler.getCompiledCount());
+		assertEquals(0, compiler.getSkippedCount());
+		assertEquals("SELECT ID, AMOUNT FROM T", ReportUtil.loadCompiledReport(compiledFile).getSql());
+
+		compiledFile.setLastModified(reportFile.lastModified() + 2000);
+		compiler = new ReportCompiler();
+		compiler.compile(dir, null);
+		assertEquals(0, compiler.getCompiledCount());
+		assertEquals(1, compiler.getSkippedCount());
+	}
+
+	// compiled report format with any version and object
+	private byte[] compiled(String version, Serializable object) throws Exception {
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		DataOutputStream dos = new DataOutputStream(bos);
+		dos.writeInt(0x4E524352);
+		dos.writeInt(1);
+		dos.writeUTF(version);
+		dos.flush();
+		DeflaterOutputStream deflater = new DeflaterOutputStream(bos);
+		ObjectOutputStream oos = new ObjectOutputStream(deflater);
+		oos.writeObject(object);
+		oos.flush();
+		deflater.finish();
+		return bos.toByteArray();
+	}
+
+}
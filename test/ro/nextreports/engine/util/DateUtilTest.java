@@ -0,0 +1,160 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.nextreports.engine.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+public class DateUtilTest {
+
+	private static final String PATTERN = "yyyy-MM-dd HH:mm:ss.SSS";
+	private static final int THREADS = 8;
+	private static final int DATES = 2000;
+
+	@Test
+	public void resultsAreTheSameInManyThreads() throws Exception {
+		final List<Date> dates = new ArrayList<Date>();
+		Random random = new Random(7);
+		for (int i = 0; i < DATES; i++) {
+			// dates between 1970 and 2030
+			dates.add(new Date((long) (random.nextDouble() * 1900000000000L)));
+		}
+		final List<String> expected = new ArrayList<String>();
+		for (Date date : dates) {
+			expected.add(expected(date));
+		}
+
+		ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+		try {
+			List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+			for (int t = 0; t < THREADS; t++) {
+				final int start = t * DATES / THREADS;
+				futures.add(pool.submit(new Callable<Integer>() {
+					public Integer call() throws Exception {
+						int errors = 0;
+						for (int i = 0; i < DATES; i++) {
+							int k = (start + i) % DATES;
+							if (!expected.get(k).equals(actual(dates.get(k)))) {
+								errors++;
+							}
+						}
+						return errors;
+					}
+				}));
+			}
+			for (Future<Integer> future : futures) {
+				assertEquals(Integer.valueOf(0), future.get());
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void formatIsReusedOnlyInsideThread() throws Exception {
+		final SimpleDateFormat[] other = new SimpleDateFormat[1];
+		Thread thread = new Thread() {
+			public void run() {
+				other[0] = DateUtil.getDateFormat(PATTERN);
+			}
+		};
+		thread.start();
+		thread.join();
+		SimpleDateFormat format = DateUtil.getDateFormat(PATTERN);
+		assertTrue(format == DateUtil.getDateFormat(PATTERN));
+		assertTrue(format != other[0]);
+	}
+
+	@Test
+	public void defaultTimeZoneChangeIsUsed() throws Exception {
+		TimeZone defaultZone = TimeZone.getDefault();
+		Date date = new Date(1577880000000L);
+		try {
+			TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
+			assertEquals(expected(date), actual(date));
+			Date[] utcToday = TimeShortcutType.TODAY.getDates(date);
+			TimeZone.setDefault(TimeZone.getTimeZone("Asia/Tokyo"));
+			assertEquals(expected(date), actual(date));
+			Date[] tokyoToday = TimeShortcutType.TODAY.getDates(date);
+			assertEquals(utcToday[0].getTime() - 9 * 3600000L, tokyoToday[0].getTime());
+			assertEquals(DateUtil.floor(date), tokyoToday[0]);
+		} finally {
+			TimeZone.setDefault(defaultZone);
+		}
+	}
+
+	// DateUtil results of one date, computed with DateUtil
+	private static String actual(Date date) throws Exception {
+		String text = DateUtil.format(date, PATTERN);
+		return text + "|" + DateUtil.parse(text, PATTERN).getTime() + "|" + DateUtil.floor(date).getTime() + "|" +
+				DateUtil.ceil(date).getTime() + "|" + DateUtil.addDays(date, 40).getTime() + "|" +
+				DateUtil.getLastDayOfMonth(date) + "|" + DateUtil.sameWeek(date, DateUtil.addDays(date, 3)) + "|" +
+				DateUtil.getFirstDayFromLastMonth(date).getTime();
+	}
+
+	// same results computed with new calendars and formats
+	private static String expected(Date date) throws Exception {
+		SimpleDateFormat format = new SimpleDateFormat(PATTERN);
+		String text = format.format(date);
+		Calendar c = Calendar.getInstance();
+		c.setTime(date);
+		c.set(Calendar.HOUR_OF_DAY, 0);
+		c.set(Calendar.MINUTE, 0);
+		c.set(Calendar.SECOND, 0);
+		c.set(Calendar.MILLISECOND, 0);
+		long floor = c.getTimeInMillis();
+		c.setTime(date);
+		c.set(Calendar.HOUR_OF_DAY, 23);
+		c.set(Calendar.MINUTE, 59);
+		c.set(Calendar.SECOND, 59);
+		c.set(Calendar.MILLISECOND, 999);
+		long ceil = c.getTimeInMillis();
+		c.setTime(date);
+		c.add(Calendar.DAY_OF_YEAR, 40);
+		long added = c.getTimeInMillis();
+		c.setTime(date);
+		int lastDay = c.getActualMaximum(Calendar.DATE);
+		int week = c.get(Calendar.WEEK_OF_YEAR);
+		int year = c.get(Calendar.YEAR);
+		c.add(Calendar.DAY_OF_YEAR, 3);
+		boolean sameWeek = (week == c.get(Calendar.WEEK_OF_YEAR)) && (year == c.get(Calendar.YEAR));
+		c.setTime(date);
+		c.add(Calendar.MONTH, -1);
+		c.set(Calendar.DAY_OF_MONTH, 1);
+		c.set(Calendar.HOUR_OF_DAY, 0);
+		c.set(Calendar.MINUTE, 0);
+		c.set(Calendar.SECOND, 0);
+		c.set(Calendar.MILLISECOND, 0);
+		return text + "|" + format.parse(text).getTime() + "|" + floor + "|" + ceil + "|" + added + "|" +
+				lastDay + "|" + sameWeek + "|" + c.getTimeInMillis();
+	}
+
+}
@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.nextreports.engine.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.naming.NamingException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import ro.nextreports.engine.EngineTestUtil;
+
+public class ReportMetadataIndexTest {
+
+	private File dir;
+
+	@Before
+	public void setUp() throws Exception {
+		dir = File.createTempFile("reports", "");
+		dir.delete();
+		dir.mkdir();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		for (File file : dir.listFiles()) {
+			file.delete();
+		}
+		dir.delete();
+	}
+
+	@Test
+	public void indexIsUpdatedForChangedReports() throws Exception {
+		save("a.report", "SELECT ID FROM T");
+		save("b.report", "SELECT AMOUNT FROM T");
+		ReportMetadataIndex index = ReportMetadataIndex.load(dir);
+		assertEquals(Arrays.asList("a.report", "b.report"), Arrays.asList(index.getReports().keySet().toArray()));
+		assertEquals("SELECT ID FROM T", index.getReport("a.report").getSql());
+
+		save("a.report", "SELECT ID, GRP FROM T");
+		new File(dir, "a.report").setLastModified(System.currentTimeMillis() + 2000);
+		new File(dir, "b.report").delete();
+		index = ReportMetadataIndex.load(dir);
+		assertEquals("SELECT ID, GRP FROM T", index.getReport("a.report").getSql());
+		assertNull(index.getReport("b.report"));
+		assertOnlyIndexAndReports(1);
+	}
+
+	@Test
+	public void damagedIndexIsReplaced() throws Exception {
+		save("a.report", "SELECT ID FROM T");
+		OutputStream out = new FileOutputStream(new File(dir, ReportMetadataIndex.INDEX_FILE_NAME));
+		try {
+			out.write("not an index".getBytes("UTF-8"));
+		} finally {
+			out.close();
+		}
+
+		assertEquals("SELECT ID FROM T", ReportMetadataIndex.load(dir).getReport("a.report").getSql());
+		assertOnlyIndexAndReports(1);
+		// the replaced index is read again without reading the report
+		File index = new File(dir, ReportMetadataIndex.INDEX_FILE_NAME);
+		long length = index.length();
+		index.setLastModified(0);
+		assertEquals("SELECT ID FROM T", ReportMetadataIndex.load(dir).getReport("a.report").getSql());
+		assertEquals(0, index.lastModified());
+		assertEquals(length, index.length());
+	}
+
+	@Test
+	public void indexWithOtherClassesIsReplaced() throws Exception {
+		save("a.report", "SELECT ID FROM T");
+		Map<String, Object> entries = new HashMap<String, Object>();
+		entries.put("a.report", new NamingException("not an entry"));
+		ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(new File(dir, ReportMetadataIndex.INDEX_FILE_NAME)));
+		try {
+			out.writeInt(1);
+			out.writeObject(entries);
+		} finally {
+			out.close();
+		}
+
+		assertEquals("SELECT ID FROM T", ReportMetadataIndex.load(dir).getReport("a.report").getSql());
+		assertOnlyIndexAndReports(1);
+	}
+
+	private void save(String name, String sql) {
+		ReportUtil.saveReport(EngineTestUtil.createReport(sql), new File(dir, name).getAbsolutePath());
+	}
+
+	// temporary index files are renamed or removed
+	private void assertOnlyIndexAndReports(int reports) {
+		String[] names = dir.list();
+		Arrays.sort(names);
+		assertEquals(reports + 1, names.length);
+		assertEquals(ReportMetadataIndex.INDEX_FILE_NAME, names[0]);
+	}
+
+}
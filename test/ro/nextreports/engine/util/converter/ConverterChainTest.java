@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ro.nextreports.engine.util.converter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import ro.nextreports.engine.EngineTestUtil;
+import ro.nextreports.engine.ReleaseInfoAdapter;
+import ro.nextreports.engine.Report;
+import ro.nextreports.engine.band.Band;
+import ro.nextreports.engine.band.RowElement;
+import ro.nextreports.engine.util.ReportUtil;
+
+public class ConverterChainTest {
+
+	@Test
+	public void oldReportIsConvertedFromDom() throws Exception {
+		Report report = ConverterChain.loadReport(readOldReport());
+		assertTrue(ConverterChain.conversionDone());
+		assertEquals(ReleaseInfoAdapter.getVersionNumber(), report.getVersion());
+		assertEquals("SELECT ID, AMOUNT FROM T", report.getSql());
+
+		Band header = report.getLayout().getHeaderBand();
+		assertEquals(1, header.getRowCount());
+		assertEquals("ID", header.getElementAt(0, 0).getText());
+		assertEquals("AMOUNT", header.getElementAt(0, 1).getText());
+		// startOnNewPage is moved from band elements to rows
+		assertFalse(header.getElements().get(0).isStartOnNewPage());
+		List<RowElement> detailRows = report.getLayout().getDetailBand().getElements();
+		assertEquals(1, detailRows.size());
+		assertTrue(detailRows.get(0).isStartOnNewPage());
+		assertEquals(2, detailRows.get(0).getElements().size());
+	}
+
+	@Test
+	public void convertedXmlIsReadAsConvertedReport() throws Exception {
+		String xml = ConverterChain.applyFromXml(readOldReport());
+		assertTrue(ConverterChain.conversionDone());
+		assertEquals(ReleaseInfoAdapter.getVersionNumber(), ReportUtil.getVersionFromText(xml));
+
+		Report converted = ConverterChain.loadReport(readOldReport());
+		assertEquals(ReportUtil.reportToXml(converted), xml);
+	}
+
+	@Test
+	public void currentReportIsNotConverted() throws Exception {
+		String xml = ReportUtil.reportToXml(EngineTestUtil.createReport("SELECT ID, AMOUNT FROM T"));
+		assertSame(xml, ConverterChain.applyFromXml(xml));
+		assertFalse(ConverterChain.conversionDone());
+
+		Report report = ConverterChain.loadReport(xml);
+		assertFalse(ConverterChain.conversionDone());
+		assertEquals(xml, ReportUtil.reportToXml(report));
+	}
+
+	@Test
+	public void conversionDoneIsKeptForEveryThread() throws Exception {
+		ConverterChain.loadReport(readOldReport());
+		final boolean[] otherThread = new boolean[1];
+		Thread thread = new Thread() {
+			public void run() {
+				try {
+					ConverterChain.loadReport(ReportUtil.reportToXml(EngineTestUtil.createReport("SELECT ID FROM T")));
+					otherThread[0] = ConverterChain.conversionDone();
+				} catch (ConverterException e) {
+					otherThread[0] = true;
+				}
+			}
+		};
+		thread.start();
+		thread.join();
+		assertFalse(otherThread[0]);
+		assertTrue(ConverterChain.conversionDone());
+	}
+
+	@Test
+	public void reportWithoutVersionIsRejected() throws Exception {
+		try {
+			ConverterChain.loadReport("<report><sql>SELECT 1</sql></report>");
+			fail("report without version was loaded");
+		} catch (ConverterException e) {
+			assertTrue(e.getMessage().contains("version"));
+		}
+	}
+
+	private String readOldReport() throws Exception {
+		return ReportUtil.readAsString(getClass().getResourceAsStream("report_5_1.xml"));
+	}
+
+}